@@ -0,0 +1,104 @@
+package com.aliyun.openservices.tablestore.agent.benchmark;
+
+import com.alicloud.openservices.tablestore.model.Column;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.Main;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare the JSON and the binary embedding encoding on the put path ({@code documentToColumns}) and the get path ({@code rowToDocument}).
+ * Run with {@code java -cp benchmarks.jar ...EmbeddingEncodingBenchmark [jmh options]} to also print the encoded column sizes once.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddingEncodingBenchmark {
+
+    @Param({ "768", "1536" })
+    int dimension;
+
+    @Param({ "JSON", "BINARY" })
+    String encoding;
+
+    Document document;
+
+    Row row;
+
+    boolean binary;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        binary = "BINARY".equals(encoding);
+        document = document(dimension);
+        row = row(document, binary);
+    }
+
+    @Benchmark
+    public List<Column> put() {
+        return TablestoreHelper.documentToColumns(document, "text", "embedding", binary);
+    }
+
+    @Benchmark
+    public Document get() {
+        return TablestoreHelper.rowToDocument(row, "text", "embedding");
+    }
+
+    /**
+     * Print the size of the encoded embedding column of each dimension and encoding, then run the benchmark with the given JMH options.
+     */
+    public static void main(String[] args) throws Exception {
+        for (int dimension : new int[] { 768, 1536 }) {
+            Document document = document(dimension);
+            for (boolean binary : new boolean[] { false, true }) {
+                Column column = row(document, binary).getLatestColumn("embedding");
+                System.out.printf(
+                    "[%s, dimension:%s] embedding column size: %s bytes%n",
+                    binary ? "BINARY" : "JSON",
+                    dimension,
+                    column.getValue().getDataSize()
+                );
+            }
+        }
+        String[] jmhArgs = Arrays.copyOf(args, args.length + 1);
+        jmhArgs[args.length] = EmbeddingEncodingBenchmark.class.getSimpleName();
+        Main.main(jmhArgs);
+    }
+
+    private static Document document(int dimension) {
+        Random random = new Random(42);
+        float[] embedding = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            embedding[i] = random.nextFloat() * 2 - 1;
+        }
+        Document document = new Document("doc_id");
+        document.setText("text");
+        document.setEmbedding(embedding);
+        return document;
+    }
+
+    private static Row row(Document document, boolean binary) {
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
+        return new Row(primaryKey, TablestoreHelper.documentToColumns(document, "text", "embedding", binary));
+    }
+}
@@ -0,0 +1,76 @@
+package com.aliyun.openservices.tablestore.agent.benchmark;
+
+import com.aliyun.openservices.tablestore.agent.util.EmbeddingJsonCodec;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compare {@link EmbeddingJsonCodec} with the Jackson {@code float[]} binding it replaces. Run with {@code -prof gc} to see the allocation
+ * rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class EmbeddingJsonCodecBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Param({ "768", "1536" })
+    int dimension;
+
+    float[] embedding;
+
+    String json;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        embedding = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            embedding[i] = random.nextFloat() * 2 - 1;
+        }
+        json = EmbeddingJsonCodec.encode(embedding);
+    }
+
+    @Benchmark
+    public float[] decodeJackson() throws JsonProcessingException {
+        return MAPPER.readValue(json, float[].class);
+    }
+
+    @Benchmark
+    public float[] decodeCodec() {
+        return EmbeddingJsonCodec.decode(json);
+    }
+
+    @Benchmark
+    public float[] decodeCodecWithDimension() {
+        return EmbeddingJsonCodec.decode(json, dimension);
+    }
+
+    @Benchmark
+    public String encodeJackson() throws JsonProcessingException {
+        return MAPPER.writeValueAsString(embedding);
+    }
+
+    @Benchmark
+    public String encodeCodec() {
+        return EmbeddingJsonCodec.encode(embedding);
+    }
+}
@@ -0,0 +1,106 @@
+package com.aliyun.openservices.tablestore.agent.benchmark;
+
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.FakeTablestoreClient;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Listing the messages of a session with {@link TablestoreHelper.GetRangeIterator} over the {@link FakeTablestoreClient} of the core tests:
+ * the paging and the row conversion cost, and with {@code latencyMicros} the overlap of the prefetch with the consumer. Run with
+ * {@code -prof gc} to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class GetRangeIteratorBenchmark {
+
+    private static final String TABLE_NAME = "message";
+
+    @Param({ "1000" })
+    int messages;
+
+    @Param({ "100" })
+    int batchSize;
+
+    /**
+     * Simulated round trip of a GetRange request, 0 to measure the client side only.
+     */
+    @Param({ "0", "200" })
+    long latencyMicros;
+
+    @Param({ "false", "true" })
+    boolean prefetch;
+
+    SyncClientInterface client;
+
+    PrimaryKey start;
+
+    PrimaryKey end;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        Metadata metadata = new Metadata().put("role", "user").put("tokens", 42L);
+        for (int i = 0; i < messages; i++) {
+            Message message = new Message("session_id", "message_" + i, 1700000000000000L + i, "message content " + i, metadata);
+            PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
+            fakeClient.putRow(TABLE_NAME, new Row(primaryKey, TablestoreHelper.messageToColumns(message)));
+        }
+        fakeClient.setGetRangeLatencyNanos(TimeUnit.MICROSECONDS.toNanos(latencyMicros));
+        client = fakeClient.asSyncClient();
+        start = bound(PrimaryKeyValue.INF_MIN);
+        end = bound(PrimaryKeyValue.INF_MAX);
+    }
+
+    @Benchmark
+    public void listMessages(Blackhole blackhole) {
+        TablestoreHelper.GetRangeIterator<Message> iterator = new TablestoreHelper.GetRangeIterator<>(
+            client,
+            TABLE_NAME,
+            TablestoreHelper::rowToMessage,
+            start,
+            end,
+            null,
+            Order.ASC,
+            -1L,
+            batchSize,
+            null,
+            prefetch
+        );
+        while (iterator.hasNext()) {
+            blackhole.consume(iterator.next());
+        }
+    }
+
+    private static PrimaryKey bound(PrimaryKeyValue value) {
+        return PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString("session_id"))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, value)
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, value)
+            .build();
+    }
+}
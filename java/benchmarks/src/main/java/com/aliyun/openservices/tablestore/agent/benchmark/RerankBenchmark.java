@@ -0,0 +1,83 @@
+package com.aliyun.openservices.tablestore.agent.benchmark;
+
+import com.aliyun.openservices.tablestore.agent.knowledge.ExactSimilarityReranker;
+import com.aliyun.openservices.tablestore.agent.knowledge.MaximalMarginalRelevanceReranker;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * CPU cost of the rerankers of a vector search returning {@code topK} hits out of {@code candidates}: the exact similarity rerank is
+ * linear in the candidates, the maximal marginal relevance one in {@code topK * candidates}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RerankBenchmark {
+
+    @Param({ "1536" })
+    int dimension;
+
+    @Param({ "50" })
+    int topK;
+
+    @Param({ "100", "200" })
+    int candidates;
+
+    float[] queryVector;
+
+    float[] embeddings;
+
+    List<DocumentHit> hits;
+
+    final ExactSimilarityReranker exact = ExactSimilarityReranker.builder().build();
+
+    final MaximalMarginalRelevanceReranker mmr = MaximalMarginalRelevanceReranker.builder().build();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Random random = new Random(42);
+        queryVector = randomVector(random, dimension);
+        embeddings = randomVector(random, candidates * dimension);
+        hits = new ArrayList<>(candidates);
+        for (int i = 0; i < candidates; i++) {
+            hits.add(new DocumentHit(new Document("d" + i, null), 0.0));
+        }
+    }
+
+    @Benchmark
+    public List<DocumentHit> exactSimilarity() {
+        return exact.rerank(queryVector, hits, embeddings, topK);
+    }
+
+    @Benchmark
+    public List<DocumentHit> maximalMarginalRelevance() {
+        return mmr.rerank(queryVector, hits, embeddings, topK);
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+}
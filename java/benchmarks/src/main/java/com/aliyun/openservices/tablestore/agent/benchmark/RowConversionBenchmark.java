@@ -0,0 +1,119 @@
+package com.aliyun.openservices.tablestore.agent.benchmark;
+
+import com.alicloud.openservices.tablestore.model.Column;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Conversions between the model objects and the Tablestore rows done for every row read or written: metadata to columns and back, and
+ * the rows of the session, message and document tables. The embedding is left out, see {@link EmbeddingEncodingBenchmark}. Run with
+ * {@code -prof gc} to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class RowConversionBenchmark {
+
+    @Param({ "4", "16" })
+    int metadataFields;
+
+    Metadata metadata;
+
+    Column[] metadataColumns;
+
+    Message message;
+
+    Row messageRow;
+
+    Row sessionRow;
+
+    Row documentRow;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        metadata = new Metadata();
+        for (int i = 0; i < metadataFields; i++) {
+            switch (i % 4) {
+                case 0:
+                    metadata.put("string_" + i, "value " + i);
+                    break;
+                case 1:
+                    metadata.put("long_" + i, (long) i);
+                    break;
+                case 2:
+                    metadata.put("double_" + i, i + 0.5);
+                    break;
+                default:
+                    metadata.put("boolean_" + i, i % 2 == 0);
+                    break;
+            }
+        }
+        metadataColumns = TablestoreHelper.metadataToColumns(metadata).toArray(new Column[0]);
+
+        message = new Message("session_id", "message_id", 1700000000000000L, "a message of a few words, as a chat turn would be", metadata);
+        PrimaryKey messagePrimaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
+        messageRow = new Row(messagePrimaryKey, TablestoreHelper.messageToColumns(message));
+
+        Session session = new Session("user_id", "session_id", 1700000000000000L);
+        session.setMetadata(metadata);
+        PrimaryKey sessionPrimaryKey = TablestoreHelper.sessionPrimaryKey(session.getUserId(), session.getSessionId());
+        sessionRow = new Row(sessionPrimaryKey, TablestoreHelper.sessionToColumns(session));
+
+        String text = "a paragraph of a document, as a chunk would be";
+        Document document = new Document("doc_id", Document.DOCUMENT_DEFAULT_TENANT_ID, text, null, metadata);
+        PrimaryKey documentPrimaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
+        documentRow = new Row(documentPrimaryKey, TablestoreHelper.documentToColumns(document, "text", "embedding"));
+    }
+
+    @Benchmark
+    public List<Column> metadataToColumns() {
+        return TablestoreHelper.metadataToColumns(metadata);
+    }
+
+    @Benchmark
+    public Metadata columnsToMetadata() {
+        return TablestoreHelper.columnsToMetadata(metadataColumns, column -> false);
+    }
+
+    @Benchmark
+    public List<Column> messageToColumns() {
+        return TablestoreHelper.messageToColumns(message);
+    }
+
+    @Benchmark
+    public Message rowToMessage() {
+        return TablestoreHelper.rowToMessage(messageRow);
+    }
+
+    @Benchmark
+    public Session rowToSession() {
+        return TablestoreHelper.rowToSession(sessionRow);
+    }
+
+    @Benchmark
+    public Document rowToDocument() {
+        return TablestoreHelper.rowToDocument(documentRow, "text", "embedding");
+    }
+}
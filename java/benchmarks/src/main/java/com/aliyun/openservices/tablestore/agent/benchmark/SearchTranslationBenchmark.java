@@ -0,0 +1,68 @@
+package com.aliyun.openservices.tablestore.agent.benchmark;
+
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.search.query.Query;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filters;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Per request work of the searches and the paginated listings: translation of a metadata filter to a search query, and the next token of
+ * a page. Run with {@code -prof gc} to see the allocation rate per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SearchTranslationBenchmark {
+
+    Filter filter;
+
+    PrimaryKey nextPrimaryKey;
+
+    String nextToken;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        // the shape of a tenant scoped search with a few metadata conditions
+        filter = Filters.and(
+            Filters.in("tenant_id", Arrays.asList("tenant_1", "tenant_2", "tenant_3")),
+            Filters.eq("category", "faq"),
+            Filters.gte("update_time", 1700000000000L),
+            Filters.not(Filters.eq("deleted", true)),
+            Filters.or(Filters.textMatch("title", "tablestore"), Filters.exists("pinned"))
+        );
+        nextPrimaryKey = TablestoreHelper.messagePrimaryKey("session_id", 1700000000000000L, "message_id");
+        nextToken = TablestoreHelper.encodeNextPrimaryKeyToken(nextPrimaryKey);
+    }
+
+    @Benchmark
+    public Query parserSearchFilters() {
+        return TablestoreHelper.parserSearchFilters(filter);
+    }
+
+    @Benchmark
+    public String encodeNextPrimaryKeyToken() {
+        return TablestoreHelper.encodeNextPrimaryKeyToken(nextPrimaryKey);
+    }
+
+    @Benchmark
+    public PrimaryKey decodeNextPrimaryKeyToken() {
+        return TablestoreHelper.decodeNextPrimaryKeyToken(nextToken);
+    }
+}
@@ -0,0 +1,143 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link KnowledgeStore}.
+ *
+ * <p>
+ * Every method returns immediately, the returned future is completed by the Tablestore async client once the request finishes. Argument
+ * validation (including the multi-tenant checks) still happens on the calling thread and throws {@link IllegalArgumentException} directly.
+ * Failures of the request itself complete the future exceptionally with a {@link RuntimeException} carrying the same message as the
+ * {@link KnowledgeStore} counterpart.
+ * </p>
+ * <p>
+ * Tables and indexes are not managed by this interface, use {@link KnowledgeStore#initTable()}.
+ * </p>
+ */
+public interface AsyncKnowledgeStore {
+
+    /**
+     * Insert document
+     *
+     * @param document document
+     * @return future completed when the document is written
+     */
+    CompletableFuture<Void> putDocument(Document document);
+
+    /**
+     * Update document
+     *
+     * @param document document
+     * @return future completed when the document is updated
+     */
+    CompletableFuture<Void> updateDocument(Document document);
+
+    /**
+     * Delete a single document
+     *
+     * @param documentId Document ID
+     * @param tenantId   Tenant ID (if multi-tenancy capability is not used, pass empty value)
+     * @return future completed when the document is deleted
+     */
+    CompletableFuture<Void> deleteDocument(String documentId, String tenantId);
+
+    /**
+     * Get a single document
+     *
+     * @param documentId Document ID
+     * @param tenantId   Tenant ID (if multi-tenancy capability is not used, pass empty value)
+     * @return future of the document, the value is null if the document does not exist
+     */
+    CompletableFuture<Document> getDocument(String documentId, String tenantId);
+
+    /**
+     * Get a single document, reading only some of its columns, see {@link KnowledgeStore#getDocument(String, String, List)}.
+     *
+     * @param documentId   Document ID
+     * @param tenantId     Tenant ID (if multi-tenancy capability is not used, pass empty value)
+     * @param columnsToGet Columns to read, all if null or empty
+     * @return future of the document, the value is null if the document does not exist
+     */
+    CompletableFuture<Document> getDocument(String documentId, String tenantId, List<String> columnsToGet);
+
+    /**
+     * Get multiple documents
+     *
+     * @param documentIdList List of document IDs
+     * @param tenantId       Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @return future of the documents in the order of the IDs, null for the documents that don't exist
+     */
+    CompletableFuture<List<Document>> getDocuments(List<String> documentIdList, String tenantId);
+
+    /**
+     * Get multiple documents, reading only some of their columns, see {@link KnowledgeStore#getDocument(String, String, List)}.
+     *
+     * @param documentIdList List of document IDs
+     * @param tenantId       Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param columnsToGet   Columns to read, all if null or empty
+     * @return future of the documents in the order of the IDs, null for the documents that don't exist
+     */
+    CompletableFuture<List<Document>> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet);
+
+    /**
+     * Search documents
+     *
+     * @param searchRequest Search request parameters
+     * @return future of the search results
+     */
+    CompletableFuture<Response<DocumentHit>> searchDocuments(KnowledgeSearchRequest searchRequest);
+
+    /**
+     * Query the text content of Document using full-text search.
+     *
+     * @param query          Search term
+     * @param tenantIds      Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param limit          Number of returned results
+     * @param metadataFilter Filtering condition
+     * @param nextToken      Pagination token. Pass the token from the previous query result to continue pagination.
+     * @param columnsToGet   Fields to return
+     * @return future of the search results
+     */
+    CompletableFuture<Response<DocumentHit>> fullTextSearch(
+        String query,
+        Set<String> tenantIds,
+        int limit,
+        Filter metadataFilter,
+        String nextToken,
+        List<String> columnsToGet
+    );
+
+    /**
+     * Query the embedding vector content of Document through vector retrieval.
+     *
+     * @param queryVector    Search vector
+     * @param topK           Top K for vector query
+     * @param minScore       min score for document in search result. If null, no filtering will be performed
+     * @param tenantIds      Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param metadataFilter Metadata filter condition
+     * @param columnsToGet   Fields to return
+     * @return future of the search results
+     */
+    CompletableFuture<Response<DocumentHit>> vectorSearch(
+        float[] queryVector,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    );
+
+    /**
+     * Whether to enable multi-tenant
+     *
+     * @return true if enable multi-tenant
+     */
+    boolean enableMultiTenant();
+}
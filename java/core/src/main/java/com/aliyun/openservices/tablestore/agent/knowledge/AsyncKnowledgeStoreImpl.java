@@ -0,0 +1,371 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.AsyncClientInterface;
+import com.alicloud.openservices.tablestore.TableStoreException;
+import com.alicloud.openservices.tablestore.model.Condition;
+import com.alicloud.openservices.tablestore.model.DeleteRowRequest;
+import com.alicloud.openservices.tablestore.model.GetRowRequest;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.PutRowRequest;
+import com.alicloud.openservices.tablestore.model.RowDeleteChange;
+import com.alicloud.openservices.tablestore.model.RowExistenceExpectation;
+import com.alicloud.openservices.tablestore.model.RowPutChange;
+import com.alicloud.openservices.tablestore.model.RowUpdateChange;
+import com.alicloud.openservices.tablestore.model.SingleRowQueryCriteria;
+import com.alicloud.openservices.tablestore.model.UpdateRowRequest;
+import com.alicloud.openservices.tablestore.model.search.FieldSchema;
+import com.alicloud.openservices.tablestore.model.search.SearchQuery;
+import com.alicloud.openservices.tablestore.model.search.SearchRequest;
+import com.alicloud.openservices.tablestore.model.search.query.Query;
+import com.alicloud.openservices.tablestore.model.search.sort.Sort;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filters;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.VectorQuery;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.model.sort.ScoreSort;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AsyncKnowledgeStore} backed by the Tablestore {@link AsyncClientInterface}.
+ *
+ * <p>
+ * The table name, index name, fields and multi-tenant setting must match the ones used by {@link KnowledgeStoreImpl}. An async client sharing
+ * the connection pool of an existing {@code SyncClient} can be obtained with {@code syncClient.asAsyncClient()}.
+ * </p>
+ */
+@Builder
+@Slf4j
+@Getter
+public class AsyncKnowledgeStoreImpl implements AsyncKnowledgeStore {
+
+    @NonNull
+    private final AsyncClientInterface client;
+    @Builder.Default
+    @NonNull
+    private final String tableName = "knowledge";
+    @Builder.Default
+    @NonNull
+    private final String searchIndexName = "knowledge_search_index_name";
+    @Builder.Default
+    @NonNull
+    private final List<FieldSchema> metadataSchema = Collections.emptyList();
+    @Builder.Default
+    @NonNull
+    private final String textField = "text";
+    @Builder.Default
+    @NonNull
+    private final String embeddingField = "embedding";
+    @NonNull
+    private final Integer embeddingDimension;
+    @NonNull
+    private final Boolean enableMultiTenant;
+    /**
+     * Must match {@link KnowledgeStoreImpl#getEnableBinaryEmbedding()} of the store that created the table.
+     */
+    @Builder.Default
+    @NonNull
+    private final Boolean enableBinaryEmbedding = false;
+    /**
+     * Receives a record of each page read by the list methods and of each search request, see {@link StoreMetrics}.
+     */
+    @Builder.Default
+    @NonNull
+    private final StoreMetrics metrics = StoreMetrics.NOOP;
+
+    @Override
+    public CompletableFuture<Void> putDocument(Document document) {
+        ValidationUtils.ensureNotNull(document, "document");
+        ValidationUtils.ensureNotNull(document.getDocumentId(), "documentId");
+        TablestoreHelper.checkDocumentDimension(document, embeddingDimension);
+        TablestoreHelper.checkDocumentTenantId(document.getTenantId(), enableMultiTenant);
+
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
+        RowPutChange rowPutChange = new RowPutChange(tableName, primaryKey);
+        rowPutChange.addColumns(TablestoreHelper.documentToColumns(document, textField, embeddingField, enableBinaryEmbedding));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new PutRowRequest(rowPutChange), client::putRow),
+            e -> String.format("put document:%s failed", document)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("put document:{}", document);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> updateDocument(Document document) {
+        ValidationUtils.ensureNotNull(document, "document");
+        ValidationUtils.ensureNotNull(document.getDocumentId(), "documentId");
+        TablestoreHelper.checkDocumentDimension(document, embeddingDimension);
+        TablestoreHelper.checkDocumentTenantId(document.getTenantId(), enableMultiTenant);
+
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
+        RowUpdateChange change = new RowUpdateChange(tableName, primaryKey);
+        change.put(TablestoreHelper.documentToColumns(document, textField, embeddingField, enableBinaryEmbedding));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new UpdateRowRequest(change), client::updateRow),
+            e -> String.format("update document:%s failed", document)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("update document:{}", document);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteDocument(String documentId, String tenantId) {
+        ValidationUtils.ensureNotNull(documentId, "documentId");
+        if (enableMultiTenant && (tenantId == null || Document.DOCUMENT_DEFAULT_TENANT_ID.equals(tenantId))) {
+            return getTenantIds(documentId).thenCompose(tenantIds -> {
+                List<CompletableFuture<Void>> futures = new ArrayList<>(tenantIds.size());
+                for (String getTenantId : tenantIds) {
+                    futures.add(innerDelete(documentId, getTenantId));
+                }
+                return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0]));
+            });
+        }
+        return innerDelete(documentId, TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant));
+    }
+
+    private CompletableFuture<Void> innerDelete(String documentId, String tenantId) {
+        RowDeleteChange rowDeleteChange = new RowDeleteChange(tableName, TablestoreHelper.documentPrimaryKey(documentId, tenantId));
+        rowDeleteChange.setCondition(new Condition(RowExistenceExpectation.IGNORE));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new DeleteRowRequest(rowDeleteChange), client::deleteRow),
+            e -> String.format("delete document failed, documentId:%s, tenantId:%s", documentId, tenantId)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("delete document, documentId:{}, tenantId:{}", documentId, tenantId);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Document> getDocument(String documentId, String tenantId) {
+        return getDocument(documentId, tenantId, null);
+    }
+
+    @Override
+    public CompletableFuture<Document> getDocument(String documentId, String tenantId, List<String> columnsToGet) {
+        ValidationUtils.ensureNotNull(documentId, "documentId");
+        String newTenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
+
+        SingleRowQueryCriteria criteria = new SingleRowQueryCriteria(tableName, TablestoreHelper.documentPrimaryKey(documentId, newTenantId));
+        criteria.setMaxVersions(1);
+        List<String> documentColumnsToGet = TablestoreHelper.documentColumnsToGet(columnsToGet);
+        if (documentColumnsToGet != null) {
+            criteria.addColumnsToGet(documentColumnsToGet);
+        }
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new GetRowRequest(criteria), client::getRow),
+            e -> String.format("get document failed, documentId:%s, tenantId:%s ", documentId, newTenantId)
+        ).thenApply(response -> {
+            Document document = TablestoreHelper.rowToDocument(response.getRow(), textField, embeddingField);
+            if (log.isDebugEnabled()) {
+                log.debug("get document:{}", document);
+            }
+            return document;
+        });
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> getDocuments(List<String> documentIdList, String tenantId) {
+        return getDocuments(documentIdList, tenantId, null);
+    }
+
+    @Override
+    public CompletableFuture<List<Document>> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet) {
+        ValidationUtils.ensureNotNull(documentIdList, "documentIdList");
+        if (log.isDebugEnabled()) {
+            log.debug("get documents, documentIdList:{}, tenantId:{}", documentIdList, tenantId);
+        }
+        String newTenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
+        List<PrimaryKey> pkList = new ArrayList<>(documentIdList.size());
+        for (String docId : documentIdList) {
+            pkList.add(TablestoreHelper.documentPrimaryKey(docId, newTenantId));
+        }
+        List<String> documentColumnsToGet = TablestoreHelper.documentColumnsToGet(columnsToGet);
+        return TablestoreHelper.batchGetDocumentsAsync(client, tableName, pkList, textField, embeddingField, documentColumnsToGet);
+    }
+
+    @Override
+    public CompletableFuture<Response<DocumentHit>> searchDocuments(KnowledgeSearchRequest searchRequest) {
+        if (log.isDebugEnabled()) {
+            log.debug("before search documents:{}", searchRequest);
+        }
+        ValidationUtils.ensureNotNull(searchRequest, "KnowledgeSearchRequest");
+        SearchRequest otsSearchRequest = toOtsSearchRequest(searchRequest);
+        return TablestoreHelper.wrapFailure(
+            StoreMetrics.requestAsync(metrics, tableName, "Search", () -> TablestoreHelper.callAsync(otsSearchRequest, client::search), r -> r.getRows().size()),
+            e -> {
+                if (e instanceof TableStoreException) {
+                    return String.format("search documents failed, request_id:%s, query:[%s]", ((TableStoreException) e).getRequestId(), searchRequest);
+                }
+                return String.format("search documents failed, query:[%s]", searchRequest);
+            }
+        ).thenApply(searchResponse -> {
+            if (log.isDebugEnabled()) {
+                log.debug("search documents:{}, request_id:{}", searchRequest, searchResponse.getRequestId());
+            }
+            Triple<List<Document>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(
+                searchResponse,
+                r -> TablestoreHelper.rowToDocument(r, textField, embeddingField)
+            );
+            List<Document> documents = triple.getLeft();
+            List<Double> scores = triple.getRight();
+            List<DocumentHit> documentHits = new ArrayList<>(documents.size());
+            for (int i = 0; i < documents.size(); i++) {
+                documentHits.add(new DocumentHit(documents.get(i), scores.get(i)));
+            }
+            return new Response<>(documentHits, triple.getMiddle());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Response<DocumentHit>> fullTextSearch(
+        String query,
+        Set<String> tenantIds,
+        int limit,
+        Filter metadataFilter,
+        String nextToken,
+        List<String> columnsToGet
+    ) {
+        Filter textMatch = Filters.textMatch(textField, query);
+        if (metadataFilter != null) {
+            metadataFilter = Filters.and(textMatch, metadataFilter);
+        } else {
+            metadataFilter = textMatch;
+        }
+        KnowledgeSearchRequest knowledgeSearchRequest = KnowledgeSearchRequest.builder()
+            .tenantIds(tenantIds)
+            .metadataFilter(metadataFilter)
+            .limit(limit)
+            .nextToken(nextToken)
+            .columnsToGet(columnsToGet)
+            .sorts(Collections.singletonList(ScoreSort.builder().order(Order.DESC).build()))
+            .build();
+        return searchDocuments(knowledgeSearchRequest);
+    }
+
+    @Override
+    public CompletableFuture<Response<DocumentHit>> vectorSearch(
+        float[] queryVector,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        if (enableBinaryEmbedding) {
+            throw Exceptions.illegalArgument("vector search is not supported when the binary embedding is enabled");
+        }
+        Filter filter = TablestoreHelper.wrapDocumentTenantIds(tenantIds, metadataFilter, enableMultiTenant);
+        VectorQuery vectorQuery = Filters.vectorQuery(embeddingField, queryVector).setTopK(topK).setFilter(filter).setMinScore(minScore);
+        KnowledgeSearchRequest knowledgeSearchRequest = KnowledgeSearchRequest.builder()
+            .tenantIds(null)
+            .metadataFilter(vectorQuery)
+            .limit(topK)
+            .nextToken(null)
+            .columnsToGet(columnsToGet)
+            .sorts(Collections.singletonList(ScoreSort.builder().order(Order.DESC).build()))
+            .varArg(KnowledgeStoreImpl.FLAG_ROUTING_VALUES, TablestoreHelper.documentRouting(tenantIds, enableMultiTenant))
+            .build();
+        return searchDocuments(knowledgeSearchRequest);
+    }
+
+    @Override
+    public boolean enableMultiTenant() {
+        return enableMultiTenant;
+    }
+
+    private SearchRequest toOtsSearchRequest(KnowledgeSearchRequest searchRequest) {
+        Filter filter = TablestoreHelper.wrapDocumentTenantIds(searchRequest.getTenantIds(), searchRequest.getMetadataFilter(), enableMultiTenant);
+        Query query = TablestoreHelper.parserSearchFilters(filter);
+        Sort otsSort = TablestoreHelper.toOtsSort(searchRequest.getSorts());
+        byte[] nextToken = null;
+        if (searchRequest.getNextToken() != null) {
+            nextToken = Base64.getDecoder().decode(searchRequest.getNextToken());
+        }
+        SearchQuery searchQuery = SearchQuery.newBuilder()
+            .query(query)
+            .getTotalCount(false)
+            .limit(searchRequest.getLimit())
+            .offset(0)
+            .sort(otsSort)
+            .token(nextToken)
+            .build();
+
+        SearchRequest otsSearchRequest = new SearchRequest(tableName, searchIndexName, searchQuery);
+        List<PrimaryKey> routingValues = TablestoreHelper.documentRouting(
+            searchRequest.getVarArgs(),
+            KnowledgeStoreImpl.FLAG_ROUTING_VALUES,
+            searchRequest.getTenantIds(),
+            enableMultiTenant
+        );
+        if (!routingValues.isEmpty()) {
+            otsSearchRequest.setRoutingValues(routingValues);
+        }
+        SearchRequest.ColumnsToGet otsColumnsToGet = new SearchRequest.ColumnsToGet();
+        List<String> columnsToGet = searchRequest.getColumnsToGet();
+        otsColumnsToGet.setColumns(columnsToGet == null || columnsToGet.isEmpty() ? getDefaultColumnsToGet() : columnsToGet);
+        otsSearchRequest.setColumnsToGet(otsColumnsToGet);
+        return otsSearchRequest;
+    }
+
+    /**
+     * Columns returned by the searches by default: the text and the metadata fields of {@code metadataSchema}, without the embedding. Pass
+     * them as {@code columnsToGet} of the reads that don't need the embedding.
+     */
+    public List<String> getDefaultColumnsToGet() {
+        return TablestoreHelper.documentDefaultColumnsToGet(metadataSchema, textField, embeddingField);
+    }
+
+    private CompletableFuture<List<String>> getTenantIds(String documentId) {
+        PrimaryKey start = TablestoreHelper.documentPrimaryKey(documentId, PrimaryKeyValue.INF_MIN);
+        PrimaryKey end = TablestoreHelper.documentPrimaryKey(documentId, PrimaryKeyValue.INF_MAX);
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.getRangeAsync(
+                client,
+                tableName,
+                row -> TablestoreHelper.rowToDocument(row, textField, embeddingField),
+                start,
+                end,
+                null,
+                Order.ASC,
+                -1L,
+                null,
+                metrics
+            ),
+            e -> String.format("get tenant ids failed, documentId:%s", documentId)
+        ).thenApply(pair -> {
+            List<String> tenantIds = new ArrayList<>();
+            for (Document document : pair.getLeft()) {
+                if (document != null && document.getTenantId() != null) {
+                    tenantIds.add(document.getTenantId());
+                }
+            }
+            if (tenantIds.size() > 1) {
+                log.warn("document id:{} has more than one tenant id:{}", documentId, tenantIds);
+            }
+            return tenantIds;
+        });
+    }
+}
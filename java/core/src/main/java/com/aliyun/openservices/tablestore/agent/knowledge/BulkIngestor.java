@@ -0,0 +1,347 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.model.RowChange;
+import com.alicloud.openservices.tablestore.model.RowPutChange;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Bulk loader of documents into the table of a {@link KnowledgeStoreImpl}.
+ *
+ * <p>
+ * Documents are validated on the calling thread and grouped into chunks of {@code maxBatchRows}. Each chunk is encoded on a worker thread and
+ * written with BatchWriteRow requests limited to {@code maxBatchRows} rows and {@code maxBatchBytes} bytes. At most {@code concurrency}
+ * chunks are written concurrently and at most as many are waiting, so the iterator is consumed at the pace of the writes. A document whose id
+ * and tenant id are in a chunk still in flight, retries included, waits for that chunk, so the last one wins. Rows rejected by
+ * Tablestore are retried alone up to {@code maxRetries} times, the rows still failing are reported in {@link Result#getFailures()}.
+ * </p>
+ */
+@Slf4j
+public class BulkIngestor {
+
+    /**
+     * Max row count of a BatchWriteRow request.
+     */
+    public static final int MAX_BATCH_ROWS = 200;
+
+    /**
+     * Max data size of a BatchWriteRow request.
+     */
+    public static final long MAX_BATCH_BYTES = 4L * 1024 * 1024;
+
+    private final KnowledgeStoreImpl store;
+    private final SyncClientInterface client;
+    private final int maxBatchRows;
+    private final long maxBatchBytes;
+    private final int concurrency;
+    private final int maxRetries;
+    private final long retryBackoffMillis;
+
+    /**
+     * @param store              the knowledge store defining the table, fields and validation rules
+     * @param client             client used for the writes, default the client of the store
+     * @param maxBatchRows       max rows of a request, range [1, 200], default 200
+     * @param maxBatchBytes      max bytes of a request, range [1, 4MB], default 4MB
+     * @param concurrency        number of requests in flight, default 4
+     * @param maxRetries         retries of the failed rows of a request, default 3
+     * @param retryBackoffMillis sleep before the first retry, doubled for each next retry, default 100 ms
+     */
+    @Builder
+    private BulkIngestor(
+        @NonNull KnowledgeStoreImpl store,
+        SyncClientInterface client,
+        Integer maxBatchRows,
+        Long maxBatchBytes,
+        Integer concurrency,
+        Integer maxRetries,
+        Long retryBackoffMillis
+    ) {
+        this.store = store;
+        this.client = ValidationUtils.ensureNotNull(client == null ? store.getClient() : client, "client");
+        this.maxBatchRows = ValidationUtils.ensureBetween(maxBatchRows == null ? MAX_BATCH_ROWS : maxBatchRows, 1, MAX_BATCH_ROWS, "maxBatchRows");
+        this.maxBatchBytes = ValidationUtils.ensureBetween(maxBatchBytes == null ? MAX_BATCH_BYTES : maxBatchBytes, 1L, MAX_BATCH_BYTES, "maxBatchBytes");
+        this.concurrency = ValidationUtils.ensureBetween(concurrency == null ? 4 : concurrency, 1, 256, "concurrency");
+        this.maxRetries = ValidationUtils.ensureBetween(maxRetries == null ? 3 : maxRetries, 0, 100, "maxRetries");
+        this.retryBackoffMillis = ValidationUtils.ensureBetween(retryBackoffMillis == null ? 100L : retryBackoffMillis, 0L, 60_000L, "retryBackoffMillis");
+    }
+
+    /**
+     * Write all documents (overwrite). Returns once every document is written or has exhausted its retries. A document failing validation
+     * stops the ingestion with {@link IllegalArgumentException} after the chunks already submitted are written.
+     *
+     * @param documents documents to write
+     * @return statistics and failed rows
+     */
+    public Result ingest(Iterator<Document> documents) {
+        ValidationUtils.ensureNotNull(documents, "documents");
+        long start = System.nanoTime();
+        Counters counters = new Counters();
+        AtomicInteger threadIndex = new AtomicInteger();
+        ExecutorService executor = Executors.newFixedThreadPool(concurrency, r -> {
+            Thread thread = new Thread(r, "tablestore-bulk-ingestor-" + threadIndex.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // running + waiting chunks
+        Semaphore window = new Semaphore(concurrency * 2);
+        try {
+            List<Document> chunk = new ArrayList<>(maxBatchRows);
+            Set<String> chunkKeys = new HashSet<>();
+            // key -> completion of the chunk in flight writing it, removed by the chunk when it is done
+            Map<String, CompletableFuture<Void>> inFlightKeys = new ConcurrentHashMap<>();
+            while (documents.hasNext()) {
+                Document document = documents.next();
+                ValidationUtils.ensureNotNull(document, "document");
+                ValidationUtils.ensureNotNull(document.getDocumentId(), "documentId");
+                store.checkDimension(document);
+                store.checkEnableMultiTenant(document);
+                String key = document.getDocumentId() + '\u0000' + document.getTenantId();
+                // a BatchWriteRow request must not contain the same row twice
+                if (chunk.size() >= maxBatchRows || chunkKeys.contains(key)) {
+                    submit(executor, window, chunk, chunkKeys, inFlightKeys, counters);
+                    chunk = new ArrayList<>(maxBatchRows);
+                    chunkKeys = new HashSet<>();
+                }
+                CompletableFuture<Void> previous = inFlightKeys.get(key);
+                if (previous != null) {
+                    // the later document must win, so it is not written concurrently with the earlier one
+                    previous.join();
+                }
+                chunk.add(document);
+                chunkKeys.add(key);
+            }
+            if (!chunk.isEmpty()) {
+                submit(executor, window, chunk, chunkKeys, inFlightKeys, counters);
+            }
+        } finally {
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.info("bulk ingest waiting for in-flight requests, rows:{}", counters.rows.get());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+        Result result = new Result(
+            counters.rows.get(),
+            counters.bytes.get(),
+            counters.requests.get(),
+            System.nanoTime() - start,
+            new ArrayList<>(counters.failures)
+        );
+        log.info("bulk ingest finished, {}", result);
+        return result;
+    }
+
+    private void submit(
+        ExecutorService executor,
+        Semaphore window,
+        List<Document> chunk,
+        Set<String> chunkKeys,
+        Map<String, CompletableFuture<Void>> inFlightKeys,
+        Counters counters
+    ) {
+        try {
+            window.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.runtimeThrowable("bulk ingest interrupted", e);
+        }
+        CompletableFuture<Void> done = new CompletableFuture<>();
+        for (String key : chunkKeys) {
+            inFlightKeys.put(key, done);
+        }
+        executor.execute(() -> {
+            try {
+                writeChunk(chunk, counters);
+            } catch (Exception e) {
+                log.warn("bulk ingest chunk failed, rows:{}", chunk.size(), e);
+                for (Document document : chunk) {
+                    counters.failures.add(new Failure(document.getDocumentId(), document.getTenantId(), String.valueOf(e.getMessage())));
+                }
+            } finally {
+                for (String key : chunkKeys) {
+                    inFlightKeys.remove(key, done);
+                }
+                window.release();
+                done.complete(null);
+            }
+        });
+    }
+
+    private void writeChunk(List<Document> chunk, Counters counters) {
+        List<RowChange> request = new ArrayList<>(chunk.size());
+        List<Document> requestDocuments = new ArrayList<>(chunk.size());
+        long requestBytes = 0;
+        for (Document document : chunk) {
+            RowPutChange rowPutChange = new RowPutChange(
+                store.getTableName(),
+                TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId())
+            );
+            rowPutChange.addColumns(
+                TablestoreHelper.documentToColumns(document, store.getTextField(), store.getEmbeddingField(), store.getEnableBinaryEmbedding())
+            );
+            int size = rowPutChange.getDataSize();
+            if (!request.isEmpty() && requestBytes + size > maxBatchBytes) {
+                writeWithRetry(request, requestDocuments, counters);
+                request = new ArrayList<>(chunk.size());
+                requestDocuments = new ArrayList<>(chunk.size());
+                requestBytes = 0;
+            }
+            request.add(rowPutChange);
+            requestDocuments.add(document);
+            requestBytes += size;
+        }
+        if (!request.isEmpty()) {
+            writeWithRetry(request, requestDocuments, counters);
+        }
+    }
+
+    private void writeWithRetry(List<RowChange> rowChanges, List<Document> documents, Counters counters) {
+        List<RowChange> pending = rowChanges;
+        List<Document> pendingDocuments = documents;
+        for (int attempt = 0;; attempt++) {
+            Map<Integer, String> failures;
+            try {
+                failures = TablestoreHelper.batchWriteRow(client, pending);
+            } catch (Exception e) {
+                log.warn("bulk ingest batch write failed, rows:{}, attempt:{}", pending.size(), attempt, e);
+                failures = new HashMap<>();
+                for (int i = 0; i < pending.size(); i++) {
+                    failures.put(i, String.valueOf(e.getMessage()));
+                }
+            }
+            counters.requests.incrementAndGet();
+            for (int i = 0; i < pending.size(); i++) {
+                if (!failures.containsKey(i)) {
+                    counters.rows.incrementAndGet();
+                    counters.bytes.addAndGet(pending.get(i).getDataSize());
+                }
+            }
+            if (failures.isEmpty()) {
+                return;
+            }
+            if (attempt >= maxRetries) {
+                for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+                    Document document = pendingDocuments.get(failure.getKey());
+                    counters.failures.add(new Failure(document.getDocumentId(), document.getTenantId(), failure.getValue()));
+                }
+                return;
+            }
+            List<RowChange> retryRowChanges = new ArrayList<>(failures.size());
+            List<Document> retryDocuments = new ArrayList<>(failures.size());
+            for (Integer position : failures.keySet()) {
+                retryRowChanges.add(pending.get(position));
+                retryDocuments.add(pendingDocuments.get(position));
+            }
+            pending = retryRowChanges;
+            pendingDocuments = retryDocuments;
+            sleepBeforeRetry(attempt);
+        }
+    }
+
+    private void sleepBeforeRetry(int attempt) {
+        long backoff = retryBackoffMillis << Math.min(attempt, 10);
+        if (backoff <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(backoff);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.runtimeThrowable("bulk ingest interrupted", e);
+        }
+    }
+
+    private static class Counters {
+        private final AtomicLong rows = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final AtomicLong requests = new AtomicLong();
+        private final ConcurrentLinkedQueue<Failure> failures = new ConcurrentLinkedQueue<>();
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Result {
+
+        /**
+         * Rows written successfully.
+         */
+        private final long rowCount;
+
+        /**
+         * Data size of the rows written successfully.
+         */
+        private final long byteCount;
+
+        /**
+         * BatchWriteRow requests sent, including retries.
+         */
+        private final long requestCount;
+
+        private final long elapsedNanos;
+
+        /**
+         * Rows still failing after the retries.
+         */
+        @ToString.Exclude
+        private final List<Failure> failures;
+
+        @ToString.Include
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : rowCount * 1e9 / elapsedNanos;
+        }
+
+        @ToString.Include
+        public double megabytesPerSecond() {
+            return elapsedNanos == 0 ? 0 : byteCount * 1e9 / elapsedNanos / (1024 * 1024);
+        }
+
+        @ToString.Include
+        public int failureCount() {
+            return failures.size();
+        }
+
+        public List<Failure> getFailures() {
+            return Collections.unmodifiableList(failures);
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Failure {
+        private final String documentId;
+        private final String tenantId;
+        private final String error;
+    }
+}
@@ -0,0 +1,410 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * {@link KnowledgeStore} decorator keeping recently read documents in process.
+ *
+ * <p>
+ * {@link #getDocument(String, String)} and {@link #getDocuments(List, String)} are served from an {@link LruCache} keyed by (documentId,
+ * tenantId), only the misses are read from the delegate, with a single batch read for {@code getDocuments}. The cache is bounded by an
+ * estimate of the memory used by the documents, text and embedding included, so that a few large documents don't push out thousands of
+ * small ones. Document writes go to the delegate first and then invalidate the cached entries, writes made by other processes are visible
+ * after {@code ttlMillis} at most. Searches and other methods are passed to the delegate unchanged.
+ * </p>
+ */
+public class CachedKnowledgeStore implements KnowledgeStore {
+
+    private final KnowledgeStore delegate;
+    private final LruCache<Pair<String, String>, Document> documentCache;
+
+    /**
+     * Incremented after every document write and before its invalidation, a document loaded while a write completed is not cached as it
+     * may be stale, see {@link LruCache#putUnless}.
+     */
+    private final AtomicLong documentWrites = new AtomicLong();
+
+    /**
+     * @param delegate     the store reading and writing Tablestore, usually a {@link KnowledgeStoreImpl}
+     * @param maxDocuments max cached documents, default 10000
+     * @param maxBytes     max estimated size of the cached documents, default 64MB
+     * @param ttlMillis    time a cached document is served without reading the table, default 60000 ms
+     * @param metrics      receives the statistics of the cache, default none
+     */
+    @Builder
+    private CachedKnowledgeStore(@NonNull KnowledgeStore delegate, Integer maxDocuments, Long maxBytes, Long ttlMillis, StoreMetrics metrics) {
+        this.delegate = delegate;
+        this.documentCache = LruCache.<Pair<String, String>, Document>builder()
+            .maxSize(maxDocuments == null ? 10000 : maxDocuments)
+            .maxWeight(maxBytes == null ? 64L * 1024 * 1024 : maxBytes)
+            .weigher(CachedKnowledgeStore::estimateSize)
+            .ttlMillis(ttlMillis == null ? 60_000L : ttlMillis)
+            .build();
+        if (metrics != null) {
+            metrics.registerCache("knowledge.document", documentCache::stats);
+        }
+    }
+
+    /**
+     * @return hit, miss, eviction and expiration counts of the document cache
+     */
+    public LruCache.Stats getDocumentCacheStats() {
+        return documentCache.stats();
+    }
+
+    /**
+     * @return estimated size of the cached documents in bytes
+     */
+    public long getDocumentCacheBytes() {
+        return documentCache.weight();
+    }
+
+    @Override
+    public void putDocument(Document document) {
+        try {
+            delegate.putDocument(document);
+        } finally {
+            invalidateDocument(document);
+        }
+    }
+
+    @Override
+    public void putDocuments(Iterator<Document> documents) {
+        try {
+            delegate.putDocuments(documents);
+        } finally {
+            // bulk loads touch too many documents to track their keys
+            documentWrites.incrementAndGet();
+            documentCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public void updateDocument(Document document) {
+        try {
+            delegate.updateDocument(document);
+        } finally {
+            invalidateDocument(document);
+        }
+    }
+
+    @Override
+    public void deleteDocument(String documentId, String tenantId) {
+        try {
+            delegate.deleteDocument(documentId, tenantId);
+        } finally {
+            documentWrites.incrementAndGet();
+            documentCache.invalidate(key(documentId, tenantId));
+        }
+    }
+
+    @Override
+    public void deleteDocument(String documentId) {
+        try {
+            delegate.deleteDocument(documentId);
+        } finally {
+            documentWrites.incrementAndGet();
+            documentCache.invalidate(key(documentId, null));
+        }
+    }
+
+    @Override
+    public void deleteDocumentByTenant(String tenantId) {
+        try {
+            delegate.deleteDocumentByTenant(tenantId);
+        } finally {
+            documentWrites.incrementAndGet();
+            String normalizedTenantId = key(null, tenantId).getRight();
+            documentCache.invalidateIf(key -> key.getRight().equals(normalizedTenantId));
+        }
+    }
+
+    @Override
+    public void deleteDocument(Set<String> tenantIds, Filter metadataFilter) {
+        try {
+            delegate.deleteDocument(tenantIds, metadataFilter);
+        } finally {
+            documentWrites.incrementAndGet();
+            if (tenantIds == null || tenantIds.isEmpty()) {
+                documentCache.invalidateAll();
+            } else {
+                documentCache.invalidateIf(key -> tenantIds.contains(key.getRight()));
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllDocuments() {
+        try {
+            delegate.deleteAllDocuments();
+        } finally {
+            documentWrites.incrementAndGet();
+            documentCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public Document getDocument(String documentId, String tenantId) {
+        Pair<String, String> key = key(documentId, tenantId);
+        Document cached = documentCache.get(key);
+        if (cached != null) {
+            return copy(cached);
+        }
+        long writes = documentWrites.get();
+        Document document = delegate.getDocument(documentId, tenantId);
+        if (document != null) {
+            documentCache.putUnless(key, copy(document), () -> documentWrites.get() != writes);
+        }
+        return document;
+    }
+
+    @Override
+    public Document getDocument(String documentId) {
+        return getDocument(documentId, null);
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId) {
+        List<Document> documents = new ArrayList<>(documentIdList.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<String> missIds = new ArrayList<>();
+        for (String documentId : documentIdList) {
+            Document cached = documentCache.get(key(documentId, tenantId));
+            if (cached == null) {
+                missIndexes.add(documents.size());
+                missIds.add(documentId);
+            }
+            documents.add(cached == null ? null : copy(cached));
+        }
+        if (missIds.isEmpty()) {
+            return documents;
+        }
+        long writes = documentWrites.get();
+        List<Document> loaded = delegate.getDocuments(missIds, tenantId);
+        for (int i = 0; i < missIndexes.size(); i++) {
+            Document document = loaded.get(i);
+            documents.set(missIndexes.get(i), document);
+            if (document != null) {
+                documentCache.putUnless(key(missIds.get(i), tenantId), copy(document), () -> documentWrites.get() != writes);
+            }
+        }
+        return documents;
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList) {
+        return getDocuments(documentIdList, null);
+    }
+
+    /**
+     * Projected reads are passed to the delegate, the cache only holds whole documents.
+     */
+    @Override
+    public Document getDocument(String documentId, String tenantId, List<String> columnsToGet) {
+        if (columnsToGet == null || columnsToGet.isEmpty()) {
+            return getDocument(documentId, tenantId);
+        }
+        return delegate.getDocument(documentId, tenantId, columnsToGet);
+    }
+
+    /**
+     * Projected reads are passed to the delegate, the cache only holds whole documents.
+     */
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet) {
+        if (columnsToGet == null || columnsToGet.isEmpty()) {
+            return getDocuments(documentIdList, tenantId);
+        }
+        return delegate.getDocuments(documentIdList, tenantId, columnsToGet);
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments() {
+        return delegate.listAllDocuments();
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism) {
+        return delegate.listAllDocuments(parallelism);
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism, List<String> columnsToGet) {
+        return delegate.listAllDocuments(parallelism, columnsToGet);
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments() {
+        return delegate.streamAllDocuments();
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments(List<String> columnsToGet) {
+        return delegate.streamAllDocuments(columnsToGet);
+    }
+
+    @Override
+    public Response<DocumentHit> searchDocuments(KnowledgeSearchRequest searchRequest) {
+        return delegate.searchDocuments(searchRequest);
+    }
+
+    @Override
+    public Response<DocumentHit> fullTextSearch(
+        String query,
+        Set<String> tenantIds,
+        int limit,
+        Filter metadataFilter,
+        String nextToken,
+        List<String> columnsToGet
+    ) {
+        return delegate.fullTextSearch(query, tenantIds, limit, metadataFilter, nextToken, columnsToGet);
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return delegate.vectorSearch(queryVector, topK, minScore, tenantIds, metadataFilter, columnsToGet);
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        int candidates,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet,
+        Reranker reranker
+    ) {
+        return delegate.vectorSearch(queryVector, topK, candidates, tenantIds, metadataFilter, columnsToGet, reranker);
+    }
+
+    @Override
+    public List<Response<DocumentHit>> vectorSearchBatch(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return delegate.vectorSearchBatch(queryVectors, topK, minScore, tenantIds, metadataFilter, columnsToGet);
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearchUnion(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return delegate.vectorSearchUnion(queryVectors, topK, minScore, tenantIds, metadataFilter, columnsToGet);
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(String query, float[] queryVector, int topK, Set<String> tenantIds, Filter metadataFilter) {
+        return delegate.hybridSearch(query, queryVector, topK, tenantIds, metadataFilter);
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return delegate.hybridSearch(query, queryVector, topK, tenantIds, metadataFilter, columnsToGet);
+    }
+
+    @Override
+    public boolean enableMultiTenant() {
+        return delegate.enableMultiTenant();
+    }
+
+    @Override
+    public void initTable() {
+        delegate.initTable();
+    }
+
+    @Override
+    public void deleteTableAndIndex() {
+        try {
+            delegate.deleteTableAndIndex();
+        } finally {
+            documentWrites.incrementAndGet();
+            documentCache.invalidateAll();
+        }
+    }
+
+    private void invalidateDocument(Document document) {
+        documentWrites.incrementAndGet();
+        if (document != null) {
+            documentCache.invalidate(key(document.getDocumentId(), document.getTenantId()));
+        }
+    }
+
+    /**
+     * A null tenant id is the default tenant id, as the delegate reads and writes it.
+     */
+    private static Pair<String, String> key(String documentId, String tenantId) {
+        return Pair.of(documentId, tenantId == null ? Document.DOCUMENT_DEFAULT_TENANT_ID : tenantId);
+    }
+
+    private static Document copy(Document document) {
+        float[] embedding = document.getEmbedding() == null ? null : document.getEmbedding().clone();
+        Metadata metadata = document.getMetadata() == null ? null : new Metadata(document.getMetadata().toMap());
+        return new Document(document.getDocumentId(), document.getTenantId(), document.getText(), embedding, metadata);
+    }
+
+    /**
+     * Approximate heap size of a document: strings as UTF-16, the embedding as float32 and a fixed overhead per object.
+     */
+    static long estimateSize(Document document) {
+        long size = 64 + 2L * (length(document.getDocumentId()) + length(document.getTenantId()) + length(document.getText()));
+        if (document.getEmbedding() != null) {
+            size += 16 + 4L * document.getEmbedding().length;
+        }
+        if (document.getMetadata() != null) {
+            for (Map.Entry<String, Object> entry : document.getMetadata().toMap().entrySet()) {
+                Object value = entry.getValue();
+                size += 48 + 2L * entry.getKey().length();
+                if (value instanceof String) {
+                    size += 2L * ((String) value).length();
+                } else if (value instanceof byte[]) {
+                    size += ((byte[]) value).length;
+                }
+            }
+        }
+        return size;
+    }
+
+    private static int length(String s) {
+        return s == null ? 0 : s.length();
+    }
+}
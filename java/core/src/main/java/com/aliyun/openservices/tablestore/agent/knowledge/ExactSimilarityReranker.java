@@ -0,0 +1,81 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.model.search.vector.VectorMetricType;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import com.aliyun.openservices.tablestore.agent.util.VectorMath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.function.ToDoubleFunction;
+import lombok.Builder;
+
+/**
+ * {@link Reranker} scoring the candidates with the exact similarity of their embeddings to the query, plus an optional boost computed from
+ * the document, for instance from its metadata.
+ *
+ * <p>
+ * The similarity is the cosine similarity, the dot product, or {@code 1 / (1 + d²)} for the euclidean distance d. All the candidates are
+ * scored in a single pass of {@link VectorMath} over the flat array of their embeddings.
+ * </p>
+ */
+public class ExactSimilarityReranker implements Reranker {
+
+    private final VectorMetricType metricType;
+    private final ToDoubleFunction<Document> boost;
+
+    /**
+     * @param metricType similarity of the embeddings, default {@link VectorMetricType#COSINE}
+     * @param boost      added to the similarity of each document, default none
+     */
+    @Builder
+    private ExactSimilarityReranker(VectorMetricType metricType, ToDoubleFunction<Document> boost) {
+        this.metricType = metricType == null ? VectorMetricType.COSINE : metricType;
+        this.boost = boost;
+    }
+
+    @Override
+    public List<DocumentHit> rerank(float[] queryVector, List<DocumentHit> candidates, float[] embeddings, int topK) {
+        ValidationUtils.ensureBetween(topK, 1, Integer.MAX_VALUE, "topK");
+        int count = candidates.size();
+        if (embeddings.length < count * queryVector.length) {
+            throw Exceptions.illegalArgument("embeddings length:%s, expected:%s", embeddings.length, count * queryVector.length);
+        }
+        double[] scores = new double[count];
+        switch (metricType) {
+            case COSINE:
+                VectorMath.cosineSimilarities(queryVector, embeddings, count, scores);
+                break;
+            case DOT_PRODUCT:
+                VectorMath.dotProducts(queryVector, embeddings, count, scores);
+                break;
+            case EUCLIDEAN:
+                VectorMath.squaredDistances(queryVector, embeddings, count, scores);
+                for (int i = 0; i < count; i++) {
+                    scores[i] = 1 / (1 + scores[i]);
+                }
+                break;
+            default:
+                throw Exceptions.illegalArgument("unsupported metric type:%s", metricType);
+        }
+        if (boost != null) {
+            for (int i = 0; i < count; i++) {
+                scores[i] += boost.applyAsDouble(candidates.get(i).getDocument());
+            }
+        }
+        Integer[] order = new Integer[count];
+        for (int i = 0; i < count; i++) {
+            order[i] = i;
+        }
+        // stable, ties keep the order of the search
+        Arrays.sort(order, Comparator.comparingDouble((Integer i) -> scores[i]).reversed());
+        List<DocumentHit> hits = new ArrayList<>(Math.min(topK, count));
+        for (int i = 0; i < count && hits.size() < topK; i++) {
+            hits.add(new DocumentHit(candidates.get(order[i]).getDocument(), scores[order[i]]));
+        }
+        return hits;
+    }
+}
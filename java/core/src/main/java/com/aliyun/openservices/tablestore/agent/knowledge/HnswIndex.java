@@ -0,0 +1,264 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.SplittableRandom;
+import java.util.function.IntFunction;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+
+/**
+ * Hierarchical navigable small world graph (Malkov and Yashunin) over nodes numbered from 0, for approximate nearest neighbor searches.
+ * The vectors are not kept here: the similarities are given by the caller, higher meaning closer.
+ *
+ * <p>
+ * A node is linked to at most {@code m} neighbors on the upper layers and {@code 2 * m} on the bottom one, chosen by the neighbor selection
+ * heuristic of the paper so the links spread in different directions. Nodes are never removed, a deleted vector is skipped by the
+ * {@code accept} predicate of the searches and still used to navigate the graph. Not thread safe: searches may run concurrently with each
+ * other but not with {@link #add(int, IntFunction)}.
+ * </p>
+ */
+final class HnswIndex {
+
+    private final int m;
+    private final int efConstruction;
+    private final double levelMultiplier;
+    private final SplittableRandom random;
+
+    /**
+     * Links of each node on each of its layers, the first value of a layer being the neighbor count
+     */
+    private int[][][] links = new int[16][][];
+    private int size;
+    private int entryPoint = -1;
+    private int maxLevel = -1;
+
+    /**
+     * @param m              max neighbors of a node on the upper layers, twice that on the bottom one
+     * @param efConstruction candidates considered for the neighbors of an added node
+     * @param seed           seed of the random levels, an index built from the same additions is the same
+     */
+    HnswIndex(int m, int efConstruction, long seed) {
+        this.m = ValidationUtils.ensureBetween(m, 2, 512, "m");
+        this.efConstruction = ValidationUtils.ensureBetween(efConstruction, 1, 10000, "efConstruction");
+        this.levelMultiplier = 1 / Math.log(m);
+        this.random = new SplittableRandom(seed);
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * @param node       next node, {@link #size()}
+     * @param similarity similarity of two nodes
+     */
+    void add(int node, IntFunction<IntToDoubleFunction> similarity) {
+        if (node != size) {
+            throw Exceptions.illegalArgument("nodes must be added in order, expected:%s, node:%s", size, node);
+        }
+        int level = (int) (-Math.log(1 - random.nextDouble()) * levelMultiplier);
+        if (node == links.length) {
+            links = Arrays.copyOf(links, links.length * 2);
+        }
+        links[node] = new int[level + 1][];
+        for (int l = 0; l <= level; l++) {
+            links[node][l] = new int[maxNeighbors(l) + 1];
+        }
+        size++;
+        if (entryPoint < 0) {
+            entryPoint = node;
+            maxLevel = level;
+            return;
+        }
+
+        IntToDoubleFunction toNode = similarity.apply(node);
+        int current = entryPoint;
+        double currentScore = toNode.applyAsDouble(current);
+        for (int l = maxLevel; l > level; l--) {
+            current = greedy(toNode, current, currentScore, l);
+            currentScore = toNode.applyAsDouble(current);
+        }
+        NodeHeap entryPoints = new NodeHeap(1, true);
+        entryPoints.push(current, currentScore);
+        for (int l = Math.min(level, maxLevel); l >= 0; l--) {
+            NodeHeap candidates = searchLayer(toNode, entryPoints, efConstruction, l, n -> true);
+            int[] nodes = new int[candidates.size()];
+            double[] scores = new double[candidates.size()];
+            int count = candidates.drainDescending(nodes, scores);
+            int[] neighbors = selectNeighbors(nodes, scores, count, maxNeighbors(l), similarity);
+            for (int neighbor : neighbors) {
+                link(node, neighbor, l);
+                link(neighbor, node, l);
+                if (links[neighbor][l][0] > maxNeighbors(l)) {
+                    shrink(neighbor, l, similarity);
+                }
+            }
+            entryPoints = new NodeHeap(count, true);
+            for (int i = 0; i < count; i++) {
+                entryPoints.push(nodes[i], scores[i]);
+            }
+        }
+        if (level > maxLevel) {
+            maxLevel = level;
+            entryPoint = node;
+        }
+    }
+
+    /**
+     * @param similarity similarity of a node to the query
+     * @param k          max returned nodes
+     * @param ef         candidates kept on the bottom layer, at least k
+     * @param accept     nodes which can be returned, the others are only traversed
+     * @return min heap of the k most similar accepted nodes found
+     */
+    NodeHeap search(IntToDoubleFunction similarity, int k, int ef, IntPredicate accept) {
+        NodeHeap result = new NodeHeap(k, false);
+        if (entryPoint < 0) {
+            return result;
+        }
+        int current = entryPoint;
+        double currentScore = similarity.applyAsDouble(current);
+        for (int l = maxLevel; l > 0; l--) {
+            current = greedy(similarity, current, currentScore, l);
+            currentScore = similarity.applyAsDouble(current);
+        }
+        NodeHeap entryPoints = new NodeHeap(1, true);
+        entryPoints.push(current, currentScore);
+        NodeHeap candidates = searchLayer(similarity, entryPoints, Math.max(ef, k), 0, accept);
+        while (!candidates.isEmpty()) {
+            result.offer(candidates.topNode(), candidates.topScore(), k);
+            candidates.pop();
+        }
+        return result;
+    }
+
+    private int maxNeighbors(int level) {
+        return level == 0 ? 2 * m : m;
+    }
+
+    /**
+     * @return the node closest to the query found by following the best link of each node on the layer
+     */
+    private int greedy(IntToDoubleFunction similarity, int current, double currentScore, int level) {
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            int[] neighbors = links[current][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                double score = similarity.applyAsDouble(neighbors[i]);
+                if (score > currentScore) {
+                    currentScore = score;
+                    current = neighbors[i];
+                    changed = true;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return min heap of the ef most similar accepted nodes reached from the entry points on the layer
+     */
+    private NodeHeap searchLayer(IntToDoubleFunction similarity, NodeHeap entryPoints, int ef, int level, IntPredicate accept) {
+        BitSet visited = new BitSet(size);
+        NodeHeap candidates = new NodeHeap(ef, true);
+        NodeHeap result = new NodeHeap(ef + 1, false);
+        while (!entryPoints.isEmpty()) {
+            int node = entryPoints.topNode();
+            double score = entryPoints.topScore();
+            entryPoints.pop();
+            visited.set(node);
+            candidates.push(node, score);
+            if (accept.test(node)) {
+                result.offer(node, score, ef);
+            }
+        }
+        while (!candidates.isEmpty()) {
+            int node = candidates.topNode();
+            if (result.size() >= ef && candidates.topScore() < result.topScore()) {
+                break;
+            }
+            candidates.pop();
+            int[] neighbors = links[node][level];
+            for (int i = 1; i <= neighbors[0]; i++) {
+                int neighbor = neighbors[i];
+                if (visited.get(neighbor)) {
+                    continue;
+                }
+                visited.set(neighbor);
+                double score = similarity.applyAsDouble(neighbor);
+                if (result.size() < ef || score > result.topScore()) {
+                    candidates.push(neighbor, score);
+                    if (accept.test(neighbor)) {
+                        result.offer(neighbor, score, ef);
+                    }
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Heuristic of the paper keeping the pruned connections: a candidate is a neighbor if it is closer to the node than to the neighbors
+     * already selected, the list is then completed with the closest pruned candidates.
+     *
+     * @param nodes  candidates, most similar first
+     * @param scores similarity of each candidate to the node
+     */
+    private static int[] selectNeighbors(int[] nodes, double[] scores, int count, int max, IntFunction<IntToDoubleFunction> similarity) {
+        int[] selected = new int[Math.min(count, max)];
+        int selectedCount = 0;
+        boolean[] taken = new boolean[count];
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            IntToDoubleFunction toCandidate = similarity.apply(nodes[i]);
+            boolean diverse = true;
+            for (int j = 0; j < selectedCount; j++) {
+                if (toCandidate.applyAsDouble(selected[j]) > scores[i]) {
+                    diverse = false;
+                    break;
+                }
+            }
+            if (diverse) {
+                selected[selectedCount++] = nodes[i];
+                taken[i] = true;
+            }
+        }
+        for (int i = 0; i < count && selectedCount < selected.length; i++) {
+            if (!taken[i]) {
+                selected[selectedCount++] = nodes[i];
+            }
+        }
+        return selected;
+    }
+
+    private void link(int from, int to, int level) {
+        int[] neighbors = links[from][level];
+        if (neighbors[0] + 1 == neighbors.length) {
+            // one extra slot, shrunk right after
+            neighbors = Arrays.copyOf(neighbors, neighbors.length + 1);
+            links[from][level] = neighbors;
+        }
+        neighbors[++neighbors[0]] = to;
+    }
+
+    private void shrink(int node, int level, IntFunction<IntToDoubleFunction> similarity) {
+        int[] neighbors = links[node][level];
+        int count = neighbors[0];
+        IntToDoubleFunction toNode = similarity.apply(node);
+        NodeHeap heap = new NodeHeap(count, false);
+        for (int i = 1; i <= count; i++) {
+            heap.push(neighbors[i], toNode.applyAsDouble(neighbors[i]));
+        }
+        int[] nodes = new int[count];
+        double[] scores = new double[count];
+        heap.drainDescending(nodes, scores);
+        int[] selected = selectNeighbors(nodes, scores, count, maxNeighbors(level), similarity);
+        int[] shrunk = new int[maxNeighbors(level) + 1];
+        shrunk[0] = selected.length;
+        System.arraycopy(selected, 0, shrunk, 1, selected.length);
+        links[node][level] = shrunk;
+    }
+}
@@ -0,0 +1,969 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.model.search.vector.VectorMetricType;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filters;
+import com.aliyun.openservices.tablestore.agent.model.filter.condition.And;
+import com.aliyun.openservices.tablestore.agent.model.filter.condition.Or;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.TextMatch;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.TextMatchPhrase;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.VectorQuery;
+import com.aliyun.openservices.tablestore.agent.model.sort.FieldSort;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.model.sort.ScoreSort;
+import com.aliyun.openservices.tablestore.agent.model.sort.Sort;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.FilterMatcher;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import com.aliyun.openservices.tablestore.agent.util.VectorMath;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Function;
+import java.util.function.IntPredicate;
+import java.util.function.IntToDoubleFunction;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+
+/**
+ * {@link KnowledgeStore} keeping its documents in process, for tests, local development and offline evaluations of the retrieval without a
+ * search index.
+ *
+ * <p>
+ * It has the semantics of {@link KnowledgeStoreImpl}: documents are keyed by (documentId, tenantId) with the same multi-tenant checks, an
+ * update merges the text, embedding and metadata into the stored document, and the filters are those of a search index (see
+ * {@link FilterMatcher}). The relevance of a TextMatch or TextMatchPhrase on the text field is a BM25 score over the words of the single
+ * word analyzer, close to but not the score of the search index. Vector searches have the scores of a KNN query: {@code (1 + cos) / 2}
+ * for the cosine, {@code (1 + dot) / 2} for the dot product and {@code 1 / (1 + d²)} for the euclidean distance. Search tokens are offsets
+ * in the sorted hits, computed again for each page.
+ * </p>
+ *
+ * <p>
+ * The embeddings are copied into one contiguous array, so a vector search without an index is a scan of that array, run in parallel
+ * chunks over large stores, and stays under a millisecond for some hundred thousand small embeddings. With {@code enableHnsw} the searches
+ * go through an {@link HnswIndex} instead: faster on large stores, approximate, and falling back to the scan when a restrictive filter
+ * leaves less than topK hits in the graph. A replaced or deleted embedding leaves a hole in the array and a dead node in the graph, both
+ * rebuilt once the holes outnumber the live embeddings.
+ * </p>
+ *
+ * <p>
+ * Searches run concurrently with each other under a read lock, writes take the write lock. The documents passed in and returned are
+ * copies, a caller modifying them doesn't change the store.
+ * </p>
+ */
+public class InMemoryKnowledgeStore implements KnowledgeStore {
+
+    private static final Comparator<Pair<String, String>> PRIMARY_KEY_ORDER = Comparator.<Pair<String, String>, String>comparing(
+        Pair::getLeft
+    ).thenComparing(Pair::getRight);
+
+    private static final double BM25_K1 = 1.2;
+    private static final double BM25_B = 0.75;
+
+    /**
+     * Embeddings scanned by one task of a parallel scan, smaller stores are scanned by the calling thread
+     */
+    private static final int SCAN_CHUNK_SIZE = 8192;
+
+    /**
+     * Replaced or deleted embeddings tolerated before the array and the graph are rebuilt, when they also outnumber the live ones
+     */
+    private static final int MIN_COMPACTED_SLOTS = 1024;
+
+    private static final long HNSW_SEED = 42;
+
+    @Getter
+    private final String textField;
+    @Getter
+    private final String embeddingField;
+    @Getter
+    private final VectorMetricType embeddingMetricType;
+    @Getter
+    private final int embeddingDimension;
+    private final boolean enableMultiTenant;
+    private final boolean enableHnsw;
+    private final int hnswM;
+    private final int hnswEfConstruction;
+    private final int hnswEfSearch;
+
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    /**
+     * (documentId, tenantId) to document, the table
+     */
+    private final TreeMap<Pair<String, String>, Entry> documents = new TreeMap<>(PRIMARY_KEY_ORDER);
+
+    /**
+     * word of the text field to the documents having it and its count in them
+     */
+    private final Map<String, Map<Entry, Integer>> postings = new HashMap<>();
+    private long totalTextLength;
+
+    /**
+     * embeddings, the one of slot i being the {@code embeddingDimension} values from {@code i * embeddingDimension}
+     */
+    private float[] vectors = new float[0];
+    private float[] inverseNorms = new float[0];
+
+    /**
+     * document of each slot, null once its embedding was replaced or deleted
+     */
+    private Entry[] slots = new Entry[0];
+    private int slotCount;
+    private int liveSlots;
+    private HnswIndex hnsw;
+
+    /**
+     * @param embeddingDimension  dimension of the embeddings, required
+     * @param enableMultiTenant   whether the documents have a tenant id, required
+     * @param enableHnsw          whether the vector searches go through an approximate index instead of a scan, default false
+     * @param hnswM               max neighbors of a node of the index, default 16
+     * @param hnswEfConstruction  candidates considered when adding a node to the index, default 100
+     * @param hnswEfSearch        candidates considered by a search of the index, at least topK, default 100
+     */
+    @Builder
+    private InMemoryKnowledgeStore(
+        String textField,
+        String embeddingField,
+        VectorMetricType embeddingMetricType,
+        @NonNull Integer embeddingDimension,
+        @NonNull Boolean enableMultiTenant,
+        Boolean enableHnsw,
+        Integer hnswM,
+        Integer hnswEfConstruction,
+        Integer hnswEfSearch
+    ) {
+        this.textField = textField == null ? "text" : textField;
+        this.embeddingField = embeddingField == null ? "embedding" : embeddingField;
+        this.embeddingMetricType = embeddingMetricType == null ? VectorMetricType.COSINE : embeddingMetricType;
+        this.embeddingDimension = ValidationUtils.ensureBetween(embeddingDimension, 1, 4096, "embeddingDimension");
+        this.enableMultiTenant = enableMultiTenant;
+        this.enableHnsw = enableHnsw != null && enableHnsw;
+        this.hnswM = hnswM == null ? 16 : ValidationUtils.ensureBetween(hnswM, 2, 512, "hnswM");
+        this.hnswEfConstruction = hnswEfConstruction == null
+            ? 100
+            : ValidationUtils.ensureBetween(hnswEfConstruction, 1, 10000, "hnswEfConstruction");
+        this.hnswEfSearch = hnswEfSearch == null ? 100 : ValidationUtils.ensureBetween(hnswEfSearch, 1, 10000, "hnswEfSearch");
+        this.hnsw = this.enableHnsw ? new HnswIndex(this.hnswM, this.hnswEfConstruction, HNSW_SEED) : null;
+    }
+
+    @Override
+    public void putDocument(Document document) {
+        checkDocument(document);
+        Document stored = new Document(
+            document.getDocumentId(),
+            TablestoreHelper.checkDocumentTenantId(document.getTenantId(), enableMultiTenant),
+            document.getText(),
+            null,
+            normalize(document.getMetadata())
+        );
+        write(() -> put(stored, document.getEmbedding(), false));
+    }
+
+    @Override
+    public void updateDocument(Document document) {
+        checkDocument(document);
+        String tenantId = TablestoreHelper.checkDocumentTenantId(document.getTenantId(), enableMultiTenant);
+        write(() -> {
+            Entry old = documents.get(Pair.of(document.getDocumentId(), tenantId));
+            Document stored = new Document(
+                document.getDocumentId(),
+                tenantId,
+                document.getText() != null || old == null ? document.getText() : old.document.getText(),
+                null,
+                merge(old == null ? null : old.document.getMetadata(), document.getMetadata())
+            );
+            put(stored, document.getEmbedding(), true);
+        });
+    }
+
+    @Override
+    public void deleteDocument(String documentId, String tenantId) {
+        ValidationUtils.ensureNotNull(documentId, "documentId");
+        if (enableMultiTenant && (tenantId == null || Document.DOCUMENT_DEFAULT_TENANT_ID.equals(tenantId))) {
+            write(() -> {
+                // all the tenants of the document, as the GetRange over the document id does
+                List<Pair<String, String>> keys = new ArrayList<>();
+                for (Pair<String, String> key : documents.tailMap(Pair.of(documentId, ""), true).keySet()) {
+                    if (!documentId.equals(key.getLeft())) {
+                        break;
+                    }
+                    keys.add(key);
+                }
+                keys.forEach(this::remove);
+            });
+            return;
+        }
+        String checkedTenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
+        write(() -> remove(Pair.of(documentId, checkedTenantId)));
+    }
+
+    @Override
+    public void deleteDocument(String documentId) {
+        deleteDocument(documentId, null);
+    }
+
+    @Override
+    public void deleteDocumentByTenant(String tenantId) {
+        HashSet<String> tenantIds = new HashSet<>();
+        if (tenantId != null) {
+            tenantIds.add(tenantId);
+        }
+        deleteDocument(tenantIds, null);
+    }
+
+    @Override
+    public void deleteDocument(Set<String> tenantIds, Filter metadataFilter) {
+        Predicate<Function<String, Object>> query = FilterMatcher.compileSearchFilter(TablestoreHelper.wrapDocumentTenantIds(tenantIds, metadataFilter, enableMultiTenant));
+        write(() -> {
+            List<Pair<String, String>> keys = new ArrayList<>();
+            for (Map.Entry<Pair<String, String>, Entry> entry : documents.entrySet()) {
+                if (query.test(fields(entry.getValue().document))) {
+                    keys.add(entry.getKey());
+                }
+            }
+            keys.forEach(this::remove);
+        });
+    }
+
+    @Override
+    public void deleteAllDocuments() {
+        write(this::clear);
+    }
+
+    @Override
+    public Document getDocument(String documentId, String tenantId) {
+        return getDocument(documentId, tenantId, null);
+    }
+
+    @Override
+    public Document getDocument(String documentId, String tenantId, List<String> columnsToGet) {
+        ValidationUtils.ensureNotNull(documentId, "documentId");
+        String checkedTenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
+        return read(() -> {
+            Entry entry = documents.get(Pair.of(documentId, checkedTenantId));
+            return entry == null ? null : project(entry, columnsToGet, true);
+        });
+    }
+
+    @Override
+    public Document getDocument(String documentId) {
+        return getDocument(documentId, null);
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId) {
+        return getDocuments(documentIdList, tenantId, null);
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet) {
+        ValidationUtils.ensureNotNull(documentIdList, "documentIdList");
+        String checkedTenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
+        return read(() -> {
+            List<Document> result = new ArrayList<>(documentIdList.size());
+            for (String documentId : documentIdList) {
+                Entry entry = documents.get(Pair.of(documentId, checkedTenantId));
+                result.add(entry == null ? null : project(entry, columnsToGet, true));
+            }
+            return result;
+        });
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList) {
+        return getDocuments(documentIdList, null);
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments() {
+        return snapshot(null).iterator();
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism) {
+        return listAllDocuments(parallelism, null);
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism, List<String> columnsToGet) {
+        ValidationUtils.ensureBetween(parallelism, 1, 1000, "parallelism");
+        return snapshot(columnsToGet).iterator();
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments() {
+        return streamAllDocuments(null);
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments(List<String> columnsToGet) {
+        return snapshot(columnsToGet).parallelStream();
+    }
+
+    @Override
+    public Response<DocumentHit> searchDocuments(KnowledgeSearchRequest searchRequest) {
+        ValidationUtils.ensureNotNull(searchRequest, "KnowledgeSearchRequest");
+        Filter metadataFilter = searchRequest.getMetadataFilter();
+        List<Pair<Entry, Double>> hits;
+        if (metadataFilter instanceof VectorQuery) {
+            VectorQuery vectorQuery = (VectorQuery) metadataFilter;
+            Filter filter = TablestoreHelper.wrapDocumentTenantIds(searchRequest.getTenantIds(), vectorQuery.getFilter(), enableMultiTenant);
+            hits = read(() -> knn(vectorQuery.getQueryVector(), vectorQuery.getTopK(), vectorQuery.getMinScore(), filter));
+        } else {
+            Filter filter = TablestoreHelper.wrapDocumentTenantIds(searchRequest.getTenantIds(), metadataFilter, enableMultiTenant);
+            hits = read(() -> match(filter));
+        }
+        if (searchRequest.getSorts() != null && !searchRequest.getSorts().isEmpty()) {
+            Comparator<Pair<Entry, Double>> comparator = (a, b) -> 0;
+            for (Sort sort : searchRequest.getSorts()) {
+                if (sort instanceof FieldSort) {
+                    comparator = comparator.thenComparing(fieldOrder((FieldSort) sort));
+                } else if (sort instanceof ScoreSort) {
+                    Comparator<Pair<Entry, Double>> byScore = Comparator.comparing(Pair::getRight);
+                    comparator = comparator.thenComparing(Order.ASC.equals(((ScoreSort) sort).getOrder()) ? byScore : byScore.reversed());
+                } else {
+                    throw Exceptions.illegalArgument("unsupported sorter type:%s, sorter:%s", sort.getClass(), sort);
+                }
+            }
+            // stable, ties keep the primary key or similarity order
+            hits.sort(comparator);
+        }
+        int offset = 0;
+        if (searchRequest.getNextToken() != null) {
+            try {
+                offset = Integer.parseInt(new String(Base64.getDecoder().decode(searchRequest.getNextToken()), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw Exceptions.illegalArgument("invalid nextToken:%s", searchRequest.getNextToken());
+            }
+        }
+        int from = Math.min(offset, hits.size());
+        int to = (int) Math.min((long) from + searchRequest.getLimit(), hits.size());
+        String nextToken = to < hits.size() ? Base64.getEncoder().encodeToString(String.valueOf(to).getBytes(StandardCharsets.UTF_8)) : null;
+        List<Pair<Entry, Double>> page = hits.subList(from, to);
+        List<DocumentHit> documentHits = read(() -> {
+            List<DocumentHit> result = new ArrayList<>(page.size());
+            for (Pair<Entry, Double> hit : page) {
+                result.add(new DocumentHit(project(hit.getLeft(), searchRequest.getColumnsToGet(), false), hit.getRight()));
+            }
+            return result;
+        });
+        return new Response<>(documentHits, nextToken);
+    }
+
+    @Override
+    public Response<DocumentHit> fullTextSearch(
+        String query,
+        Set<String> tenantIds,
+        int limit,
+        Filter metadataFilter,
+        String nextToken,
+        List<String> columnsToGet
+    ) {
+        Filter textMatch = Filters.textMatch(textField, query);
+        KnowledgeSearchRequest knowledgeSearchRequest = KnowledgeSearchRequest.builder()
+            .tenantIds(tenantIds)
+            .metadataFilter(metadataFilter == null ? textMatch : Filters.and(textMatch, metadataFilter))
+            .limit(limit)
+            .nextToken(nextToken)
+            .columnsToGet(columnsToGet)
+            .sorts(Collections.singletonList(ScoreSort.builder().order(Order.DESC).build()))
+            .build();
+        return searchDocuments(knowledgeSearchRequest);
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        VectorQuery vectorQuery = Filters.vectorQuery(embeddingField, queryVector)
+            .setTopK(topK)
+            .setFilter(metadataFilter)
+            .setMinScore(minScore);
+        KnowledgeSearchRequest knowledgeSearchRequest = KnowledgeSearchRequest.builder()
+            .tenantIds(tenantIds)
+            .metadataFilter(vectorQuery)
+            .limit(topK)
+            .columnsToGet(columnsToGet)
+            .sorts(Collections.singletonList(ScoreSort.builder().order(Order.DESC).build()))
+            .build();
+        return searchDocuments(knowledgeSearchRequest);
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        int candidates,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet,
+        Reranker reranker
+    ) {
+        ValidationUtils.ensureNotNull(queryVector, "queryVector");
+        ValidationUtils.ensureNotNull(reranker, "reranker");
+        ValidationUtils.ensureBetween(topK, 1, RERANK_MAX_CANDIDATES, "topK");
+        ValidationUtils.ensureBetween(candidates, topK, RERANK_MAX_CANDIDATES, "candidates");
+        Filter filter = TablestoreHelper.wrapDocumentTenantIds(tenantIds, metadataFilter, enableMultiTenant);
+        int dimension = queryVector.length;
+        List<DocumentHit> rerankCandidates = new ArrayList<>();
+        float[] embeddings = read(() -> {
+            List<Pair<Entry, Double>> hits = knn(queryVector, candidates, null, filter);
+            float[] result = new float[hits.size() * dimension];
+            for (Pair<Entry, Double> hit : hits) {
+                int slot = hit.getLeft().slot;
+                System.arraycopy(vectors, slot * dimension, result, rerankCandidates.size() * dimension, dimension);
+                rerankCandidates.add(new DocumentHit(project(hit.getLeft(), columnsToGet, false), hit.getRight()));
+            }
+            return result;
+        });
+        if (rerankCandidates.isEmpty()) {
+            return new Response<>(rerankCandidates, null);
+        }
+        return new Response<>(reranker.rerank(queryVector, rerankCandidates, embeddings, topK), null);
+    }
+
+    @Override
+    public List<Response<DocumentHit>> vectorSearchBatch(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        ValidationUtils.ensureNotNull(queryVectors, "queryVectors");
+        return queryVectors.parallelStream()
+            .map(queryVector -> vectorSearch(queryVector, topK, minScore, tenantIds, metadataFilter, columnsToGet))
+            .collect(Collectors.toList());
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(String query, float[] queryVector, int topK, Set<String> tenantIds, Filter metadataFilter) {
+        List<DocumentHit> hits = hybridSearchHits(query, queryVector, topK, tenantIds, metadataFilter, null);
+        // the searches return the documents without the embedding
+        for (DocumentHit hit : hits) {
+            Document document = getDocument(hit.getDocument().getDocumentId(), hit.getDocument().getTenantId());
+            if (document != null) {
+                hit.setDocument(document);
+            }
+        }
+        return new Response<>(hits, null);
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return new Response<>(hybridSearchHits(query, queryVector, topK, tenantIds, metadataFilter, columnsToGet), null);
+    }
+
+    private List<DocumentHit> hybridSearchHits(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        ValidationUtils.ensureNotNull(query, "query");
+        ValidationUtils.ensureNotNull(queryVector, "queryVector");
+        int candidates = ReciprocalRankFusion.candidates(topK);
+        List<List<DocumentHit>> rankings = Arrays.asList(
+            fullTextSearch(query, tenantIds, candidates, metadataFilter, null, columnsToGet).getHits(),
+            vectorSearch(queryVector, candidates, null, tenantIds, metadataFilter, columnsToGet).getHits()
+        );
+        return ReciprocalRankFusion.fuse(rankings, ReciprocalRankFusion.DEFAULT_K, topK);
+    }
+
+    @Override
+    public boolean enableMultiTenant() {
+        return enableMultiTenant;
+    }
+
+    @Override
+    public void initTable() {}
+
+    @Override
+    public void deleteTableAndIndex() {
+        write(this::clear);
+    }
+
+    /**
+     * @param embedding    embedding of the document, null for none
+     * @param keepEmbedding whether the stored embedding is kept when {@code embedding} is null, as an UpdateRow without the column does
+     */
+    private void put(Document stored, float[] embedding, boolean keepEmbedding) {
+        Pair<String, String> key = Pair.of(stored.getDocumentId(), stored.getTenantId());
+        Entry entry = new Entry(stored);
+        Entry old = documents.put(key, entry);
+        if (old != null) {
+            removeText(old);
+            if (embedding == null && keepEmbedding && old.slot >= 0) {
+                entry.slot = old.slot;
+                slots[old.slot] = entry;
+            } else {
+                releaseSlot(old);
+            }
+        }
+        addText(entry);
+        if (embedding != null) {
+            addSlot(entry, embedding);
+        }
+        compactIfNeeded();
+    }
+
+    private void remove(Pair<String, String> key) {
+        Entry old = documents.remove(key);
+        if (old != null) {
+            removeText(old);
+            releaseSlot(old);
+            compactIfNeeded();
+        }
+    }
+
+    private void clear() {
+        documents.clear();
+        postings.clear();
+        totalTextLength = 0;
+        vectors = new float[0];
+        inverseNorms = new float[0];
+        slots = new Entry[0];
+        slotCount = 0;
+        liveSlots = 0;
+        hnsw = enableHnsw ? new HnswIndex(hnswM, hnswEfConstruction, HNSW_SEED) : null;
+    }
+
+    private void addText(Entry entry) {
+        List<String> words = FilterMatcher.tokenize(entry.document.getText());
+        for (String word : words) {
+            postings.computeIfAbsent(word, w -> new HashMap<>()).merge(entry, 1, Integer::sum);
+        }
+        entry.textLength = words.size();
+        totalTextLength += words.size();
+    }
+
+    private void removeText(Entry entry) {
+        for (String word : new HashSet<>(FilterMatcher.tokenize(entry.document.getText()))) {
+            Map<Entry, Integer> posting = postings.get(word);
+            posting.remove(entry);
+            if (posting.isEmpty()) {
+                postings.remove(word);
+            }
+        }
+        totalTextLength -= entry.textLength;
+    }
+
+    private void addSlot(Entry entry, float[] embedding) {
+        if (slotCount == slots.length) {
+            int capacity = Math.max(16, slots.length * 2);
+            vectors = Arrays.copyOf(vectors, capacity * embeddingDimension);
+            inverseNorms = Arrays.copyOf(inverseNorms, capacity);
+            slots = Arrays.copyOf(slots, capacity);
+        }
+        int slot = slotCount++;
+        System.arraycopy(embedding, 0, vectors, slot * embeddingDimension, embeddingDimension);
+        inverseNorms[slot] = inverseNorm(embedding);
+        slots[slot] = entry;
+        entry.slot = slot;
+        liveSlots++;
+        if (hnsw != null) {
+            hnsw.add(slot, node -> similarity(vectors, node * embeddingDimension, inverseNorms[node]));
+        }
+    }
+
+    private void releaseSlot(Entry entry) {
+        if (entry.slot >= 0) {
+            slots[entry.slot] = null;
+            entry.slot = -1;
+            liveSlots--;
+        }
+    }
+
+    /**
+     * Drops the holes left by the replaced and deleted embeddings once they outnumber the live ones, and rebuilds the graph without them.
+     */
+    private void compactIfNeeded() {
+        int dead = slotCount - liveSlots;
+        if (dead < MIN_COMPACTED_SLOTS || dead <= liveSlots) {
+            return;
+        }
+        float[] oldVectors = vectors;
+        Entry[] oldSlots = slots;
+        int oldCount = slotCount;
+        vectors = new float[0];
+        inverseNorms = new float[0];
+        slots = new Entry[0];
+        slotCount = 0;
+        liveSlots = 0;
+        hnsw = enableHnsw ? new HnswIndex(hnswM, hnswEfConstruction, HNSW_SEED) : null;
+        for (int slot = 0; slot < oldCount; slot++) {
+            Entry entry = oldSlots[slot];
+            if (entry != null) {
+                addSlot(entry, Arrays.copyOfRange(oldVectors, slot * embeddingDimension, (slot + 1) * embeddingDimension));
+            }
+        }
+    }
+
+    /**
+     * @return the topK documents with an embedding most similar to the query and matching the filter, most similar first
+     */
+    private List<Pair<Entry, Double>> knn(float[] queryVector, int topK, Float minScore, Filter filter) {
+        ValidationUtils.ensureNotNull(queryVector, "queryVector");
+        if (queryVector.length != embeddingDimension) {
+            throw Exceptions.illegalArgument(
+                "query vector length:%s is not the same as the knowledge store dimension:%s",
+                queryVector.length,
+                embeddingDimension
+            );
+        }
+        ValidationUtils.ensureBetween(topK, 1, RERANK_MAX_CANDIDATES, "topK");
+        Predicate<Function<String, Object>> query = FilterMatcher.compileSearchFilter(filter);
+        Entry[] slots = this.slots;
+        IntPredicate accept = filter == null
+            ? slot -> slots[slot] != null
+            : slot -> slots[slot] != null && query.test(fields(slots[slot].document));
+        IntToDoubleFunction toQuery = similarity(queryVector, 0, inverseNorm(queryVector));
+        NodeHeap top = null;
+        if (hnsw != null) {
+            top = hnsw.search(toQuery, topK, Math.max(hnswEfSearch, topK), accept);
+            if (top.size() < Math.min(topK, liveSlots)) {
+                // the filter or the deleted nodes cut the graph, the matching documents may not be reachable from the nodes visited
+                top = null;
+            }
+        }
+        if (top == null) {
+            top = scan(toQuery, topK, accept);
+        }
+        int[] nodes = new int[top.size()];
+        double[] scores = new double[top.size()];
+        int count = top.drainDescending(nodes, scores);
+        List<Pair<Entry, Double>> hits = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            if (minScore == null || scores[i] >= minScore) {
+                hits.add(Pair.of(slots[nodes[i]], scores[i]));
+            }
+        }
+        return hits;
+    }
+
+    /**
+     * @return min heap of the topK accepted slots most similar to the query, scanned in parallel chunks over a large store
+     */
+    private NodeHeap scan(IntToDoubleFunction toQuery, int topK, IntPredicate accept) {
+        int count = slotCount;
+        if (count <= SCAN_CHUNK_SIZE) {
+            return scan(toQuery, topK, accept, 0, count);
+        }
+        List<NodeHeap> chunks = IntStream.range(0, (count + SCAN_CHUNK_SIZE - 1) / SCAN_CHUNK_SIZE)
+            .parallel()
+            .mapToObj(chunk -> scan(toQuery, topK, accept, chunk * SCAN_CHUNK_SIZE, Math.min(count, (chunk + 1) * SCAN_CHUNK_SIZE)))
+            .collect(Collectors.toList());
+        NodeHeap top = new NodeHeap(topK, false);
+        for (NodeHeap chunk : chunks) {
+            while (!chunk.isEmpty()) {
+                top.offer(chunk.topNode(), chunk.topScore(), topK);
+                chunk.pop();
+            }
+        }
+        return top;
+    }
+
+    private static NodeHeap scan(IntToDoubleFunction toQuery, int topK, IntPredicate accept, int from, int to) {
+        NodeHeap top = new NodeHeap(topK, false);
+        for (int slot = from; slot < to; slot++) {
+            if (accept.test(slot)) {
+                top.offer(slot, toQuery.applyAsDouble(slot), topK);
+            }
+        }
+        return top;
+    }
+
+    /**
+     * @return similarity of the stored embeddings to the given one, as the score of a KNN query
+     */
+    private IntToDoubleFunction similarity(float[] vector, int offset, float inverseNorm) {
+        float[] vectors = this.vectors;
+        float[] inverseNorms = this.inverseNorms;
+        int dimension = embeddingDimension;
+        switch (embeddingMetricType) {
+            case COSINE:
+                return slot -> {
+                    double dot = VectorMath.dotProduct(vector, offset, vectors, slot * dimension, dimension);
+                    return (1 + dot * inverseNorm * inverseNorms[slot]) / 2;
+                };
+            case DOT_PRODUCT:
+                return slot -> (1 + (double) VectorMath.dotProduct(vector, offset, vectors, slot * dimension, dimension)) / 2;
+            case EUCLIDEAN:
+                return slot -> 1 / (1 + (double) VectorMath.squaredDistance(vector, offset, vectors, slot * dimension, dimension));
+            default:
+                throw Exceptions.illegalArgument("unsupported metric type:%s", embeddingMetricType);
+        }
+    }
+
+    private static float inverseNorm(float[] vector) {
+        double norm = Math.sqrt(VectorMath.dotProduct(vector, 0, vector, 0, vector.length));
+        return norm == 0 ? 0 : (float) (1 / norm);
+    }
+
+    /**
+     * @return the documents matching the filter in primary key order, scored by BM25 when the filter has a text match on the text field
+     */
+    private List<Pair<Entry, Double>> match(Filter filter) {
+        Predicate<Function<String, Object>> query = FilterMatcher.compileSearchFilter(filter);
+        Set<String> scoredWords = new LinkedHashSet<>();
+        collectTextWords(filter, scoredWords);
+        Collection<Entry> candidates;
+        List<String> requiredWords = requiredTextWords(filter);
+        if (requiredWords == null) {
+            candidates = documents.values();
+        } else {
+            // only the documents having one of the words can match
+            Set<Entry> having = new HashSet<>();
+            for (String word : requiredWords) {
+                having.addAll(postings.getOrDefault(word, Collections.emptyMap()).keySet());
+            }
+            List<Entry> sorted = new ArrayList<>(having);
+            sorted.sort(Comparator.comparing(e -> Pair.of(e.document.getDocumentId(), e.document.getTenantId()), PRIMARY_KEY_ORDER));
+            candidates = sorted;
+        }
+        double averageLength = documents.isEmpty() ? 0 : (double) totalTextLength / documents.size();
+        List<Pair<Entry, Double>> hits = new ArrayList<>();
+        for (Entry entry : candidates) {
+            if (query.test(fields(entry.document))) {
+                hits.add(Pair.of(entry, bm25(entry, scoredWords, averageLength)));
+            }
+        }
+        return hits;
+    }
+
+    private double bm25(Entry entry, Set<String> words, double averageLength) {
+        double score = 0;
+        for (String word : words) {
+            Map<Entry, Integer> posting = postings.get(word);
+            Integer frequency = posting == null ? null : posting.get(entry);
+            if (frequency == null) {
+                continue;
+            }
+            double idf = Math.log(1 + (documents.size() - posting.size() + 0.5) / (posting.size() + 0.5));
+            double norm = BM25_K1 * (1 - BM25_B + BM25_B * entry.textLength / Math.max(averageLength, 1));
+            score += idf * frequency * (BM25_K1 + 1) / (frequency + norm);
+        }
+        return score;
+    }
+
+    /**
+     * Words of the text matches on the text field which are not negated, the ones scoring a document.
+     */
+    private void collectTextWords(Filter filter, Set<String> words) {
+        if (filter instanceof And) {
+            ((And) filter).getFilters().forEach(f -> collectTextWords(f, words));
+        } else if (filter instanceof Or) {
+            ((Or) filter).getFilters().forEach(f -> collectTextWords(f, words));
+        } else if (filter instanceof TextMatch && textField.equals(((TextMatch) filter).getKey())) {
+            words.addAll(FilterMatcher.tokenize(((TextMatch) filter).getValue()));
+        } else if (filter instanceof TextMatchPhrase && textField.equals(((TextMatchPhrase) filter).getKey())) {
+            words.addAll(FilterMatcher.tokenize(((TextMatchPhrase) filter).getValue()));
+        }
+    }
+
+    /**
+     * @return words one of which a matching document has in its text field, null if the filter doesn't require any
+     */
+    private List<String> requiredTextWords(Filter filter) {
+        if (filter instanceof And) {
+            for (Filter f : ((And) filter).getFilters()) {
+                List<String> words = requiredTextWords(f);
+                if (words != null) {
+                    return words;
+                }
+            }
+        } else if (filter instanceof TextMatch && textField.equals(((TextMatch) filter).getKey())) {
+            return FilterMatcher.tokenize(((TextMatch) filter).getValue());
+        } else if (filter instanceof TextMatchPhrase && textField.equals(((TextMatchPhrase) filter).getKey())) {
+            return FilterMatcher.tokenize(((TextMatchPhrase) filter).getValue());
+        }
+        return null;
+    }
+
+    /**
+     * Documents without the field are last in both orders, documents whose fields are not comparable are equal.
+     */
+    private Comparator<Pair<Entry, Double>> fieldOrder(FieldSort sort) {
+        boolean desc = !Order.ASC.equals(sort.getOrder());
+        return (a, b) -> {
+            Object x = fields(a.getLeft().document).apply(sort.getField());
+            Object y = fields(b.getLeft().document).apply(sort.getField());
+            if (x == null || y == null) {
+                return x == null ? (y == null ? 0 : 1) : -1;
+            }
+            Integer c = FilterMatcher.compareValues(FilterMatcher.normalize(x), FilterMatcher.normalize(y));
+            if (c == null) {
+                return 0;
+            }
+            return desc ? -c : c;
+        };
+    }
+
+    private Function<String, Object> fields(Document document) {
+        return name -> {
+            if (Document.DOCUMENT_DOCUMENT_ID.equals(name)) {
+                return document.getDocumentId();
+            } else if (Document.DOCUMENT_TENANT_ID.equals(name)) {
+                return document.getTenantId();
+            } else if (textField.equals(name)) {
+                return document.getText();
+            }
+            return document.getMetadata().get(name);
+        };
+    }
+
+    /**
+     * @param columnsToGet     columns to return, null or empty for the default ones
+     * @param defaultEmbedding whether the default columns have the embedding, as a GetRow but not a search returns it
+     */
+    private Document project(Entry entry, List<String> columnsToGet, boolean defaultEmbedding) {
+        Document stored = entry.document;
+        if (columnsToGet == null || columnsToGet.isEmpty()) {
+            return new Document(
+                stored.getDocumentId(),
+                stored.getTenantId(),
+                stored.getText(),
+                defaultEmbedding ? embedding(entry) : null,
+                stored.getMetadata().copy()
+            );
+        }
+        Set<String> columns = new HashSet<>(columnsToGet);
+        Metadata metadata = new Metadata();
+        for (Map.Entry<String, Object> column : stored.getMetadata().toMap().entrySet()) {
+            if (columns.contains(column.getKey())) {
+                metadata.putObject(column.getKey(), column.getValue());
+            }
+        }
+        return new Document(
+            stored.getDocumentId(),
+            stored.getTenantId(),
+            columns.contains(textField) ? stored.getText() : null,
+            columns.contains(embeddingField) ? embedding(entry) : null,
+            metadata
+        );
+    }
+
+    private float[] embedding(Entry entry) {
+        if (entry.slot < 0) {
+            return null;
+        }
+        return Arrays.copyOfRange(vectors, entry.slot * embeddingDimension, (entry.slot + 1) * embeddingDimension);
+    }
+
+    private List<Document> snapshot(List<String> columnsToGet) {
+        return read(() -> documents.values().stream().map(entry -> project(entry, columnsToGet, true)).collect(Collectors.toList()));
+    }
+
+    private <T> T read(Supplier<T> reader) {
+        lock.readLock().lock();
+        try {
+            return reader.get();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private void write(Runnable writer) {
+        lock.writeLock().lock();
+        try {
+            writer.run();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    private void checkDocument(Document document) {
+        ValidationUtils.ensureNotNull(document, "document");
+        ValidationUtils.ensureNotNull(document.getDocumentId(), "documentId");
+        if (document.getEmbedding() != null && document.getEmbedding().length != embeddingDimension) {
+            throw Exceptions.illegalArgument(
+                "document's embedding embedding length:%s is not the same as the knowledge store dimension:%s, document id:%s",
+                embeddingDimension,
+                document.getEmbedding().length,
+                document.getDocumentId()
+            );
+        }
+    }
+
+    /**
+     * @return the metadata as read back from a row
+     */
+    private static Metadata normalize(Metadata metadata) {
+        Metadata normalized = new Metadata();
+        if (metadata != null) {
+            for (Map.Entry<String, Object> entry : metadata.toMap().entrySet()) {
+                normalized.putObject(entry.getKey(), FilterMatcher.normalize(entry.getValue()));
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * @return the stored metadata with the columns of the update overwritten, as an UpdateRow puts them
+     */
+    private static Metadata merge(Metadata stored, Metadata update) {
+        Map<String, Object> merged = stored == null ? new HashMap<>() : stored.toMap();
+        merged.putAll(normalize(update).toMap());
+        return new Metadata(merged);
+    }
+
+    /**
+     * A stored document, without its embedding which is in the slot of the vector array.
+     */
+    private static final class Entry {
+
+        private final Document document;
+        private int textLength;
+        private int slot = -1;
+
+        private Entry(Document document) {
+            this.document = document;
+        }
+    }
+
+    /**
+     * Max candidates of a vector search, the limit of the topK of a KNN query.
+     */
+    private static final int RERANK_MAX_CANDIDATES = 1000;
+}
@@ -4,9 +4,16 @@ import com.aliyun.openservices.tablestore.agent.model.Document;
 import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
 import com.aliyun.openservices.tablestore.agent.model.Response;
 import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface KnowledgeStore {
 
@@ -17,6 +24,19 @@ public interface KnowledgeStore {
      */
     void putDocument(Document document);
 
+    /**
+     * Insert documents in bulk (overwrite), with concurrent BatchWriteRow requests. Failed rows are retried, an exception is thrown if some
+     * documents are still not written at the end. The default implementation puts them one by one with {@link #putDocument(Document)}.
+     *
+     * @param documents documents
+     */
+    default void putDocuments(Iterator<Document> documents) {
+        ValidationUtils.ensureNotNull(documents, "documents");
+        while (documents.hasNext()) {
+            putDocument(documents.next());
+        }
+    }
+
     /**
      * Update document
      *
@@ -77,12 +97,26 @@ public interface KnowledgeStore {
      */
     Document getDocument(String documentId);
 
+    /**
+     * Get a single document, reading only some of its columns. The embedding is neither transferred nor decoded unless its column is
+     * listed, see {@link KnowledgeStoreImpl#getDefaultColumnsToGet()} for the columns of a document but its embedding. The default
+     * implementation reads all the columns with {@link #getDocument(String, String)}.
+     *
+     * @param documentId   Document ID
+     * @param tenantId     Tenant ID (if multi-tenancy capability is not used, pass empty value)
+     * @param columnsToGet Columns to read, all if null or empty
+     * @return Document
+     */
+    default Document getDocument(String documentId, String tenantId, List<String> columnsToGet) {
+        return getDocument(documentId, tenantId);
+    }
+
     /**
      * Get multiple documents
      *
      * @param documentIdList List of document IDs
      * @param tenantId       Tenant ID (pass an empty value if multi-tenancy capability is not used)
-     * @return List of documents
+     * @return List of documents in the order of the IDs, null for the documents that don't exist
      */
     List<Document> getDocuments(List<String> documentIdList, String tenantId);
 
@@ -90,10 +124,23 @@ public interface KnowledgeStore {
      * Get multiple documents (Only for non-multi-tenant scenarios; use {@link KnowledgeStore#getDocuments(List, String)} for multi-tenant)
      *
      * @param documentIdList List of document IDs
-     * @return List of documents
+     * @return List of documents in the order of the IDs, null for the documents that don't exist
      */
     List<Document> getDocuments(List<String> documentIdList);
 
+    /**
+     * Get multiple documents, reading only some of their columns, see {@link #getDocument(String, String, List)}. The default
+     * implementation reads all the columns with {@link #getDocuments(List, String)}.
+     *
+     * @param documentIdList List of document IDs
+     * @param tenantId       Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param columnsToGet   Columns to read, all if null or empty
+     * @return List of documents in the order of the IDs, null for the documents that don't exist
+     */
+    default List<Document> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet) {
+        return getDocuments(documentIdList, tenantId);
+    }
+
     /**
      * Get all documents
      *
@@ -101,6 +148,51 @@ public interface KnowledgeStore {
      */
     Iterator<Document> listAllDocuments();
 
+    /**
+     * List all documents, scanning the ranges of the table returned by ComputeSplitsBySize concurrently. Documents of different ranges are
+     * interleaved. The iterator is also {@link AutoCloseable}, it should be exhausted or closed to release its threads at once, an
+     * iterator dropped before that releases them when it is garbage collected. The default implementation is {@link #listAllDocuments()}.
+     *
+     * @param parallelism number of concurrent range scans
+     * @return iterator over document objects
+     */
+    default Iterator<Document> listAllDocuments(int parallelism) {
+        return listAllDocuments();
+    }
+
+    /**
+     * {@link #listAllDocuments(int)} reading only some of the columns, see {@link #getDocument(String, String, List)}. The default
+     * implementation reads all the columns with {@link #listAllDocuments(int)}.
+     *
+     * @param parallelism  number of concurrent range scans
+     * @param columnsToGet Columns to read, all if null or empty
+     * @return iterator over document objects
+     */
+    default Iterator<Document> listAllDocuments(int parallelism, List<String> columnsToGet) {
+        return listAllDocuments(parallelism);
+    }
+
+    /**
+     * Parallel stream of all documents, each range of the table returned by ComputeSplitsBySize is read by the thread processing it. The
+     * default implementation is a sequential stream of {@link #listAllDocuments()}.
+     *
+     * @return stream of document objects
+     */
+    default Stream<Document> streamAllDocuments() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listAllDocuments(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    /**
+     * {@link #streamAllDocuments()} reading only some of the columns, see {@link #getDocument(String, String, List)}. The default
+     * implementation reads all the columns with {@link #streamAllDocuments()}.
+     *
+     * @param columnsToGet Columns to read, all if null or empty
+     * @return stream of document objects
+     */
+    default Stream<Document> streamAllDocuments(List<String> columnsToGet) {
+        return streamAllDocuments();
+    }
+
     /**
      * Search documents
      *
@@ -135,6 +227,147 @@ public interface KnowledgeStore {
      */
     Response<DocumentHit> vectorSearch(float[] queryVector, int topK, Float minScore, Set<String> tenantIds, Filter metadataFilter, List<String> columnsToGet);
 
+    /**
+     * Vector retrieval followed by a rerank: {@code candidates} hits are read from the search, their embeddings are read in a single batch
+     * and the {@code reranker} returns the topK of them, for instance by exact similarity with {@link ExactSimilarityReranker} or
+     * diversified with {@link MaximalMarginalRelevanceReranker}.
+     * <p>
+     * The default implementation reads the embeddings of the candidates one by one with {@link #getDocument(String, String)}.
+     * </p>
+     *
+     * @param queryVector    Search vector
+     * @param topK           Number of returned results
+     * @param candidates     Hits of the vector search passed to the reranker, at least topK
+     * @param tenantIds      Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param metadataFilter Metadata filter condition
+     * @param columnsToGet   Fields of the returned documents, the embedding is not needed here
+     * @param reranker       Second stage scoring the candidates
+     * @return Search results, the score of a hit is the score of the reranker
+     */
+    default Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        int candidates,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet,
+        Reranker reranker
+    ) {
+        ValidationUtils.ensureNotNull(queryVector, "queryVector");
+        ValidationUtils.ensureNotNull(reranker, "reranker");
+        ValidationUtils.ensureBetween(topK, 1, Integer.MAX_VALUE, "topK");
+        ValidationUtils.ensureBetween(candidates, topK, Integer.MAX_VALUE, "candidates");
+        List<DocumentHit> hits = vectorSearch(queryVector, candidates, null, tenantIds, metadataFilter, columnsToGet).getHits();
+        int dimension = queryVector.length;
+        float[] embeddings = new float[hits.size() * dimension];
+        List<DocumentHit> rerankCandidates = new ArrayList<>(hits.size());
+        for (DocumentHit hit : hits) {
+            Document document = getDocument(hit.getDocument().getDocumentId(), hit.getDocument().getTenantId());
+            // documents deleted since they were indexed have no embedding
+            if (document != null && document.getEmbedding() != null && document.getEmbedding().length == dimension) {
+                System.arraycopy(document.getEmbedding(), 0, embeddings, rerankCandidates.size() * dimension, dimension);
+                rerankCandidates.add(hit);
+            }
+        }
+        if (rerankCandidates.isEmpty()) {
+            return new Response<>(rerankCandidates, null);
+        }
+        return new Response<>(reranker.rerank(queryVector, rerankCandidates, embeddings, topK), null);
+    }
+
+    /**
+     * Vector retrieval of several query vectors, for instance from query expansion. The searches are sent concurrently and share the tenant
+     * and metadata filter. The default implementation sends them one after the other.
+     *
+     * @param queryVectors   Search vectors
+     * @param topK           Top K for each vector query
+     * @param minScore       min score for document in search result. If null, no filtering will be performed
+     * @param tenantIds      Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param metadataFilter Metadata filter condition
+     * @param columnsToGet   Fields to return
+     * @return Search results of each vector, in the order of the vectors
+     */
+    default List<Response<DocumentHit>> vectorSearchBatch(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        List<Response<DocumentHit>> responses = new ArrayList<>(queryVectors.size());
+        for (float[] queryVector : queryVectors) {
+            responses.add(vectorSearch(queryVector, topK, minScore, tenantIds, metadataFilter, columnsToGet));
+        }
+        return responses;
+    }
+
+    /**
+     * {@link #vectorSearchBatch(List, int, Float, Set, Filter, List)} whose results are merged: a document found by several vectors is
+     * returned once, with its max score.
+     *
+     * @return the topK documents by max score
+     */
+    default Response<DocumentHit> vectorSearchUnion(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        List<List<DocumentHit>> rankings = new ArrayList<>(queryVectors.size());
+        for (Response<DocumentHit> response : vectorSearchBatch(queryVectors, topK, minScore, tenantIds, metadataFilter, columnsToGet)) {
+            rankings.add(response.getHits());
+        }
+        return new Response<>(MaxScoreUnion.merge(rankings, topK), null);
+    }
+
+    /**
+     * Hybrid retrieval: full-text and vector searches sent concurrently, their results merged by {@link ReciprocalRankFusion} and
+     * deduplicated by (documentId, tenantId). The embeddings are only read for the returned documents.
+     * <p>
+     * The default implementation returns the default columns of the searches, see {@link #hybridSearch(String, float[], int, Set, Filter, List)}.
+     * </p>
+     *
+     * @param query          Search term
+     * @param queryVector    Search vector
+     * @param topK           Number of returned results
+     * @param tenantIds      Tenant ID (pass an empty value if multi-tenancy capability is not used)
+     * @param metadataFilter Metadata filter condition
+     * @return Search results, the score of a hit is its fused score
+     */
+    default Response<DocumentHit> hybridSearch(String query, float[] queryVector, int topK, Set<String> tenantIds, Filter metadataFilter) {
+        return hybridSearch(query, queryVector, topK, tenantIds, metadataFilter, null);
+    }
+
+    /**
+     * {@link #hybridSearch(String, float[], int, Set, Filter)} returning the given columns of the searches, no document is read from the
+     * table.
+     * <p>
+     * The default implementation sends {@link #fullTextSearch} and {@link #vectorSearch(float[], int, Float, Set, Filter, List)} one after
+     * the other, for {@code 2 * topK} candidates each (at most {@value ReciprocalRankFusion#MAX_CANDIDATES}).
+     * </p>
+     *
+     * @param columnsToGet Fields to return, the default columns of the searches if null or empty
+     * @return Search results, the score of a hit is its fused score
+     */
+    default Response<DocumentHit> hybridSearch(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        int candidates = ReciprocalRankFusion.candidates(topK);
+        List<List<DocumentHit>> rankings = Arrays.asList(
+            fullTextSearch(query, tenantIds, candidates, metadataFilter, null, columnsToGet).getHits(),
+            vectorSearch(queryVector, candidates, null, tenantIds, metadataFilter, columnsToGet).getHits()
+        );
+        return new Response<>(ReciprocalRankFusion.fuse(rankings, ReciprocalRankFusion.DEFAULT_K, topK), null);
+    }
+
     /**
      * Whether to enable multi-tenant
      *
@@ -3,7 +3,6 @@ package com.aliyun.openservices.tablestore.agent.knowledge;
 import com.alicloud.openservices.tablestore.SyncClient;
 import com.alicloud.openservices.tablestore.TableStoreException;
 import com.alicloud.openservices.tablestore.model.Column;
-import com.alicloud.openservices.tablestore.model.ColumnValue;
 import com.alicloud.openservices.tablestore.model.Condition;
 import com.alicloud.openservices.tablestore.model.DeleteRowRequest;
 import com.alicloud.openservices.tablestore.model.GetRowRequest;
@@ -40,7 +39,10 @@ import com.aliyun.openservices.tablestore.agent.model.sort.Order;
 import com.aliyun.openservices.tablestore.agent.model.sort.ScoreSort;
 import com.aliyun.openservices.tablestore.agent.util.CollectionUtil;
 import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.OperationLog;
 import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.ParallelRangeScanner;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
 import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
 import com.aliyun.openservices.tablestore.agent.util.Triple;
 import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
@@ -53,6 +55,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
@@ -86,6 +89,38 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
     private final Integer embeddingDimension;
     @NonNull
     private final Boolean enableMultiTenant;
+    /**
+     * Store embeddings as little-endian float32 bytes in a BINARY column instead of a JSON array. It is several times smaller and much cheaper
+     * to decode, but a BINARY column can't be indexed as a vector field, so {@code vectorSearch} is not available. Rows written as JSON are still
+     * readable when enabled.
+     */
+    @Builder.Default
+    @NonNull
+    private final Boolean enableBinaryEmbedding = false;
+    /**
+     * BatchGetRow requests of {@code getDocuments} sent at a time, a request reads 100 documents.
+     */
+    @Builder.Default
+    @NonNull
+    private final Integer batchGetParallelism = TablestoreHelper.DEFAULT_BATCH_GET_PARALLELISM;
+    /**
+     * Search requests of {@code vectorSearchBatch} sent at a time.
+     */
+    @Builder.Default
+    @NonNull
+    private final Integer searchParallelism = 8;
+    /**
+     * Receives a record of each page read by the list methods and of each search request, see {@link StoreMetrics}.
+     */
+    @Builder.Default
+    @NonNull
+    private final StoreMetrics metrics = StoreMetrics.NOOP;
+    /**
+     * Logs the requests of a sample of the search calls and the slow ones, with their arguments and request id.
+     */
+    @Builder.Default
+    @NonNull
+    private final OperationLog operationLog = OperationLog.DEFAULT;
 
     @Override
     public void putDocument(Document document) {
@@ -94,18 +129,9 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         checkDimension(document);
         checkEnableMultiTenant(document);
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(document.getDocumentId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(document.getTenantId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
         RowPutChange rowPutChange = new RowPutChange(tableName, primaryKey);
-        List<Column> columns = TablestoreHelper.metadataToColumns(document.getMetadata());
-        if (document.getText() != null) {
-            columns.add(new Column(textField, ColumnValue.fromString(document.getText())));
-        }
-        if (document.getEmbedding() != null) {
-            columns.add(new Column(embeddingField, ColumnValue.fromString(TablestoreHelper.encodeEmbedding(document.getEmbedding()))));
-        }
+        List<Column> columns = TablestoreHelper.documentToColumns(document, textField, embeddingField, enableBinaryEmbedding);
         rowPutChange.addColumns(columns);
         try {
             client.putRow(new PutRowRequest(rowPutChange));
@@ -117,6 +143,19 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         }
     }
 
+    @Override
+    public void putDocuments(Iterator<Document> documents) {
+        BulkIngestor.Result result = BulkIngestor.builder().store(this).build().ingest(documents);
+        if (!result.getFailures().isEmpty()) {
+            throw Exceptions.runtime(
+                "put documents failed, written:%s, failed:%s, first failure:%s",
+                result.getRowCount(),
+                result.getFailures().size(),
+                result.getFailures().get(0)
+            );
+        }
+    }
+
     @Override
     public void updateDocument(Document document) {
         ValidationUtils.ensureNotNull(document, "document");
@@ -124,18 +163,9 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         checkDimension(document);
         checkEnableMultiTenant(document);
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(document.getDocumentId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(document.getTenantId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
         RowUpdateChange change = new RowUpdateChange(tableName, primaryKey);
-        List<Column> columns = TablestoreHelper.metadataToColumns(document.getMetadata());
-        if (document.getText() != null) {
-            columns.add(new Column(textField, ColumnValue.fromString(document.getText())));
-        }
-        if (document.getEmbedding() != null) {
-            columns.add(new Column(embeddingField, ColumnValue.fromString(TablestoreHelper.encodeEmbedding(document.getEmbedding()))));
-        }
+        List<Column> columns = TablestoreHelper.documentToColumns(document, textField, embeddingField, enableBinaryEmbedding);
         change.put(columns);
         try {
             client.updateRow(new UpdateRowRequest(change));
@@ -161,11 +191,8 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
     }
 
     private void innerDelete(String documentId, String tenantId) {
-        tenantId = checkEnableMultiTenantId(tenantId);
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(documentId));
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(tenantId));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        tenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(documentId, tenantId);
 
         RowDeleteChange rowDeleteChange = new RowDeleteChange(tableName, primaryKey);
         rowDeleteChange.setCondition(new Condition(RowExistenceExpectation.IGNORE));
@@ -219,22 +246,36 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
     @Override
     public void deleteAllDocuments() {
         log.info("delete all documents");
-        Iterator<Document> documents = listAllDocuments();
-        TablestoreHelper.batchDelete(client, tableName, documents);
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.INF_MIN)
+            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.INF_MIN)
+            .build();
+
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.INF_MAX)
+            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.INF_MAX)
+            .build();
+        TablestoreHelper.batchDeleteRange(client, tableName, start, end);
     }
 
     @Override
     public Document getDocument(String documentId, String tenantId) {
+        return getDocument(documentId, tenantId, null);
+    }
+
+    @Override
+    public Document getDocument(String documentId, String tenantId, List<String> columnsToGet) {
         ValidationUtils.ensureNotNull(documentId, "documentId");
-        tenantId = checkEnableMultiTenantId(tenantId);
+        tenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(documentId));
-        primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(tenantId));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(documentId, tenantId);
 
         SingleRowQueryCriteria criteria = new SingleRowQueryCriteria(tableName, primaryKey);
         criteria.setMaxVersions(1);
+        List<String> documentColumnsToGet = TablestoreHelper.documentColumnsToGet(columnsToGet);
+        if (documentColumnsToGet != null) {
+            criteria.addColumnsToGet(documentColumnsToGet);
+        }
 
         try {
             GetRowResponse response = client.getRow(new GetRowRequest(criteria));
@@ -251,34 +292,33 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
 
     @Override
     public Document getDocument(String documentId) {
-        String tenantId = checkEnableMultiTenantId(null);
+        String tenantId = TablestoreHelper.checkDocumentTenantId(null, enableMultiTenant);
         return getDocument(documentId, tenantId);
     }
 
     @Override
     public List<Document> getDocuments(List<String> documentIdList, String tenantId) {
+        return getDocuments(documentIdList, tenantId, null);
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet) {
         log.info("get documents, documentIdList:{}, tenantId:{}", documentIdList, tenantId);
-        String newTenantId = checkEnableMultiTenantId(tenantId);
+        String newTenantId = TablestoreHelper.checkDocumentTenantId(tenantId, enableMultiTenant);
         List<PrimaryKey> pkList = new ArrayList<>(documentIdList.size());
         for (String docId : documentIdList) {
-            PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-            primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(docId));
-            primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(newTenantId));
-            PrimaryKey primaryKey = primaryKeyBuilder.build();
-            pkList.add(primaryKey);
+            pkList.add(TablestoreHelper.documentPrimaryKey(docId, newTenantId));
         }
 
-        List<Document> documents = TablestoreHelper.batchGetDocuments(client, tableName, pkList, textField, embeddingField);
-        if (documents.size() != documentIdList.size()) {
-            throw Exceptions.runtime(
-                "get documents failed, documentIdList[%s]:%s, tenantId:%s, documents:%s",
-                documentIdList.size(),
-                documentIdList,
-                newTenantId,
-                documents.size()
-            );
-        }
-        return documents;
+        return TablestoreHelper.batchGetDocuments(
+            client,
+            tableName,
+            pkList,
+            textField,
+            embeddingField,
+            batchGetParallelism,
+            TablestoreHelper.documentColumnsToGet(columnsToGet)
+        );
     }
 
     @Override
@@ -308,17 +348,54 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
             Order.ASC,
             -1L,
             -1,
-            null
+            null,
+            false,
+            metrics
         );
     }
 
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism) {
+        return listAllDocuments(parallelism, null);
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism, List<String> columnsToGet) {
+        log.info("list all documents with parallelism:{}, columnsToGet:{}", parallelism, columnsToGet);
+        return ParallelRangeScanner.<Document>builder()
+            .client(client)
+            .tableName(tableName)
+            .translateFunction(row -> TablestoreHelper.rowToDocument(row, textField, embeddingField))
+            .columnsToGet(TablestoreHelper.documentColumnsToGet(columnsToGet))
+            .parallelism(parallelism)
+            .build()
+            .iterator();
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments() {
+        return streamAllDocuments(null);
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments(List<String> columnsToGet) {
+        log.info("stream all documents, columnsToGet:{}", columnsToGet);
+        return ParallelRangeScanner.<Document>builder()
+            .client(client)
+            .tableName(tableName)
+            .translateFunction(row -> TablestoreHelper.rowToDocument(row, textField, embeddingField))
+            .columnsToGet(TablestoreHelper.documentColumnsToGet(columnsToGet))
+            .build()
+            .stream();
+    }
+
     @Override
     public Response<DocumentHit> searchDocuments(KnowledgeSearchRequest searchRequest) {
         if (log.isDebugEnabled()) {
             log.debug("before search documents:{}", searchRequest);
         }
         ValidationUtils.ensureNotNull(searchRequest, "KnowledgeSearchRequest");
-        Filter filter = wrapTenantIds(searchRequest.getTenantIds(), searchRequest.getMetadataFilter());
+        Filter filter = TablestoreHelper.wrapDocumentTenantIds(searchRequest.getTenantIds(), searchRequest.getMetadataFilter(), enableMultiTenant);
         Query query = TablestoreHelper.parserSearchFilters(filter);
         Sort otsSort = TablestoreHelper.toOtsSort(searchRequest.getSorts());
         byte[] nextToken = null;
@@ -336,15 +413,26 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
 
         SearchRequest otsSearchRequest = new SearchRequest(tableName, searchIndexName, searchQuery);
 
-        List<PrimaryKey> routingValues = getRoutingValues(searchRequest);
+        List<PrimaryKey> routingValues = TablestoreHelper.documentRouting(
+            searchRequest.getVarArgs(),
+            FLAG_ROUTING_VALUES,
+            searchRequest.getTenantIds(),
+            enableMultiTenant
+        );
         if (!routingValues.isEmpty()) {
             otsSearchRequest.setRoutingValues(routingValues);
         }
         otsSearchRequest.setColumnsToGet(toColumnsToGet(searchRequest.getColumnsToGet()));
 
+        StoreMetrics callMetrics = operationLog.start(metrics, "searchDocuments", "{}", searchRequest);
         try {
-            SearchResponse searchResponse = client.search(otsSearchRequest);
-            log.info("search documents:{}, request_id:{}", searchRequest, searchResponse.getRequestId());
+            SearchResponse searchResponse = StoreMetrics.request(
+                callMetrics,
+                tableName,
+                "Search",
+                () -> client.search(otsSearchRequest),
+                r -> r.getRows().size()
+            );
             Triple<List<Document>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(
                 searchResponse,
                 r -> TablestoreHelper.rowToDocument(r, textField, embeddingField)
@@ -411,11 +499,14 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         List<String> columnsToGet,
         Map<String, Object> varArgs
     ) {
+        if (enableBinaryEmbedding) {
+            throw Exceptions.illegalArgument("vector search is not supported when the binary embedding is enabled");
+        }
         Filter filter;
         if (varArgs != null && varArgs.containsKey(FLAG_SKIP_WRAP_TENANT_IDS)) {
             filter = metadataFilter;
         } else {
-            filter = wrapTenantIds(tenantIds, metadataFilter);
+            filter = TablestoreHelper.wrapDocumentTenantIds(tenantIds, metadataFilter, enableMultiTenant);
         }
         VectorQuery vectorQuery = Filters.vectorQuery(embeddingField, queryVector).setTopK(topK).setFilter(filter).setMinScore(minScore);
         KnowledgeSearchRequest knowledgeSearchRequest = KnowledgeSearchRequest.builder()
@@ -425,11 +516,129 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
             .nextToken(null)
             .columnsToGet(columnsToGet)
             .sorts(Collections.singletonList(ScoreSort.builder().order(Order.DESC).build()))
-            .varArg(FLAG_ROUTING_VALUES, buildRouting(tenantIds))
+            .varArg(FLAG_ROUTING_VALUES, TablestoreHelper.documentRouting(tenantIds, enableMultiTenant))
             .build();
         return searchDocuments(knowledgeSearchRequest);
     }
 
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        int candidates,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet,
+        Reranker reranker
+    ) {
+        ValidationUtils.ensureNotNull(queryVector, "queryVector");
+        ValidationUtils.ensureNotNull(reranker, "reranker");
+        ValidationUtils.ensureBetween(topK, 1, RERANK_MAX_CANDIDATES, "topK");
+        ValidationUtils.ensureBetween(candidates, topK, RERANK_MAX_CANDIDATES, "candidates");
+        List<DocumentHit> hits = vectorSearch(queryVector, candidates, null, tenantIds, metadataFilter, columnsToGet).getHits();
+
+        // only the embedding column, decoded into a single array
+        List<PrimaryKey> primaryKeys = new ArrayList<>(hits.size());
+        for (DocumentHit hit : hits) {
+            primaryKeys.add(TablestoreHelper.documentPrimaryKey(hit.getDocument().getDocumentId(), hit.getDocument().getTenantId()));
+        }
+        List<Row> rows = TablestoreHelper.batchGetRows(
+            client,
+            tableName,
+            primaryKeys,
+            row -> row,
+            batchGetParallelism,
+            Collections.singletonList(embeddingField)
+        );
+        int dimension = queryVector.length;
+        float[] embeddings = new float[hits.size() * dimension];
+        List<DocumentHit> rerankCandidates = new ArrayList<>(hits.size());
+        for (int i = 0; i < hits.size(); i++) {
+            // documents deleted since they were indexed have no embedding
+            if (TablestoreHelper.decodeEmbedding(rows.get(i), embeddingField, embeddings, rerankCandidates.size() * dimension, dimension)) {
+                rerankCandidates.add(hits.get(i));
+            }
+        }
+        if (rerankCandidates.isEmpty()) {
+            return new Response<>(rerankCandidates, null);
+        }
+        return new Response<>(reranker.rerank(queryVector, rerankCandidates, embeddings, topK), null);
+    }
+
+    @Override
+    public List<Response<DocumentHit>> vectorSearchBatch(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        ValidationUtils.ensureNotNull(queryVectors, "queryVectors");
+        // wrapped once for all the vectors, the routing values are built from the tenant ids by each search
+        Filter filter = TablestoreHelper.wrapDocumentTenantIds(tenantIds, metadataFilter, enableMultiTenant);
+        Map<String, Object> varArgs = Collections.singletonMap(FLAG_SKIP_WRAP_TENANT_IDS, true);
+        List<Response<DocumentHit>> responses = new ArrayList<>(Collections.nCopies(queryVectors.size(), null));
+        TablestoreHelper.forEachConcurrently(
+            queryVectors.size(),
+            Math.max(1, Math.min(searchParallelism, queryVectors.size())),
+            i -> responses.set(i, vectorSearch(queryVectors.get(i), topK, minScore, tenantIds, filter, columnsToGet, varArgs))
+        );
+        return responses;
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(String query, float[] queryVector, int topK, Set<String> tenantIds, Filter metadataFilter) {
+        List<DocumentHit> hits = hybridSearchHits(query, queryVector, topK, tenantIds, metadataFilter, null);
+
+        // the searches return the default columns, without the embedding
+        List<PrimaryKey> primaryKeys = new ArrayList<>(hits.size());
+        for (DocumentHit hit : hits) {
+            primaryKeys.add(TablestoreHelper.documentPrimaryKey(hit.getDocument().getDocumentId(), hit.getDocument().getTenantId()));
+        }
+        List<Document> documents = TablestoreHelper.batchGetDocuments(client, tableName, primaryKeys, textField, embeddingField, batchGetParallelism);
+        for (int i = 0; i < hits.size(); i++) {
+            if (documents.get(i) != null) {
+                hits.get(i).setDocument(documents.get(i));
+            }
+        }
+        return new Response<>(hits, null);
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return new Response<>(hybridSearchHits(query, queryVector, topK, tenantIds, metadataFilter, columnsToGet), null);
+    }
+
+    private List<DocumentHit> hybridSearchHits(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        ValidationUtils.ensureNotNull(query, "query");
+        ValidationUtils.ensureNotNull(queryVector, "queryVector");
+        int candidates = ReciprocalRankFusion.candidates(topK);
+        List<List<DocumentHit>> rankings = new ArrayList<>(Arrays.asList(null, null));
+        TablestoreHelper.forEachConcurrently(2, 2, i -> {
+            if (i == 0) {
+                rankings.set(0, fullTextSearch(query, tenantIds, candidates, metadataFilter, null, columnsToGet).getHits());
+            } else {
+                rankings.set(1, vectorSearch(queryVector, candidates, null, tenantIds, metadataFilter, columnsToGet).getHits());
+            }
+        });
+        return ReciprocalRankFusion.fuse(rankings, ReciprocalRankFusion.DEFAULT_K, topK);
+    }
+
     @Override
     public boolean enableMultiTenant() {
         return enableMultiTenant;
@@ -448,12 +657,14 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         TablestoreHelper.addSchemaIfNotExist(messageSchemas, new FieldSchema(Document.DOCUMENT_DOCUMENT_ID, FieldType.KEYWORD));
         TablestoreHelper.addSchemaIfNotExist(messageSchemas, new FieldSchema(Document.DOCUMENT_TENANT_ID, FieldType.KEYWORD));
         TablestoreHelper.addSchemaIfNotExist(messageSchemas, new FieldSchema(textField, FieldType.TEXT).setAnalyzer(FieldSchema.Analyzer.MaxWord));
-        TablestoreHelper.addSchemaIfNotExist(
-            messageSchemas,
-            new FieldSchema(embeddingField, FieldType.VECTOR).setVectorOptions(
-                new VectorOptions(VectorDataType.FLOAT_32, embeddingDimension, embeddingMetricType)
-            )
-        );
+        if (!enableBinaryEmbedding) {
+            TablestoreHelper.addSchemaIfNotExist(
+                messageSchemas,
+                new FieldSchema(embeddingField, FieldType.VECTOR).setVectorOptions(
+                    new VectorOptions(VectorDataType.FLOAT_32, embeddingDimension, embeddingMetricType)
+                )
+            );
+        }
         List<String> routing = new ArrayList<>();
         if (enableMultiTenant) {
             routing.add(Document.DOCUMENT_TENANT_ID);
@@ -466,42 +677,15 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         TablestoreHelper.deleteTable(client, tableName);
     }
 
-    private void checkDimension(Document document) {
-        if (document == null || document.getEmbedding() == null) {
-            return;
-        }
-        int actualDimension = document.getEmbedding().length;
-        if (embeddingDimension != actualDimension) {
-            throw Exceptions.illegalArgument(
-                "document's embedding embedding length:%s is not the same as the knowledge store dimension:%s, document id:%s",
-                embeddingDimension,
-                actualDimension,
-                document.getDocumentId()
-            );
-        }
+    void checkDimension(Document document) {
+        TablestoreHelper.checkDocumentDimension(document, embeddingDimension);
     }
 
-    private void checkEnableMultiTenant(Document document) {
+    void checkEnableMultiTenant(Document document) {
         if (document == null) {
             return;
         }
-        checkEnableMultiTenantId(document.getTenantId());
-    }
-
-    private String checkEnableMultiTenantId(String tenantId) {
-        if (!enableMultiTenant) {
-            if (tenantId == null) {
-                return Document.DOCUMENT_DEFAULT_TENANT_ID;
-            }
-            if (!Document.DOCUMENT_DEFAULT_TENANT_ID.equals(tenantId)) {
-                throw Exceptions.illegalArgument("the multi-tenant capability is not enabled, but the 'tenant_id' is set");
-            }
-        } else {
-            if (Document.DOCUMENT_DEFAULT_TENANT_ID.equals(tenantId) || tenantId == null) {
-                throw Exceptions.illegalArgument("the multi-tenant capability is enabled, but the 'tenant_id' is not set");
-            }
-        }
-        return tenantId;
+        TablestoreHelper.checkDocumentTenantId(document.getTenantId(), enableMultiTenant);
     }
 
     private SearchRequest.ColumnsToGet toColumnsToGet(List<String> columnsToGet) {
@@ -517,85 +701,17 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
         }
     }
 
-    private List<String> getDefaultColumnsToGet() {
-        List<String> defaultColumnsToGet = new ArrayList<>();
-        for (FieldSchema fieldSchema : metadataSchema) {
-            if (fieldSchema.getFieldType().equals(FieldType.VECTOR) || fieldSchema.getFieldName().equals(embeddingField)) {
-                continue;
-            }
-            defaultColumnsToGet.add(fieldSchema.getFieldName());
-        }
-        defaultColumnsToGet.add(Document.DOCUMENT_DOCUMENT_ID);
-        defaultColumnsToGet.add(Document.DOCUMENT_TENANT_ID);
-        defaultColumnsToGet.add(textField);
-        return defaultColumnsToGet;
-    }
-
-    private Filter wrapTenantIds(Set<String> tenantIds, Filter metadataFilter) {
-        if (enableMultiTenant) {
-            if (tenantIds == null || tenantIds.isEmpty()) {
-                return metadataFilter;
-            }
-            if (tenantIds.size() == 1) {
-                if (metadataFilter == null) {
-                    return Filters.eq(Document.DOCUMENT_TENANT_ID, tenantIds.iterator().next());
-                }
-                return Filters.and(Filters.eq(Document.DOCUMENT_TENANT_ID, tenantIds.iterator().next()), metadataFilter);
-            } else {
-                if (metadataFilter == null) {
-                    return Filters.in(Document.DOCUMENT_TENANT_ID, new ArrayList<>(tenantIds));
-                }
-                return Filters.and(Filters.in(Document.DOCUMENT_TENANT_ID, new ArrayList<>(tenantIds)), metadataFilter);
-            }
-        } else {
-            if (tenantIds == null || tenantIds.isEmpty()) {
-                return metadataFilter;
-            }
-            throw Exceptions.illegalArgument("the multi-tenant capability is not enabled, but the 'tenant id' is set");
-        }
-    }
-
-    private List<PrimaryKey> buildRouting(Set<String> tenantIds) {
-        if (!enableMultiTenant) {
-            if (tenantIds == null || tenantIds.isEmpty()) {
-                return Collections.emptyList();
-            }
-            throw Exceptions.illegalArgument("the multi-tenant capability is not enabled, but the 'tenant id' is set");
-        }
-        if (tenantIds == null || tenantIds.isEmpty()) {
-            return Collections.emptyList();
-        }
-        List<PrimaryKey> routing = new ArrayList<>(tenantIds.size());
-        for (String tid : tenantIds) {
-            PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-            primaryKeyBuilder.addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(tid));
-            routing.add(primaryKeyBuilder.build());
-        }
-        return routing;
-    }
-
-    private List<PrimaryKey> getRoutingValues(KnowledgeSearchRequest searchRequest) {
-        if (searchRequest == null) {
-            return Collections.emptyList();
-        }
-        if (searchRequest.getVarArgs() != null && searchRequest.getVarArgs().containsKey(FLAG_ROUTING_VALUES)) {
-            // noinspection unchecked
-            return (List<PrimaryKey>) searchRequest.getVarArgs().get(FLAG_ROUTING_VALUES);
-        }
-
-        return buildRouting(searchRequest.getTenantIds());
+    /**
+     * Columns returned by the searches by default: the text and the metadata fields of {@code metadataSchema}, without the embedding. Pass
+     * them as {@code columnsToGet} of the reads that don't need the embedding.
+     */
+    public List<String> getDefaultColumnsToGet() {
+        return TablestoreHelper.documentDefaultColumnsToGet(metadataSchema, textField, embeddingField);
     }
 
     private List<String> getTenantIds(String documentId) {
-        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
-            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(documentId))
-            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.INF_MIN)
-            .build();
-
-        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
-            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(documentId))
-            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.INF_MAX)
-            .build();
+        PrimaryKey start = TablestoreHelper.documentPrimaryKey(documentId, PrimaryKeyValue.INF_MIN);
+        PrimaryKey end = TablestoreHelper.documentPrimaryKey(documentId, PrimaryKeyValue.INF_MAX);
         TablestoreHelper.GetRangeIterator<Document> iterator = new TablestoreHelper.GetRangeIterator<>(
             client,
             tableName,
@@ -606,7 +722,9 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
             Order.ASC,
             -1L,
             -1,
-            Arrays.asList(Document.DOCUMENT_TENANT_ID, Document.DOCUMENT_DOCUMENT_ID)
+            Arrays.asList(Document.DOCUMENT_TENANT_ID, Document.DOCUMENT_DOCUMENT_ID),
+            false,
+            metrics
         );
         List<Document> documents = CollectionUtil.toList(iterator);
         List<String> tenantIds = new ArrayList<>();
@@ -623,4 +741,9 @@ public class KnowledgeStoreImpl implements KnowledgeStore {
 
     public static final String FLAG_ROUTING_VALUES = "_flag_routing_values";
     public static final String FLAG_SKIP_WRAP_TENANT_IDS = "_flag_skip_wrap_tenant_ids";
+
+    /**
+     * Max candidates of a reranked vector search, the limit of the topK of a KNN query.
+     */
+    private static final int RERANK_MAX_CANDIDATES = 1000;
 }
@@ -0,0 +1,44 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Union of several rankings scored by the same similarity, such as the vector searches of reformulations of a query: a document found by
+ * several rankings keeps its best score. Unlike {@link ReciprocalRankFusion} the scores are compared, so the rankings must use the same
+ * metric.
+ */
+public final class MaxScoreUnion {
+
+    private MaxScoreUnion() {}
+
+    /**
+     * @param rankings hits of each ranking. A document is identified by (documentId, tenantId), the hit with the max score is returned
+     * @return the {@code topK} documents by max score, best first
+     */
+    public static List<DocumentHit> merge(List<List<DocumentHit>> rankings, int topK) {
+        ValidationUtils.ensureBetween(topK, 1, Integer.MAX_VALUE, "topK");
+        Map<Pair<String, String>, DocumentHit> union = new LinkedHashMap<>();
+        for (List<DocumentHit> ranking : rankings) {
+            for (DocumentHit hit : ranking) {
+                Document document = hit.getDocument();
+                union.merge(
+                    Pair.of(document.getDocumentId(), document.getTenantId()),
+                    hit,
+                    (hit1, hit2) -> hit2.getScore() > hit1.getScore() ? hit2 : hit1
+                );
+            }
+        }
+        List<DocumentHit> hits = new ArrayList<>(union.values());
+        // stable, ties keep the order of the first ranking
+        hits.sort(Comparator.comparing(DocumentHit::getScore).reversed());
+        return new ArrayList<>(hits.subList(0, Math.min(topK, hits.size())));
+    }
+}
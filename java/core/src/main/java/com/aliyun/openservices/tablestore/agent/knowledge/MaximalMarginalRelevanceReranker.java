@@ -0,0 +1,102 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import com.aliyun.openservices.tablestore.agent.util.VectorMath;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import lombok.Builder;
+
+/**
+ * {@link Reranker} selecting a diverse topK by maximal marginal relevance, so that near-duplicate chunks don't fill the results: each next
+ * hit is the candidate maximizing {@code lambda * sim(query, d) - (1 - lambda) * max(sim(d, s) for s selected)}, sim being the cosine
+ * similarity.
+ *
+ * <p>
+ * The embeddings are normalized once into a flat array, then each selection computes the similarity of the selected embedding with the
+ * remaining candidates and updates their max similarity to the selection, a sequential pass over the array: k selections among n
+ * candidates cost about {@code k * n} dot products.
+ * </p>
+ */
+public class MaximalMarginalRelevanceReranker implements Reranker {
+
+    public static final double DEFAULT_LAMBDA = 0.5;
+
+    private final double lambda;
+
+    /**
+     * @param lambda weight of the relevance to the query against the diversity, from 0 (only diversity) to 1 (only relevance), default
+     *               {@link #DEFAULT_LAMBDA}
+     */
+    @Builder
+    private MaximalMarginalRelevanceReranker(Double lambda) {
+        this.lambda = ValidationUtils.ensureBetween(lambda == null ? DEFAULT_LAMBDA : lambda, 0.0, 1.0, "lambda");
+    }
+
+    /**
+     * @return the hits in the order of selection, the score of a hit being its cosine similarity to the query
+     */
+    @Override
+    public List<DocumentHit> rerank(float[] queryVector, List<DocumentHit> candidates, float[] embeddings, int topK) {
+        ValidationUtils.ensureBetween(topK, 1, Integer.MAX_VALUE, "topK");
+        int count = candidates.size();
+        int dimension = queryVector.length;
+        if (embeddings.length < count * dimension) {
+            throw Exceptions.illegalArgument("embeddings length:%s, expected:%s", embeddings.length, count * dimension);
+        }
+        float[] normalized = new float[count * dimension];
+        for (int i = 0; i < count; i++) {
+            int offset = i * dimension;
+            double norm = Math.sqrt(VectorMath.dotProduct(embeddings, offset, embeddings, offset, dimension));
+            if (norm > 0) {
+                float scale = (float) (1 / norm);
+                for (int j = 0; j < dimension; j++) {
+                    normalized[offset + j] = embeddings[offset + j] * scale;
+                }
+            }
+        }
+        double queryNorm = Math.sqrt(VectorMath.dotProduct(queryVector, 0, queryVector, 0, dimension));
+        double[] relevance = new double[count];
+        VectorMath.dotProducts(queryVector, normalized, count, relevance);
+        for (int i = 0; i < count; i++) {
+            relevance[i] = queryNorm == 0 ? 0 : relevance[i] / queryNorm;
+        }
+
+        double[] maxSimilarity = new double[count];
+        Arrays.fill(maxSimilarity, Double.NEGATIVE_INFINITY);
+        boolean[] selected = new boolean[count];
+        int size = Math.min(topK, count);
+        List<DocumentHit> hits = new ArrayList<>(size);
+        if (size == 0) {
+            return hits;
+        }
+        while (true) {
+            int best = -1;
+            double bestScore = Double.NEGATIVE_INFINITY;
+            for (int i = 0; i < count; i++) {
+                if (selected[i]) {
+                    continue;
+                }
+                double score = hits.isEmpty() ? relevance[i] : lambda * relevance[i] - (1 - lambda) * maxSimilarity[i];
+                if (best < 0 || score > bestScore) {
+                    best = i;
+                    bestScore = score;
+                }
+            }
+            selected[best] = true;
+            hits.add(new DocumentHit(candidates.get(best).getDocument(), relevance[best]));
+            if (hits.size() == size) {
+                return hits;
+            }
+            int bestOffset = best * dimension;
+            for (int i = 0; i < count; i++) {
+                if (!selected[i]) {
+                    double similarity = VectorMath.dotProduct(normalized, bestOffset, normalized, i * dimension, dimension);
+                    maxSimilarity[i] = Math.max(maxSimilarity[i], similarity);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,294 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.util.CountingIterator;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * {@link KnowledgeStore} decorator recording every call to {@link StoreMetrics}: its duration and error code, the rows it returned and the
+ * rows it wrote.
+ *
+ * <p>
+ * The rows of an iterator are recorded once it is exhausted or closed, the duration of a list method is only the time to return the
+ * iterator, its pages being recorded as requests by a {@link KnowledgeStoreImpl} built with the same metrics. Streams are not counted, nor
+ * are the documents removed by the deletes of a tenant or a filter. The rows written by {@code putDocuments} are the documents it consumed,
+ * the batch size of the bulk load.
+ * </p>
+ */
+public class MeteredKnowledgeStore implements KnowledgeStore {
+
+    private final KnowledgeStore delegate;
+    private final StoreMetrics metrics;
+    private final String name;
+
+    /**
+     * @param delegate the store to record, usually a {@link KnowledgeStoreImpl} or a {@link CachedKnowledgeStore}
+     * @param metrics  receives the records
+     * @param name     name of the store in the records, default "knowledge"
+     */
+    @Builder
+    private MeteredKnowledgeStore(@NonNull KnowledgeStore delegate, @NonNull StoreMetrics metrics, String name) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name == null ? "knowledge" : name;
+    }
+
+    @Override
+    public void putDocument(Document document) {
+        write("putDocument", 1, () -> delegate.putDocument(document));
+    }
+
+    @Override
+    public void putDocuments(Iterator<Document> documents) {
+        AtomicLong rows = new AtomicLong();
+        try {
+            run("putDocuments", () -> delegate.putDocuments(new CountingIterator<>(documents, rows::set)));
+        } finally {
+            metrics.recordRowsWritten(name, "putDocuments", rows.get());
+        }
+    }
+
+    @Override
+    public void updateDocument(Document document) {
+        write("updateDocument", 1, () -> delegate.updateDocument(document));
+    }
+
+    @Override
+    public void deleteDocument(String documentId, String tenantId) {
+        write("deleteDocument", 1, () -> delegate.deleteDocument(documentId, tenantId));
+    }
+
+    @Override
+    public void deleteDocument(String documentId) {
+        write("deleteDocument", 1, () -> delegate.deleteDocument(documentId));
+    }
+
+    @Override
+    public void deleteDocumentByTenant(String tenantId) {
+        run("deleteDocumentByTenant", () -> delegate.deleteDocumentByTenant(tenantId));
+    }
+
+    @Override
+    public void deleteDocument(Set<String> tenantIds, Filter metadataFilter) {
+        run("deleteDocument", () -> delegate.deleteDocument(tenantIds, metadataFilter));
+    }
+
+    @Override
+    public void deleteAllDocuments() {
+        run("deleteAllDocuments", delegate::deleteAllDocuments);
+    }
+
+    @Override
+    public Document getDocument(String documentId, String tenantId) {
+        return get(() -> delegate.getDocument(documentId, tenantId));
+    }
+
+    @Override
+    public Document getDocument(String documentId) {
+        return get(() -> delegate.getDocument(documentId));
+    }
+
+    @Override
+    public Document getDocument(String documentId, String tenantId, List<String> columnsToGet) {
+        return get(() -> delegate.getDocument(documentId, tenantId, columnsToGet));
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId) {
+        return getAll(() -> delegate.getDocuments(documentIdList, tenantId));
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList) {
+        return getAll(() -> delegate.getDocuments(documentIdList));
+    }
+
+    @Override
+    public List<Document> getDocuments(List<String> documentIdList, String tenantId, List<String> columnsToGet) {
+        return getAll(() -> delegate.getDocuments(documentIdList, tenantId, columnsToGet));
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments() {
+        return list(delegate::listAllDocuments);
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism) {
+        return list(() -> delegate.listAllDocuments(parallelism));
+    }
+
+    @Override
+    public Iterator<Document> listAllDocuments(int parallelism, List<String> columnsToGet) {
+        return list(() -> delegate.listAllDocuments(parallelism, columnsToGet));
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments() {
+        return call("streamAllDocuments", delegate::streamAllDocuments);
+    }
+
+    @Override
+    public Stream<Document> streamAllDocuments(List<String> columnsToGet) {
+        return call("streamAllDocuments", () -> delegate.streamAllDocuments(columnsToGet));
+    }
+
+    @Override
+    public Response<DocumentHit> searchDocuments(KnowledgeSearchRequest searchRequest) {
+        return search("searchDocuments", () -> delegate.searchDocuments(searchRequest));
+    }
+
+    @Override
+    public Response<DocumentHit> fullTextSearch(
+        String query,
+        Set<String> tenantIds,
+        int limit,
+        Filter metadataFilter,
+        String nextToken,
+        List<String> columnsToGet
+    ) {
+        return search("fullTextSearch", () -> delegate.fullTextSearch(query, tenantIds, limit, metadataFilter, nextToken, columnsToGet));
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return search("vectorSearch", () -> delegate.vectorSearch(queryVector, topK, minScore, tenantIds, metadataFilter, columnsToGet));
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearch(
+        float[] queryVector,
+        int topK,
+        int candidates,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet,
+        Reranker reranker
+    ) {
+        return search(
+            "vectorSearch",
+            () -> delegate.vectorSearch(queryVector, topK, candidates, tenantIds, metadataFilter, columnsToGet, reranker)
+        );
+    }
+
+    @Override
+    public List<Response<DocumentHit>> vectorSearchBatch(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        List<Response<DocumentHit>> responses = call(
+            "vectorSearchBatch",
+            () -> delegate.vectorSearchBatch(queryVectors, topK, minScore, tenantIds, metadataFilter, columnsToGet)
+        );
+        metrics.recordRowsRead(name, "vectorSearchBatch", responses.stream().mapToLong(r -> r.getHits().size()).sum());
+        return responses;
+    }
+
+    @Override
+    public Response<DocumentHit> vectorSearchUnion(
+        List<float[]> queryVectors,
+        int topK,
+        Float minScore,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return search(
+            "vectorSearchUnion",
+            () -> delegate.vectorSearchUnion(queryVectors, topK, minScore, tenantIds, metadataFilter, columnsToGet)
+        );
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(String query, float[] queryVector, int topK, Set<String> tenantIds, Filter metadataFilter) {
+        return search("hybridSearch", () -> delegate.hybridSearch(query, queryVector, topK, tenantIds, metadataFilter));
+    }
+
+    @Override
+    public Response<DocumentHit> hybridSearch(
+        String query,
+        float[] queryVector,
+        int topK,
+        Set<String> tenantIds,
+        Filter metadataFilter,
+        List<String> columnsToGet
+    ) {
+        return search("hybridSearch", () -> delegate.hybridSearch(query, queryVector, topK, tenantIds, metadataFilter, columnsToGet));
+    }
+
+    @Override
+    public boolean enableMultiTenant() {
+        return delegate.enableMultiTenant();
+    }
+
+    @Override
+    public void initTable() {
+        run("initTable", delegate::initTable);
+    }
+
+    @Override
+    public void deleteTableAndIndex() {
+        run("deleteTableAndIndex", delegate::deleteTableAndIndex);
+    }
+
+    private <T> T call(String operation, Supplier<T> call) {
+        return StoreMetrics.operation(metrics, name, operation, call);
+    }
+
+    private void run(String operation, Runnable call) {
+        call(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private void write(String operation, long rows, Runnable call) {
+        run(operation, call);
+        metrics.recordRowsWritten(name, operation, rows);
+    }
+
+    private Document get(Supplier<Document> call) {
+        Document document = call("getDocument", call);
+        metrics.recordRowsRead(name, "getDocument", document == null ? 0 : 1);
+        return document;
+    }
+
+    private List<Document> getAll(Supplier<List<Document>> call) {
+        List<Document> documents = call("getDocuments", call);
+        metrics.recordRowsRead(name, "getDocuments", documents.stream().filter(Objects::nonNull).count());
+        return documents;
+    }
+
+    private Response<DocumentHit> search(String operation, Supplier<Response<DocumentHit>> call) {
+        Response<DocumentHit> response = call(operation, call);
+        metrics.recordRowsRead(name, operation, response.getHits().size());
+        return response;
+    }
+
+    private Iterator<Document> list(Supplier<Iterator<Document>> call) {
+        return new CountingIterator<>(call("listAllDocuments", call), rows -> metrics.recordRowsRead(name, "listAllDocuments", rows));
+    }
+}
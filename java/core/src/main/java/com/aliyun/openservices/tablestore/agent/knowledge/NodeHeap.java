@@ -0,0 +1,117 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import java.util.Arrays;
+
+/**
+ * Binary heap of (node, score) pairs in primitive arrays, the best node on top: the highest score for a max heap, the lowest for a min heap.
+ * A min heap bounded with {@link #offer(int, double, int)} keeps the best k nodes seen.
+ */
+final class NodeHeap {
+
+    private final boolean max;
+    private int[] nodes;
+    private double[] scores;
+    private int size;
+
+    NodeHeap(int capacity, boolean max) {
+        this.max = max;
+        this.nodes = new int[Math.max(capacity, 4)];
+        this.scores = new double[nodes.length];
+    }
+
+    int size() {
+        return size;
+    }
+
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    int topNode() {
+        return nodes[0];
+    }
+
+    double topScore() {
+        return scores[0];
+    }
+
+    void push(int node, double score) {
+        if (size == nodes.length) {
+            nodes = Arrays.copyOf(nodes, size * 2);
+            scores = Arrays.copyOf(scores, size * 2);
+        }
+        int i = size++;
+        while (i > 0) {
+            int parent = (i - 1) >>> 1;
+            if (!before(score, scores[parent])) {
+                break;
+            }
+            nodes[i] = nodes[parent];
+            scores[i] = scores[parent];
+            i = parent;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    /**
+     * Push the node if the heap has less than {@code k} nodes, or replace the top one if the node is better, for a min heap keeping the k
+     * highest scores.
+     *
+     * @return whether the node was kept
+     */
+    boolean offer(int node, double score, int k) {
+        if (size < k) {
+            push(node, score);
+            return true;
+        }
+        if (!before(scores[0], score)) {
+            return false;
+        }
+        pop();
+        push(node, score);
+        return true;
+    }
+
+    void pop() {
+        int node = nodes[--size];
+        double score = scores[size];
+        int i = 0;
+        while (true) {
+            int child = 2 * i + 1;
+            if (child >= size) {
+                break;
+            }
+            if (child + 1 < size && before(scores[child + 1], scores[child])) {
+                child++;
+            }
+            if (!before(scores[child], score)) {
+                break;
+            }
+            nodes[i] = nodes[child];
+            scores[i] = scores[child];
+            i = child;
+        }
+        nodes[i] = node;
+        scores[i] = score;
+    }
+
+    /**
+     * Empty a min heap into the arrays, best first.
+     *
+     * @return the node count, the arrays are at least that long
+     */
+    int drainDescending(int[] nodesOut, double[] scoresOut) {
+        int count = size;
+        for (int i = count - 1; i >= 0; i--) {
+            nodesOut[i] = nodes[0];
+            scoresOut[i] = scores[0];
+            pop();
+        }
+        return count;
+    }
+
+    private boolean before(double a, double b) {
+        return max ? a > b : a < b;
+    }
+}
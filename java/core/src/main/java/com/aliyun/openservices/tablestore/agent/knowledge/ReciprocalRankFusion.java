@@ -0,0 +1,68 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merge of several rankings of the same documents by reciprocal rank fusion: a document scores {@code sum(1 / (k + rank))} over the
+ * rankings it appears in, rank starting at 1. It only uses the ranks, so rankings whose scores are not comparable (BM25 and vector
+ * similarity) are merged without normalizing them.
+ */
+public final class ReciprocalRankFusion {
+
+    /**
+     * The k of the original paper, it lowers the weight of the first ranks relative to the following ones.
+     */
+    public static final int DEFAULT_K = 60;
+
+    /**
+     * Max hits read from each search of a hybrid search, the limit of a full-text search request.
+     */
+    public static final int MAX_CANDIDATES = 100;
+
+    private ReciprocalRankFusion() {}
+
+    /**
+     * Candidates to read from each search of a hybrid search returning {@code topK} documents: more than returned, a document ranked low by
+     * one search can still make it with the other.
+     *
+     * @return {@code 2 * topK}, at most {@link #MAX_CANDIDATES}
+     */
+    public static int candidates(int topK) {
+        ValidationUtils.ensureBetween(topK, 1, MAX_CANDIDATES, "topK");
+        return Math.min(topK * 2, MAX_CANDIDATES);
+    }
+
+    /**
+     * @param rankings hits of each ranking, best first. A document is identified by (documentId, tenantId), the hit of the first ranking it
+     *                 appears in is returned
+     * @return the {@code topK} documents by fused score, best first, the score of a hit being its fused score
+     */
+    public static List<DocumentHit> fuse(List<List<DocumentHit>> rankings, int k, int topK) {
+        ValidationUtils.ensureBetween(k, 0, Integer.MAX_VALUE, "k");
+        ValidationUtils.ensureBetween(topK, 1, Integer.MAX_VALUE, "topK");
+        Map<Pair<String, String>, DocumentHit> fused = new LinkedHashMap<>();
+        for (List<DocumentHit> ranking : rankings) {
+            for (int i = 0; i < ranking.size(); i++) {
+                Document document = ranking.get(i).getDocument();
+                double score = 1.0 / (k + i + 1);
+                fused.merge(
+                    Pair.of(document.getDocumentId(), document.getTenantId()),
+                    new DocumentHit(document, score),
+                    (hit, other) -> hit.setScore(hit.getScore() + other.getScore())
+                );
+            }
+        }
+        List<DocumentHit> hits = new ArrayList<>(fused.values());
+        // stable, ties keep the order of the first ranking
+        hits.sort(Comparator.comparing(DocumentHit::getScore).reversed());
+        return new ArrayList<>(hits.subList(0, Math.min(topK, hits.size())));
+    }
+}
@@ -0,0 +1,24 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import java.util.List;
+
+/**
+ * Second stage of a vector search: the candidates of the approximate KNN search are scored again, for instance with the exact similarity
+ * of their embeddings and boosts computed from their metadata, and the best ones are returned.
+ *
+ * @see KnowledgeStore#vectorSearch(float[], int, int, java.util.Set, com.aliyun.openservices.tablestore.agent.model.filter.Filter, List,
+ * Reranker)
+ */
+public interface Reranker {
+
+    /**
+     * @param queryVector query of the vector search
+     * @param candidates  hits of the vector search, best first, their documents hold the columns requested by the search
+     * @param embeddings  embeddings of the candidates, the one of the i-th candidate is the {@code queryVector.length} values from
+     *                    {@code i * queryVector.length}
+     * @param topK        number of hits to return
+     * @return at most {@code topK} hits, best first, with their new scores
+     */
+    List<DocumentHit> rerank(float[] queryVector, List<DocumentHit> candidates, float[] embeddings, int topK);
+}
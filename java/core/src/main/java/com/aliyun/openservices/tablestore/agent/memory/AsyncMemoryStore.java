@@ -0,0 +1,167 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking counterpart of {@link MemoryStore}.
+ *
+ * <p>
+ * Every method returns immediately, the returned future is completed by the Tablestore async client once the request finishes. Argument
+ * validation still happens on the calling thread and throws {@link IllegalArgumentException} directly. Failures of the request itself
+ * complete the future exceptionally with a {@link RuntimeException} carrying the same message as the {@link MemoryStore} counterpart.
+ * </p>
+ * <p>
+ * Tables and indexes are not managed by this interface, use {@link MemoryStore#initTable()} and {@link MemoryStore#initSearchIndex()}.
+ * </p>
+ */
+public interface AsyncMemoryStore {
+
+    // <-------- Session related -------->
+
+    /**
+     * Insert (overwrite) a session
+     *
+     * @param session session object
+     * @return future completed when the session is written
+     */
+    CompletableFuture<Void> putSession(Session session);
+
+    /**
+     * Update a session.
+     *
+     * @param session session object
+     * @return future completed when the session is updated
+     */
+    CompletableFuture<Void> updateSession(Session session);
+
+    /**
+     * Delete a session
+     *
+     * @param userId    user ID
+     * @param sessionId session ID
+     * @return future completed when the session is deleted
+     */
+    CompletableFuture<Void> deleteSession(String userId, String sessionId);
+
+    /**
+     * Get a session
+     *
+     * @param userId    user ID
+     * @param sessionId session ID
+     * @return future of the session object, the value is null if the session does not exist
+     */
+    CompletableFuture<Session> getSession(String userId, String sessionId);
+
+    /**
+     * Paginate through recent session information using continuous pagination, sorted by session update time.
+     *
+     * @param userId                   user ID
+     * @param pageSize                 page size, range [1, 5000]
+     * @param metadataFilter           metadata filter condition. null means no restriction.
+     * @param inclusiveStartUpdateTime inclusive start update time. null means no restriction.
+     * @param inclusiveEndUpdateTime   inclusive end update time. null means no restriction.
+     * @param nextToken                pagination token. Pass the token from the previous query result to continue pagination.
+     * @param batchSize                internal batch size parameter. null or -1 starts adaptive batch size.
+     * @return future of the paginated session response
+     */
+    CompletableFuture<Response<Session>> listRecentSessionsPaginated(
+        String userId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        String nextToken,
+        Integer batchSize
+    );
+
+    /**
+     * Search sessions using search index. (Requires creation of search index)
+     *
+     * @param searchRequest search conditions {@link MemorySearchRequest}
+     * @return future of the session response
+     */
+    CompletableFuture<Response<Session>> searchSessions(MemorySearchRequest searchRequest);
+
+    // <-------- Message related-------->
+
+    /**
+     * Insert (overwrite) a message
+     *
+     * @param message message object
+     * @return future completed when the message is written
+     */
+    CompletableFuture<Void> putMessage(Message message);
+
+    /**
+     * Update a message.
+     *
+     * @param message message object
+     * @return future completed when the message is updated
+     */
+    CompletableFuture<Void> updateMessage(Message message);
+
+    /**
+     * Delete a message
+     *
+     * @param message message object
+     * @return future completed when the message is deleted
+     */
+    CompletableFuture<Void> deleteMessage(Message message);
+
+    /**
+     * Delete a message
+     *
+     * @param sessionId  session ID
+     * @param messageId  message ID
+     * @param createTime create time. (Optional parameter, setting it can improve deletion performance)
+     * @return future completed when the message is deleted
+     */
+    CompletableFuture<Void> deleteMessage(String sessionId, String messageId, Long createTime);
+
+    /**
+     * Get a message
+     *
+     * @param sessionId  session ID
+     * @param messageId  message ID
+     * @param createTime create time. (Optional parameter, setting it can improve performance)
+     * @return future of the message object, the value is null if the message does not exist
+     */
+    CompletableFuture<Message> getMessage(String sessionId, String messageId, Long createTime);
+
+    /**
+     * Paginate through messages using continuous pagination.
+     *
+     * @param sessionId                session ID
+     * @param pageSize                 page size, range [1, 5000]
+     * @param metadataFilter           metadata filter condition. null means no restriction.
+     * @param inclusiveStartCreateTime inclusive start create time. null means no restriction.
+     * @param inclusiveEndCreateTime   inclusive end create time. null means no restriction.
+     * @param order                    sort order. null defaults to descending order.
+     * @param nextToken                pagination token. Pass the token from the previous query result to continue pagination.
+     * @param batchSize                internal batch size parameter. null or -1 starts adaptive batch size.
+     * @return future of the paginated message response
+     */
+    CompletableFuture<Response<Message>> listMessagesPaginated(
+        String sessionId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        String nextToken,
+        Integer batchSize
+    );
+
+    /**
+     * Search messages using search index. (Requires creation of search index)
+     *
+     * @param searchRequest search conditions {@link MemorySearchRequest}
+     * @return future of the message response
+     */
+    CompletableFuture<Response<Message>> searchMessages(MemorySearchRequest searchRequest);
+}
@@ -0,0 +1,494 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.alicloud.openservices.tablestore.AsyncClientInterface;
+import com.alicloud.openservices.tablestore.TableStoreException;
+import com.alicloud.openservices.tablestore.model.Column;
+import com.alicloud.openservices.tablestore.model.Condition;
+import com.alicloud.openservices.tablestore.model.DeleteRowRequest;
+import com.alicloud.openservices.tablestore.model.GetRowRequest;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.PutRowRequest;
+import com.alicloud.openservices.tablestore.model.RowDeleteChange;
+import com.alicloud.openservices.tablestore.model.RowExistenceExpectation;
+import com.alicloud.openservices.tablestore.model.RowPutChange;
+import com.alicloud.openservices.tablestore.model.RowUpdateChange;
+import com.alicloud.openservices.tablestore.model.SingleRowQueryCriteria;
+import com.alicloud.openservices.tablestore.model.UpdateRowRequest;
+import com.alicloud.openservices.tablestore.model.search.SearchQuery;
+import com.alicloud.openservices.tablestore.model.search.SearchRequest;
+import com.alicloud.openservices.tablestore.model.search.query.Query;
+import com.alicloud.openservices.tablestore.model.search.sort.Sort;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * {@link AsyncMemoryStore} backed by the Tablestore {@link AsyncClientInterface}.
+ *
+ * <p>
+ * The table and index names must match the ones used by {@link MemoryStoreImpl}. An async client sharing the connection pool of an existing
+ * {@code SyncClient} can be obtained with {@code syncClient.asAsyncClient()}.
+ * </p>
+ */
+@Builder
+@Slf4j
+@Getter
+public class AsyncMemoryStoreImpl implements AsyncMemoryStore {
+
+    @NonNull
+    private final AsyncClientInterface client;
+    @Builder.Default
+    @NonNull
+    private String sessionTableName = "session";
+    @Builder.Default
+    @NonNull
+    private String sessionSecondaryIndexName = "session_secondary_index";
+    @Builder.Default
+    @NonNull
+    private String sessionSearchIndexName = "session_search_index_name";
+    @Builder.Default
+    @NonNull
+    private String messageTableName = "message";
+    @Builder.Default
+    @NonNull
+    private String messageSearchIndexName = "message_search_index";
+    @Builder.Default
+    @NonNull
+    private String messageSecondaryIndexName = "message_secondary_index";
+    /**
+     * Receives a record of each page read by the list methods and of each search request, see {@link StoreMetrics}.
+     */
+    @Builder.Default
+    @NonNull
+    private final StoreMetrics metrics = StoreMetrics.NOOP;
+
+    @Override
+    public CompletableFuture<Void> putSession(Session session) {
+        ValidationUtils.ensureNotNull(session, "session");
+        ValidationUtils.ensureNotNull(session.getUserId(), "userId");
+        ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
+
+        PrimaryKey primaryKey = TablestoreHelper.sessionPrimaryKey(session.getUserId(), session.getSessionId());
+        RowPutChange rowPutChange = new RowPutChange(sessionTableName, primaryKey);
+        rowPutChange.addColumns(TablestoreHelper.sessionToColumns(session));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new PutRowRequest(rowPutChange), client::putRow),
+            e -> String.format("put session:%s failed", session)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("put session:{}", session);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> updateSession(Session session) {
+        ValidationUtils.ensureNotNull(session, "session");
+        ValidationUtils.ensureNotNull(session.getUserId(), "userId");
+        ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
+
+        PrimaryKey primaryKey = TablestoreHelper.sessionPrimaryKey(session.getUserId(), session.getSessionId());
+        RowUpdateChange change = new RowUpdateChange(sessionTableName, primaryKey);
+        change.put(TablestoreHelper.sessionToColumns(session));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new UpdateRowRequest(change), client::updateRow),
+            e -> String.format("update session:%s failed", session)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("update session:{}", session);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteSession(String userId, String sessionId) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+
+        RowDeleteChange rowDeleteChange = new RowDeleteChange(sessionTableName, TablestoreHelper.sessionPrimaryKey(userId, sessionId));
+        rowDeleteChange.setCondition(new Condition(RowExistenceExpectation.IGNORE));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new DeleteRowRequest(rowDeleteChange), client::deleteRow),
+            e -> String.format("delete session failed, userId:%s, sessionId:%s", userId, sessionId)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("delete session, userId:{}, sessionId:{}", userId, sessionId);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Session> getSession(String userId, String sessionId) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+
+        SingleRowQueryCriteria criteria = new SingleRowQueryCriteria(sessionTableName, TablestoreHelper.sessionPrimaryKey(userId, sessionId));
+        criteria.setMaxVersions(1);
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new GetRowRequest(criteria), client::getRow),
+            e -> String.format("get session failed, userId:%s, sessionId:%s ", userId, sessionId)
+        ).thenApply(response -> {
+            Session session = TablestoreHelper.rowToSession(response.getRow());
+            if (log.isDebugEnabled()) {
+                log.debug("get session:{}", session);
+            }
+            return session;
+        });
+    }
+
+    @Override
+    public CompletableFuture<Response<Session>> listRecentSessionsPaginated(
+        String userId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        String nextToken,
+        Integer batchSize
+    ) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        if (inclusiveStartUpdateTime != null && inclusiveEndUpdateTime != null && inclusiveStartUpdateTime < inclusiveEndUpdateTime) {
+            throw Exceptions.illegalArgument(
+                "inclusiveStartUpdateTime must be greater than inclusiveEndUpdateTime, because the results are returned in reverse order of update time"
+            );
+        }
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId))
+            .addPrimaryKeyColumn(
+                Session.SESSION_UPDATE_TIME,
+                inclusiveStartUpdateTime == null ? PrimaryKeyValue.INF_MAX : PrimaryKeyValue.fromLong(inclusiveStartUpdateTime)
+            )
+            .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.INF_MAX)
+            .build();
+        if (nextToken != null) {
+            start = TablestoreHelper.decodeNextPrimaryKeyToken(nextToken);
+        }
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId))
+            .addPrimaryKeyColumn(
+                Session.SESSION_UPDATE_TIME,
+                inclusiveEndUpdateTime == null ? PrimaryKeyValue.INF_MIN : PrimaryKeyValue.fromLong(inclusiveEndUpdateTime)
+            )
+            .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.INF_MIN)
+            .build();
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.getRangeAsync(
+                client,
+                sessionSecondaryIndexName,
+                TablestoreHelper::rowToSession,
+                start,
+                end,
+                metadataFilter,
+                Order.DESC,
+                pageSize,
+                batchSize,
+                metrics
+            ),
+            e -> String.format("list recent sessions paginated failed, userId:%s, nextToken:%s", userId, nextToken)
+        ).thenApply(pair -> {
+            PrimaryKey nextStartPrimaryKey = pair.getRight();
+            String token = nextStartPrimaryKey == null ? null : TablestoreHelper.encodeNextPrimaryKeyToken(nextStartPrimaryKey);
+            return new Response<>(pair.getLeft(), token);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Response<Session>> searchSessions(MemorySearchRequest searchRequest) {
+        ValidationUtils.ensureNotNull(searchRequest, "MemorySearchRequest");
+        SearchRequest otsSearchRequest = toOtsSearchRequest(sessionTableName, sessionSearchIndexName, searchRequest);
+        return TablestoreHelper.wrapFailure(
+            StoreMetrics.requestAsync(metrics, sessionTableName, "Search", () -> TablestoreHelper.callAsync(otsSearchRequest, client::search), r -> r.getRows().size()),
+            e -> {
+                if (e instanceof TableStoreException) {
+                    return String.format("search sessions failed, request_id:%s, query:[%s]", ((TableStoreException) e).getRequestId(), searchRequest);
+                }
+                return String.format("search sessions failed, query:[%s]", searchRequest);
+            }
+        ).thenApply(searchResponse -> {
+            if (log.isDebugEnabled()) {
+                log.debug("search sessions:{}, request_id:{}", searchRequest, searchResponse.getRequestId());
+            }
+            Triple<List<Session>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(searchResponse, TablestoreHelper::rowToSession);
+            return new Response<>(triple.getLeft(), triple.getMiddle());
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> putMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(message.getCreateTime(), "createTime");
+
+        PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
+        RowPutChange rowPutChange = new RowPutChange(messageTableName, primaryKey);
+        rowPutChange.addColumns(TablestoreHelper.messageToColumns(message));
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.callAsync(new PutRowRequest(rowPutChange), client::putRow),
+            e -> String.format("put message:%s failed", message)
+        ).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("put message:{}", message);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> updateMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        return resolveCreateTime(message).thenCompose(createTime -> {
+            if (createTime == null) {
+                throw Exceptions.illegalArgument(
+                    "message is not exist because createTime is null and can't find in secondaryIndex, sessionId:%s, messageId:%s",
+                    message.getSessionId(),
+                    message.getMessageId()
+                );
+            }
+            message.setCreateTime(createTime);
+            PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), createTime, message.getMessageId());
+            RowUpdateChange change = new RowUpdateChange(messageTableName, primaryKey);
+            List<Column> columns = TablestoreHelper.messageToColumns(message);
+            change.put(columns);
+            return TablestoreHelper.wrapFailure(
+                TablestoreHelper.callAsync(new UpdateRowRequest(change), client::updateRow),
+                e -> String.format("update message:%s failed", message)
+            );
+        }).thenAccept(response -> {
+            if (log.isDebugEnabled()) {
+                log.debug("update message:{}", message);
+            }
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        return resolveCreateTime(message).thenCompose(createTime -> {
+            if (createTime == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            message.setCreateTime(createTime);
+            PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), createTime, message.getMessageId());
+            RowDeleteChange rowDeleteChange = new RowDeleteChange(messageTableName, primaryKey);
+            rowDeleteChange.setCondition(new Condition(RowExistenceExpectation.IGNORE));
+            return TablestoreHelper.wrapFailure(
+                TablestoreHelper.callAsync(new DeleteRowRequest(rowDeleteChange), client::deleteRow),
+                e -> String.format("delete message failed, message:%s", message)
+            ).thenAccept(response -> {
+                if (log.isDebugEnabled()) {
+                    log.debug("delete message:{}", message);
+                }
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<Void> deleteMessage(String sessionId, String messageId, Long createTime) {
+        return deleteMessage(new Message(sessionId, messageId, createTime));
+    }
+
+    @Override
+    public CompletableFuture<Message> getMessage(String sessionId, String messageId, Long createTime) {
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        ValidationUtils.ensureNotNull(messageId, "messageId");
+        return resolveCreateTime(new Message(sessionId, messageId, createTime)).thenCompose(resolvedCreateTime -> {
+            if (resolvedCreateTime == null) {
+                return CompletableFuture.completedFuture(null);
+            }
+            PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(sessionId, resolvedCreateTime, messageId);
+            SingleRowQueryCriteria criteria = new SingleRowQueryCriteria(messageTableName, primaryKey);
+            criteria.setMaxVersions(1);
+            return TablestoreHelper.wrapFailure(
+                TablestoreHelper.callAsync(new GetRowRequest(criteria), client::getRow),
+                e -> String.format("get message failed, sessionId:%s, createTime:%s, messageId:%s", sessionId, resolvedCreateTime, messageId)
+            ).thenApply(response -> {
+                Message message = TablestoreHelper.rowToMessage(response.getRow());
+                if (log.isDebugEnabled()) {
+                    log.debug("get message:{}", message);
+                }
+                return message;
+            });
+        });
+    }
+
+    @Override
+    public CompletableFuture<Response<Message>> listMessagesPaginated(
+        String sessionId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        String nextToken,
+        Integer batchSize
+    ) {
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        if (inclusiveStartCreateTime != null || inclusiveEndCreateTime != null) {
+            if (order == null) {
+                throw Exceptions.illegalArgument("order is required when inclusiveStartCreateTime or inclusiveEndCreateTime is specified");
+            }
+        } else {
+            if (order == null) {
+                order = Order.DESC;
+            }
+        }
+        if (inclusiveStartCreateTime != null && inclusiveEndCreateTime != null) {
+            if (Order.DESC.equals(order) && inclusiveStartCreateTime < inclusiveEndCreateTime) {
+                throw Exceptions.illegalArgument(
+                    "inclusiveStartUpdateTime must be greater than inclusiveEndUpdateTime, because the results are returned in reverse order of update time"
+                );
+            }
+
+            if (Order.ASC.equals(order) && inclusiveStartCreateTime > inclusiveEndCreateTime) {
+                throw Exceptions.illegalArgument(
+                    "inclusiveStartUpdateTime must be less than inclusiveEndUpdateTime, because the results are returned in order of update time"
+                );
+            }
+        }
+        PrimaryKeyValue constMin;
+        PrimaryKeyValue constMax;
+        if (Order.ASC.equals(order)) {
+            constMin = PrimaryKeyValue.INF_MIN;
+            constMax = PrimaryKeyValue.INF_MAX;
+        } else {
+            constMin = PrimaryKeyValue.INF_MAX;
+            constMax = PrimaryKeyValue.INF_MIN;
+        }
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, inclusiveStartCreateTime == null ? constMin : PrimaryKeyValue.fromLong(inclusiveStartCreateTime))
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, constMin)
+            .build();
+        if (nextToken != null) {
+            start = TablestoreHelper.decodeNextPrimaryKeyToken(nextToken);
+        }
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, inclusiveEndCreateTime == null ? constMax : PrimaryKeyValue.fromLong(inclusiveEndCreateTime))
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, constMax)
+            .build();
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.getRangeAsync(
+                client,
+                messageTableName,
+                TablestoreHelper::rowToMessage,
+                start,
+                end,
+                metadataFilter,
+                order,
+                pageSize,
+                batchSize,
+                metrics
+            ),
+            e -> String.format("list messages paginated failed, sessionId:%s, nextToken:%s", sessionId, nextToken)
+        ).thenApply(pair -> {
+            PrimaryKey nextStartPrimaryKey = pair.getRight();
+            String token = nextStartPrimaryKey == null ? null : TablestoreHelper.encodeNextPrimaryKeyToken(nextStartPrimaryKey);
+            return new Response<>(pair.getLeft(), token);
+        });
+    }
+
+    @Override
+    public CompletableFuture<Response<Message>> searchMessages(MemorySearchRequest searchRequest) {
+        ValidationUtils.ensureNotNull(searchRequest, "MemorySearchRequest");
+        SearchRequest otsSearchRequest = toOtsSearchRequest(messageTableName, messageSearchIndexName, searchRequest);
+        return TablestoreHelper.wrapFailure(
+            StoreMetrics.requestAsync(metrics, messageTableName, "Search", () -> TablestoreHelper.callAsync(otsSearchRequest, client::search), r -> r.getRows().size()),
+            e -> {
+                if (e instanceof TableStoreException) {
+                    return String.format("search messages failed, request_id:%s, query:[%s]", ((TableStoreException) e).getRequestId(), searchRequest);
+                }
+                return String.format("search messages failed, query:[%s]", searchRequest);
+            }
+        ).thenApply(searchResponse -> {
+            if (log.isDebugEnabled()) {
+                log.debug("search messages:{}, request_id:{}", searchRequest, searchResponse.getRequestId());
+            }
+            Triple<List<Message>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(searchResponse, TablestoreHelper::rowToMessage);
+            return new Response<>(triple.getLeft(), triple.getMiddle());
+        });
+    }
+
+    private SearchRequest toOtsSearchRequest(String tableName, String indexName, MemorySearchRequest searchRequest) {
+        Query query = TablestoreHelper.parserSearchFilters(searchRequest.getMetadataFilter());
+        Sort otsSort = TablestoreHelper.toOtsSort(searchRequest.getSorts());
+        byte[] nextToken = null;
+        if (searchRequest.getNextToken() != null) {
+            nextToken = Base64.getDecoder().decode(searchRequest.getNextToken());
+        }
+        SearchQuery searchQuery = SearchQuery.newBuilder()
+            .query(query)
+            .getTotalCount(false)
+            .limit(searchRequest.getLimit())
+            .offset(0)
+            .sort(otsSort)
+            .token(nextToken)
+            .build();
+        return SearchRequest.newBuilder().tableName(tableName).indexName(indexName).searchQuery(searchQuery).returnAllColumns(true).build();
+    }
+
+    private CompletableFuture<Long> resolveCreateTime(Message message) {
+        if (message.getCreateTime() != null) {
+            return CompletableFuture.completedFuture(message.getCreateTime());
+        }
+        String sessionId = message.getSessionId();
+        String messageId = message.getMessageId();
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(messageId))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MIN)
+            .build();
+
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(messageId))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MAX)
+            .build();
+        return TablestoreHelper.wrapFailure(
+            TablestoreHelper.getRangeAsync(
+                client,
+                messageSecondaryIndexName,
+                TablestoreHelper::rowToMessage,
+                start,
+                end,
+                null,
+                Order.ASC,
+                -1L,
+                null,
+                metrics
+            ),
+            e -> String.format("get message createTime from secondary index failed, sessionId:%s, messageId:%s", sessionId, messageId)
+        ).thenApply(pair -> {
+            List<Message> messages = pair.getLeft();
+            if (messages.size() == 1) {
+                return messages.get(0).getCreateTime();
+            } else if (messages.size() > 1) {
+                throw Exceptions.illegalArgument("message is not unique, sessionId:%s, messageId:%s, details messages:[%s]", sessionId, messageId, messages);
+            } else {
+                return null;
+            }
+        });
+    }
+}
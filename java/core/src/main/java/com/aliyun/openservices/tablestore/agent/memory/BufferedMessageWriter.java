@@ -0,0 +1,334 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.model.RowChange;
+import com.alicloud.openservices.tablestore.model.RowPutChange;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Write-behind appender of sessions and messages.
+ *
+ * <p>
+ * {@link #putMessage(Message)} and {@link #putSession(Session)} only queue the row, a background thread packs queued rows into BatchWriteRow
+ * requests of up to {@code maxBatchRows} rows. A batch is sent once it is full or {@code lingerMillis} after its first row was queued. The
+ * returned future completes when the row is acknowledged, or exceptionally if the row (or the whole request) failed.
+ * </p>
+ * <p>
+ * Rows are written in queue order. A row with the same primary key as a row already in the pending batch starts a new batch, so a later put
+ * of the same session or message always wins. When {@code maxBufferedRows} rows are queued, puts block until there is room again.
+ * </p>
+ * <p>
+ * The writer writes to the same tables as {@link MemoryStoreImpl}, rows are not visible to reads before they are acknowledged. Call
+ * {@link #flush()} to wait for everything queued so far and {@link #close()} to flush and stop the background thread.
+ * </p>
+ */
+@Slf4j
+public class BufferedMessageWriter implements AutoCloseable {
+
+    /**
+     * Max row count of a BatchWriteRow request.
+     */
+    public static final int MAX_BATCH_ROWS = 200;
+
+    private final SyncClientInterface client;
+    private final String sessionTableName;
+    private final String messageTableName;
+    private final int maxBatchRows;
+    private final long lingerNanos;
+    private final BlockingQueue<Entry> queue;
+    private final Thread flusher;
+    /**
+     * Held for read by the puts, from the check of {@link #closed} to the entry queued, and for write to close: every entry queued before
+     * close is ahead of the close marker and written by the flusher.
+     */
+    private final ReadWriteLock closeLock = new ReentrantReadWriteLock();
+    private boolean closed;
+
+    private final AtomicLong requestCount = new AtomicLong();
+    private final AtomicLong rowCount = new AtomicLong();
+    private final AtomicLong failedRowCount = new AtomicLong();
+
+    /**
+     * @param client           tablestore client, a {@code SyncClient} can be passed directly
+     * @param sessionTableName session table name, default "session"
+     * @param messageTableName message table name, default "message"
+     * @param maxBatchRows     max rows of a request, range [1, 200], default 200
+     * @param lingerMillis     max time a row waits for its batch to fill up, default 50 ms
+     * @param maxBufferedRows  max queued rows before puts block, default 10000
+     */
+    @Builder
+    private BufferedMessageWriter(
+        @NonNull SyncClientInterface client,
+        String sessionTableName,
+        String messageTableName,
+        Integer maxBatchRows,
+        Long lingerMillis,
+        Integer maxBufferedRows
+    ) {
+        this.client = client;
+        this.sessionTableName = sessionTableName == null ? "session" : sessionTableName;
+        this.messageTableName = messageTableName == null ? "message" : messageTableName;
+        this.maxBatchRows = ValidationUtils.ensureBetween(maxBatchRows == null ? MAX_BATCH_ROWS : maxBatchRows, 1, MAX_BATCH_ROWS, "maxBatchRows");
+        this.lingerNanos = TimeUnit.MILLISECONDS.toNanos(
+            ValidationUtils.ensureBetween(lingerMillis == null ? 50L : lingerMillis, 0L, Long.MAX_VALUE, "lingerMillis")
+        );
+        this.queue = new LinkedBlockingQueue<>(
+            ValidationUtils.ensureBetween(maxBufferedRows == null ? 10000 : maxBufferedRows, 1, Integer.MAX_VALUE, "maxBufferedRows")
+        );
+        this.flusher = new Thread(this::runFlusher, "tablestore-buffered-message-writer");
+        this.flusher.setDaemon(true);
+        this.flusher.start();
+    }
+
+    /**
+     * Queue a session put (overwrite).
+     *
+     * @param session session object
+     * @return future completed when the session is written
+     */
+    public CompletableFuture<Void> putSession(Session session) {
+        ValidationUtils.ensureNotNull(session, "session");
+        ValidationUtils.ensureNotNull(session.getUserId(), "userId");
+        ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
+
+        RowPutChange rowPutChange = new RowPutChange(sessionTableName, TablestoreHelper.sessionPrimaryKey(session.getUserId(), session.getSessionId()));
+        rowPutChange.addColumns(TablestoreHelper.sessionToColumns(session));
+        return enqueue(rowPutChange, session);
+    }
+
+    /**
+     * Queue a message put (overwrite).
+     *
+     * @param message message object
+     * @return future completed when the message is written
+     */
+    public CompletableFuture<Void> putMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(message.getCreateTime(), "createTime");
+
+        RowPutChange rowPutChange = new RowPutChange(
+            messageTableName,
+            TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId())
+        );
+        rowPutChange.addColumns(TablestoreHelper.messageToColumns(message));
+        return enqueue(rowPutChange, message);
+    }
+
+    /**
+     * Send the pending batch immediately and wait until every row queued before this call is acknowledged. Failed rows are reported through
+     * their own futures, not by this method.
+     */
+    public void flush() {
+        Entry marker = Entry.marker(false);
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            put(marker);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        marker.future.join();
+    }
+
+    /**
+     * Flush the queued rows and stop the background thread. Puts after close fail with {@link IllegalStateException}.
+     */
+    @Override
+    public void close() {
+        closeLock.writeLock().lock();
+        try {
+            if (closed) {
+                return;
+            }
+            closed = true;
+        } finally {
+            closeLock.writeLock().unlock();
+        }
+        // no put can be queued after the close marker
+        put(Entry.marker(true));
+        try {
+            flusher.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.runtimeThrowable("close buffered message writer interrupted", e);
+        }
+        log.info("buffered message writer closed, requests:{}, rows:{}, failed rows:{}", requestCount.get(), rowCount.get(), failedRowCount.get());
+    }
+
+    /**
+     * @return number of BatchWriteRow requests sent
+     */
+    public long getRequestCount() {
+        return requestCount.get();
+    }
+
+    /**
+     * @return number of rows sent, including failed ones
+     */
+    public long getRowCount() {
+        return rowCount.get();
+    }
+
+    /**
+     * @return number of rows whose write failed
+     */
+    public long getFailedRowCount() {
+        return failedRowCount.get();
+    }
+
+    private CompletableFuture<Void> enqueue(RowChange rowChange, Object item) {
+        Entry entry = new Entry(rowChange, item, false);
+        closeLock.readLock().lock();
+        try {
+            if (closed) {
+                throw new IllegalStateException("buffered message writer is closed");
+            }
+            put(entry);
+        } finally {
+            closeLock.readLock().unlock();
+        }
+        return entry.future;
+    }
+
+    private void put(Entry entry) {
+        try {
+            queue.put(entry);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw Exceptions.runtimeThrowable("buffered message writer interrupted while waiting for room in the queue", e);
+        }
+    }
+
+    private void runFlusher() {
+        List<Entry> batch = new ArrayList<>(maxBatchRows);
+        Set<String> batchKeys = new HashSet<>();
+        Entry next = null;
+        while (true) {
+            Entry entry = next != null ? next : take();
+            next = null;
+            long deadline = System.nanoTime() + lingerNanos;
+            while (entry != null && entry.rowChange != null) {
+                if (!batchKeys.add(entry.key())) {
+                    next = entry;
+                    entry = null;
+                    break;
+                }
+                batch.add(entry);
+                if (batch.size() >= maxBatchRows) {
+                    entry = null;
+                    break;
+                }
+                entry = poll(deadline - System.nanoTime());
+            }
+            if (!batch.isEmpty()) {
+                write(batch);
+                batch.clear();
+                batchKeys.clear();
+            }
+            if (entry != null) {
+                entry.future.complete(null);
+                if (entry.close) {
+                    return;
+                }
+            }
+        }
+    }
+
+    private Entry take() {
+        while (true) {
+            try {
+                return queue.take();
+            } catch (InterruptedException e) {
+                log.warn("buffered message writer flusher interrupted, ignored");
+            }
+        }
+    }
+
+    private Entry poll(long timeoutNanos) {
+        try {
+            return timeoutNanos > 0 ? queue.poll(timeoutNanos, TimeUnit.NANOSECONDS) : queue.poll();
+        } catch (InterruptedException e) {
+            log.warn("buffered message writer flusher interrupted, ignored");
+            return null;
+        }
+    }
+
+    private void write(List<Entry> batch) {
+        List<RowChange> rowChanges = new ArrayList<>(batch.size());
+        for (Entry entry : batch) {
+            rowChanges.add(entry.rowChange);
+        }
+        requestCount.incrementAndGet();
+        rowCount.addAndGet(batch.size());
+        Map<Integer, String> failures;
+        try {
+            failures = TablestoreHelper.batchWriteRow(client, rowChanges);
+        } catch (Exception e) {
+            log.warn("buffered batch write failed, rows:{}", batch.size(), e);
+            failedRowCount.addAndGet(batch.size());
+            RuntimeException exception = Exceptions.runtimeThrowable("batch write failed", e);
+            for (Entry entry : batch) {
+                entry.future.completeExceptionally(exception);
+            }
+            return;
+        }
+        if (!failures.isEmpty()) {
+            log.warn("buffered batch write partially failed, rows:{}, failed rows:{}", batch.size(), failures.size());
+            failedRowCount.addAndGet(failures.size());
+        }
+        for (int i = 0; i < batch.size(); i++) {
+            Entry entry = batch.get(i);
+            String error = failures.get(i);
+            if (error == null) {
+                entry.future.complete(null);
+            } else {
+                entry.future.completeExceptionally(Exceptions.runtime("put %s failed, failed msg:[%s]", entry.item, error));
+            }
+        }
+    }
+
+    private static class Entry {
+        private final RowChange rowChange;
+        private final Object item;
+        private final boolean close;
+        private final CompletableFuture<Void> future = new CompletableFuture<>();
+
+        private Entry(RowChange rowChange, Object item, boolean close) {
+            this.rowChange = rowChange;
+            this.item = item;
+            this.close = close;
+        }
+
+        private static Entry marker(boolean close) {
+            return new Entry(null, null, close);
+        }
+
+        private String key() {
+            return rowChange.getTableName() + rowChange.getPrimaryKey().jsonize();
+        }
+    }
+}
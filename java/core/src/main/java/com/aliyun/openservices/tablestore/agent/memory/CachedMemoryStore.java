@@ -0,0 +1,478 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * {@link MemoryStore} decorator keeping recently read sessions in process.
+ *
+ * <p>
+ * {@link #getSession(String, String)} is served from an {@link LruCache} keyed by (userId, sessionId), misses are loaded from the delegate.
+ * Session writes go to the delegate first and then invalidate the cached entry, so a reader of this store never sees a session older than
+ * its own writes. Writes made by other processes (or through another store on the same tables) are visible after {@code sessionTtlMillis}
+ * at most.
+ * </p>
+ *
+ * <p>
+ * The newest {@code messageTailSize} messages of recently used sessions are kept as well, they serve the
+ * {@code listMessages(sessionId, null, null, null, Order.DESC, maxCount, batchSize)} reads an agent makes every turn to build its context.
+ * The tail is loaded by the first such read and then patched by the message writes made through this store, so it assumes the messages of
+ * a session are written by this process only: a session written elsewhere is only reloaded once idle for {@code messageTailIdleMillis},
+ * set {@code messageTailSize} to 0 to disable the tail cache. Other methods are passed to the delegate unchanged.
+ * </p>
+ */
+public class CachedMemoryStore implements MemoryStore {
+
+    private final MemoryStore delegate;
+    private final LruCache<Pair<String, String>, Session> sessionCache;
+
+    /**
+     * Null when disabled.
+     */
+    private final MessageTailCache messageTailCache;
+
+    /**
+     * Incremented after every session write and before its invalidation, a session loaded while a write completed is not cached as it may
+     * be stale, see {@link LruCache#putUnless}.
+     */
+    private final AtomicLong sessionWrites = new AtomicLong();
+
+    /**
+     * @param delegate              the store reading and writing Tablestore, usually a {@link MemoryStoreImpl}
+     * @param maxSessions           max cached sessions, default 10000
+     * @param sessionTtlMillis      time a cached session is served without reading the table, default 60000 ms
+     * @param messageTailSize       max cached messages of a session, 0 to disable the tail cache, default 100
+     * @param maxTailMessages       max cached messages of all the sessions, the least recently used sessions are evicted, default 100000
+     * @param messageTailIdleMillis time after which the tail of a session not read nor written is dropped, default 600000 ms
+     * @param metrics               receives the statistics of the caches, default none
+     */
+    @Builder
+    private CachedMemoryStore(
+        @NonNull MemoryStore delegate,
+        Integer maxSessions,
+        Long sessionTtlMillis,
+        Integer messageTailSize,
+        Long maxTailMessages,
+        Long messageTailIdleMillis,
+        StoreMetrics metrics
+    ) {
+        this.delegate = delegate;
+        this.sessionCache = LruCache.<Pair<String, String>, Session>builder()
+            .maxSize(maxSessions == null ? 10000 : maxSessions)
+            .ttlMillis(sessionTtlMillis == null ? 60_000L : sessionTtlMillis)
+            .build();
+        int tailSize = ValidationUtils.ensureBetween(messageTailSize == null ? 100 : messageTailSize, 0, 5000, "messageTailSize");
+        this.messageTailCache = tailSize == 0
+            ? null
+            : new MessageTailCache(
+                tailSize,
+                maxTailMessages == null ? 100_000L : maxTailMessages,
+                messageTailIdleMillis == null ? 600_000L : messageTailIdleMillis,
+                null
+            );
+        if (metrics != null) {
+            metrics.registerCache("memory.session", sessionCache::stats);
+            if (messageTailCache != null) {
+                metrics.registerCache("memory.message_tail", messageTailCache::stats);
+            }
+        }
+    }
+
+    /**
+     * @return hit, miss, eviction and expiration counts of the session cache
+     */
+    public LruCache.Stats getSessionCacheStats() {
+        return sessionCache.stats();
+    }
+
+    /**
+     * @return hits and misses of the message reads the tail cache can serve, sessions evicted for {@code maxTailMessages} and sessions
+     *         dropped when idle, or null if the tail cache is disabled
+     */
+    public LruCache.Stats getMessageTailCacheStats() {
+        return messageTailCache == null ? null : messageTailCache.stats();
+    }
+
+    @Override
+    public void putSession(Session session) {
+        try {
+            delegate.putSession(session);
+        } finally {
+            sessionWrites.incrementAndGet();
+            invalidateSession(session);
+        }
+    }
+
+    @Override
+    public void updateSession(Session session) {
+        try {
+            delegate.updateSession(session);
+        } finally {
+            sessionWrites.incrementAndGet();
+            invalidateSession(session);
+        }
+    }
+
+    @Override
+    public void deleteSession(String userId, String sessionId) {
+        try {
+            delegate.deleteSession(userId, sessionId);
+        } finally {
+            sessionWrites.incrementAndGet();
+            sessionCache.invalidate(Pair.of(userId, sessionId));
+        }
+    }
+
+    @Override
+    public void deleteSessions(String userId) {
+        try {
+            delegate.deleteSessions(userId);
+        } finally {
+            sessionWrites.incrementAndGet();
+            sessionCache.invalidateIf(key -> key.getLeft().equals(userId));
+        }
+    }
+
+    @Override
+    public void deleteSessionAndMessages(String userId, String sessionId) {
+        try {
+            delegate.deleteSessionAndMessages(userId, sessionId);
+        } finally {
+            // the delegate deletes all the sessions of the user
+            sessionWrites.incrementAndGet();
+            sessionCache.invalidateIf(key -> key.getLeft().equals(userId));
+            invalidateTail(sessionId);
+        }
+    }
+
+    @Override
+    public void deleteAllSessions() {
+        try {
+            delegate.deleteAllSessions();
+        } finally {
+            sessionWrites.incrementAndGet();
+            sessionCache.invalidateAll();
+        }
+    }
+
+    @Override
+    public Session getSession(String userId, String sessionId) {
+        Pair<String, String> key = Pair.of(userId, sessionId);
+        Session cached = sessionCache.get(key);
+        if (cached != null) {
+            return copy(cached);
+        }
+        long writes = sessionWrites.get();
+        Session session = delegate.getSession(userId, sessionId);
+        if (session != null) {
+            sessionCache.putUnless(key, copy(session), () -> sessionWrites.get() != writes);
+        }
+        return session;
+    }
+
+    @Override
+    public List<Session> getSessions(List<Pair<String, String>> keys) {
+        List<Session> sessions = new ArrayList<>(keys.size());
+        List<Integer> missIndexes = new ArrayList<>();
+        List<Pair<String, String>> missKeys = new ArrayList<>();
+        for (Pair<String, String> key : keys) {
+            Session cached = sessionCache.get(key);
+            if (cached == null) {
+                missIndexes.add(sessions.size());
+                missKeys.add(key);
+            }
+            sessions.add(cached == null ? null : copy(cached));
+        }
+        if (missKeys.isEmpty()) {
+            return sessions;
+        }
+        long writes = sessionWrites.get();
+        List<Session> loaded = delegate.getSessions(missKeys);
+        for (int i = 0; i < missIndexes.size(); i++) {
+            Session session = loaded.get(i);
+            sessions.set(missIndexes.get(i), session);
+            if (session != null) {
+                sessionCache.putUnless(missKeys.get(i), copy(session), () -> sessionWrites.get() != writes);
+            }
+        }
+        return sessions;
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions() {
+        return delegate.listAllSessions();
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions(int parallelism) {
+        return delegate.listAllSessions(parallelism);
+    }
+
+    @Override
+    public Stream<Session> streamAllSessions() {
+        return delegate.streamAllSessions();
+    }
+
+    @Override
+    public Iterator<Session> listSessions(String userId, Filter metadataFilter, Long maxCount, Integer batchSize) {
+        return delegate.listSessions(userId, metadataFilter, maxCount, batchSize);
+    }
+
+    @Override
+    public Iterator<Session> listRecentSessions(
+        String userId,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        Long maxCount,
+        Integer batchSize
+    ) {
+        return delegate.listRecentSessions(userId, metadataFilter, inclusiveStartUpdateTime, inclusiveEndUpdateTime, maxCount, batchSize);
+    }
+
+    @Override
+    public Response<Session> listRecentSessionsPaginated(
+        String userId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        String nextToken,
+        Integer batchSize
+    ) {
+        return delegate.listRecentSessionsPaginated(
+            userId,
+            pageSize,
+            metadataFilter,
+            inclusiveStartUpdateTime,
+            inclusiveEndUpdateTime,
+            nextToken,
+            batchSize
+        );
+    }
+
+    @Override
+    public Response<Session> searchSessions(MemorySearchRequest searchRequest) {
+        return delegate.searchSessions(searchRequest);
+    }
+
+    @Override
+    public void putMessage(Message message) {
+        try {
+            delegate.putMessage(message);
+        } catch (RuntimeException e) {
+            // the row may have been written
+            invalidateTail(message == null ? null : message.getSessionId());
+            throw e;
+        }
+        if (messageTailCache != null) {
+            messageTailCache.add(message);
+        }
+    }
+
+    @Override
+    public void updateMessage(Message message) {
+        try {
+            delegate.updateMessage(message);
+        } catch (RuntimeException e) {
+            invalidateTail(message == null ? null : message.getSessionId());
+            throw e;
+        }
+        if (messageTailCache != null) {
+            messageTailCache.update(message);
+        }
+    }
+
+    @Override
+    public void deleteMessage(Message message) {
+        try {
+            delegate.deleteMessage(message);
+        } catch (RuntimeException e) {
+            invalidateTail(message == null ? null : message.getSessionId());
+            throw e;
+        }
+        if (messageTailCache != null) {
+            messageTailCache.remove(message.getSessionId(), message.getMessageId());
+        }
+    }
+
+    @Override
+    public void deleteMessage(String sessionId, String messageId, Long createTime) {
+        try {
+            delegate.deleteMessage(sessionId, messageId, createTime);
+        } catch (RuntimeException e) {
+            invalidateTail(sessionId);
+            throw e;
+        }
+        if (messageTailCache != null) {
+            messageTailCache.remove(sessionId, messageId);
+        }
+    }
+
+    @Override
+    public void deleteMessages(String sessionId) {
+        try {
+            delegate.deleteMessages(sessionId);
+        } finally {
+            invalidateTail(sessionId);
+        }
+    }
+
+    @Override
+    public void deleteAllMessages() {
+        try {
+            delegate.deleteAllMessages();
+        } finally {
+            if (messageTailCache != null) {
+                messageTailCache.invalidateAll();
+            }
+        }
+    }
+
+    @Override
+    public Message getMessage(String sessionId, String messageId, Long createTime) {
+        return delegate.getMessage(sessionId, messageId, createTime);
+    }
+
+    @Override
+    public List<Message> getMessages(List<Triple<String, String, Long>> keys) {
+        return delegate.getMessages(keys);
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages() {
+        return delegate.listAllMessages();
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages(int parallelism) {
+        return delegate.listAllMessages(parallelism);
+    }
+
+    @Override
+    public Stream<Message> streamAllMessages() {
+        return delegate.streamAllMessages();
+    }
+
+    @Override
+    public Iterator<Message> listMessages(String sessionId) {
+        return delegate.listMessages(sessionId);
+    }
+
+    @Override
+    public Iterator<Message> listMessages(
+        String sessionId,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        Long maxCount,
+        Integer batchSize
+    ) {
+        boolean tailQuery = messageTailCache != null
+            && sessionId != null
+            && metadataFilter == null
+            && inclusiveStartCreateTime == null
+            && inclusiveEndCreateTime == null
+            && (order == null || Order.DESC.equals(order))
+            && maxCount != null
+            && maxCount > 0
+            && maxCount <= messageTailCache.getTailSize();
+        if (!tailQuery) {
+            return delegate.listMessages(sessionId, metadataFilter, inclusiveStartCreateTime, inclusiveEndCreateTime, order, maxCount, batchSize);
+        }
+        List<Message> cached = messageTailCache.get(sessionId, maxCount);
+        if (cached != null) {
+            return cached.iterator();
+        }
+        long writeCount = messageTailCache.writeCount();
+        List<Message> messages = new ArrayList<>();
+        delegate.listMessages(sessionId, null, null, null, Order.DESC, maxCount, batchSize).forEachRemaining(messages::add);
+        messageTailCache.load(sessionId, messages, maxCount, writeCount);
+        return messages.iterator();
+    }
+
+    @Override
+    public Response<Message> listMessagesPaginated(
+        String sessionId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        String nextToken,
+        Integer batchSize
+    ) {
+        return delegate.listMessagesPaginated(
+            sessionId,
+            pageSize,
+            metadataFilter,
+            inclusiveStartCreateTime,
+            inclusiveEndCreateTime,
+            order,
+            nextToken,
+            batchSize
+        );
+    }
+
+    @Override
+    public Response<Message> searchMessages(MemorySearchRequest searchRequest) {
+        return delegate.searchMessages(searchRequest);
+    }
+
+    @Override
+    public void initTable() {
+        delegate.initTable();
+    }
+
+    @Override
+    public void initSearchIndex() {
+        delegate.initSearchIndex();
+    }
+
+    @Override
+    public void deleteTableAndIndex() {
+        try {
+            delegate.deleteTableAndIndex();
+        } finally {
+            sessionWrites.incrementAndGet();
+            sessionCache.invalidateAll();
+            if (messageTailCache != null) {
+                messageTailCache.invalidateAll();
+            }
+        }
+    }
+
+    private void invalidateTail(String sessionId) {
+        if (messageTailCache != null && sessionId != null) {
+            messageTailCache.invalidate(sessionId);
+        }
+    }
+
+    private void invalidateSession(Session session) {
+        if (session != null) {
+            sessionCache.invalidate(Pair.of(session.getUserId(), session.getSessionId()));
+        }
+    }
+
+    private static Session copy(Session session) {
+        Metadata metadata = session.getMetadata() == null ? null : new Metadata(session.getMetadata().toMap());
+        return new Session(session.getUserId(), session.getSessionId(), session.getUpdateTime(), metadata);
+    }
+}
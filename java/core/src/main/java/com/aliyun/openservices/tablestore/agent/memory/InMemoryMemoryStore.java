@@ -0,0 +1,787 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.sort.FieldSort;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.model.sort.ScoreSort;
+import com.aliyun.openservices.tablestore.agent.model.sort.Sort;
+import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.FilterMatcher;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * {@link MemoryStore} keeping its sessions and messages in process, for tests, local development and benchmarks of the code around a store.
+ *
+ * <p>
+ * It has the semantics of {@link MemoryStoreImpl} over its tables and indexes: sessions are listed by (userId, sessionId) and recent
+ * sessions by descending (updateTime, sessionId) as in the secondary index, messages by (sessionId, createTime, messageId), an update
+ * merges the metadata into the stored one, the metadata filters of the list methods are those of a GetRange and the ones of the search
+ * methods those of a search index (see {@link FilterMatcher}), and the pagination tokens of the list methods have the format of the next
+ * primary key tokens. The values read back are the ones Tablestore would return: integers as longs and floats as doubles.
+ * </p>
+ *
+ * <p>
+ * The rows are kept in concurrent skip list maps, one per user for the sessions and one per session for the messages, so reads take no
+ * lock and writes of different users or sessions don't contend. The writes of a user's sessions, or of a session's messages, take one of
+ * a fixed set of locks to keep the primary and index maps consistent. The objects passed in and returned are copies, a caller modifying
+ * them doesn't change the store. Search hits have no relevance score: a {@link ScoreSort} keeps the primary key order, and the search
+ * tokens are offsets in the sorted hits, which are computed again for each page.
+ * </p>
+ */
+public class InMemoryMemoryStore implements MemoryStore {
+
+    private static final Comparator<Pair<Long, String>> TIME_ORDER = Comparator.<Pair<Long, String>, Long>comparing(Pair::getLeft)
+        .thenComparing(Pair::getRight, Comparator.nullsFirst(Comparator.naturalOrder()));
+
+    private static final int LOCK_STRIPES = 64;
+
+    /**
+     * userId to sessionId to session, the session table
+     */
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<String, Session>> sessions = new ConcurrentSkipListMap<>();
+
+    /**
+     * userId to (updateTime, sessionId) to session, the session secondary index
+     */
+    private final ConcurrentMap<String, ConcurrentSkipListMap<Pair<Long, String>, Session>> recentSessions = new ConcurrentHashMap<>();
+
+    /**
+     * sessionId to (createTime, messageId) to message, the message table
+     */
+    private final ConcurrentSkipListMap<String, ConcurrentSkipListMap<Pair<Long, String>, Message>> messages = new ConcurrentSkipListMap<>();
+
+    /**
+     * (sessionId, messageId) to createTimes, the message secondary index
+     */
+    private final ConcurrentMap<Pair<String, String>, ConcurrentSkipListSet<Long>> messageCreateTimes = new ConcurrentHashMap<>();
+
+    private final Object[] locks = new Object[LOCK_STRIPES];
+
+    public InMemoryMemoryStore() {
+        for (int i = 0; i < locks.length; i++) {
+            locks[i] = new Object();
+        }
+    }
+
+    @Override
+    public void putSession(Session session) {
+        ValidationUtils.ensureNotNull(session, "session");
+        ValidationUtils.ensureNotNull(session.getUserId(), "userId");
+        ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
+
+        Session stored = new Session(session.getUserId(), session.getSessionId(), session.getUpdateTime(), normalize(session.getMetadata()));
+        synchronized (lock(session.getUserId())) {
+            writeSession(stored);
+        }
+    }
+
+    @Override
+    public void updateSession(Session session) {
+        ValidationUtils.ensureNotNull(session, "session");
+        ValidationUtils.ensureNotNull(session.getUserId(), "userId");
+        ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
+
+        synchronized (lock(session.getUserId())) {
+            ConcurrentSkipListMap<String, Session> userSessions = sessions.get(session.getUserId());
+            Session old = userSessions == null ? null : userSessions.get(session.getSessionId());
+            Metadata metadata = merge(old == null ? null : old.getMetadata(), session.getMetadata());
+            writeSession(new Session(session.getUserId(), session.getSessionId(), session.getUpdateTime(), metadata));
+        }
+    }
+
+    private void writeSession(Session stored) {
+        Session old = sessions.computeIfAbsent(stored.getUserId(), k -> new ConcurrentSkipListMap<>()).put(stored.getSessionId(), stored);
+        ConcurrentSkipListMap<Pair<Long, String>, Session> index = recentSessions.computeIfAbsent(
+            stored.getUserId(),
+            k -> new ConcurrentSkipListMap<>(TIME_ORDER)
+        );
+        index.put(Pair.of(stored.getUpdateTime(), stored.getSessionId()), stored);
+        if (old != null && !old.getUpdateTime().equals(stored.getUpdateTime())) {
+            index.remove(Pair.of(old.getUpdateTime(), old.getSessionId()));
+        }
+    }
+
+    @Override
+    public void deleteSession(String userId, String sessionId) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+
+        synchronized (lock(userId)) {
+            ConcurrentSkipListMap<String, Session> userSessions = sessions.get(userId);
+            Session old = userSessions == null ? null : userSessions.remove(sessionId);
+            if (old == null) {
+                return;
+            }
+            recentSessions.get(userId).remove(Pair.of(old.getUpdateTime(), sessionId));
+            if (userSessions.isEmpty()) {
+                sessions.remove(userId);
+                recentSessions.remove(userId);
+            }
+        }
+    }
+
+    @Override
+    public void deleteSessions(String userId) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        synchronized (lock(userId)) {
+            sessions.remove(userId);
+            recentSessions.remove(userId);
+        }
+    }
+
+    @Override
+    public void deleteSessionAndMessages(String userId, String sessionId) {
+        // same as MemoryStoreImpl
+        deleteSessions(userId);
+        deleteMessages(sessionId);
+    }
+
+    @Override
+    public void deleteAllSessions() {
+        for (String userId : sessions.keySet()) {
+            deleteSessions(userId);
+        }
+    }
+
+    @Override
+    public Session getSession(String userId, String sessionId) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        ConcurrentSkipListMap<String, Session> userSessions = sessions.get(userId);
+        return copy(userSessions == null ? null : userSessions.get(sessionId));
+    }
+
+    @Override
+    public List<Session> getSessions(List<Pair<String, String>> keys) {
+        ValidationUtils.ensureNotNull(keys, "keys");
+        for (Pair<String, String> key : keys) {
+            ValidationUtils.ensureNotNull(key.getLeft(), "userId");
+            ValidationUtils.ensureNotNull(key.getRight(), "sessionId");
+        }
+        List<Session> result = new ArrayList<>(keys.size());
+        for (Pair<String, String> key : keys) {
+            result.add(getSession(key.getLeft(), key.getRight()));
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions() {
+        return sessions.values().stream().flatMap(m -> m.values().stream()).map(InMemoryMemoryStore::copy).iterator();
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions(int parallelism) {
+        ValidationUtils.ensureBetween(parallelism, 1, 256, "parallelism");
+        return new CloseableIterator<>(listAllSessions());
+    }
+
+    @Override
+    public Stream<Session> streamAllSessions() {
+        return sessions.values().parallelStream().flatMap(m -> m.values().stream()).map(InMemoryMemoryStore::copy);
+    }
+
+    @Override
+    public Iterator<Session> listSessions(String userId, Filter metadataFilter, Long maxCount, Integer batchSize) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        Predicate<Function<String, Object>> filter = FilterMatcher.compileTableFilter(metadataFilter);
+        ConcurrentSkipListMap<String, Session> userSessions = sessions.get(userId);
+        if (userSessions == null) {
+            return Stream.<Session>empty().iterator();
+        }
+        Stream<Session> stream = userSessions.values().stream().filter(s -> filter.test(name -> sessionColumn(s, name)));
+        return limit(stream, maxCount).map(InMemoryMemoryStore::copy).iterator();
+    }
+
+    @Override
+    public Iterator<Session> listRecentSessions(
+        String userId,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        Long maxCount,
+        Integer batchSize
+    ) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        checkUpdateTimeRange(inclusiveStartUpdateTime, inclusiveEndUpdateTime);
+        Predicate<Function<String, Object>> filter = FilterMatcher.compileTableFilter(metadataFilter);
+        NavigableMap<Pair<Long, String>, Session> range = timeRange(
+            recentSessions.get(userId),
+            inclusiveEndUpdateTime,
+            inclusiveStartUpdateTime,
+            Order.DESC
+        );
+        Stream<Session> stream = range.values().stream().filter(s -> filter.test(name -> sessionColumn(s, name)));
+        return limit(stream, maxCount).map(InMemoryMemoryStore::copy).iterator();
+    }
+
+    @Override
+    public Response<Session> listRecentSessionsPaginated(
+        String userId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        String nextToken,
+        Integer batchSize
+    ) {
+        ValidationUtils.ensureNotNull(userId, "userId");
+        checkUpdateTimeRange(inclusiveStartUpdateTime, inclusiveEndUpdateTime);
+        Predicate<Function<String, Object>> filter = FilterMatcher.compileTableFilter(metadataFilter);
+        NavigableMap<Pair<Long, String>, Session> range = timeRange(
+            recentSessions.get(userId),
+            inclusiveEndUpdateTime,
+            inclusiveStartUpdateTime,
+            Order.DESC
+        );
+        if (nextToken != null) {
+            PrimaryKey start = TablestoreHelper.decodeNextPrimaryKeyToken(nextToken);
+            range = range.tailMap(
+                Pair.of(
+                    start.getPrimaryKeyColumn(Session.SESSION_UPDATE_TIME).getValue().asLong(),
+                    start.getPrimaryKeyColumn(Session.SESSION_SESSION_ID).getValue().asString()
+                ),
+                true
+            );
+        }
+        Pair<List<Session>, Session> page = page(range.values().iterator(), s -> filter.test(name -> sessionColumn(s, name)), pageSize);
+        String token = null;
+        if (page.getRight() != null) {
+            token = TablestoreHelper.encodeNextPrimaryKeyToken(
+                PrimaryKeyBuilder.createPrimaryKeyBuilder()
+                    .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId))
+                    .addPrimaryKeyColumn(Session.SESSION_UPDATE_TIME, PrimaryKeyValue.fromLong(page.getRight().getUpdateTime()))
+                    .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(page.getRight().getSessionId()))
+                    .build()
+            );
+        }
+        return new Response<>(page.getLeft().stream().map(InMemoryMemoryStore::copy).collect(Collectors.toList()), token);
+    }
+
+    @Override
+    public Response<Session> searchSessions(MemorySearchRequest searchRequest) {
+        ValidationUtils.ensureNotNull(searchRequest, "MemorySearchRequest");
+        Stream<Session> rows = sessions.values().stream().flatMap(m -> m.values().stream());
+        return search(rows, searchRequest, s -> name -> sessionField(s, name), InMemoryMemoryStore::copy);
+    }
+
+    @Override
+    public void putMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        ValidationUtils.ensureGreaterThanAndEqualZero(message.getCreateTime(), "createTime");
+
+        Message stored = new Message(
+            message.getSessionId(),
+            message.getMessageId(),
+            message.getCreateTime(),
+            message.getContent(),
+            normalize(message.getMetadata())
+        );
+        synchronized (lock(message.getSessionId())) {
+            writeMessage(stored);
+        }
+    }
+
+    @Override
+    public void updateMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        synchronized (lock(message.getSessionId())) {
+            if (message.getCreateTime() == null) {
+                Long createTimeFromSecondaryIndex = resolveMessageCreateTime(message.getSessionId(), message.getMessageId());
+                if (createTimeFromSecondaryIndex == null) {
+                    throw Exceptions.illegalArgument(
+                        "message is not exist because createTime is null and can't find in secondaryIndex, sessionId:%s, messageId:%s",
+                        message.getSessionId(),
+                        message.getMessageId()
+                    );
+                }
+                message.setCreateTime(createTimeFromSecondaryIndex);
+            }
+            ConcurrentSkipListMap<Pair<Long, String>, Message> sessionMessages = messages.get(message.getSessionId());
+            Message old = sessionMessages == null ? null : sessionMessages.get(Pair.of(message.getCreateTime(), message.getMessageId()));
+            writeMessage(
+                new Message(
+                    message.getSessionId(),
+                    message.getMessageId(),
+                    message.getCreateTime(),
+                    message.getContent() != null || old == null ? message.getContent() : old.getContent(),
+                    merge(old == null ? null : old.getMetadata(), message.getMetadata())
+                )
+            );
+        }
+    }
+
+    private void writeMessage(Message stored) {
+        messages.computeIfAbsent(stored.getSessionId(), k -> new ConcurrentSkipListMap<>(TIME_ORDER))
+            .put(Pair.of(stored.getCreateTime(), stored.getMessageId()), stored);
+        messageCreateTimes.computeIfAbsent(Pair.of(stored.getSessionId(), stored.getMessageId()), k -> new ConcurrentSkipListSet<>())
+            .add(stored.getCreateTime());
+    }
+
+    @Override
+    public void deleteMessage(Message message) {
+        ValidationUtils.ensureNotNull(message, "message");
+        ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
+        ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
+        synchronized (lock(message.getSessionId())) {
+            if (message.getCreateTime() == null) {
+                Long createTimeFromSecondaryIndex = resolveMessageCreateTime(message.getSessionId(), message.getMessageId());
+                if (createTimeFromSecondaryIndex == null) {
+                    return;
+                }
+                message.setCreateTime(createTimeFromSecondaryIndex);
+            }
+            ConcurrentSkipListMap<Pair<Long, String>, Message> sessionMessages = messages.get(message.getSessionId());
+            if (sessionMessages == null || sessionMessages.remove(Pair.of(message.getCreateTime(), message.getMessageId())) == null) {
+                return;
+            }
+            Pair<String, String> indexKey = Pair.of(message.getSessionId(), message.getMessageId());
+            ConcurrentSkipListSet<Long> createTimes = messageCreateTimes.get(indexKey);
+            createTimes.remove(message.getCreateTime());
+            if (createTimes.isEmpty()) {
+                messageCreateTimes.remove(indexKey);
+            }
+            if (sessionMessages.isEmpty()) {
+                messages.remove(message.getSessionId());
+            }
+        }
+    }
+
+    @Override
+    public void deleteMessage(String sessionId, String messageId, Long createTime) {
+        Message message = new Message(sessionId, messageId, createTime);
+        deleteMessage(message);
+    }
+
+    @Override
+    public void deleteMessages(String sessionId) {
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        synchronized (lock(sessionId)) {
+            ConcurrentSkipListMap<Pair<Long, String>, Message> sessionMessages = messages.remove(sessionId);
+            if (sessionMessages != null) {
+                for (Pair<Long, String> key : sessionMessages.keySet()) {
+                    messageCreateTimes.remove(Pair.of(sessionId, key.getRight()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void deleteAllMessages() {
+        for (String sessionId : messages.keySet()) {
+            deleteMessages(sessionId);
+        }
+    }
+
+    @Override
+    public Message getMessage(String sessionId, String messageId, Long createTime) {
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        ValidationUtils.ensureNotNull(messageId, "messageId");
+        if (createTime == null) {
+            createTime = resolveMessageCreateTime(sessionId, messageId);
+            if (createTime == null) {
+                return null;
+            }
+        }
+        ConcurrentSkipListMap<Pair<Long, String>, Message> sessionMessages = messages.get(sessionId);
+        return copy(sessionMessages == null ? null : sessionMessages.get(Pair.of(createTime, messageId)));
+    }
+
+    @Override
+    public List<Message> getMessages(List<Triple<String, String, Long>> keys) {
+        ValidationUtils.ensureNotNull(keys, "keys");
+        for (Triple<String, String, Long> key : keys) {
+            ValidationUtils.ensureNotNull(key.getLeft(), "sessionId");
+            ValidationUtils.ensureNotNull(key.getMiddle(), "messageId");
+        }
+        List<Message> result = new ArrayList<>(keys.size());
+        for (Triple<String, String, Long> key : keys) {
+            result.add(getMessage(key.getLeft(), key.getMiddle(), key.getRight()));
+        }
+        return result;
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages() {
+        return messages.values().stream().flatMap(m -> m.values().stream()).map(InMemoryMemoryStore::copy).iterator();
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages(int parallelism) {
+        ValidationUtils.ensureBetween(parallelism, 1, 256, "parallelism");
+        return new CloseableIterator<>(listAllMessages());
+    }
+
+    @Override
+    public Stream<Message> streamAllMessages() {
+        return messages.values().parallelStream().flatMap(m -> m.values().stream()).map(InMemoryMemoryStore::copy);
+    }
+
+    @Override
+    public Iterator<Message> listMessages(String sessionId) {
+        return listMessages(sessionId, null, null, null, Order.ASC, null, null);
+    }
+
+    @Override
+    public Iterator<Message> listMessages(
+        String sessionId,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        Long maxCount,
+        Integer batchSize
+    ) {
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        order = checkCreateTimeRange(inclusiveStartCreateTime, inclusiveEndCreateTime, order);
+        Predicate<Function<String, Object>> filter = FilterMatcher.compileTableFilter(metadataFilter);
+        NavigableMap<Pair<Long, String>, Message> range = messageRange(sessionId, inclusiveStartCreateTime, inclusiveEndCreateTime, order);
+        Stream<Message> stream = range.values().stream().filter(m -> filter.test(name -> messageColumn(m, name)));
+        return limit(stream, maxCount).map(InMemoryMemoryStore::copy).iterator();
+    }
+
+    @Override
+    public Response<Message> listMessagesPaginated(
+        String sessionId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        String nextToken,
+        Integer batchSize
+    ) {
+        ValidationUtils.ensureNotNull(sessionId, "sessionId");
+        order = checkCreateTimeRange(inclusiveStartCreateTime, inclusiveEndCreateTime, order);
+        Predicate<Function<String, Object>> filter = FilterMatcher.compileTableFilter(metadataFilter);
+        NavigableMap<Pair<Long, String>, Message> range = messageRange(sessionId, inclusiveStartCreateTime, inclusiveEndCreateTime, order);
+        if (nextToken != null) {
+            PrimaryKey start = TablestoreHelper.decodeNextPrimaryKeyToken(nextToken);
+            range = range.tailMap(
+                Pair.of(
+                    start.getPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME).getValue().asLong(),
+                    start.getPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID).getValue().asString()
+                ),
+                true
+            );
+        }
+        Pair<List<Message>, Message> page = page(range.values().iterator(), m -> filter.test(name -> messageColumn(m, name)), pageSize);
+        String token = null;
+        if (page.getRight() != null) {
+            token = TablestoreHelper.encodeNextPrimaryKeyToken(
+                TablestoreHelper.messagePrimaryKey(sessionId, page.getRight().getCreateTime(), page.getRight().getMessageId())
+            );
+        }
+        return new Response<>(page.getLeft().stream().map(InMemoryMemoryStore::copy).collect(Collectors.toList()), token);
+    }
+
+    @Override
+    public Response<Message> searchMessages(MemorySearchRequest searchRequest) {
+        ValidationUtils.ensureNotNull(searchRequest, "MemorySearchRequest");
+        Stream<Message> rows = messages.values().stream().flatMap(m -> m.values().stream());
+        return search(rows, searchRequest, m -> name -> messageField(m, name), InMemoryMemoryStore::copy);
+    }
+
+    /**
+     * Nothing to create in memory.
+     */
+    @Override
+    public void initTable() {}
+
+    /**
+     * Nothing to create in memory.
+     */
+    @Override
+    public void initSearchIndex() {}
+
+    /**
+     * Drop all sessions and messages.
+     */
+    @Override
+    public void deleteTableAndIndex() {
+        deleteAllSessions();
+        deleteAllMessages();
+    }
+
+    private Object lock(String key) {
+        return locks[(key.hashCode() & Integer.MAX_VALUE) % locks.length];
+    }
+
+    private Long resolveMessageCreateTime(String sessionId, String messageId) {
+        ConcurrentSkipListSet<Long> createTimes = messageCreateTimes.get(Pair.of(sessionId, messageId));
+        List<Long> found = createTimes == null ? new ArrayList<>() : new ArrayList<>(createTimes);
+        if (found.size() == 1) {
+            return found.get(0);
+        } else if (found.size() > 1) {
+            throw Exceptions.illegalArgument("message is not unique, sessionId:%s, messageId:%s, createTimes:%s", sessionId, messageId, found);
+        } else {
+            return null;
+        }
+    }
+
+    private NavigableMap<Pair<Long, String>, Message> messageRange(String sessionId, Long inclusiveStart, Long inclusiveEnd, Order order) {
+        if (Order.ASC.equals(order)) {
+            return timeRange(messages.get(sessionId), inclusiveStart, inclusiveEnd, order);
+        }
+        return timeRange(messages.get(sessionId), inclusiveEnd, inclusiveStart, order);
+    }
+
+    /**
+     * @param map   rows by (time, id), may be null
+     * @param lower inclusive lower time, null for no bound
+     * @param upper inclusive upper time, null for no bound
+     * @param order order of the returned view
+     */
+    private static <T> NavigableMap<Pair<Long, String>, T> timeRange(
+        ConcurrentSkipListMap<Pair<Long, String>, T> map,
+        Long lower,
+        Long upper,
+        Order order
+    ) {
+        NavigableMap<Pair<Long, String>, T> range = map == null ? new ConcurrentSkipListMap<>(TIME_ORDER) : map;
+        if (lower != null) {
+            range = range.tailMap(Pair.of(lower, null), true);
+        }
+        if (upper != null && upper < Long.MAX_VALUE) {
+            range = range.headMap(Pair.of(upper + 1, null), false);
+        }
+        return Order.ASC.equals(order) ? range : range.descendingMap();
+    }
+
+    private static void checkUpdateTimeRange(Long inclusiveStartUpdateTime, Long inclusiveEndUpdateTime) {
+        if (inclusiveStartUpdateTime != null && inclusiveEndUpdateTime != null && inclusiveStartUpdateTime < inclusiveEndUpdateTime) {
+            throw Exceptions.illegalArgument(
+                "inclusiveStartUpdateTime must be greater than inclusiveEndUpdateTime, because the results are returned in reverse order of update time"
+            );
+        }
+    }
+
+    private static Order checkCreateTimeRange(Long inclusiveStartCreateTime, Long inclusiveEndCreateTime, Order order) {
+        if (inclusiveStartCreateTime != null || inclusiveEndCreateTime != null) {
+            if (order == null) {
+                throw Exceptions.illegalArgument("order is required when inclusiveStartCreateTime or inclusiveEndCreateTime is specified");
+            }
+        } else if (order == null) {
+            order = Order.DESC;
+        }
+        if (inclusiveStartCreateTime != null && inclusiveEndCreateTime != null) {
+            if (Order.DESC.equals(order) && inclusiveStartCreateTime < inclusiveEndCreateTime) {
+                throw Exceptions.illegalArgument(
+                    "inclusiveStartUpdateTime must be greater than inclusiveEndUpdateTime, because the results are returned in reverse order of update time"
+                );
+            }
+            if (Order.ASC.equals(order) && inclusiveStartCreateTime > inclusiveEndCreateTime) {
+                throw Exceptions.illegalArgument(
+                    "inclusiveStartUpdateTime must be less than inclusiveEndUpdateTime, because the results are returned in order of update time"
+                );
+            }
+        }
+        return order;
+    }
+
+    /**
+     * @param maxCount null or not positive for all, as the iterators of {@link MemoryStoreImpl}
+     */
+    private static <T> Stream<T> limit(Stream<T> stream, Long maxCount) {
+        return maxCount == null || maxCount <= 0 ? stream : stream.limit(maxCount);
+    }
+
+    /**
+     * @return the first {@code pageSize} rows matching the filter (all if not positive) and the next matching row, null if none
+     */
+    private static <T> Pair<List<T>, T> page(Iterator<T> rows, Predicate<T> filter, int pageSize) {
+        List<T> hits = new ArrayList<>();
+        while (rows.hasNext()) {
+            T row = rows.next();
+            if (!filter.test(row)) {
+                continue;
+            }
+            if (pageSize > 0 && hits.size() >= pageSize) {
+                return Pair.of(hits, row);
+            }
+            hits.add(row);
+        }
+        return Pair.of(hits, null);
+    }
+
+    private static <T> Response<T> search(
+        Stream<T> rows,
+        MemorySearchRequest searchRequest,
+        Function<T, Function<String, Object>> fields,
+        Function<T, T> copy
+    ) {
+        Predicate<Function<String, Object>> query = FilterMatcher.compileSearchFilter(searchRequest.getMetadataFilter());
+        List<T> hits = rows.filter(row -> query.test(fields.apply(row))).collect(Collectors.toList());
+        if (searchRequest.getSorts() != null && !searchRequest.getSorts().isEmpty()) {
+            Comparator<T> comparator = (a, b) -> 0;
+            for (Sort sort : searchRequest.getSorts()) {
+                if (sort instanceof FieldSort) {
+                    comparator = comparator.thenComparing(fieldOrder((FieldSort) sort, fields));
+                } else if (!(sort instanceof ScoreSort)) {
+                    throw Exceptions.illegalArgument("unsupported sorter type:%s, sorter:%s", sort.getClass(), sort);
+                }
+            }
+            // stable, ties keep the primary key order
+            hits.sort(comparator);
+        }
+        int offset = 0;
+        if (searchRequest.getNextToken() != null) {
+            try {
+                offset = Integer.parseInt(new String(Base64.getDecoder().decode(searchRequest.getNextToken()), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                throw Exceptions.illegalArgument("invalid nextToken:%s", searchRequest.getNextToken());
+            }
+        }
+        int from = Math.min(offset, hits.size());
+        int to = (int) Math.min((long) from + searchRequest.getLimit(), hits.size());
+        String nextToken = to < hits.size() ? Base64.getEncoder().encodeToString(String.valueOf(to).getBytes(StandardCharsets.UTF_8)) : null;
+        return new Response<>(hits.subList(from, to).stream().map(copy).collect(Collectors.toList()), nextToken);
+    }
+
+    /**
+     * Rows without the field are last in both orders, rows whose fields are not comparable are equal.
+     */
+    private static <T> Comparator<T> fieldOrder(FieldSort sort, Function<T, Function<String, Object>> fields) {
+        boolean desc = !Order.ASC.equals(sort.getOrder());
+        return (a, b) -> {
+            Object x = fields.apply(a).apply(sort.getField());
+            Object y = fields.apply(b).apply(sort.getField());
+            if (x == null || y == null) {
+                return x == null ? (y == null ? 0 : 1) : -1;
+            }
+            Integer c = FilterMatcher.compareValues(FilterMatcher.normalize(x), FilterMatcher.normalize(y));
+            if (c == null) {
+                return 0;
+            }
+            return desc ? -c : c;
+        };
+    }
+
+    private static Object sessionColumn(Session session, String name) {
+        return Session.SESSION_UPDATE_TIME.equals(name) ? session.getUpdateTime() : session.getMetadata().get(name);
+    }
+
+    private static Object sessionField(Session session, String name) {
+        if (Session.SESSION_USER_ID.equals(name)) {
+            return session.getUserId();
+        } else if (Session.SESSION_SESSION_ID.equals(name)) {
+            return session.getSessionId();
+        }
+        return sessionColumn(session, name);
+    }
+
+    private static Object messageColumn(Message message, String name) {
+        return Message.MESSAGE_CONTENT.equals(name) ? message.getContent() : message.getMetadata().get(name);
+    }
+
+    private static Object messageField(Message message, String name) {
+        if (Message.MESSAGE_SESSION_ID.equals(name)) {
+            return message.getSessionId();
+        } else if (Message.MESSAGE_MESSAGE_ID.equals(name)) {
+            return message.getMessageId();
+        } else if (Message.MESSAGE_CREATE_TIME.equals(name)) {
+            return message.getCreateTime();
+        }
+        return messageColumn(message, name);
+    }
+
+    /**
+     * @return the metadata as read back from a row
+     */
+    private static Metadata normalize(Metadata metadata) {
+        Metadata normalized = new Metadata();
+        if (metadata != null) {
+            for (Map.Entry<String, Object> entry : metadata.toMap().entrySet()) {
+                normalized.putObject(entry.getKey(), FilterMatcher.normalize(entry.getValue()));
+            }
+        }
+        return normalized;
+    }
+
+    /**
+     * @return the stored metadata with the columns of the update overwritten, as an UpdateRow puts them
+     */
+    private static Metadata merge(Metadata stored, Metadata update) {
+        Map<String, Object> merged = stored == null ? new HashMap<>() : stored.toMap();
+        merged.putAll(normalize(update).toMap());
+        return new Metadata(merged);
+    }
+
+    private static Session copy(Session session) {
+        if (session == null) {
+            return null;
+        }
+        return new Session(session.getUserId(), session.getSessionId(), session.getUpdateTime(), session.getMetadata().copy());
+    }
+
+    private static Message copy(Message message) {
+        if (message == null) {
+            return null;
+        }
+        return new Message(
+            message.getSessionId(),
+            message.getMessageId(),
+            message.getCreateTime(),
+            message.getContent(),
+            message.getMetadata().copy()
+        );
+    }
+
+    /**
+     * The iterators of the parallel list methods are {@link AutoCloseable}, there is nothing to release here.
+     */
+    private static final class CloseableIterator<T> implements Iterator<T>, AutoCloseable {
+
+        private final Iterator<T> delegate;
+
+        private CloseableIterator(Iterator<T> delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public boolean hasNext() {
+            return delegate.hasNext();
+        }
+
+        @Override
+        public T next() {
+            return delegate.next();
+        }
+
+        @Override
+        public void close() {}
+    }
+}
@@ -5,7 +5,15 @@ import com.aliyun.openservices.tablestore.agent.model.Response;
 import com.aliyun.openservices.tablestore.agent.model.Session;
 import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
 import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public interface MemoryStore {
 
@@ -62,6 +70,21 @@ public interface MemoryStore {
      */
     Session getSession(String userId, String sessionId);
 
+    /**
+     * Get multiple sessions, with concurrent BatchGetRow requests. The default implementation gets them one by one with
+     * {@link #getSession(String, String)}.
+     *
+     * @param keys (user ID, session ID) of the sessions
+     * @return session objects in the order of the keys, null for the sessions that don't exist
+     */
+    default List<Session> getSessions(List<Pair<String, String>> keys) {
+        List<Session> sessions = new ArrayList<>(keys.size());
+        for (Pair<String, String> key : keys) {
+            sessions.add(getSession(key.getLeft(), key.getRight()));
+        }
+        return sessions;
+    }
+
     /**
      * List all sessions
      *
@@ -69,6 +92,28 @@ public interface MemoryStore {
      */
     Iterator<Session> listAllSessions();
 
+    /**
+     * List all sessions, scanning the ranges of the table returned by ComputeSplitsBySize concurrently. Sessions of different ranges are
+     * interleaved. The iterator is also {@link AutoCloseable}, it should be exhausted or closed to release its threads at once, an
+     * iterator dropped before that releases them when it is garbage collected. The default implementation is {@link #listAllSessions()}.
+     *
+     * @param parallelism number of concurrent range scans
+     * @return iterator over session objects
+     */
+    default Iterator<Session> listAllSessions(int parallelism) {
+        return listAllSessions();
+    }
+
+    /**
+     * Parallel stream of all sessions, each range of the table returned by ComputeSplitsBySize is read by the thread processing it. The
+     * default implementation is a sequential stream of {@link #listAllSessions()}.
+     *
+     * @return stream of session objects
+     */
+    default Stream<Session> streamAllSessions() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listAllSessions(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /**
      * List sessions for a specific user.
      *
@@ -184,6 +229,21 @@ public interface MemoryStore {
      */
     Message getMessage(String sessionId, String messageId, Long createTime);
 
+    /**
+     * Get multiple messages, with concurrent BatchGetRow requests. The create times not set are looked up in the secondary index first,
+     * concurrently as well. The default implementation gets them one by one with {@link #getMessage(String, String, Long)}.
+     *
+     * @param keys (session ID, message ID, create time) of the messages, the create time is optional but setting it saves a lookup
+     * @return message objects in the order of the keys, null for the messages that don't exist
+     */
+    default List<Message> getMessages(List<Triple<String, String, Long>> keys) {
+        List<Message> messages = new ArrayList<>(keys.size());
+        for (Triple<String, String, Long> key : keys) {
+            messages.add(getMessage(key.getLeft(), key.getMiddle(), key.getRight()));
+        }
+        return messages;
+    }
+
     /**
      * List all messages
      *
@@ -191,6 +251,28 @@ public interface MemoryStore {
      */
     Iterator<Message> listAllMessages();
 
+    /**
+     * List all messages, scanning the ranges of the table returned by ComputeSplitsBySize concurrently. Messages of different ranges are
+     * interleaved. The iterator is also {@link AutoCloseable}, it should be exhausted or closed to release its threads at once, an
+     * iterator dropped before that releases them when it is garbage collected. The default implementation is {@link #listAllMessages()}.
+     *
+     * @param parallelism number of concurrent range scans
+     * @return iterator over message objects
+     */
+    default Iterator<Message> listAllMessages(int parallelism) {
+        return listAllMessages();
+    }
+
+    /**
+     * Parallel stream of all messages, each range of the table returned by ComputeSplitsBySize is read by the thread processing it. The
+     * default implementation is a sequential stream of {@link #listAllMessages()}.
+     *
+     * @return stream of message objects
+     */
+    default Stream<Message> streamAllMessages() {
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(listAllMessages(), Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
     /**
      * List all messages for a session
      *
@@ -2,8 +2,8 @@ package com.aliyun.openservices.tablestore.agent.memory;
 
 import com.alicloud.openservices.tablestore.SyncClient;
 import com.alicloud.openservices.tablestore.TableStoreException;
+import com.alicloud.openservices.tablestore.core.ErrorCode;
 import com.alicloud.openservices.tablestore.model.Column;
-import com.alicloud.openservices.tablestore.model.ColumnValue;
 import com.alicloud.openservices.tablestore.model.Condition;
 import com.alicloud.openservices.tablestore.model.DeleteRowRequest;
 import com.alicloud.openservices.tablestore.model.GetRowRequest;
@@ -26,6 +26,8 @@ import com.alicloud.openservices.tablestore.model.search.SearchQuery;
 import com.alicloud.openservices.tablestore.model.search.SearchRequest;
 import com.alicloud.openservices.tablestore.model.search.SearchResponse;
 import com.alicloud.openservices.tablestore.model.search.query.Query;
+import com.alicloud.openservices.tablestore.model.search.query.QueryBuilders;
+import com.alicloud.openservices.tablestore.model.search.query.TermsQuery;
 import com.alicloud.openservices.tablestore.model.search.sort.Sort;
 import com.aliyun.openservices.tablestore.agent.model.Message;
 import com.aliyun.openservices.tablestore.agent.model.MetaType;
@@ -35,7 +37,11 @@ import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
 import com.aliyun.openservices.tablestore.agent.model.sort.Order;
 import com.aliyun.openservices.tablestore.agent.util.CollectionUtil;
 import com.aliyun.openservices.tablestore.agent.util.Exceptions;
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.OperationLog;
 import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.ParallelRangeScanner;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
 import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
 import com.aliyun.openservices.tablestore.agent.util.Triple;
 import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
@@ -43,48 +49,125 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import lombok.AccessLevel;
 import lombok.Builder;
 import lombok.Getter;
 import lombok.NonNull;
 import lombok.extern.slf4j.Slf4j;
 
-@Builder
 @Slf4j
 @Getter
 public class MemoryStoreImpl implements MemoryStore {
 
-    @NonNull
+    /**
+     * Messages whose createTime is looked up by a Search request, the max rows of a Search response.
+     */
+    private static final int SEARCH_CREATE_TIME_BATCH_SIZE = 100;
+
     private final SyncClient client;
-    @Builder.Default
-    @NonNull
-    private String sessionTableName = "session";
-    @Builder.Default
-    @NonNull
-    private String sessionSecondaryIndexName = "session_secondary_index";
-    @Builder.Default
-    @NonNull
-    private List<Pair<String, MetaType>> sessionSecondaryIndexMeta = Collections.emptyList();
-    @Builder.Default
-    @NonNull
-    private String sessionSearchIndexName = "session_search_index_name";
-    @Builder.Default
-    @NonNull
-    private List<FieldSchema> sessionSearchIndexSchema = Collections.emptyList();
-    @Builder.Default
-    @NonNull
-    private String messageTableName = "message";
-    @Builder.Default
-    @NonNull
-    private String messageSearchIndexName = "message_search_index";
-    @Builder.Default
-    @NonNull
-    private String messageSecondaryIndexName = "message_secondary_index";
-    @Builder.Default
-    @NonNull
-    private List<FieldSchema> messageSearchIndexSchema = Collections.emptyList();
+    private final String sessionTableName;
+    private final String sessionSecondaryIndexName;
+    private final List<Pair<String, MetaType>> sessionSecondaryIndexMeta;
+    private final String sessionSearchIndexName;
+    private final List<FieldSchema> sessionSearchIndexSchema;
+    private final String messageTableName;
+    private final String messageSearchIndexName;
+    private final String messageSecondaryIndexName;
+    private final List<FieldSchema> messageSearchIndexSchema;
+    /**
+     * Let the iterators returned by the list methods request the next page in the background while the current one is consumed. It saves a
+     * round trip per page for consumers reading many pages, at the cost of one page of memory and possibly one unused request.
+     */
+    private final Boolean enableRangePrefetch;
+    /**
+     * BatchGetRow requests of {@code getSessions} and {@code getMessages} sent at a time, a request reads 100 rows.
+     */
+    private final Integer batchGetParallelism;
+    /**
+     * Max (sessionId, messageId) to createTime entries remembered from the messages written, read, listed and searched, so that updating,
+     * deleting or getting a recently seen message without its createTime skips the secondary index lookup. 0 to disable.
+     */
+    private final Integer messageCreateTimeCacheSize;
+    /**
+     * Receives a record of each page read by the list methods and of each search request, see {@link StoreMetrics}.
+     */
+    private final StoreMetrics metrics;
+    /**
+     * Logs the requests of a sample of the list and search calls and the slow ones, with their arguments and request id.
+     */
+    private final OperationLog operationLog;
+
+    @Getter(AccessLevel.NONE)
+    private final LruCache<Pair<String, String>, Long> messageCreateTimeCache;
+
+    /**
+     * @param client                     tablestore client
+     * @param sessionTableName           session table name, default "session"
+     * @param sessionSecondaryIndexName  session secondary index name, default "session_secondary_index"
+     * @param sessionSecondaryIndexMeta  session columns of the secondary index, default none
+     * @param sessionSearchIndexName     session search index name, default "session_search_index_name"
+     * @param sessionSearchIndexSchema   session search index fields, default none
+     * @param messageTableName           message table name, default "message"
+     * @param messageSearchIndexName     message search index name, default "message_search_index"
+     * @param messageSecondaryIndexName  message secondary index name, default "message_secondary_index"
+     * @param messageSearchIndexSchema   message search index fields, default none
+     * @param enableRangePrefetch        default false
+     * @param batchGetParallelism        default {@link TablestoreHelper#DEFAULT_BATCH_GET_PARALLELISM}
+     * @param messageCreateTimeCacheSize range [0, Integer.MAX_VALUE], default 10000
+     * @param metrics                    default {@link StoreMetrics#NOOP}
+     * @param operationLog               default {@link OperationLog#DEFAULT}
+     */
+    @Builder
+    private MemoryStoreImpl(
+        @NonNull SyncClient client,
+        String sessionTableName,
+        String sessionSecondaryIndexName,
+        List<Pair<String, MetaType>> sessionSecondaryIndexMeta,
+        String sessionSearchIndexName,
+        List<FieldSchema> sessionSearchIndexSchema,
+        String messageTableName,
+        String messageSearchIndexName,
+        String messageSecondaryIndexName,
+        List<FieldSchema> messageSearchIndexSchema,
+        Boolean enableRangePrefetch,
+        Integer batchGetParallelism,
+        Integer messageCreateTimeCacheSize,
+        StoreMetrics metrics,
+        OperationLog operationLog
+    ) {
+        this.client = client;
+        this.sessionTableName = sessionTableName == null ? "session" : sessionTableName;
+        this.sessionSecondaryIndexName = sessionSecondaryIndexName == null ? "session_secondary_index" : sessionSecondaryIndexName;
+        this.sessionSecondaryIndexMeta = sessionSecondaryIndexMeta == null ? Collections.emptyList() : sessionSecondaryIndexMeta;
+        this.sessionSearchIndexName = sessionSearchIndexName == null ? "session_search_index_name" : sessionSearchIndexName;
+        this.sessionSearchIndexSchema = sessionSearchIndexSchema == null ? Collections.emptyList() : sessionSearchIndexSchema;
+        this.messageTableName = messageTableName == null ? "message" : messageTableName;
+        this.messageSearchIndexName = messageSearchIndexName == null ? "message_search_index" : messageSearchIndexName;
+        this.messageSecondaryIndexName = messageSecondaryIndexName == null ? "message_secondary_index" : messageSecondaryIndexName;
+        this.messageSearchIndexSchema = messageSearchIndexSchema == null ? Collections.emptyList() : messageSearchIndexSchema;
+        this.enableRangePrefetch = enableRangePrefetch != null && enableRangePrefetch;
+        this.batchGetParallelism = batchGetParallelism == null ? TablestoreHelper.DEFAULT_BATCH_GET_PARALLELISM : batchGetParallelism;
+        this.messageCreateTimeCacheSize = ValidationUtils.ensureBetween(
+            messageCreateTimeCacheSize == null ? 10000 : messageCreateTimeCacheSize,
+            0,
+            Integer.MAX_VALUE,
+            "messageCreateTimeCacheSize"
+        );
+        this.metrics = metrics == null ? StoreMetrics.NOOP : metrics;
+        this.operationLog = operationLog == null ? OperationLog.DEFAULT : operationLog;
+        if (this.messageCreateTimeCacheSize == 0) {
+            this.messageCreateTimeCache = null;
+        } else {
+            this.messageCreateTimeCache = LruCache.<Pair<String, String>, Long>builder().maxSize(this.messageCreateTimeCacheSize).build();
+            this.metrics.registerCache("memory.message_create_time", messageCreateTimeCache::stats);
+        }
+    }
 
     @Override
     public void putSession(Session session) {
@@ -93,13 +176,9 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
         ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(session.getUserId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(session.getSessionId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.sessionPrimaryKey(session.getUserId(), session.getSessionId());
         RowPutChange rowPutChange = new RowPutChange(sessionTableName, primaryKey);
-        List<Column> columns = TablestoreHelper.metadataToColumns(session.getMetadata());
-        columns.add(new Column(Session.SESSION_UPDATE_TIME, ColumnValue.fromLong(session.getUpdateTime())));
+        List<Column> columns = TablestoreHelper.sessionToColumns(session);
         rowPutChange.addColumns(columns);
         try {
             client.putRow(new PutRowRequest(rowPutChange));
@@ -118,13 +197,9 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(session.getSessionId(), "sessionId");
         ValidationUtils.ensureGreaterThanAndEqualZero(session.getUpdateTime(), "updateTime");
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(session.getUserId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(session.getSessionId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.sessionPrimaryKey(session.getUserId(), session.getSessionId());
         RowUpdateChange change = new RowUpdateChange(sessionTableName, primaryKey);
-        List<Column> columns = TablestoreHelper.metadataToColumns(session.getMetadata());
-        columns.add(new Column(Session.SESSION_UPDATE_TIME, ColumnValue.fromLong(session.getUpdateTime())));
+        List<Column> columns = TablestoreHelper.sessionToColumns(session);
         change.put(columns);
         try {
             client.updateRow(new UpdateRowRequest(change));
@@ -141,10 +216,7 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(userId, "userId");
         ValidationUtils.ensureNotNull(sessionId, "sessionId");
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId));
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(sessionId));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.sessionPrimaryKey(userId, sessionId);
 
         RowDeleteChange rowDeleteChange = new RowDeleteChange(sessionTableName, primaryKey);
         rowDeleteChange.setCondition(new Condition(RowExistenceExpectation.IGNORE));
@@ -177,7 +249,16 @@ public class MemoryStoreImpl implements MemoryStore {
     @Override
     public void deleteAllSessions() {
         log.info("delete all sessions");
-        TablestoreHelper.batchDelete(client, sessionTableName, listAllSessions());
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.INF_MIN)
+            .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.INF_MIN)
+            .build();
+
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.INF_MAX)
+            .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.INF_MAX)
+            .build();
+        TablestoreHelper.batchDeleteRange(client, sessionTableName, start, end);
     }
 
     @Override
@@ -185,10 +266,7 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(userId, "userId");
         ValidationUtils.ensureNotNull(sessionId, "sessionId");
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId));
-        primaryKeyBuilder.addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(sessionId));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.sessionPrimaryKey(userId, sessionId);
 
         SingleRowQueryCriteria criteria = new SingleRowQueryCriteria(sessionTableName, primaryKey);
         criteria.setMaxVersions(1);
@@ -205,6 +283,22 @@ public class MemoryStoreImpl implements MemoryStore {
         }
     }
 
+    @Override
+    public List<Session> getSessions(List<Pair<String, String>> keys) {
+        ValidationUtils.ensureNotNull(keys, "keys");
+        List<PrimaryKey> primaryKeys = new ArrayList<>(keys.size());
+        for (Pair<String, String> key : keys) {
+            ValidationUtils.ensureNotNull(key.getLeft(), "userId");
+            ValidationUtils.ensureNotNull(key.getRight(), "sessionId");
+            primaryKeys.add(TablestoreHelper.sessionPrimaryKey(key.getLeft(), key.getRight()));
+        }
+        try {
+            return TablestoreHelper.batchGetRows(client, sessionTableName, primaryKeys, TablestoreHelper::rowToSession, batchGetParallelism);
+        } catch (Exception e) {
+            throw Exceptions.runtimeThrowable(String.format("get sessions failed, keys:%s", keys.size()), e);
+        }
+    }
+
     @Override
     public Iterator<Session> listAllSessions() {
         log.info("list all sessions");
@@ -217,12 +311,56 @@ public class MemoryStoreImpl implements MemoryStore {
             .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.INF_MAX)
             .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.INF_MAX)
             .build();
-        return new TablestoreHelper.GetRangeIterator<>(client, sessionTableName, TablestoreHelper::rowToSession, start, end, null, Order.ASC, -1L, 5000, null);
+        return new TablestoreHelper.GetRangeIterator<>(
+            client,
+            sessionTableName,
+            TablestoreHelper::rowToSession,
+            start,
+            end,
+            null,
+            Order.ASC,
+            -1L,
+            5000,
+            null,
+            enableRangePrefetch,
+            metrics
+        );
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions(int parallelism) {
+        log.info("list all sessions with parallelism:{}", parallelism);
+        return ParallelRangeScanner.<Session>builder()
+            .client(client)
+            .tableName(sessionTableName)
+            .translateFunction(TablestoreHelper::rowToSession)
+            .parallelism(parallelism)
+            .build()
+            .iterator();
+    }
+
+    @Override
+    public Stream<Session> streamAllSessions() {
+        log.info("stream all sessions");
+        return ParallelRangeScanner.<Session>builder()
+            .client(client)
+            .tableName(sessionTableName)
+            .translateFunction(TablestoreHelper::rowToSession)
+            .build()
+            .stream();
     }
 
     @Override
     public Iterator<Session> listSessions(String userId, Filter metadataFilter, Long maxCount, Integer batchSize) {
-        log.info("list sessions, userId:{}, metadataFilter:{}, maxCount:{}, batchSize:{}", userId, metadataFilter, maxCount, batchSize);
+        StoreMetrics callMetrics = operationLog.start(
+            metrics,
+            "listSessions",
+            "userId:{}, metadataFilter:{}, maxCount:{}, batchSize:{}",
+            userId,
+            metadataFilter,
+            maxCount,
+            batchSize
+        );
         ValidationUtils.ensureNotNull(userId, "userId");
         PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
             .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId))
@@ -243,7 +381,9 @@ public class MemoryStoreImpl implements MemoryStore {
             Order.ASC,
             maxCount,
             batchSize,
-            null
+            null,
+            enableRangePrefetch,
+            callMetrics
         );
     }
 
@@ -256,8 +396,10 @@ public class MemoryStoreImpl implements MemoryStore {
         Long maxCount,
         Integer batchSize
     ) {
-        log.info(
-            "list recent sessions, userId:{}, metadataFilter:{}, inclusiveStartUpdateTime:{}, inclusiveEndUpdateTime:{}, maxCount:{}, batchSize:{}",
+        StoreMetrics callMetrics = operationLog.start(
+            metrics,
+            "listRecentSessions",
+            "userId:{}, metadataFilter:{}, inclusiveStartUpdateTime:{}, inclusiveEndUpdateTime:{}, maxCount:{}, batchSize:{}",
             userId,
             metadataFilter,
             inclusiveStartUpdateTime,
@@ -298,7 +440,9 @@ public class MemoryStoreImpl implements MemoryStore {
             Order.DESC,
             maxCount,
             batchSize,
-            null
+            null,
+            enableRangePrefetch,
+            callMetrics
         );
     }
 
@@ -312,8 +456,10 @@ public class MemoryStoreImpl implements MemoryStore {
         String nextToken,
         Integer batchSize
     ) {
-        log.info(
-            "list recent sessions paginated, userId:{}, pageSize:{}, metadataFilter:{}, inclusiveStartUpdateTime:{}, inclusiveEndUpdateTime:{}, nextToken:{}, batchSize:{}",
+        StoreMetrics callMetrics = operationLog.start(
+            metrics,
+            "listRecentSessionsPaginated",
+            "userId:{}, pageSize:{}, metadataFilter:{}, inclusiveStartUpdateTime:{}, inclusiveEndUpdateTime:{}, nextToken:{}, batchSize:{}",
             userId,
             pageSize,
             metadataFilter,
@@ -357,7 +503,9 @@ public class MemoryStoreImpl implements MemoryStore {
             Order.DESC,
             (long) pageSize,
             batchSize,
-            null
+            null,
+            false,
+            callMetrics
         );
         List<Session> sessions = CollectionUtil.toList(rangeIterator);
         PrimaryKey nextStartPrimaryKey = rangeIterator.nextStartPrimaryKey();
@@ -391,9 +539,15 @@ public class MemoryStoreImpl implements MemoryStore {
             .searchQuery(searchQuery)
             .returnAllColumns(true)
             .build();
+        StoreMetrics callMetrics = operationLog.start(metrics, "searchSessions", "{}", searchRequest);
         try {
-            SearchResponse searchResponse = client.search(otsSearchRequest);
-            log.info("search sessions:{}, request_id:{}", searchRequest, searchResponse.getRequestId());
+            SearchResponse searchResponse = StoreMetrics.request(
+                callMetrics,
+                sessionTableName,
+                "Search",
+                () -> client.search(otsSearchRequest),
+                r -> r.getRows().size()
+            );
             Triple<List<Session>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(searchResponse, TablestoreHelper::rowToSession);
             List<Session> sessions = triple.getLeft();
             String nextTokenStr = triple.getMiddle();
@@ -412,19 +566,13 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
         ValidationUtils.ensureGreaterThanAndEqualZero(message.getCreateTime(), "createTime");
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(message.getSessionId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(message.getCreateTime()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(message.getMessageId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
         RowPutChange rowPutChange = new RowPutChange(messageTableName, primaryKey);
-        List<Column> columns = TablestoreHelper.metadataToColumns(message.getMetadata());
-        if (message.getContent() != null) {
-            columns.add(new Column(Message.MESSAGE_CONTENT, ColumnValue.fromString(message.getContent())));
-        }
+        List<Column> columns = TablestoreHelper.messageToColumns(message);
         rowPutChange.addColumns(columns);
         try {
             client.putRow(new PutRowRequest(rowPutChange));
+            cacheMessageCreateTime(message);
             if (log.isDebugEnabled()) {
                 log.debug("put message:{}", message);
             }
@@ -439,7 +587,15 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
         ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
         if (message.getCreateTime() == null) {
-            Long createTimeFromSecondaryIndex = getMessageCreateTimeFromSecondaryIndex(message.getSessionId(), message.getMessageId());
+            Long cachedCreateTime = getCachedMessageCreateTime(message.getSessionId(), message.getMessageId());
+            if (cachedCreateTime != null) {
+                message.setCreateTime(cachedCreateTime);
+                if (updateMessageRow(message, RowExistenceExpectation.EXPECT_EXIST)) {
+                    return;
+                }
+                message.setCreateTime(null);
+            }
+            Long createTimeFromSecondaryIndex = resolveMessageCreateTime(message.getSessionId(), message.getMessageId());
             if (createTimeFromSecondaryIndex == null) {
                 throw Exceptions.illegalArgument(
                     "message is not exist because createTime is null and can't find in secondaryIndex, sessionId:%s, messageId:%s",
@@ -449,23 +605,31 @@ public class MemoryStoreImpl implements MemoryStore {
             }
             message.setCreateTime(createTimeFromSecondaryIndex);
         }
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(message.getSessionId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(message.getCreateTime()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(message.getMessageId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+        updateMessageRow(message, RowExistenceExpectation.IGNORE);
+    }
+
+    /**
+     * @return false if the row doesn't exist and {@code expectation} is {@link RowExistenceExpectation#EXPECT_EXIST}, the cached createTime
+     *         of the message is stale then and has been invalidated
+     */
+    private boolean updateMessageRow(Message message, RowExistenceExpectation expectation) {
+        PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
         RowUpdateChange change = new RowUpdateChange(messageTableName, primaryKey);
-        List<Column> columns = TablestoreHelper.metadataToColumns(message.getMetadata());
-        if (message.getContent() != null) {
-            columns.add(new Column(Message.MESSAGE_CONTENT, ColumnValue.fromString(message.getContent())));
-        }
+        List<Column> columns = TablestoreHelper.messageToColumns(message);
         change.put(columns);
+        change.setCondition(new Condition(expectation));
         try {
             client.updateRow(new UpdateRowRequest(change));
+            cacheMessageCreateTime(message);
             if (log.isDebugEnabled()) {
                 log.debug("update message:{}", message);
             }
+            return true;
         } catch (Exception e) {
+            if (isConditionCheckFail(e)) {
+                invalidateMessageCreateTime(message.getSessionId(), message.getMessageId());
+                return false;
+            }
             throw Exceptions.runtimeThrowable(String.format("update message:%s failed", message), e);
         }
     }
@@ -476,28 +640,44 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(message.getSessionId(), "sessionId");
         ValidationUtils.ensureNotNull(message.getMessageId(), "messageId");
         if (message.getCreateTime() == null) {
-            Long createTimeFromSecondaryIndex = getMessageCreateTimeFromSecondaryIndex(message.getSessionId(), message.getMessageId());
+            Long cachedCreateTime = getCachedMessageCreateTime(message.getSessionId(), message.getMessageId());
+            if (cachedCreateTime != null) {
+                message.setCreateTime(cachedCreateTime);
+                if (deleteMessageRow(message, RowExistenceExpectation.EXPECT_EXIST)) {
+                    return;
+                }
+                message.setCreateTime(null);
+            }
+            Long createTimeFromSecondaryIndex = resolveMessageCreateTime(message.getSessionId(), message.getMessageId());
             if (createTimeFromSecondaryIndex == null) {
                 return;
             }
             message.setCreateTime(createTimeFromSecondaryIndex);
         }
+        deleteMessageRow(message, RowExistenceExpectation.IGNORE);
+    }
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(message.getSessionId()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(message.getCreateTime()));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(message.getMessageId()));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+    /**
+     * @return false if the row doesn't exist and {@code expectation} is {@link RowExistenceExpectation#EXPECT_EXIST}
+     */
+    private boolean deleteMessageRow(Message message, RowExistenceExpectation expectation) {
+        PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
 
         RowDeleteChange rowDeleteChange = new RowDeleteChange(messageTableName, primaryKey);
-        rowDeleteChange.setCondition(new Condition(RowExistenceExpectation.IGNORE));
+        rowDeleteChange.setCondition(new Condition(expectation));
 
         try {
             client.deleteRow(new DeleteRowRequest(rowDeleteChange));
+            invalidateMessageCreateTime(message.getSessionId(), message.getMessageId());
             if (log.isDebugEnabled()) {
                 log.debug("delete message:{}", message);
             }
+            return true;
         } catch (Exception e) {
+            if (isConditionCheckFail(e)) {
+                invalidateMessageCreateTime(message.getSessionId(), message.getMessageId());
+                return false;
+            }
             throw Exceptions.runtimeThrowable(String.format("delete message failed, message:%s", message), e);
         }
     }
@@ -513,13 +693,29 @@ public class MemoryStoreImpl implements MemoryStore {
         log.info("delete messages, sessionId:{}", sessionId);
         Iterator<Message> messages = listMessages(sessionId);
         TablestoreHelper.batchDelete(client, messageTableName, messages);
+        if (messageCreateTimeCache != null) {
+            messageCreateTimeCache.invalidateIf(key -> key.getLeft().equals(sessionId));
+        }
     }
 
     @Override
     public void deleteAllMessages() {
         log.info("delete all messages");
-        Iterator<Message> allMessages = listAllMessages();
-        TablestoreHelper.batchDelete(client, messageTableName, allMessages);
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.INF_MIN)
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MIN)
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.INF_MIN)
+            .build();
+
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.INF_MAX)
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MAX)
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.INF_MAX)
+            .build();
+        TablestoreHelper.batchDeleteRange(client, messageTableName, start, end);
+        if (messageCreateTimeCache != null) {
+            messageCreateTimeCache.invalidateAll();
+        }
     }
 
     @Override
@@ -527,18 +723,25 @@ public class MemoryStoreImpl implements MemoryStore {
         ValidationUtils.ensureNotNull(sessionId, "sessionId");
         ValidationUtils.ensureNotNull(messageId, "messageId");
         if (createTime == null) {
-            Long createTimeFromSecondaryIndex = getMessageCreateTimeFromSecondaryIndex(sessionId, messageId);
+            Long cachedCreateTime = getCachedMessageCreateTime(sessionId, messageId);
+            if (cachedCreateTime != null) {
+                Message message = getMessageRow(sessionId, messageId, cachedCreateTime);
+                if (message != null) {
+                    return message;
+                }
+                invalidateMessageCreateTime(sessionId, messageId);
+            }
+            Long createTimeFromSecondaryIndex = resolveMessageCreateTime(sessionId, messageId);
             if (createTimeFromSecondaryIndex == null) {
                 return null;
             }
             createTime = createTimeFromSecondaryIndex;
         }
+        return getMessageRow(sessionId, messageId, createTime);
+    }
 
-        PrimaryKeyBuilder primaryKeyBuilder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(createTime));
-        primaryKeyBuilder.addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(messageId));
-        PrimaryKey primaryKey = primaryKeyBuilder.build();
+    private Message getMessageRow(String sessionId, String messageId, Long createTime) {
+        PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(sessionId, createTime, messageId);
 
         SingleRowQueryCriteria criteria = new SingleRowQueryCriteria(messageTableName, primaryKey);
         criteria.setMaxVersions(1);
@@ -546,6 +749,7 @@ public class MemoryStoreImpl implements MemoryStore {
             GetRowResponse response = client.getRow(new GetRowRequest(criteria));
             Row row = response.getRow();
             Message message = TablestoreHelper.rowToMessage(row);
+            cacheMessageCreateTime(message);
             if (log.isDebugEnabled()) {
                 log.debug("get message:{}", message);
             }
@@ -558,6 +762,51 @@ public class MemoryStoreImpl implements MemoryStore {
         }
     }
 
+    @Override
+    public List<Message> getMessages(List<Triple<String, String, Long>> keys) {
+        ValidationUtils.ensureNotNull(keys, "keys");
+        Long[] createTimes = new Long[keys.size()];
+        List<Integer> allPositions = new ArrayList<>(keys.size());
+        List<Integer> cachedCreateTimes = new ArrayList<>();
+        List<Integer> unknownCreateTimes = new ArrayList<>();
+        for (int i = 0; i < keys.size(); i++) {
+            Triple<String, String, Long> key = keys.get(i);
+            ValidationUtils.ensureNotNull(key.getLeft(), "sessionId");
+            ValidationUtils.ensureNotNull(key.getMiddle(), "messageId");
+            allPositions.add(i);
+            createTimes[i] = key.getRight();
+            if (createTimes[i] == null) {
+                createTimes[i] = getCachedMessageCreateTime(key.getLeft(), key.getMiddle());
+                if (createTimes[i] != null) {
+                    cachedCreateTimes.add(i);
+                } else {
+                    unknownCreateTimes.add(i);
+                }
+            }
+        }
+        try {
+            List<Message> messages = new ArrayList<>(Collections.nCopies(keys.size(), null));
+            resolveMessageCreateTimes(keys, createTimes, unknownCreateTimes);
+            batchGetMessages(keys, createTimes, allPositions, messages);
+            // a cached createTime reads no row if the message was deleted or rewritten elsewhere, look these up in the secondary index again
+            List<Integer> staleCreateTimes = new ArrayList<>();
+            for (Integer position : cachedCreateTimes) {
+                if (messages.get(position) == null) {
+                    invalidateMessageCreateTime(keys.get(position).getLeft(), keys.get(position).getMiddle());
+                    createTimes[position] = null;
+                    staleCreateTimes.add(position);
+                }
+            }
+            if (!staleCreateTimes.isEmpty()) {
+                resolveMessageCreateTimes(keys, createTimes, staleCreateTimes);
+                batchGetMessages(keys, createTimes, staleCreateTimes, messages);
+            }
+            return messages;
+        } catch (Exception e) {
+            throw Exceptions.runtimeThrowable(String.format("get messages failed, keys:%s", keys.size()), e);
+        }
+    }
+
     @Override
     public Iterator<Message> listAllMessages() {
         log.info("list all messages");
@@ -572,7 +821,43 @@ public class MemoryStoreImpl implements MemoryStore {
             .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MAX)
             .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.INF_MAX)
             .build();
-        return new TablestoreHelper.GetRangeIterator<>(client, messageTableName, TablestoreHelper::rowToMessage, start, end, null, Order.ASC, -1L, 5000, null);
+        return new TablestoreHelper.GetRangeIterator<>(
+            client,
+            messageTableName,
+            TablestoreHelper::rowToMessage,
+            start,
+            end,
+            null,
+            Order.ASC,
+            -1L,
+            5000,
+            null,
+            enableRangePrefetch,
+            metrics
+        );
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages(int parallelism) {
+        log.info("list all messages with parallelism:{}", parallelism);
+        return ParallelRangeScanner.<Message>builder()
+            .client(client)
+            .tableName(messageTableName)
+            .translateFunction(TablestoreHelper::rowToMessage)
+            .parallelism(parallelism)
+            .build()
+            .iterator();
+    }
+
+    @Override
+    public Stream<Message> streamAllMessages() {
+        log.info("stream all messages");
+        return ParallelRangeScanner.<Message>builder()
+            .client(client)
+            .tableName(messageTableName)
+            .translateFunction(TablestoreHelper::rowToMessage)
+            .build()
+            .stream();
     }
 
     @Override
@@ -590,8 +875,10 @@ public class MemoryStoreImpl implements MemoryStore {
         Long maxCount,
         Integer batchSize
     ) {
-        log.info(
-            "list messages, sessionId:{}, metadataFilter:{}, inclusiveStartCreateTime:{}, inclusiveEndCreateTime:{}, order:{}, maxCount:{}, batchSize:{}",
+        StoreMetrics callMetrics = operationLog.start(
+            metrics,
+            "listMessages",
+            "sessionId:{}, metadataFilter:{}, inclusiveStartCreateTime:{}, inclusiveEndCreateTime:{}, order:{}, maxCount:{}, batchSize:{}",
             sessionId,
             metadataFilter,
             inclusiveStartCreateTime,
@@ -646,14 +933,16 @@ public class MemoryStoreImpl implements MemoryStore {
         return new TablestoreHelper.GetRangeIterator<>(
             client,
             messageTableName,
-            TablestoreHelper::rowToMessage,
+            this::rowToMessage,
             start,
             end,
             metadataFilter,
             order,
             maxCount,
             batchSize,
-            null
+            null,
+            enableRangePrefetch,
+            callMetrics
         );
     }
 
@@ -668,8 +957,10 @@ public class MemoryStoreImpl implements MemoryStore {
         String nextToken,
         Integer batchSize
     ) {
-        log.info(
-            "list messages paginated, sessionId:{}, pageSize:{}, metadataFilter:{}, inclusiveStartCreateTime:{}, inclusiveEndCreateTime:{}, order:{}, nextToken:{}, batchSize:{}",
+        StoreMetrics callMetrics = operationLog.start(
+            metrics,
+            "listMessagesPaginated",
+            "sessionId:{}, pageSize:{}, metadataFilter:{}, inclusiveStartCreateTime:{}, inclusiveEndCreateTime:{}, order:{}, nextToken:{}, batchSize:{}",
             sessionId,
             pageSize,
             metadataFilter,
@@ -727,14 +1018,16 @@ public class MemoryStoreImpl implements MemoryStore {
         TablestoreHelper.GetRangeIterator<Message> rangeIterator = new TablestoreHelper.GetRangeIterator<>(
             client,
             messageTableName,
-            TablestoreHelper::rowToMessage,
+            this::rowToMessage,
             start,
             end,
             metadataFilter,
             order,
             (long) pageSize,
             batchSize,
-            null
+            null,
+            false,
+            callMetrics
         );
         List<Message> messages = CollectionUtil.toList(rangeIterator);
         PrimaryKey nextStartPrimaryKey = rangeIterator.nextStartPrimaryKey();
@@ -768,10 +1061,16 @@ public class MemoryStoreImpl implements MemoryStore {
             .searchQuery(searchQuery)
             .returnAllColumns(true)
             .build();
+        StoreMetrics callMetrics = operationLog.start(metrics, "searchMessages", "{}", searchRequest);
         try {
-            SearchResponse searchResponse = client.search(otsSearchRequest);
-            log.info("search messages:{}, request_id:{}", searchRequest, searchResponse.getRequestId());
-            Triple<List<Message>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(searchResponse, TablestoreHelper::rowToMessage);
+            SearchResponse searchResponse = StoreMetrics.request(
+                callMetrics,
+                messageTableName,
+                "Search",
+                () -> client.search(otsSearchRequest),
+                r -> r.getRows().size()
+            );
+            Triple<List<Message>, String, List<Double>> triple = TablestoreHelper.parserSearchResponse(searchResponse, this::rowToMessage);
             List<Message> messages = triple.getLeft();
             String nextTokenStr = triple.getMiddle();
             return new Response<>(messages, nextTokenStr);
@@ -863,6 +1162,169 @@ public class MemoryStoreImpl implements MemoryStore {
     public void deleteTableAndIndex() {
         TablestoreHelper.deleteTable(client, sessionTableName);
         TablestoreHelper.deleteTable(client, messageTableName);
+        if (messageCreateTimeCache != null) {
+            messageCreateTimeCache.invalidateAll();
+        }
+    }
+
+    /**
+     * Read the messages at {@code positions} whose createTime is known into {@code messages}, caching their createTime.
+     */
+    private void batchGetMessages(List<Triple<String, String, Long>> keys, Long[] createTimes, List<Integer> positions, List<Message> messages) {
+        List<Integer> knownPositions = new ArrayList<>(positions.size());
+        List<PrimaryKey> primaryKeys = new ArrayList<>(positions.size());
+        for (Integer position : positions) {
+            if (createTimes[position] != null) {
+                knownPositions.add(position);
+                Triple<String, String, Long> key = keys.get(position);
+                primaryKeys.add(TablestoreHelper.messagePrimaryKey(key.getLeft(), createTimes[position], key.getMiddle()));
+            }
+        }
+        List<Message> rows = TablestoreHelper.batchGetRows(
+            client,
+            messageTableName,
+            primaryKeys,
+            TablestoreHelper::rowToMessage,
+            batchGetParallelism
+        );
+        for (int i = 0; i < knownPositions.size(); i++) {
+            cacheMessageCreateTime(rows.get(i));
+            messages.set(knownPositions.get(i), rows.get(i));
+        }
+    }
+
+    /**
+     * Look up the createTime of the messages at {@code positions}. With a message search index, the messages are looked up in one Search
+     * request per 100 messages, a terms query on their ids. The messages the search index doesn't return yet, as it lags behind the writes,
+     * and all of them without a search index, are looked up in the secondary index. It can't be read by BatchGetRow without the createTime,
+     * it is a range read per message, sent {@code batchGetParallelism} at a time.
+     */
+    private void resolveMessageCreateTimes(List<Triple<String, String, Long>> keys, Long[] createTimes, List<Integer> positions) {
+        List<Integer> unresolved = positions;
+        if (!messageSearchIndexSchema.isEmpty() && positions.size() > 1) {
+            unresolved = new ArrayList<>();
+            for (int from = 0; from < positions.size(); from += SEARCH_CREATE_TIME_BATCH_SIZE) {
+                List<Integer> batch = positions.subList(from, Math.min(from + SEARCH_CREATE_TIME_BATCH_SIZE, positions.size()));
+                searchMessageCreateTimes(keys, createTimes, batch);
+                for (Integer position : batch) {
+                    if (createTimes[position] == null) {
+                        unresolved.add(position);
+                    }
+                }
+            }
+        }
+        List<Integer> rangeReads = unresolved;
+        TablestoreHelper.forEachConcurrently(rangeReads.size(), batchGetParallelism, i -> {
+            Triple<String, String, Long> key = keys.get(rangeReads.get(i));
+            createTimes[rangeReads.get(i)] = resolveMessageCreateTime(key.getLeft(), key.getMiddle());
+        });
+    }
+
+    /**
+     * Look up the createTime of the messages at {@code positions} in the message search index, reading the primary keys of the messages
+     * with any of their session ids and message ids, page after page, and keeping the (session id, message id) asked for.
+     */
+    private void searchMessageCreateTimes(List<Triple<String, String, Long>> keys, Long[] createTimes, List<Integer> positions) {
+        Map<Pair<String, String>, List<Integer>> positionsByKey = new HashMap<>();
+        TermsQuery.Builder sessionIds = QueryBuilders.terms(Message.MESSAGE_SESSION_ID);
+        TermsQuery.Builder messageIds = QueryBuilders.terms(Message.MESSAGE_MESSAGE_ID);
+        for (Integer position : positions) {
+            Triple<String, String, Long> key = keys.get(position);
+            positionsByKey.computeIfAbsent(Pair.of(key.getLeft(), key.getMiddle()), k -> new ArrayList<>()).add(position);
+            sessionIds.addTerm(key.getLeft());
+            messageIds.addTerm(key.getMiddle());
+        }
+        Query query = QueryBuilders.bool().filter(sessionIds.build()).filter(messageIds.build()).build();
+        Map<Pair<String, String>, Long> found = new HashMap<>();
+        byte[] nextToken = null;
+        do {
+            SearchRequest searchRequest = SearchRequest.newBuilder()
+                .tableName(messageTableName)
+                .indexName(messageSearchIndexName)
+                .searchQuery(
+                    SearchQuery.newBuilder().query(query).getTotalCount(false).limit(SEARCH_CREATE_TIME_BATCH_SIZE).token(nextToken).build()
+                )
+                .build();
+            SearchResponse response = StoreMetrics.request(
+                metrics,
+                messageTableName,
+                "Search",
+                () -> client.search(searchRequest),
+                r -> r.getRows().size()
+            );
+            for (Row row : response.getRows()) {
+                Message message = TablestoreHelper.rowToMessage(row);
+                Pair<String, String> key = Pair.of(message.getSessionId(), message.getMessageId());
+                if (!positionsByKey.containsKey(key)) {
+                    continue;
+                }
+                Long previous = found.put(key, message.getCreateTime());
+                if (previous != null && !previous.equals(message.getCreateTime())) {
+                    throw Exceptions.illegalArgument(
+                        "message is not unique, sessionId:%s, messageId:%s, createTimes:[%s, %s]",
+                        key.getLeft(),
+                        key.getRight(),
+                        previous,
+                        message.getCreateTime()
+                    );
+                }
+            }
+            nextToken = response.getNextToken();
+        } while (nextToken != null);
+        for (Map.Entry<Pair<String, String>, Long> entry : found.entrySet()) {
+            if (messageCreateTimeCache != null) {
+                messageCreateTimeCache.put(entry.getKey(), entry.getValue());
+            }
+            for (Integer position : positionsByKey.get(entry.getKey())) {
+                createTimes[position] = entry.getValue();
+            }
+        }
+    }
+
+    /**
+     * The createTime of a message from the secondary index, cached for the next point reads and writes.
+     *
+     * @return null if the message doesn't exist
+     */
+    private Long resolveMessageCreateTime(String sessionId, String messageId) {
+        Long createTime = getMessageCreateTimeFromSecondaryIndex(sessionId, messageId);
+        if (createTime != null && messageCreateTimeCache != null) {
+            messageCreateTimeCache.put(Pair.of(sessionId, messageId), createTime);
+        }
+        return createTime;
+    }
+
+    /**
+     * The cached createTime of a message. It may be stale if the message was deleted or rewritten by another store instance, callers
+     * verify it exists: a row existence condition on writes, a null row on reads.
+     */
+    private Long getCachedMessageCreateTime(String sessionId, String messageId) {
+        return messageCreateTimeCache == null ? null : messageCreateTimeCache.get(Pair.of(sessionId, messageId));
+    }
+
+    private void cacheMessageCreateTime(Message message) {
+        if (messageCreateTimeCache != null && message != null && message.getCreateTime() != null) {
+            messageCreateTimeCache.put(Pair.of(message.getSessionId(), message.getMessageId()), message.getCreateTime());
+        }
+    }
+
+    /**
+     * {@link TablestoreHelper#rowToMessage(Row)} remembering the createTime of the message, for the rows of the list and search methods.
+     */
+    private Message rowToMessage(Row row) {
+        Message message = TablestoreHelper.rowToMessage(row);
+        cacheMessageCreateTime(message);
+        return message;
+    }
+
+        private void invalidateMessageCreateTime(String sessionId, String messageId) {
+        if (messageCreateTimeCache != null) {
+            messageCreateTimeCache.invalidate(Pair.of(sessionId, messageId));
+        }
+    }
+
+    private static boolean isConditionCheckFail(Exception e) {
+        return e instanceof TableStoreException && ErrorCode.CONDITION_CHECK_FAIL.equals(((TableStoreException) e).getErrorCode());
     }
 
     private Long getMessageCreateTimeFromSecondaryIndex(String sessionId, String messageId) {
@@ -887,7 +1349,9 @@ public class MemoryStoreImpl implements MemoryStore {
             Order.ASC,
             null,
             null,
-            null
+            null,
+            false,
+            metrics
         );
         List<Message> messages = CollectionUtil.toList(iterator);
         if (messages.size() == 1) {
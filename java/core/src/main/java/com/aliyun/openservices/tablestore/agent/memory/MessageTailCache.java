@@ -0,0 +1,284 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.ValidationUtils;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+
+/**
+ * Newest messages of recently used sessions, in the descending (createTime, messageId) order of the message table.
+ *
+ * <p>
+ * The tail of a session holds at most {@code tailSize} messages and is always the newest messages of the session: it is loaded from a
+ * {@code listMessages} DESC read and then kept up to date by the writes made through this cache, a message older than the tail is only
+ * added when the tail holds the whole session. The tails of all the sessions hold at most {@code maxMessages} messages, the least recently
+ * used sessions are evicted first, and a session not accessed for {@code idleMillis} is dropped.
+ * </p>
+ */
+class MessageTailCache {
+
+    private static final Comparator<Message> NEWEST_FIRST = Comparator.comparing(Message::getCreateTime)
+        .thenComparing(Message::getMessageId)
+        .reversed();
+
+    private final int tailSize;
+    private final long maxMessages;
+    private final long idleNanos;
+    private final LongSupplier ticker;
+
+    private final LinkedHashMap<String, Tail> tails = new LinkedHashMap<>(16, 0.75f, true);
+    private long cachedMessages;
+
+    /**
+     * Incremented by every write, a tail read from the table while a write was applied is not loaded as it may miss the write.
+     */
+    private long writeCount;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expirationCount;
+
+    MessageTailCache(int tailSize, long maxMessages, long idleMillis, LongSupplier ticker) {
+        this.tailSize = ValidationUtils.ensureBetween(tailSize, 1, Integer.MAX_VALUE, "tailSize");
+        this.maxMessages = ValidationUtils.ensureBetween(maxMessages, tailSize, Long.MAX_VALUE, "maxMessages");
+        this.idleNanos = TimeUnit.MILLISECONDS.toNanos(ValidationUtils.ensureBetween(idleMillis, 0L, Long.MAX_VALUE, "idleMillis"));
+        this.ticker = ticker == null ? System::nanoTime : ticker;
+    }
+
+    int getTailSize() {
+        return tailSize;
+    }
+
+    synchronized long writeCount() {
+        return writeCount;
+    }
+
+    /**
+     * @return copies of the newest {@code maxCount} messages, newest first, or null if the tail of the session can't answer
+     */
+    synchronized List<Message> get(String sessionId, long maxCount) {
+        expireIdle();
+        Tail tail = tails.get(sessionId);
+        if (tail == null || (maxCount > tail.messages.size() && !tail.complete)) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        tail.accessNanos = ticker.getAsLong();
+        List<Message> result = new ArrayList<>((int) Math.min(maxCount, tail.messages.size()));
+        Iterator<Message> iterator = tail.messages.iterator();
+        while (result.size() < maxCount && iterator.hasNext()) {
+            result.add(copy(iterator.next()));
+        }
+        return result;
+    }
+
+    /**
+     * Cache the newest messages of a session read from the table.
+     *
+     * @param newest             the result of a DESC read of at most {@code maxCount} messages
+     * @param expectedWriteCount {@link #writeCount()} before the read, the messages are not cached if a write was applied since
+     */
+    synchronized void load(String sessionId, List<Message> newest, long maxCount, long expectedWriteCount) {
+        if (writeCount != expectedWriteCount || maxCount > tailSize) {
+            return;
+        }
+        Tail tail = new Tail(newest.size() < maxCount, ticker.getAsLong());
+        for (Message message : newest) {
+            tail.messages.addLast(copy(message));
+        }
+        Tail previous = tails.put(sessionId, tail);
+        if (previous != null) {
+            cachedMessages -= previous.messages.size();
+        }
+        cachedMessages += tail.messages.size();
+        evictIfNeeded();
+    }
+
+    /**
+     * Apply a put, a message replacing one with the same createTime and messageId.
+     */
+    synchronized void add(Message message) {
+        writeCount++;
+        Tail tail = touch(message.getSessionId());
+        if (tail == null) {
+            return;
+        }
+        removeIf(tail, cached -> sameRow(cached, message));
+        if (!tail.complete && !tail.messages.isEmpty() && NEWEST_FIRST.compare(message, tail.messages.peekLast()) > 0) {
+            // older than the tail, the tail is still the newest messages of the session
+            return;
+        }
+        if (tail.messages.isEmpty() || NEWEST_FIRST.compare(message, tail.messages.peekFirst()) <= 0) {
+            tail.messages.addFirst(copy(message));
+        } else {
+            // out of order createTime, rare enough to rebuild the tail
+            List<Message> messages = new ArrayList<>(tail.messages);
+            messages.add(copy(message));
+            messages.sort(NEWEST_FIRST);
+            tail.messages.clear();
+            tail.messages.addAll(messages);
+        }
+        cachedMessages++;
+        if (tail.messages.size() > tailSize) {
+            tail.messages.removeLast();
+            tail.complete = false;
+            cachedMessages--;
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * Apply an update, the content is replaced if set and the metadata is merged, as the row update does.
+     */
+    synchronized void update(Message message) {
+        writeCount++;
+        Tail tail = touch(message.getSessionId());
+        if (tail == null) {
+            return;
+        }
+        for (Message cached : tail.messages) {
+            if (!cached.getMessageId().equals(message.getMessageId())) {
+                continue;
+            }
+            if (message.getCreateTime() != null && !message.getCreateTime().equals(cached.getCreateTime())) {
+                // the update wrote another row
+                invalidate(message.getSessionId());
+                return;
+            }
+            if (message.getContent() != null) {
+                cached.setContent(message.getContent());
+            }
+            if (message.getMetadata() != null) {
+                Map<String, Object> metadata = cached.getMetadata() == null ? new HashMap<>() : cached.getMetadata().toMap();
+                metadata.putAll(message.getMetadata().toMap());
+                cached.setMetadata(new Metadata(metadata));
+            }
+            return;
+        }
+        // an update of a missing row creates it, only rows older than an incomplete tail can't be in it
+        boolean olderThanTail = !tail.complete
+            && !tail.messages.isEmpty()
+            && message.getCreateTime() != null
+            && message.getCreateTime() < tail.messages.peekLast().getCreateTime();
+        if (!olderThanTail) {
+            invalidate(message.getSessionId());
+        }
+    }
+
+    synchronized void remove(String sessionId, String messageId) {
+        writeCount++;
+        Tail tail = touch(sessionId);
+        if (tail != null) {
+            removeIf(tail, cached -> cached.getMessageId().equals(messageId));
+        }
+    }
+
+    synchronized void invalidate(String sessionId) {
+        writeCount++;
+        Tail tail = tails.remove(sessionId);
+        if (tail != null) {
+            cachedMessages -= tail.messages.size();
+        }
+    }
+
+    synchronized void invalidateAll() {
+        writeCount++;
+        tails.clear();
+        cachedMessages = 0;
+    }
+
+    /**
+     * @return cached message count of all the sessions
+     */
+    synchronized long size() {
+        return cachedMessages;
+    }
+
+    /**
+     * @return hits and misses of {@link #get(String, long)}, sessions evicted for the message cap and sessions dropped when idle
+     */
+    synchronized LruCache.Stats stats() {
+        return new LruCache.Stats(hitCount, missCount, evictionCount, expirationCount);
+    }
+
+    private Tail touch(String sessionId) {
+        Tail tail = tails.get(sessionId);
+        if (tail != null) {
+            tail.accessNanos = ticker.getAsLong();
+        }
+        return tail;
+    }
+
+    private void removeIf(Tail tail, Predicate<Message> predicate) {
+        int before = tail.messages.size();
+        tail.messages.removeIf(predicate);
+        cachedMessages -= before - tail.messages.size();
+    }
+
+    private void expireIdle() {
+        if (idleNanos == 0) {
+            return;
+        }
+        long now = ticker.getAsLong();
+        // access order, the first tails are the most idle
+        Iterator<Tail> iterator = tails.values().iterator();
+        while (iterator.hasNext()) {
+            Tail tail = iterator.next();
+            if (now - tail.accessNanos < idleNanos) {
+                return;
+            }
+            iterator.remove();
+            cachedMessages -= tail.messages.size();
+            expirationCount++;
+        }
+    }
+
+    private void evictIfNeeded() {
+        expireIdle();
+        Iterator<Tail> iterator = tails.values().iterator();
+        while (cachedMessages > maxMessages && iterator.hasNext()) {
+            Tail tail = iterator.next();
+            iterator.remove();
+            cachedMessages -= tail.messages.size();
+            evictionCount++;
+        }
+    }
+
+    private static boolean sameRow(Message a, Message b) {
+        return Objects.equals(a.getCreateTime(), b.getCreateTime()) && Objects.equals(a.getMessageId(), b.getMessageId());
+    }
+
+    static Message copy(Message message) {
+        Metadata metadata = message.getMetadata() == null ? null : new Metadata(message.getMetadata().toMap());
+        return new Message(message.getSessionId(), message.getMessageId(), message.getCreateTime(), message.getContent(), metadata);
+    }
+
+    private static class Tail {
+        private final ArrayDeque<Message> messages = new ArrayDeque<>();
+
+        /**
+         * True when the tail holds all the messages of the session.
+         */
+        private boolean complete;
+        private long accessNanos;
+
+        private Tail(boolean complete, long accessNanos) {
+            this.complete = complete;
+            this.accessNanos = accessNanos;
+        }
+    }
+}
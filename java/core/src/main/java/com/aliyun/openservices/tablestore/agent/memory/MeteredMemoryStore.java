@@ -0,0 +1,307 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.CountingIterator;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import lombok.Builder;
+import lombok.NonNull;
+
+/**
+ * {@link MemoryStore} decorator recording every call to {@link StoreMetrics}: its duration and error code, the rows it returned and the
+ * rows it wrote.
+ *
+ * <p>
+ * The rows of an iterator are recorded once it is exhausted or closed, the duration of a list method is only the time to return the
+ * iterator, its pages being recorded as requests by a {@link MemoryStoreImpl} built with the same metrics. Streams are not counted. Deletes
+ * of all the sessions of a user or all the messages of a session don't know their row count and only record their duration.
+ * </p>
+ */
+public class MeteredMemoryStore implements MemoryStore {
+
+    private final MemoryStore delegate;
+    private final StoreMetrics metrics;
+    private final String name;
+
+    /**
+     * @param delegate the store to record, usually a {@link MemoryStoreImpl} or a {@link CachedMemoryStore}
+     * @param metrics  receives the records
+     * @param name     name of the store in the records, default "memory"
+     */
+    @Builder
+    private MeteredMemoryStore(@NonNull MemoryStore delegate, @NonNull StoreMetrics metrics, String name) {
+        this.delegate = delegate;
+        this.metrics = metrics;
+        this.name = name == null ? "memory" : name;
+    }
+
+    @Override
+    public void putSession(Session session) {
+        write("putSession", 1, () -> delegate.putSession(session));
+    }
+
+    @Override
+    public void updateSession(Session session) {
+        write("updateSession", 1, () -> delegate.updateSession(session));
+    }
+
+    @Override
+    public void deleteSession(String userId, String sessionId) {
+        write("deleteSession", 1, () -> delegate.deleteSession(userId, sessionId));
+    }
+
+    @Override
+    public void deleteSessions(String userId) {
+        run("deleteSessions", () -> delegate.deleteSessions(userId));
+    }
+
+    @Override
+    public void deleteSessionAndMessages(String userId, String sessionId) {
+        run("deleteSessionAndMessages", () -> delegate.deleteSessionAndMessages(userId, sessionId));
+    }
+
+    @Override
+    public void deleteAllSessions() {
+        run("deleteAllSessions", delegate::deleteAllSessions);
+    }
+
+    @Override
+    public Session getSession(String userId, String sessionId) {
+        Session session = call("getSession", () -> delegate.getSession(userId, sessionId));
+        metrics.recordRowsRead(name, "getSession", session == null ? 0 : 1);
+        return session;
+    }
+
+    @Override
+    public List<Session> getSessions(List<Pair<String, String>> keys) {
+        List<Session> sessions = call("getSessions", () -> delegate.getSessions(keys));
+        metrics.recordRowsRead(name, "getSessions", sessions.stream().filter(Objects::nonNull).count());
+        return sessions;
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions() {
+        return list("listAllSessions", delegate::listAllSessions);
+    }
+
+    @Override
+    public Iterator<Session> listAllSessions(int parallelism) {
+        return list("listAllSessions", () -> delegate.listAllSessions(parallelism));
+    }
+
+    @Override
+    public Stream<Session> streamAllSessions() {
+        return call("streamAllSessions", delegate::streamAllSessions);
+    }
+
+    @Override
+    public Iterator<Session> listSessions(String userId, Filter metadataFilter, Long maxCount, Integer batchSize) {
+        return list("listSessions", () -> delegate.listSessions(userId, metadataFilter, maxCount, batchSize));
+    }
+
+    @Override
+    public Iterator<Session> listRecentSessions(
+        String userId,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        Long maxCount,
+        Integer batchSize
+    ) {
+        return list(
+            "listRecentSessions",
+            () -> delegate.listRecentSessions(userId, metadataFilter, inclusiveStartUpdateTime, inclusiveEndUpdateTime, maxCount, batchSize)
+        );
+    }
+
+    @Override
+    public Response<Session> listRecentSessionsPaginated(
+        String userId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartUpdateTime,
+        Long inclusiveEndUpdateTime,
+        String nextToken,
+        Integer batchSize
+    ) {
+        return page(
+            "listRecentSessionsPaginated",
+            () -> delegate.listRecentSessionsPaginated(
+                userId,
+                pageSize,
+                metadataFilter,
+                inclusiveStartUpdateTime,
+                inclusiveEndUpdateTime,
+                nextToken,
+                batchSize
+            )
+        );
+    }
+
+    @Override
+    public Response<Session> searchSessions(MemorySearchRequest searchRequest) {
+        return page("searchSessions", () -> delegate.searchSessions(searchRequest));
+    }
+
+    @Override
+    public void putMessage(Message message) {
+        write("putMessage", 1, () -> delegate.putMessage(message));
+    }
+
+    @Override
+    public void updateMessage(Message message) {
+        write("updateMessage", 1, () -> delegate.updateMessage(message));
+    }
+
+    @Override
+    public void deleteMessage(Message message) {
+        write("deleteMessage", 1, () -> delegate.deleteMessage(message));
+    }
+
+    @Override
+    public void deleteMessage(String sessionId, String messageId, Long createTime) {
+        write("deleteMessage", 1, () -> delegate.deleteMessage(sessionId, messageId, createTime));
+    }
+
+    @Override
+    public void deleteMessages(String sessionId) {
+        run("deleteMessages", () -> delegate.deleteMessages(sessionId));
+    }
+
+    @Override
+    public void deleteAllMessages() {
+        run("deleteAllMessages", delegate::deleteAllMessages);
+    }
+
+    @Override
+    public Message getMessage(String sessionId, String messageId, Long createTime) {
+        Message message = call("getMessage", () -> delegate.getMessage(sessionId, messageId, createTime));
+        metrics.recordRowsRead(name, "getMessage", message == null ? 0 : 1);
+        return message;
+    }
+
+    @Override
+    public List<Message> getMessages(List<Triple<String, String, Long>> keys) {
+        List<Message> messages = call("getMessages", () -> delegate.getMessages(keys));
+        metrics.recordRowsRead(name, "getMessages", messages.stream().filter(Objects::nonNull).count());
+        return messages;
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages() {
+        return list("listAllMessages", delegate::listAllMessages);
+    }
+
+    @Override
+    public Iterator<Message> listAllMessages(int parallelism) {
+        return list("listAllMessages", () -> delegate.listAllMessages(parallelism));
+    }
+
+    @Override
+    public Stream<Message> streamAllMessages() {
+        return call("streamAllMessages", delegate::streamAllMessages);
+    }
+
+    @Override
+    public Iterator<Message> listMessages(String sessionId) {
+        return list("listMessages", () -> delegate.listMessages(sessionId));
+    }
+
+    @Override
+    public Iterator<Message> listMessages(
+        String sessionId,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        Long maxCount,
+        Integer batchSize
+    ) {
+        return list(
+            "listMessages",
+            () -> delegate.listMessages(sessionId, metadataFilter, inclusiveStartCreateTime, inclusiveEndCreateTime, order, maxCount, batchSize)
+        );
+    }
+
+    @Override
+    public Response<Message> listMessagesPaginated(
+        String sessionId,
+        int pageSize,
+        Filter metadataFilter,
+        Long inclusiveStartCreateTime,
+        Long inclusiveEndCreateTime,
+        Order order,
+        String nextToken,
+        Integer batchSize
+    ) {
+        return page(
+            "listMessagesPaginated",
+            () -> delegate.listMessagesPaginated(
+                sessionId,
+                pageSize,
+                metadataFilter,
+                inclusiveStartCreateTime,
+                inclusiveEndCreateTime,
+                order,
+                nextToken,
+                batchSize
+            )
+        );
+    }
+
+    @Override
+    public Response<Message> searchMessages(MemorySearchRequest searchRequest) {
+        return page("searchMessages", () -> delegate.searchMessages(searchRequest));
+    }
+
+    @Override
+    public void initTable() {
+        run("initTable", delegate::initTable);
+    }
+
+    @Override
+    public void initSearchIndex() {
+        run("initSearchIndex", delegate::initSearchIndex);
+    }
+
+    @Override
+    public void deleteTableAndIndex() {
+        run("deleteTableAndIndex", delegate::deleteTableAndIndex);
+    }
+
+    private <T> T call(String operation, Supplier<T> call) {
+        return StoreMetrics.operation(metrics, name, operation, call);
+    }
+
+    private void run(String operation, Runnable call) {
+        call(operation, () -> {
+            call.run();
+            return null;
+        });
+    }
+
+    private void write(String operation, long rows, Runnable call) {
+        run(operation, call);
+        metrics.recordRowsWritten(name, operation, rows);
+    }
+
+    private <T> Response<T> page(String operation, Supplier<Response<T>> call) {
+        Response<T> response = call(operation, call);
+        metrics.recordRowsRead(name, operation, response.getHits().size());
+        return response;
+    }
+
+    private <T> Iterator<T> list(String operation, Supplier<Iterator<T>> call) {
+        return new CountingIterator<>(call(operation, call), rows -> metrics.recordRowsRead(name, operation, rows));
+    }
+}
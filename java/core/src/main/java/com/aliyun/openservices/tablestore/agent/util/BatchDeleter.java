@@ -0,0 +1,309 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyColumn;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.alicloud.openservices.tablestore.model.RowChange;
+import com.alicloud.openservices.tablestore.model.RowDeleteChange;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.NonNull;
+import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pipelined deletion of the rows of a table.
+ *
+ * <p>
+ * The calling thread is the producer: it drains the iterator (or scans the range), turns items into {@link RowDeleteChange}s and hands
+ * batches of {@code batchRows} rows to {@code parallelism} writer threads. At most {@code parallelism} batches run and as many wait, and
+ * {@code maxRowsPerSecond} paces the producer when set. Rows that fit in a single batch are deleted by the calling thread, the writer
+ * threads are only started for a second batch.
+ * </p>
+ * <p>
+ * Batches complete out of order, the {@link Progress#getCheckpoint() checkpoint} is the last primary key of the longest prefix of batches
+ * that are all deleted. When a batch fails, no more batches are produced, the in-flight ones are finished and the exception tells the
+ * checkpoint. A range deletion is resumed by calling {@link #deleteRange(PrimaryKey, PrimaryKey)} again starting at the checkpoint, deleting
+ * a missing row succeeds.
+ * </p>
+ */
+@Slf4j
+public class BatchDeleter {
+
+    /**
+     * Max row count of a BatchWriteRow request.
+     */
+    public static final int MAX_BATCH_ROWS = 200;
+
+    private final SyncClientInterface client;
+    private final String tableName;
+    private final int batchRows;
+    private final int parallelism;
+    private final int maxRowsPerSecond;
+    private final Consumer<Progress> progressListener;
+
+    /**
+     * @param client           tablestore client, a {@code SyncClient} can be passed directly
+     * @param tableName        table to delete from
+     * @param batchRows        rows of a request, range [1, 200], default 200
+     * @param parallelism      number of concurrent requests, default 4
+     * @param maxRowsPerSecond rate limit of the deletion, 0 for no limit, default 0
+     * @param progressListener called after each completed batch, from the writer threads, default none
+     */
+    @Builder
+    private BatchDeleter(
+        @NonNull SyncClientInterface client,
+        @NonNull String tableName,
+        Integer batchRows,
+        Integer parallelism,
+        Integer maxRowsPerSecond,
+        Consumer<Progress> progressListener
+    ) {
+        this.client = client;
+        this.tableName = tableName;
+        this.batchRows = ValidationUtils.ensureBetween(batchRows == null ? MAX_BATCH_ROWS : batchRows, 1, MAX_BATCH_ROWS, "batchRows");
+        this.parallelism = ValidationUtils.ensureBetween(parallelism == null ? 4 : parallelism, 1, 256, "parallelism");
+        this.maxRowsPerSecond = ValidationUtils.ensureBetween(maxRowsPerSecond == null ? 0 : maxRowsPerSecond, 0, Integer.MAX_VALUE, "maxRowsPerSecond");
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Delete the rows of the items. Items are {@link PrimaryKey}s or the model objects accepted by
+     * {@link TablestoreHelper#batchDelete(SyncClientInterface, String, Iterator)}.
+     *
+     * @return the final progress
+     */
+    public <T> Progress delete(Iterator<T> iterator) {
+        ValidationUtils.ensureNotNull(iterator, "iterator");
+        Pipeline pipeline = new Pipeline();
+        try {
+            List<RowChange> rowChanges = new ArrayList<>(batchRows);
+            while (iterator.hasNext() && pipeline.failure.get() == null) {
+                rowChanges.add(TablestoreHelper.toRowDeleteChange(tableName, iterator.next()));
+                if (rowChanges.size() == batchRows) {
+                    pipeline.submit(rowChanges, !iterator.hasNext());
+                    rowChanges = new ArrayList<>(batchRows);
+                }
+            }
+            if (!rowChanges.isEmpty() && pipeline.failure.get() == null) {
+                pipeline.submit(rowChanges, true);
+            }
+        } finally {
+            pipeline.await();
+        }
+        Progress progress = pipeline.progress();
+        Throwable failure = pipeline.failure.get();
+        if (failure != null) {
+            throw Exceptions.runtimeThrowable(
+                String.format(
+                    "batch delete failed, table:%s, deleted rows:%s, checkpoint:%s",
+                    tableName,
+                    progress.getDeletedRowCount(),
+                    progress.getCheckpoint() == null ? null : progress.getCheckpoint().jsonize()
+                ),
+                failure
+            );
+        }
+        log.info("batch delete finished, table:{}, {}", tableName, progress);
+        return progress;
+    }
+
+    /**
+     * Delete the rows of a primary key range, scanning only the primary key columns. The column names are taken from
+     * {@code inclusiveStartPrimaryKey}.
+     *
+     * @param inclusiveStartPrimaryKey start of the range, or the checkpoint of an interrupted deletion
+     * @param exclusiveEndPrimaryKey   end of the range
+     * @return the final progress
+     */
+    public Progress deleteRange(PrimaryKey inclusiveStartPrimaryKey, PrimaryKey exclusiveEndPrimaryKey) {
+        ValidationUtils.ensureNotNull(inclusiveStartPrimaryKey, "inclusiveStartPrimaryKey");
+        ValidationUtils.ensureNotNull(exclusiveEndPrimaryKey, "exclusiveEndPrimaryKey");
+        List<String> primaryKeyNames = new ArrayList<>();
+        for (PrimaryKeyColumn column : inclusiveStartPrimaryKey.getPrimaryKeyColumns()) {
+            primaryKeyNames.add(column.getName());
+        }
+        Iterator<PrimaryKey> primaryKeys = new TablestoreHelper.GetRangeIterator<>(
+            client,
+            tableName,
+            Row::getPrimaryKey,
+            inclusiveStartPrimaryKey,
+            exclusiveEndPrimaryKey,
+            null,
+            Order.ASC,
+            -1L,
+            5000,
+            primaryKeyNames
+        );
+        return delete(primaryKeys);
+    }
+
+    /**
+     * State of one {@link #delete(Iterator)} call.
+     */
+    private class Pipeline {
+        private final long start = System.nanoTime();
+        private final Semaphore window = new Semaphore(parallelism * 2);
+        private final AtomicReference<Throwable> failure = new AtomicReference<>();
+        /**
+         * Created for the second batch, a deletion of a single batch runs on the calling thread.
+         */
+        private ExecutorService executor;
+
+        // guarded by this
+        private long submittedBatches;
+        private long completedPrefix;
+        private final Map<Long, PrimaryKey> completedOutOfOrder = new TreeMap<>();
+        private PrimaryKey checkpoint;
+        private long deletedRowCount;
+        private long requestCount;
+
+        private long nextSubmitNanos = System.nanoTime();
+
+        /**
+         * @param last no batch follows this one
+         */
+        private void submit(List<RowChange> rowChanges, boolean last) {
+            pace(rowChanges.size());
+            long sequence;
+            synchronized (this) {
+                sequence = submittedBatches++;
+            }
+            if (last && sequence == 0) {
+                write(sequence, rowChanges);
+                return;
+            }
+            try {
+                window.acquire();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw Exceptions.runtimeThrowable("batch delete interrupted", e);
+            }
+            if (executor == null) {
+                AtomicInteger threadIndex = new AtomicInteger();
+                executor = Executors.newFixedThreadPool(parallelism, r -> {
+                    Thread thread = new Thread(r, "tablestore-batch-deleter-" + threadIndex.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            }
+            executor.execute(() -> {
+                try {
+                    write(sequence, rowChanges);
+                } finally {
+                    window.release();
+                }
+            });
+        }
+
+        private void write(long sequence, List<RowChange> rowChanges) {
+            try {
+                if (failure.get() == null) {
+                    TablestoreHelper.batchWrite(client, rowChanges);
+                    completed(sequence, rowChanges);
+                }
+            } catch (Throwable t) {
+                failure.compareAndSet(null, t);
+            }
+        }
+
+        private void pace(int rows) {
+            if (maxRowsPerSecond <= 0) {
+                return;
+            }
+            long waitNanos = nextSubmitNanos - System.nanoTime();
+            if (waitNanos > 0) {
+                try {
+                    TimeUnit.NANOSECONDS.sleep(waitNanos);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw Exceptions.runtimeThrowable("batch delete interrupted", e);
+                }
+            }
+            // no burst after an idle period
+            nextSubmitNanos = Math.max(nextSubmitNanos, System.nanoTime()) + rows * 1_000_000_000L / maxRowsPerSecond;
+        }
+
+        private void completed(long sequence, List<RowChange> rowChanges) {
+            Progress progress;
+            synchronized (this) {
+                deletedRowCount += rowChanges.size();
+                requestCount++;
+                completedOutOfOrder.put(sequence, rowChanges.get(rowChanges.size() - 1).getPrimaryKey());
+                PrimaryKey last;
+                while ((last = completedOutOfOrder.remove(completedPrefix)) != null) {
+                    checkpoint = last;
+                    completedPrefix++;
+                }
+                progress = progress();
+            }
+            if (progressListener != null) {
+                progressListener.accept(progress);
+            }
+        }
+
+        private synchronized Progress progress() {
+            return new Progress(deletedRowCount, requestCount, System.nanoTime() - start, checkpoint);
+        }
+
+        private void await() {
+            if (executor == null) {
+                return;
+            }
+            executor.shutdown();
+            try {
+                while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                    log.info("batch delete waiting for in-flight requests, table:{}, {}", tableName, progress());
+                }
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Progress {
+
+        /**
+         * Rows deleted so far, including the rows of batches after the checkpoint.
+         */
+        private final long deletedRowCount;
+
+        /**
+         * Successful BatchWriteRow requests.
+         */
+        private final long requestCount;
+
+        private final long elapsedNanos;
+
+        /**
+         * Last primary key of the longest prefix of completed batches, every row produced up to it is deleted. Null if the first batch is not
+         * completed yet.
+         */
+        @ToString.Exclude
+        private final PrimaryKey checkpoint;
+
+        @ToString.Include
+        public double rowsPerSecond() {
+            return elapsedNanos == 0 ? 0 : deletedRowCount * 1e9 / elapsedNanos;
+        }
+    }
+}
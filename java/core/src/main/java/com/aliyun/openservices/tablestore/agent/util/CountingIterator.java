@@ -0,0 +1,56 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import java.util.Iterator;
+import java.util.function.LongConsumer;
+
+/**
+ * Iterator passing the number of elements it returned to a callback, once, when it is exhausted or closed. Closing it closes the delegate
+ * if that is {@link AutoCloseable}, as the iterators of the parallel list methods are.
+ */
+public class CountingIterator<E> implements Iterator<E>, AutoCloseable {
+
+    private final Iterator<E> delegate;
+    private final LongConsumer onDone;
+    private long count;
+    private boolean done;
+
+    public CountingIterator(Iterator<E> delegate, LongConsumer onDone) {
+        this.delegate = delegate;
+        this.onDone = onDone;
+    }
+
+    @Override
+    public boolean hasNext() {
+        boolean hasNext = delegate.hasNext();
+        if (!hasNext) {
+            done();
+        }
+        return hasNext;
+    }
+
+    @Override
+    public E next() {
+        E next = delegate.next();
+        count++;
+        return next;
+    }
+
+    @Override
+    public void close() {
+        done();
+        if (delegate instanceof AutoCloseable) {
+            try {
+                ((AutoCloseable) delegate).close();
+            } catch (Exception e) {
+                throw Exceptions.runtimeThrowable("close iterator failed", e);
+            }
+        }
+    }
+
+    private void done() {
+        if (!done) {
+            done = true;
+            onDone.accept(count);
+        }
+    }
+}
@@ -0,0 +1,266 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Arrays;
+
+/**
+ * Encoder and decoder of the JSON embedding format ({@code [f1,f2,...]}) shared with the other Tablestore agent memory SDKs.
+ *
+ * <p>
+ * The decoder parses the text directly into the result array: numbers with at most 18 significant digits and a small decimal exponent are
+ * converted exactly with the Clinger fast path, everything else (long mantissas, subnormal or out of range values, unexpected tokens) falls back
+ * to {@link Float#parseFloat(String)} or to Jackson, so for valid input the result is the same as
+ * {@code new ObjectMapper().readValue(json, float[].class)}.
+ * </p>
+ * <p>
+ * The encoder produces the same text as Jackson ({@link Float#toString(float)} for every element, no whitespace) using a thread local
+ * {@link StringBuilder}.
+ * </p>
+ */
+public class EmbeddingJsonCodec {
+
+    private EmbeddingJsonCodec() {}
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private static final int MAX_REUSED_BUILDER_CAPACITY = 64 * 1024;
+
+    private static final ThreadLocal<StringBuilder> BUILDER = ThreadLocal.withInitial(() -> new StringBuilder(1024));
+
+    /**
+     * Exact powers of ten representable as double, the limit of the Clinger fast path.
+     */
+    private static final double[] POWERS_OF_TEN = {
+        1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22 };
+
+    /**
+     * Bits of a double mantissa dropped when it is narrowed to a float.
+     */
+    private static final int DROPPED_MANTISSA_BITS = 52 - 23;
+
+    private static final long DROPPED_MANTISSA_MASK = (1L << DROPPED_MANTISSA_BITS) - 1;
+
+    private static final long FLOAT_HALF_ULP = 1L << (DROPPED_MANTISSA_BITS - 1);
+
+    public static String encode(float[] embedding) {
+        for (float value : embedding) {
+            if (Float.isNaN(value) || Float.isInfinite(value)) {
+                return encodeWithJackson(embedding);
+            }
+        }
+        StringBuilder builder = BUILDER.get();
+        builder.setLength(0);
+        encode(embedding, builder);
+        String result = builder.toString();
+        if (builder.capacity() > MAX_REUSED_BUILDER_CAPACITY) {
+            BUILDER.remove();
+        }
+        return result;
+    }
+
+    /**
+     * Append the JSON array of the finite values to the builder.
+     */
+    public static void encode(float[] embedding, StringBuilder builder) {
+        builder.append('[');
+        for (int i = 0; i < embedding.length; i++) {
+            if (i > 0) {
+                builder.append(',');
+            }
+            builder.append(embedding[i]);
+        }
+        builder.append(']');
+    }
+
+    public static float[] decode(String json) {
+        return decode(json, countElements(json));
+    }
+
+    /**
+     * Decode the JSON array into a new array of the given dimension. If the text does not contain exactly {@code dimension} numbers the
+     * length of the result follows the text.
+     */
+    public static float[] decode(String json, int dimension) {
+        float[] result = new float[Math.max(dimension, 0)];
+        if (decodeInto(json, result, 0, result.length)) {
+            return result;
+        }
+        return decodeWithJackson(json);
+    }
+
+    /**
+     * Decode the JSON array into {@code target} from {@code offset}, for instance a row of a matrix of embeddings.
+     *
+     * @throws IllegalArgumentException if the text does not contain exactly {@code dimension} numbers
+     */
+    public static void decode(String json, float[] target, int offset, int dimension) {
+        if (decodeInto(json, target, offset, dimension)) {
+            return;
+        }
+        float[] decoded = decodeWithJackson(json);
+        if (decoded.length != dimension) {
+            throw Exceptions.illegalArgument("decode embedding failed, dimension:%s, expected:%s", decoded.length, dimension);
+        }
+        System.arraycopy(decoded, 0, target, offset, dimension);
+    }
+
+    /**
+     * @return false if the text is not a plain array of exactly {@code dimension} numbers, the content of {@code result} is undefined then.
+     */
+    private static boolean decodeInto(String json, float[] result, int offset, int dimension) {
+        int length = json.length();
+        int pos = skipWhitespace(json, 0);
+        if (pos >= length || json.charAt(pos) != '[') {
+            return false;
+        }
+        pos = skipWhitespace(json, pos + 1);
+        if (pos < length && json.charAt(pos) == ']') {
+            return dimension == 0 && skipWhitespace(json, pos + 1) == length;
+        }
+        int index = 0;
+        while (true) {
+            if (index >= dimension) {
+                return false;
+            }
+            int start = pos;
+            boolean negative = false;
+            if (pos < length && json.charAt(pos) == '-') {
+                negative = true;
+                pos++;
+            }
+            long mantissa = 0;
+            int significantDigits = 0;
+            int exponent = 0;
+            int digits = 0;
+            char c;
+            while (pos < length && (c = json.charAt(pos)) >= '0' && c <= '9') {
+                if (mantissa != 0 || c != '0') {
+                    if (significantDigits < 18) {
+                        mantissa = mantissa * 10 + (c - '0');
+                    } else {
+                        exponent++;
+                    }
+                    significantDigits++;
+                }
+                digits++;
+                pos++;
+            }
+            if (digits == 0) {
+                return false;
+            }
+            if (pos < length && json.charAt(pos) == '.') {
+                pos++;
+                int fractionDigits = 0;
+                while (pos < length && (c = json.charAt(pos)) >= '0' && c <= '9') {
+                    if (mantissa != 0 || c != '0') {
+                        if (significantDigits < 18) {
+                            mantissa = mantissa * 10 + (c - '0');
+                            exponent--;
+                        }
+                        significantDigits++;
+                    } else {
+                        exponent--;
+                    }
+                    fractionDigits++;
+                    pos++;
+                }
+                if (fractionDigits == 0) {
+                    return false;
+                }
+            }
+            if (pos < length && ((c = json.charAt(pos)) == 'e' || c == 'E')) {
+                pos++;
+                boolean negativeExponent = false;
+                if (pos < length && ((c = json.charAt(pos)) == '+' || c == '-')) {
+                    negativeExponent = c == '-';
+                    pos++;
+                }
+                int explicitExponent = 0;
+                int exponentDigits = 0;
+                while (pos < length && (c = json.charAt(pos)) >= '0' && c <= '9') {
+                    if (explicitExponent < 10_000) {
+                        explicitExponent = explicitExponent * 10 + (c - '0');
+                    }
+                    exponentDigits++;
+                    pos++;
+                }
+                if (exponentDigits == 0) {
+                    return false;
+                }
+                exponent += negativeExponent ? -explicitExponent : explicitExponent;
+            }
+            result[offset + index++] = toFloat(json, start, pos, negative, mantissa, significantDigits, exponent);
+
+            pos = skipWhitespace(json, pos);
+            if (pos >= length) {
+                return false;
+            }
+            c = json.charAt(pos);
+            if (c == ']') {
+                return index == dimension && skipWhitespace(json, pos + 1) == length;
+            }
+            if (c != ',') {
+                return false;
+            }
+            pos = skipWhitespace(json, pos + 1);
+        }
+    }
+
+    private static float toFloat(String json, int start, int end, boolean negative, long mantissa, int significantDigits, int exponent) {
+        if (mantissa == 0) {
+            return negative ? -0.0f : 0.0f;
+        }
+        if (significantDigits <= 18 && mantissa < (1L << 53) && exponent >= -22 && exponent <= 22) {
+            double value = exponent >= 0 ? mantissa * POWERS_OF_TEN[exponent] : mantissa / POWERS_OF_TEN[-exponent];
+            // narrowing the correctly rounded double is only exact if it is a normal float and not halfway between two floats
+            long bits = Double.doubleToRawLongBits(value);
+            if (value >= Float.MIN_NORMAL && value <= Float.MAX_VALUE && (bits & DROPPED_MANTISSA_MASK) != FLOAT_HALF_ULP) {
+                return negative ? (float) -value : (float) value;
+            }
+        }
+        return Float.parseFloat(json.substring(start, end));
+    }
+
+    private static int skipWhitespace(String json, int pos) {
+        int length = json.length();
+        while (pos < length) {
+            char c = json.charAt(pos);
+            if (c != ' ' && c != '\n' && c != '\r' && c != '\t') {
+                break;
+            }
+            pos++;
+        }
+        return pos;
+    }
+
+    private static int countElements(String json) {
+        int commas = 0;
+        boolean hasDigit = false;
+        for (int i = 0; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == ',') {
+                commas++;
+            } else if (c >= '0' && c <= '9') {
+                hasDigit = true;
+            }
+        }
+        return hasDigit ? commas + 1 : 0;
+    }
+
+    private static String encodeWithJackson(float[] embedding) {
+        try {
+            return MAPPER.writeValueAsString(embedding);
+        } catch (JsonProcessingException e) {
+            throw Exceptions.runtimeThrowable(String.format("encode embedding failed, embedding:%s", Arrays.toString(embedding)), e);
+        }
+    }
+
+    private static float[] decodeWithJackson(String json) {
+        try {
+            return MAPPER.readValue(json, float[].class);
+        } catch (JsonProcessingException e) {
+            throw Exceptions.runtimeThrowable(String.format("decode embedding failed, embedding:%s", json), e);
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.filter.condition.AbstractConditionFilter;
+import com.aliyun.openservices.tablestore.agent.model.filter.condition.And;
+import com.aliyun.openservices.tablestore.agent.model.filter.condition.Not;
+import com.aliyun.openservices.tablestore.agent.model.filter.condition.Or;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.AbstractOperationFilter;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.Eq;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.Exists;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.Gt;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.Gte;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.In;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.Lt;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.Lte;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.NotEq;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.NotIn;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.TextMatch;
+import com.aliyun.openservices.tablestore.agent.model.filter.operation.TextMatchPhrase;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * Evaluation of a {@link Filter} in process, against the column values of a row, for the stores keeping their rows in memory. The filters
+ * are compiled once into a predicate taking the lookup of a column value by name, so they are validated before any row is read, as the
+ * Tablestore requests built by {@link TablestoreHelper#parserTableFilters(Filter)} and {@link TablestoreHelper#parserSearchFilters(Filter)}
+ * are.
+ *
+ * <p>
+ * Values are compared as their Tablestore columns: integers of any width as longs, floats as doubles and binaries by unsigned bytes. Values
+ * of different column types never match.
+ * </p>
+ */
+public final class FilterMatcher {
+
+    private static final Predicate<Function<String, Object>> MATCH_ALL = columns -> true;
+
+    private FilterMatcher() {}
+
+    /**
+     * The filter of a GetRange: only Eq, NotEq, Gt, Gte, Lt and Lte within And, Or and Not, a row without the column passes as
+     * {@code SingleColumnValueFilter} does by default.
+     *
+     * @param metadataFilter filter, null matches all the rows
+     * @return predicate over the lookup of a column value by name, null when the row has no such column
+     */
+    public static Predicate<Function<String, Object>> compileTableFilter(Filter metadataFilter) {
+        return compile(metadataFilter, false);
+    }
+
+    /**
+     * The query of a search index: all the operations but VectorQuery, a row without the field doesn't match an operation on it (NotEq and
+     * NotIn being a must_not they do match). TextMatch matches the rows having one of the words of the text, TextMatchPhrase the rows
+     * having all of them in sequence, the words being split as by the single word analyzer: lower-cased, on the characters that are neither
+     * a letter nor a digit, CJK ideographs being a word each.
+     *
+     * @param metadataFilter filter, null matches all the rows
+     * @return predicate over the lookup of a field value by name, null when the row has no such field
+     */
+    public static Predicate<Function<String, Object>> compileSearchFilter(Filter metadataFilter) {
+        return compile(metadataFilter, true);
+    }
+
+    private static Predicate<Function<String, Object>> compile(Filter metadataFilter, boolean search) {
+        if (metadataFilter == null) {
+            return MATCH_ALL;
+        }
+        if (metadataFilter instanceof AbstractConditionFilter) {
+            if (metadataFilter instanceof And) {
+                List<Predicate<Function<String, Object>>> predicates = compileAll(((And) metadataFilter).getFilters(), search);
+                return columns -> predicates.stream().allMatch(p -> p.test(columns));
+            } else if (metadataFilter instanceof Or) {
+                List<Predicate<Function<String, Object>>> predicates = compileAll(((Or) metadataFilter).getFilters(), search);
+                return columns -> predicates.stream().anyMatch(p -> p.test(columns));
+            } else if (metadataFilter instanceof Not) {
+                List<Predicate<Function<String, Object>>> predicates = compileAll(((Not) metadataFilter).getFilters(), search);
+                return columns -> predicates.stream().noneMatch(p -> p.test(columns));
+            } else {
+                throw Exceptions.illegalArgument("unsupported filter type:%s, filter:%s", metadataFilter.getClass(), metadataFilter);
+            }
+        } else if (metadataFilter instanceof AbstractOperationFilter) {
+            return compileOperation((AbstractOperationFilter) metadataFilter, search);
+        } else {
+            throw Exceptions.illegalArgument("unsupported filter type:%s, filter:%s", metadataFilter.getClass(), metadataFilter);
+        }
+    }
+
+    private static List<Predicate<Function<String, Object>>> compileAll(List<Filter> filters, boolean search) {
+        List<Predicate<Function<String, Object>>> predicates = new ArrayList<>(filters.size());
+        for (Filter filter : filters) {
+            predicates.add(compile(filter, search));
+        }
+        return predicates;
+    }
+
+    private static Predicate<Function<String, Object>> compileOperation(AbstractOperationFilter metadataFilter, boolean search) {
+        if (metadataFilter instanceof Eq) {
+            Eq eq = (Eq) metadataFilter;
+            return compare(eq.getKey(), eq.getValue(), search, c -> c == 0);
+        } else if (metadataFilter instanceof NotEq) {
+            NotEq notEq = (NotEq) metadataFilter;
+            Object value = normalize(notEq.getValue());
+            return columns -> {
+                Object column = columns.apply(notEq.getKey());
+                if (column == null) {
+                    return true;
+                }
+                Integer c = compareValues(normalize(column), value);
+                return c == null || c != 0;
+            };
+        } else if (metadataFilter instanceof Gt) {
+            Gt gt = (Gt) metadataFilter;
+            return compare(gt.getKey(), gt.getValue(), search, c -> c > 0);
+        } else if (metadataFilter instanceof Gte) {
+            Gte gte = (Gte) metadataFilter;
+            return compare(gte.getKey(), gte.getValue(), search, c -> c >= 0);
+        } else if (metadataFilter instanceof Lt) {
+            Lt lt = (Lt) metadataFilter;
+            return compare(lt.getKey(), lt.getValue(), search, c -> c < 0);
+        } else if (metadataFilter instanceof Lte) {
+            Lte lte = (Lte) metadataFilter;
+            return compare(lte.getKey(), lte.getValue(), search, c -> c <= 0);
+        }
+        if (!search) {
+            throw Exceptions.illegalArgument("unsupported filter type:%s, filter:%s", metadataFilter.getClass(), metadataFilter);
+        }
+        if (metadataFilter instanceof Exists) {
+            Exists exists = (Exists) metadataFilter;
+            return columns -> columns.apply(exists.getKey()) != null;
+        } else if (metadataFilter instanceof In) {
+            In in = (In) metadataFilter;
+            Predicate<Object> anyOf = anyOf(in.getValues());
+            return columns -> {
+                Object column = columns.apply(in.getKey());
+                return column != null && anyOf.test(normalize(column));
+            };
+        } else if (metadataFilter instanceof NotIn) {
+            NotIn notIn = (NotIn) metadataFilter;
+            Predicate<Object> anyOf = anyOf(notIn.getValues());
+            return columns -> {
+                Object column = columns.apply(notIn.getKey());
+                return column == null || !anyOf.test(normalize(column));
+            };
+        } else if (metadataFilter instanceof TextMatch) {
+            TextMatch match = (TextMatch) metadataFilter;
+            Set<String> words = new HashSet<>(tokenize(match.getValue()));
+            return columns -> {
+                Object column = columns.apply(match.getKey());
+                return column instanceof String && tokenize((String) column).stream().anyMatch(words::contains);
+            };
+        } else if (metadataFilter instanceof TextMatchPhrase) {
+            TextMatchPhrase matchPhrase = (TextMatchPhrase) metadataFilter;
+            List<String> phrase = tokenize(matchPhrase.getValue());
+            return columns -> {
+                Object column = columns.apply(matchPhrase.getKey());
+                return column instanceof String && !phrase.isEmpty() && Collections.indexOfSubList(tokenize((String) column), phrase) >= 0;
+            };
+        } else {
+            throw Exceptions.illegalArgument("unsupported filter type:%s, filter:%s", metadataFilter.getClass(), metadataFilter);
+        }
+    }
+
+    private static Predicate<Function<String, Object>> compare(String key, Object value, boolean search, Predicate<Integer> expected) {
+        Object normalized = normalize(value);
+        return columns -> {
+            Object column = columns.apply(key);
+            if (column == null) {
+                return !search;
+            }
+            Integer c = compareValues(normalize(column), normalized);
+            return c != null && expected.test(c);
+        };
+    }
+
+    private static Predicate<Object> anyOf(Collection<?> values) {
+        List<Object> normalized = new ArrayList<>(values.size());
+        for (Object value : values) {
+            normalized.add(normalize(value));
+        }
+        return column -> {
+            for (Object value : normalized) {
+                Integer c = compareValues(column, value);
+                if (c != null && c == 0) {
+                    return true;
+                }
+            }
+            return false;
+        };
+    }
+
+    /**
+     * @return the value as the type of its Tablestore column, see {@link TablestoreHelper#toColumnValue(Object)}
+     */
+    public static Object normalize(Object value) {
+        if (value instanceof Integer || value instanceof Short) {
+            return ((Number) value).longValue();
+        } else if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        return value;
+    }
+
+    /**
+     * @param a normalized value
+     * @param b normalized value
+     * @return the comparison of the values, or null if they are not of the same column type
+     */
+    public static Integer compareValues(Object a, Object b) {
+        if (a instanceof Long && b instanceof Long) {
+            return Long.compare((Long) a, (Long) b);
+        } else if (a instanceof Double && b instanceof Double) {
+            return Double.compare((Double) a, (Double) b);
+        } else if (a instanceof String && b instanceof String) {
+            return ((String) a).compareTo((String) b);
+        } else if (a instanceof Boolean && b instanceof Boolean) {
+            return Boolean.compare((Boolean) a, (Boolean) b);
+        } else if (a instanceof byte[] && b instanceof byte[]) {
+            return compareUnsigned((byte[]) a, (byte[]) b);
+        }
+        return null;
+    }
+
+    private static int compareUnsigned(byte[] a, byte[] b) {
+        for (int i = 0; i < Math.min(a.length, b.length); i++) {
+            int c = Integer.compare(a[i] & 0xff, b[i] & 0xff);
+            if (c != 0) {
+                return c;
+            }
+        }
+        return Integer.compare(a.length, b.length);
+    }
+
+    /**
+     * @return the words of the text as split by the single word analyzer of a search index
+     */
+    public static List<String> tokenize(String text) {
+        List<String> words = new ArrayList<>();
+        if (text == null) {
+            return words;
+        }
+        String lower = text.toLowerCase(Locale.ROOT);
+        int start = -1;
+        for (int i = 0; i < lower.length(); ) {
+            int c = lower.codePointAt(i);
+            boolean ideograph = Character.isIdeographic(c);
+            if (Character.isLetterOrDigit(c) && !ideograph) {
+                if (start < 0) {
+                    start = i;
+                }
+            } else {
+                if (start >= 0) {
+                    words.add(lower.substring(start, i));
+                    start = -1;
+                }
+                if (ideograph) {
+                    words.add(new String(Character.toChars(c)));
+                }
+            }
+            i += Character.charCount(c);
+        }
+        if (start >= 0) {
+            words.add(lower.substring(start));
+        }
+        return words;
+    }
+}
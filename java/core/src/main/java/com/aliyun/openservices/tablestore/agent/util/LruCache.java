@@ -0,0 +1,202 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Predicate;
+import java.util.function.ToLongFunction;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Getter;
+import lombok.ToString;
+
+/**
+ * Small in-process cache with a max entry count, an optional max total weight, a time to live after write and least recently used eviction.
+ *
+ * <p>
+ * All operations lock the cache, it is meant for a few thousand hot entries whose loading costs a network round trip, not as a general
+ * purpose concurrent map. Values are returned as stored, callers caching mutable objects should store and return copies.
+ * </p>
+ */
+public class LruCache<K, V> {
+
+    private final int maxSize;
+    private final long maxWeight;
+    private final ToLongFunction<V> weigher;
+    private final long ttlNanos;
+    private final LongSupplier ticker;
+
+    private final LinkedHashMap<K, Entry<V>> map;
+    private long weight;
+
+    private long hitCount;
+    private long missCount;
+    private long evictionCount;
+    private long expirationCount;
+
+    /**
+     * @param maxSize   max entry count, default 10000
+     * @param maxWeight max sum of the weights of the entries, default no limit
+     * @param weigher   weight of a value, usually its approximate size in bytes, computed once when it is put, default 1
+     * @param ttlMillis time to live of an entry after it is put, 0 for no expiration, default 0
+     * @param ticker    nanosecond clock, default {@link System#nanoTime()}
+     */
+    @Builder
+    private LruCache(Integer maxSize, Long maxWeight, ToLongFunction<V> weigher, Long ttlMillis, LongSupplier ticker) {
+        this.maxSize = ValidationUtils.ensureBetween(maxSize == null ? 10000 : maxSize, 1, Integer.MAX_VALUE, "maxSize");
+        this.maxWeight = ValidationUtils.ensureBetween(maxWeight == null ? Long.MAX_VALUE : maxWeight, 1L, Long.MAX_VALUE, "maxWeight");
+        this.weigher = weigher == null ? value -> 1L : weigher;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ValidationUtils.ensureBetween(ttlMillis == null ? 0L : ttlMillis, 0L, Long.MAX_VALUE, "ttlMillis"));
+        this.ticker = ticker == null ? System::nanoTime : ticker;
+        this.map = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * @return the value, or null if absent or expired
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = map.get(key);
+        if (entry != null && isExpired(entry)) {
+            remove(key);
+            expirationCount++;
+            entry = null;
+        }
+        if (entry == null) {
+            missCount++;
+            return null;
+        }
+        hitCount++;
+        return entry.value;
+    }
+
+    public synchronized void put(K key, V value) {
+        ValidationUtils.ensureNotNull(value, "value");
+        Entry<V> entry = new Entry<>(value, ValidationUtils.ensureGreaterThanAndEqualZero(weigher.applyAsLong(value), "weight"), ticker.getAsLong());
+        Entry<V> previous = map.put(key, entry);
+        if (previous != null) {
+            weight -= previous.weight;
+        }
+        weight += entry.weight;
+        evictIfNeeded();
+    }
+
+    /**
+     * Put the value unless {@code stale} returns true, checked under the cache lock. A loader reads a write counter before loading the value
+     * and passes a comparison with it here, writers bump the counter before invalidating the entry: either the comparison sees the write,
+     * or the invalidation comes after the put and removes the value.
+     *
+     * @return whether the value was put
+     */
+    public synchronized boolean putUnless(K key, V value, BooleanSupplier stale) {
+        if (stale.getAsBoolean()) {
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    public synchronized void invalidate(K key) {
+        remove(key);
+    }
+
+    /**
+     * Remove the entries whose key matches.
+     */
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<K, Entry<V>> entry = iterator.next();
+            if (predicate.test(entry.getKey())) {
+                iterator.remove();
+                weight -= entry.getValue().weight;
+            }
+        }
+    }
+
+    public synchronized void invalidateAll() {
+        map.clear();
+        weight = 0;
+    }
+
+    /**
+     * @return entry count, including expired entries not removed yet
+     */
+    public synchronized int size() {
+        return map.size();
+    }
+
+    /**
+     * @return sum of the weights of the entries, including expired entries not removed yet
+     */
+    public synchronized long weight() {
+        return weight;
+    }
+
+    public synchronized Stats stats() {
+        return new Stats(hitCount, missCount, evictionCount, expirationCount);
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return ttlNanos > 0 && ticker.getAsLong() - entry.writeNanos >= ttlNanos;
+    }
+
+    private void remove(K key) {
+        Entry<V> entry = map.remove(key);
+        if (entry != null) {
+            weight -= entry.weight;
+        }
+    }
+
+    private void evictIfNeeded() {
+        Iterator<Map.Entry<K, Entry<V>>> iterator = map.entrySet().iterator();
+        while ((map.size() > maxSize || weight > maxWeight) && iterator.hasNext()) {
+            Entry<V> eldest = iterator.next().getValue();
+            iterator.remove();
+            weight -= eldest.weight;
+            if (isExpired(eldest)) {
+                expirationCount++;
+            } else {
+                evictionCount++;
+            }
+        }
+    }
+
+    private static class Entry<V> {
+        private final V value;
+        private final long weight;
+        private final long writeNanos;
+
+        private Entry(V value, long weight, long writeNanos) {
+            this.value = value;
+            this.weight = weight;
+            this.writeNanos = writeNanos;
+        }
+    }
+
+    @Getter
+    @AllArgsConstructor
+    @ToString
+    public static class Stats {
+        private final long hitCount;
+        private final long missCount;
+
+        /**
+         * Entries removed to respect the max size or the max weight.
+         */
+        private final long evictionCount;
+
+        /**
+         * Entries removed because their time to live elapsed.
+         */
+        private final long expirationCount;
+
+        @ToString.Include
+        public double hitRate() {
+            long requests = hitCount + missCount;
+            return requests == 0 ? 1.0 : (double) hitCount / requests;
+        }
+    }
+}
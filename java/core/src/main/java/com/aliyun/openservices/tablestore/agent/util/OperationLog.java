@@ -0,0 +1,157 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.extern.slf4j.Slf4j;
+import org.slf4j.helpers.MessageFormatter;
+
+/**
+ * Log of the list and search calls of the stores, cheap enough for their hot path: the requests of a sample of the calls are logged at INFO
+ * and the requests slower than a threshold at WARN, each line with the request id, the duration and the arguments of the call. The
+ * arguments are only rendered when a line is written. A call that can log nothing, not sampled while the slow requests are not logged, gets
+ * its metrics back as is; any other call, as every call with the default threshold, allocates a small wrapper holding the arguments, and
+ * the varargs array of the calls with more than one argument.
+ *
+ * <p>
+ * The lines are written to the logger of this class, so that they can be routed or silenced apart from the other logs of the stores.
+ * </p>
+ */
+@Slf4j
+public class OperationLog {
+
+    public static final OperationLog DEFAULT = OperationLog.builder().build();
+
+    private final double sampleRate;
+    private final long slowThresholdNanos;
+
+    /**
+     * @param sampleRate          fraction of the calls whose requests are all logged, between 0 and 1, default 0
+     * @param slowThresholdMillis requests taking longer are logged, default 1000, negative to disable
+     */
+    @Builder
+    private OperationLog(Double sampleRate, Long slowThresholdMillis) {
+        this.sampleRate = sampleRate == null ? 0 : ValidationUtils.ensureBetween(sampleRate, 0, 1, "sampleRate");
+        if (slowThresholdMillis == null) {
+            this.slowThresholdNanos = TimeUnit.SECONDS.toNanos(1);
+        } else {
+            this.slowThresholdNanos = slowThresholdMillis < 0 ? Long.MAX_VALUE : TimeUnit.MILLISECONDS.toNanos(slowThresholdMillis);
+        }
+    }
+
+    /**
+     * Start a call with a single argument, without the varargs array of {@link #start(StoreMetrics, String, String, Object...)}.
+     *
+     * @param operation name of the call, as {@code searchSessions}
+     * @param format    slf4j format of the argument of the call, only rendered when a line is written
+     */
+    public StoreMetrics start(StoreMetrics metrics, String operation, String format, Object argument) {
+        Boolean sampled = sample();
+        if (sampled == null) {
+            return metrics;
+        }
+        return new LoggedCall(metrics, operation, format, argument, null, sampled);
+    }
+
+    /**
+     * Start a call: the metrics returned record its requests to {@code metrics} and log them if the call is sampled or they are slow.
+     *
+     * @param operation name of the call, as {@code listSessions}
+     * @param format    slf4j format of the arguments of the call, only rendered when a line is written
+     */
+    public StoreMetrics start(StoreMetrics metrics, String operation, String format, Object... arguments) {
+        Boolean sampled = sample();
+        if (sampled == null) {
+            return metrics;
+        }
+        return new LoggedCall(metrics, operation, format, null, arguments, sampled);
+    }
+
+    /**
+     * @return whether a new call is sampled, null if none of its requests can be logged
+     */
+    private Boolean sample() {
+        boolean sampled = sampleRate > 0 && ThreadLocalRandom.current().nextDouble() < sampleRate && log.isInfoEnabled();
+        if (!sampled && (slowThresholdNanos == Long.MAX_VALUE || !log.isWarnEnabled())) {
+            return null;
+        }
+        return sampled;
+    }
+
+    private class LoggedCall implements StoreMetrics {
+
+        private final StoreMetrics delegate;
+        private final String operation;
+        private final String format;
+        /**
+         * The argument of a single argument call, {@link #arguments} is null then.
+         */
+        private final Object argument;
+        private final Object[] arguments;
+        private final boolean sampled;
+
+        private LoggedCall(StoreMetrics delegate, String operation, String format, Object argument, Object[] arguments, boolean sampled) {
+            this.delegate = delegate;
+            this.operation = operation;
+            this.format = format;
+            this.argument = argument;
+            this.arguments = arguments;
+            this.sampled = sampled;
+        }
+
+        @Override
+        public void recordOperation(String store, String operation, long elapsedNanos, String errorCode) {
+            delegate.recordOperation(store, operation, elapsedNanos, errorCode);
+        }
+
+        @Override
+        public void recordRowsRead(String store, String operation, long rows) {
+            delegate.recordRowsRead(store, operation, rows);
+        }
+
+        @Override
+        public void recordRowsWritten(String store, String operation, long rows) {
+            delegate.recordRowsWritten(store, operation, rows);
+        }
+
+        @Override
+        public void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {
+            delegate.recordRequest(table, request, elapsedNanos, rows, requestId, errorCode);
+            if (elapsedNanos > slowThresholdNanos) {
+                log.warn(
+                    "slow request, operation:{}, table:{}, request:{}, request_id:{}, elapsed_ms:{}, rows:{}, error:{}, arguments:[{}]",
+                    operation,
+                    table,
+                    request,
+                    requestId,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    rows,
+                    errorCode,
+                    renderArguments()
+                );
+            } else if (sampled) {
+                log.info(
+                    "sampled request, operation:{}, table:{}, request:{}, request_id:{}, elapsed_ms:{}, rows:{}, error:{}, arguments:[{}]",
+                    operation,
+                    table,
+                    request,
+                    requestId,
+                    TimeUnit.NANOSECONDS.toMillis(elapsedNanos),
+                    rows,
+                    errorCode,
+                    renderArguments()
+                );
+            }
+        }
+
+        private String renderArguments() {
+            return arguments == null ? MessageFormatter.format(format, argument).getMessage() : MessageFormatter.arrayFormat(format, arguments).getMessage();
+        }
+
+        @Override
+        public void registerCache(String cache, Supplier<LruCache.Stats> stats) {
+            delegate.registerCache(cache, stats);
+        }
+    }
+}
@@ -0,0 +1,319 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.model.ComputeSplitsBySizeRequest;
+import com.alicloud.openservices.tablestore.model.ComputeSplitsBySizeResponse;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.alicloud.openservices.tablestore.model.Split;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import lombok.Builder;
+import lombok.NonNull;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Full scan of a table split into primary key ranges by ComputeSplitsBySize, so that the ranges can be read concurrently.
+ *
+ * <p>
+ * {@link #stream()} returns a parallel stream whose spliterator splits on range boundaries, each range is read by one
+ * {@link TablestoreHelper.GetRangeIterator}. {@link #iterator()} reads the ranges with {@code parallelism} threads and merges their rows in
+ * arrival order, rows of a range stay in primary key order but ranges are interleaved.
+ * </p>
+ */
+@Slf4j
+public class ParallelRangeScanner<E> {
+
+    private final SyncClientInterface client;
+    private final String tableName;
+    private final Function<Row, E> translateFunction;
+    private final List<String> columnsToGet;
+    private final long splitSizeIn100MB;
+    private final int batchSize;
+    private final int parallelism;
+
+    /**
+     * @param client            tablestore client, a {@code SyncClient} can be passed directly
+     * @param tableName         table to scan
+     * @param translateFunction row to element
+     * @param columnsToGet      columns to read, default all
+     * @param splitSizeIn100MB  approximate size of a range in 100MB, default 1
+     * @param batchSize         rows of a GetRange request, default 5000
+     * @param parallelism       threads of {@link #iterator()}, default 4
+     */
+    @Builder
+    private ParallelRangeScanner(
+        @NonNull SyncClientInterface client,
+        @NonNull String tableName,
+        @NonNull Function<Row, E> translateFunction,
+        List<String> columnsToGet,
+        Long splitSizeIn100MB,
+        Integer batchSize,
+        Integer parallelism
+    ) {
+        this.client = client;
+        this.tableName = tableName;
+        this.translateFunction = translateFunction;
+        this.columnsToGet = columnsToGet;
+        this.splitSizeIn100MB = ValidationUtils.ensureBetween(splitSizeIn100MB == null ? 1L : splitSizeIn100MB, 1L, Long.MAX_VALUE, "splitSizeIn100MB");
+        this.batchSize = ValidationUtils.ensureBetween(batchSize == null ? 5000 : batchSize, 1, 5000, "batchSize");
+        this.parallelism = ValidationUtils.ensureBetween(parallelism == null ? 4 : parallelism, 1, 256, "parallelism");
+    }
+
+    /**
+     * @return the ranges of the table in primary key order, the first lower bound is INF_MIN and the last upper bound is INF_MAX
+     */
+    public List<Split> computeSplits() {
+        try {
+            ComputeSplitsBySizeResponse response = client.computeSplitsBySize(new ComputeSplitsBySizeRequest(tableName, splitSizeIn100MB));
+            List<Split> splits = response.getSplits();
+            if (log.isDebugEnabled()) {
+                log.debug("compute splits, table:{}, splits:{}", tableName, splits.size());
+            }
+            return splits;
+        } catch (Exception e) {
+            throw Exceptions.runtimeThrowable(String.format("compute splits failed, table:%s", tableName), e);
+        }
+    }
+
+    /**
+     * Parallel stream of all the rows. Each range is read lazily by the thread processing it, ordered operations keep the primary key order.
+     */
+    public Stream<E> stream() {
+        return StreamSupport.stream(new SplitSpliterator(computeSplits(), 0, -1), true);
+    }
+
+    /**
+     * Iterator over all the rows, reading the ranges concurrently in the background. At most {@code 2 * parallelism} batches are buffered.
+     * The iterator should be exhausted or closed to release its threads, one dropped before that releases them once it is garbage
+     * collected.
+     */
+    public ScanIterator iterator() {
+        return new ScanIterator(computeSplits());
+    }
+
+    private Iterator<E> rangeIterator(Split split) {
+        return new TablestoreHelper.GetRangeIterator<>(
+            client,
+            tableName,
+            translateFunction,
+            split.getLowerBound(),
+            split.getUpperBound(),
+            null,
+            Order.ASC,
+            -1L,
+            batchSize,
+            columnsToGet
+        );
+    }
+
+    private class SplitSpliterator implements Spliterator<E> {
+        private final List<Split> splits;
+        private int next;
+        private final int end;
+        private Iterator<E> current;
+
+        private SplitSpliterator(List<Split> splits, int next, int end) {
+            this.splits = splits;
+            this.next = next;
+            this.end = end < 0 ? splits.size() : end;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super E> action) {
+            while (current == null || !current.hasNext()) {
+                if (next >= end) {
+                    return false;
+                }
+                current = rangeIterator(splits.get(next++));
+            }
+            action.accept(current.next());
+            return true;
+        }
+
+        @Override
+        public Spliterator<E> trySplit() {
+            // a range being read is not split, only the ranges not started yet
+            int remaining = end - next;
+            if (remaining < 2 || current != null) {
+                return null;
+            }
+            int middle = next + remaining / 2;
+            SplitSpliterator prefix = new SplitSpliterator(splits, next, middle);
+            next = middle;
+            return prefix;
+        }
+
+        @Override
+        public long estimateSize() {
+            // unknown row count, keeps the stream splitting down to single ranges
+            return next >= end && current == null ? 0 : Long.MAX_VALUE;
+        }
+
+        @Override
+        public int characteristics() {
+            return ORDERED | NONNULL;
+        }
+    }
+
+    /**
+     * Consumer side of a scan. The workers only reference the {@link Scan}, not this iterator, so that they can tell when it is dropped.
+     */
+    public class ScanIterator implements Iterator<E>, AutoCloseable {
+        private final Scan scan;
+
+        private int finishedWorkers;
+        private Iterator<E> current;
+
+        private ScanIterator(List<Split> splits) {
+            this.scan = new Scan(splits, this);
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (scan.closed) {
+                return false;
+            }
+            while (current == null || !current.hasNext()) {
+                if (finishedWorkers == scan.workers || scan.splits.isEmpty()) {
+                    return false;
+                }
+                Batch<E> batch;
+                try {
+                    batch = scan.queue.take();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    close();
+                    throw Exceptions.runtimeThrowable("parallel scan interrupted", e);
+                }
+                if (batch.error != null) {
+                    close();
+                    throw Exceptions.runtimeThrowable(String.format("parallel scan failed, table:%s", tableName), batch.error);
+                }
+                if (batch.items == null) {
+                    finishedWorkers++;
+                } else {
+                    current = batch.items.iterator();
+                }
+            }
+            return true;
+        }
+
+        @Override
+        public E next() {
+            if (!hasNext()) {
+                throw new NoSuchElementException();
+            }
+            return current.next();
+        }
+
+        /**
+         * Stop the background reads, the buffered rows are dropped.
+         */
+        @Override
+        public void close() {
+            scan.close();
+        }
+    }
+
+    /**
+     * Worker side of a scan: the ranges left, the batches read and the threads reading them. A worker blocked on a full queue gives up once
+     * the iterator consuming the queue is closed or garbage collected.
+     */
+    private class Scan {
+        private final List<Split> splits;
+        private final WeakReference<ScanIterator> consumer;
+        private final AtomicInteger nextSplit = new AtomicInteger();
+        private final BlockingQueue<Batch<E>> queue = new ArrayBlockingQueue<>(parallelism * 2);
+        private final ExecutorService executor;
+        private final int workers;
+        private volatile boolean closed;
+
+        private Scan(List<Split> splits, ScanIterator consumer) {
+            this.splits = splits;
+            this.consumer = new WeakReference<>(consumer);
+            this.workers = Math.max(1, Math.min(parallelism, splits.size()));
+            AtomicInteger threadIndex = new AtomicInteger();
+            this.executor = Executors.newFixedThreadPool(workers, r -> {
+                Thread thread = new Thread(r, "tablestore-parallel-scan-" + threadIndex.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            });
+            for (int i = 0; i < workers; i++) {
+                executor.execute(this::scan);
+            }
+            executor.shutdown();
+        }
+
+        private void scan() {
+            try {
+                int index;
+                while (!closed && (index = nextSplit.getAndIncrement()) < splits.size()) {
+                    Iterator<E> iterator = rangeIterator(splits.get(index));
+                    List<E> items = new ArrayList<>(batchSize);
+                    while (!closed && iterator.hasNext()) {
+                        items.add(iterator.next());
+                        if (items.size() == batchSize) {
+                            offer(new Batch<>(items, null));
+                            items = new ArrayList<>(batchSize);
+                        }
+                    }
+                    if (!items.isEmpty()) {
+                        offer(new Batch<>(items, null));
+                    }
+                }
+                offer(new Batch<>(null, null));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                try {
+                    offer(new Batch<>(null, e));
+                } catch (InterruptedException ie) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }
+
+        private void offer(Batch<E> batch) throws InterruptedException {
+            while (!closed) {
+                if (queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+                if (consumer.get() == null) {
+                    log.warn("parallel scan iterator dropped before it was exhausted or closed, table:{}", tableName);
+                    close();
+                }
+            }
+        }
+
+        private void close() {
+            closed = true;
+            executor.shutdownNow();
+            queue.clear();
+        }
+    }
+
+    private static class Batch<E> {
+        private final List<E> items;
+        private final Exception error;
+
+        private Batch(List<E> items, Exception error) {
+            this.items = items;
+            this.error = error;
+        }
+    }
+}
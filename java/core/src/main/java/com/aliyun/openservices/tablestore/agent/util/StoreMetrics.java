@@ -0,0 +1,136 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.TableStoreException;
+import com.alicloud.openservices.tablestore.model.Response;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Supplier;
+import java.util.function.ToIntFunction;
+
+/**
+ * Receiver of the metrics of the stores, to plug them into a monitoring system. All the methods do nothing by default, an implementation
+ * overrides the ones it records. They are called on the calling threads of the stores and must be cheap and thread safe.
+ *
+ * <p>
+ * Two levels are recorded: the operations, calls of the public methods of a store wrapped by {@code MeteredMemoryStore} or
+ * {@code MeteredKnowledgeStore}, and the requests sent to Tablestore by a store built with a {@code metrics}: each page of a range read
+ * and each search, with its request id. Caches report their cumulative statistics once, when they are built.
+ * </p>
+ */
+public interface StoreMetrics {
+
+    StoreMetrics NOOP = new StoreMetrics() {};
+
+    /**
+     * A call of a public method of a store returned or threw.
+     *
+     * @param store        name of the store
+     * @param operation    method name
+     * @param elapsedNanos duration of the call, for an iterator or a stream only the time to return it
+     * @param errorCode    null if the call succeeded, else see {@link #errorCode(Throwable)}
+     */
+    default void recordOperation(String store, String operation, long elapsedNanos, String errorCode) {}
+
+    /**
+     * Rows returned by a call of a public method of a store: the hits of a search, the documents of a batch get, the rows of an iterator
+     * once it is exhausted.
+     */
+    default void recordRowsRead(String store, String operation, long rows) {}
+
+    /**
+     * Rows written or deleted by a call of a public method of a store, the batch size of the bulk writes.
+     */
+    default void recordRowsWritten(String store, String operation, long rows) {}
+
+    /**
+     * A request sent to Tablestore returned or threw.
+     *
+     * @param table        table of the request
+     * @param request      request type, as {@code GetRange} or {@code Search}
+     * @param elapsedNanos duration of the request
+     * @param rows         rows returned by the request
+     * @param requestId    id of the request, null if it failed before reaching the server
+     * @param errorCode    null if the request succeeded, else see {@link #errorCode(Throwable)}
+     */
+    default void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {}
+
+    /**
+     * A cache of a store was built, its statistics can be read until the store is discarded.
+     *
+     * @param cache name of the cache
+     * @param stats cumulative hit, miss, eviction and expiration counts of the cache
+     */
+    default void registerCache(String cache, Supplier<LruCache.Stats> stats) {}
+
+    /**
+     * @return the Tablestore error code of the exception or of one of its causes, as {@code OTSRowOperationConflict}, else the simple name
+     * of its class
+     */
+    static String errorCode(Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof TableStoreException) {
+                return ((TableStoreException) cause).getErrorCode();
+            }
+        }
+        return error.getClass().getSimpleName();
+    }
+
+    /**
+     * Call a public method of a store and record it.
+     */
+    static <T> T operation(StoreMetrics metrics, String store, String operation, Supplier<T> call) {
+        long start = System.nanoTime();
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            metrics.recordOperation(store, operation, System.nanoTime() - start, errorCode(e));
+            throw e;
+        }
+        metrics.recordOperation(store, operation, System.nanoTime() - start, null);
+        return result;
+    }
+
+    /**
+     * Send a request to Tablestore and record it.
+     *
+     * @param rows rows of the response
+     */
+    static <T extends Response> T request(StoreMetrics metrics, String table, String request, Supplier<T> call, ToIntFunction<T> rows) {
+        long start = System.nanoTime();
+        T response;
+        try {
+            response = call.get();
+        } catch (RuntimeException e) {
+            String requestId = e instanceof TableStoreException ? ((TableStoreException) e).getRequestId() : null;
+            metrics.recordRequest(table, request, System.nanoTime() - start, 0, requestId, errorCode(e));
+            throw e;
+        }
+        metrics.recordRequest(table, request, System.nanoTime() - start, rows.applyAsInt(response), response.getRequestId(), null);
+        return response;
+    }
+
+    /**
+     * Send a request to Tablestore asynchronously and record it once the future completes, on the thread completing it.
+     *
+     * @param rows rows of the response
+     */
+    static <T extends Response> CompletableFuture<T> requestAsync(
+        StoreMetrics metrics,
+        String table,
+        String request,
+        Supplier<CompletableFuture<T>> call,
+        ToIntFunction<T> rows
+    ) {
+        long start = System.nanoTime();
+        return call.get().whenComplete((response, error) -> {
+            if (error == null) {
+                metrics.recordRequest(table, request, System.nanoTime() - start, rows.applyAsInt(response), response.getRequestId(), null);
+                return;
+            }
+            Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+            String requestId = cause instanceof TableStoreException ? ((TableStoreException) cause).getRequestId() : null;
+            metrics.recordRequest(table, request, System.nanoTime() - start, 0, requestId, errorCode(cause));
+        });
+    }
+}
@@ -1,6 +1,9 @@
 package com.aliyun.openservices.tablestore.agent.util;
 
+import com.alicloud.openservices.tablestore.AsyncClientInterface;
 import com.alicloud.openservices.tablestore.SyncClient;
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.TableStoreCallback;
 import com.alicloud.openservices.tablestore.TableStoreException;
 import com.alicloud.openservices.tablestore.model.BatchGetRowRequest;
 import com.alicloud.openservices.tablestore.model.BatchGetRowResponse;
@@ -9,6 +12,7 @@ import com.alicloud.openservices.tablestore.model.BatchWriteRowResponse;
 import com.alicloud.openservices.tablestore.model.CapacityUnit;
 import com.alicloud.openservices.tablestore.model.Column;
 import com.alicloud.openservices.tablestore.model.ColumnValue;
+import com.alicloud.openservices.tablestore.model.ColumnType;
 import com.alicloud.openservices.tablestore.model.CreateIndexRequest;
 import com.alicloud.openservices.tablestore.model.CreateTableRequest;
 import com.alicloud.openservices.tablestore.model.DefinedColumnSchema;
@@ -45,6 +49,7 @@ import com.alicloud.openservices.tablestore.model.search.DeleteSearchIndexReques
 import com.alicloud.openservices.tablestore.model.search.DescribeSearchIndexRequest;
 import com.alicloud.openservices.tablestore.model.search.DescribeSearchIndexResponse;
 import com.alicloud.openservices.tablestore.model.search.FieldSchema;
+import com.alicloud.openservices.tablestore.model.search.FieldType;
 import com.alicloud.openservices.tablestore.model.search.IndexSchema;
 import com.alicloud.openservices.tablestore.model.search.IndexSetting;
 import com.alicloud.openservices.tablestore.model.search.ListSearchIndexRequest;
@@ -68,6 +73,7 @@ import com.aliyun.openservices.tablestore.agent.model.MetaType;
 import com.aliyun.openservices.tablestore.agent.model.Metadata;
 import com.aliyun.openservices.tablestore.agent.model.Session;
 import com.aliyun.openservices.tablestore.agent.model.filter.Filter;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filters;
 import com.aliyun.openservices.tablestore.agent.model.filter.condition.AbstractConditionFilter;
 import com.aliyun.openservices.tablestore.agent.model.filter.condition.And;
 import com.aliyun.openservices.tablestore.agent.model.filter.condition.Not;
@@ -92,16 +98,33 @@ import com.aliyun.openservices.tablestore.agent.model.sort.Sort;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.core.type.TypeReference;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
-import java.util.LinkedList;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.BiFunction;
 import java.util.function.Function;
+import java.util.function.IntConsumer;
 import java.util.stream.Collectors;
 import lombok.extern.slf4j.Slf4j;
 
@@ -110,6 +133,26 @@ public class TablestoreHelper {
 
     private static final ObjectMapper MAPPER = new ObjectMapper();
 
+    /**
+     * BatchGetRow requests of {@link #batchGetRows(SyncClientInterface, String, List, Function, int)} sent at a time.
+     */
+    public static final int DEFAULT_BATCH_GET_PARALLELISM = 4;
+
+    /**
+     * Threads of {@link #forEachConcurrently(int, int, IntConsumer)}, running batch gets, secondary index lookups and searches.
+     */
+    private static final ExecutorService CONCURRENT_REQUEST_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "tablestore-concurrent-request");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static final ExecutorService PREFETCH_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "tablestore-range-prefetch");
+        thread.setDaemon(true);
+        return thread;
+    });
+
     public static void createTableIfNotExist(
         SyncClient client,
         String tableName,
@@ -276,6 +319,200 @@ public class TablestoreHelper {
         }
     }
 
+    public static PrimaryKey sessionPrimaryKey(String userId, String sessionId) {
+        return PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(userId))
+            .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .build();
+    }
+
+    public static PrimaryKey messagePrimaryKey(String sessionId, long createTime, String messageId) {
+        return PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(createTime))
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(messageId))
+            .build();
+    }
+
+    public static PrimaryKey documentPrimaryKey(String documentId, String tenantId) {
+        return documentPrimaryKey(documentId, PrimaryKeyValue.fromString(tenantId));
+    }
+
+    /**
+     * @param tenantId INF_MIN or INF_MAX for the bounds of the rows of a document in all the tenants
+     */
+    public static PrimaryKey documentPrimaryKey(String documentId, PrimaryKeyValue tenantId) {
+        return PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(documentId))
+            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, tenantId)
+            .build();
+    }
+
+    /**
+     * Columns to read of the document rows, with the primary key columns so that a document having none of the columns is still returned.
+     *
+     * @return null to read all the columns if {@code columnsToGet} is null or empty
+     */
+    public static List<String> documentColumnsToGet(List<String> columnsToGet) {
+        if (columnsToGet == null || columnsToGet.isEmpty()) {
+            return null;
+        }
+        Set<String> columns = new LinkedHashSet<>(columnsToGet);
+        columns.add(Document.DOCUMENT_DOCUMENT_ID);
+        columns.add(Document.DOCUMENT_TENANT_ID);
+        return new ArrayList<>(columns);
+    }
+
+    /**
+     * Columns returned by the document searches by default: the text and the metadata fields of {@code metadataSchema}, without the
+     * embedding.
+     */
+    public static List<String> documentDefaultColumnsToGet(List<FieldSchema> metadataSchema, String textField, String embeddingField) {
+        List<String> defaultColumnsToGet = new ArrayList<>();
+        for (FieldSchema fieldSchema : metadataSchema) {
+            if (fieldSchema.getFieldType().equals(FieldType.VECTOR) || fieldSchema.getFieldName().equals(embeddingField)) {
+                continue;
+            }
+            defaultColumnsToGet.add(fieldSchema.getFieldName());
+        }
+        defaultColumnsToGet.add(Document.DOCUMENT_DOCUMENT_ID);
+        defaultColumnsToGet.add(Document.DOCUMENT_TENANT_ID);
+        defaultColumnsToGet.add(textField);
+        return defaultColumnsToGet;
+    }
+
+    public static void checkDocumentDimension(Document document, int embeddingDimension) {
+        if (document == null || document.getEmbedding() == null) {
+            return;
+        }
+        int actualDimension = document.getEmbedding().length;
+        if (embeddingDimension != actualDimension) {
+            throw Exceptions.illegalArgument(
+                "document's embedding embedding length:%s is not the same as the knowledge store dimension:%s, document id:%s",
+                embeddingDimension,
+                actualDimension,
+                document.getDocumentId()
+            );
+        }
+    }
+
+    /**
+     * @return the tenant id of the document rows, the default tenant id if the multi-tenant capability is not enabled
+     */
+    public static String checkDocumentTenantId(String tenantId, boolean enableMultiTenant) {
+        if (!enableMultiTenant) {
+            if (tenantId == null) {
+                return Document.DOCUMENT_DEFAULT_TENANT_ID;
+            }
+            if (!Document.DOCUMENT_DEFAULT_TENANT_ID.equals(tenantId)) {
+                throw Exceptions.illegalArgument("the multi-tenant capability is not enabled, but the 'tenant_id' is set");
+            }
+        } else {
+            if (Document.DOCUMENT_DEFAULT_TENANT_ID.equals(tenantId) || tenantId == null) {
+                throw Exceptions.illegalArgument("the multi-tenant capability is enabled, but the 'tenant_id' is not set");
+            }
+        }
+        return tenantId;
+    }
+
+    /**
+     * @return {@code metadataFilter} restricted to the documents of {@code tenantIds}, unchanged if no tenant id is given
+     */
+    public static Filter wrapDocumentTenantIds(Set<String> tenantIds, Filter metadataFilter, boolean enableMultiTenant) {
+        if (tenantIds == null || tenantIds.isEmpty()) {
+            return metadataFilter;
+        }
+        if (!enableMultiTenant) {
+            throw Exceptions.illegalArgument("the multi-tenant capability is not enabled, but the 'tenant id' is set");
+        }
+        Filter tenantFilter = tenantIds.size() == 1
+            ? Filters.eq(Document.DOCUMENT_TENANT_ID, tenantIds.iterator().next())
+            : Filters.in(Document.DOCUMENT_TENANT_ID, new ArrayList<>(tenantIds));
+        return metadataFilter == null ? tenantFilter : Filters.and(tenantFilter, metadataFilter);
+    }
+
+    /**
+     * @return the routing values of a search of the documents of {@code tenantIds}, empty if no tenant id is given
+     */
+    public static List<PrimaryKey> documentRouting(Set<String> tenantIds, boolean enableMultiTenant) {
+        if (tenantIds == null || tenantIds.isEmpty()) {
+            return Collections.emptyList();
+        }
+        if (!enableMultiTenant) {
+            throw Exceptions.illegalArgument("the multi-tenant capability is not enabled, but the 'tenant id' is set");
+        }
+        List<PrimaryKey> routing = new ArrayList<>(tenantIds.size());
+        for (String tenantId : tenantIds) {
+            routing.add(PrimaryKeyBuilder.createPrimaryKeyBuilder().addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(tenantId)).build());
+        }
+        return routing;
+    }
+
+    /**
+     * @param varArgs           var args of the search request, the routing values set under {@code routingValuesKey} win over the tenant ids
+     * @param routingValuesKey  key of a list of primary keys in {@code varArgs}
+     * @param tenantIds         tenant ids of the search request
+     * @param enableMultiTenant whether the multi-tenant capability is enabled
+     */
+    public static List<PrimaryKey> documentRouting(
+        Map<String, Object> varArgs,
+        String routingValuesKey,
+        Set<String> tenantIds,
+        boolean enableMultiTenant
+    ) {
+        if (varArgs == null || !varArgs.containsKey(routingValuesKey)) {
+            return documentRouting(tenantIds, enableMultiTenant);
+        }
+        Object routingValues = varArgs.get(routingValuesKey);
+        if (!(routingValues instanceof List)) {
+            throw Exceptions.illegalArgument("%s must be a list of primary keys, but is:%s", routingValuesKey, routingValues);
+        }
+        List<PrimaryKey> routing = new ArrayList<>(((List<?>) routingValues).size());
+        for (Object routingValue : (List<?>) routingValues) {
+            if (!(routingValue instanceof PrimaryKey)) {
+                throw Exceptions.illegalArgument("%s must be a list of primary keys, but contains:%s", routingValuesKey, routingValue);
+            }
+            routing.add((PrimaryKey) routingValue);
+        }
+        return routing;
+    }
+
+    public static List<Column> sessionToColumns(Session session) {
+        List<Column> columns = metadataToColumns(session.getMetadata());
+        columns.add(new Column(Session.SESSION_UPDATE_TIME, ColumnValue.fromLong(session.getUpdateTime())));
+        return columns;
+    }
+
+    public static List<Column> messageToColumns(Message message) {
+        List<Column> columns = metadataToColumns(message.getMetadata());
+        if (message.getContent() != null) {
+            columns.add(new Column(Message.MESSAGE_CONTENT, ColumnValue.fromString(message.getContent())));
+        }
+        return columns;
+    }
+
+    public static List<Column> documentToColumns(Document document, String textField, String embeddingField) {
+        return documentToColumns(document, textField, embeddingField, false);
+    }
+
+    /**
+     * @param binaryEmbedding true to write the embedding as little-endian float32 bytes (BINARY column), false to write it as a JSON array
+     *                        (STRING column).
+     */
+    public static List<Column> documentToColumns(Document document, String textField, String embeddingField, boolean binaryEmbedding) {
+        List<Column> columns = metadataToColumns(document.getMetadata());
+        if (document.getText() != null) {
+            columns.add(new Column(textField, ColumnValue.fromString(document.getText())));
+        }
+        if (document.getEmbedding() != null) {
+            ColumnValue embeddingValue = binaryEmbedding
+                ? ColumnValue.fromBinary(encodeEmbeddingToBytes(document.getEmbedding()))
+                : ColumnValue.fromString(encodeEmbedding(document.getEmbedding()));
+            columns.add(new Column(embeddingField, embeddingValue));
+        }
+        return columns;
+    }
+
     public static Session rowToSession(Row row) {
         if (row == null) {
             return null;
@@ -323,7 +560,11 @@ public class TablestoreHelper {
                 return true;
             }
             if (embeddingField.equals(name)) {
-                embedding.set(TablestoreHelper.decodeEmbedding(value.asString()));
+                if (value.getType() == ColumnType.BINARY) {
+                    embedding.set(TablestoreHelper.decodeEmbedding(value.asBinary()));
+                } else {
+                    embedding.set(TablestoreHelper.decodeEmbedding(value.asString()));
+                }
                 return true;
             }
             return false;
@@ -399,8 +640,17 @@ public class TablestoreHelper {
         return metadata;
     }
 
+    /**
+     * Iterator over a primary key range, reading {@code batchSize} rows per GetRange request.
+     *
+     * <p>
+     * In prefetch mode the next page is requested in the background as soon as less than half of the current page is left to consume, so
+     * that the consumer doesn't wait a full round trip every page. At most two pages are held: the one being consumed and the one being
+     * fetched.
+     * </p>
+     */
     public static class GetRangeIterator<E> implements Iterator<E> {
-        private final SyncClient client;
+        private final SyncClientInterface client;
         private final String tableName;
         private final Function<Row, E> translateFunction;
         private PrimaryKey inclusiveStartPrimaryKey;
@@ -410,12 +660,16 @@ public class TablestoreHelper {
         private final long iteratorMaxCount;
         private final int batchSize;
         private final List<String> columnToGet;
+        private final boolean prefetch;
+        private final StoreMetrics metrics;
 
         private long count;
-        private LinkedList<Row> rowsBufferList;
+        private final ArrayDeque<Row> rowsBuffer;
+        private int prefetchWatermark;
+        private CompletableFuture<GetRangeResponse> pendingFetch;
 
         public GetRangeIterator(
-            SyncClient client,
+            SyncClientInterface client,
             String tableName,
             Function<Row, E> translateFunction,
             PrimaryKey inclusiveStartPrimaryKey,
@@ -425,6 +679,67 @@ public class TablestoreHelper {
             Long iteratorMaxCount,
             Integer batchSize,
             List<String> columnToGet
+        ) {
+            this(
+                client,
+                tableName,
+                translateFunction,
+                inclusiveStartPrimaryKey,
+                exclusiveEndPrimaryKey,
+                metadataFilter,
+                order,
+                iteratorMaxCount,
+                batchSize,
+                columnToGet,
+                false
+            );
+        }
+
+        public GetRangeIterator(
+            SyncClientInterface client,
+            String tableName,
+            Function<Row, E> translateFunction,
+            PrimaryKey inclusiveStartPrimaryKey,
+            PrimaryKey exclusiveEndPrimaryKey,
+            Filter metadataFilter,
+            Order order,
+            Long iteratorMaxCount,
+            Integer batchSize,
+            List<String> columnToGet,
+            boolean prefetch
+        ) {
+            this(
+                client,
+                tableName,
+                translateFunction,
+                inclusiveStartPrimaryKey,
+                exclusiveEndPrimaryKey,
+                metadataFilter,
+                order,
+                iteratorMaxCount,
+                batchSize,
+                columnToGet,
+                prefetch,
+                StoreMetrics.NOOP
+            );
+        }
+
+        /**
+         * @param metrics receives each page fetched
+         */
+        public GetRangeIterator(
+            SyncClientInterface client,
+            String tableName,
+            Function<Row, E> translateFunction,
+            PrimaryKey inclusiveStartPrimaryKey,
+            PrimaryKey exclusiveEndPrimaryKey,
+            Filter metadataFilter,
+            Order order,
+            Long iteratorMaxCount,
+            Integer batchSize,
+            List<String> columnToGet,
+            boolean prefetch,
+            StoreMetrics metrics
         ) {
             this.client = client;
             this.tableName = tableName;
@@ -436,8 +751,10 @@ public class TablestoreHelper {
             this.iteratorMaxCount = iteratorMaxCount == null ? -1 : iteratorMaxCount;
             this.batchSize = configBatchSize(batchSize, iteratorMaxCount, metadataFilter);
             this.columnToGet = columnToGet == null ? new ArrayList<>() : columnToGet;
+            this.prefetch = prefetch;
+            this.metrics = metrics;
             this.count = 0;
-            this.rowsBufferList = new LinkedList<>();
+            this.rowsBuffer = new ArrayDeque<>(Math.min(this.batchSize, 1024));
             fetchNextBatch();
         }
 
@@ -457,10 +774,8 @@ public class TablestoreHelper {
             if (iteratorMaxCount > 0 && count >= iteratorMaxCount) {
                 return false;
             }
-            if (bufferHasData()) {
-                return true;
-            }
-            if (hasNextBatch()) {
+            // a filtered page may be empty while the range is not exhausted
+            while (!bufferHasData() && hasNextBatch()) {
                 fetchNextBatch();
             }
             return bufferHasData();
@@ -471,30 +786,61 @@ public class TablestoreHelper {
             if (!hasNext()) {
                 throw new NoSuchElementException();
             }
-            Row row = rowsBufferList.pop();
+            Row row = rowsBuffer.poll();
             count++;
+            maybePrefetch();
             return translateFunction.apply(row);
         }
 
         private void fetchNextBatch() {
-            RangeRowQueryCriteria rangeRowQueryCriteria = new RangeRowQueryCriteria(this.tableName);
-            rangeRowQueryCriteria.setInclusiveStartPrimaryKey(inclusiveStartPrimaryKey);
-            rangeRowQueryCriteria.setExclusiveEndPrimaryKey(exclusiveEndPrimaryKey);
-            rangeRowQueryCriteria.setMaxVersions(1);
-            rangeRowQueryCriteria.setLimit(batchSize);
-            rangeRowQueryCriteria.setDirection(direction);
-            rangeRowQueryCriteria.addColumnsToGet(columnToGet);
-            if (metadataFilter != null) {
-                rangeRowQueryCriteria.setFilter(metadataFilter);
-            }
-            GetRangeRequest getRangeRequest = new GetRangeRequest(rangeRowQueryCriteria);
-            GetRangeResponse rangeResponse = client.getRange(getRangeRequest);
+            GetRangeResponse rangeResponse;
+            if (pendingFetch != null) {
+                try {
+                    rangeResponse = pendingFetch.join();
+                } catch (CompletionException e) {
+                    Throwable cause = unwrapCompletionException(e);
+                    throw cause instanceof RuntimeException ? (RuntimeException) cause : Exceptions.runtimeThrowable("get range failed", cause);
+                } finally {
+                    pendingFetch = null;
+                }
+            } else {
+                rangeResponse = getRange(newGetRangeRequest());
+            }
             inclusiveStartPrimaryKey = rangeResponse.getNextStartPrimaryKey();
-            rowsBufferList = new LinkedList<>(rangeResponse.getRows());
+            rowsBuffer.addAll(rangeResponse.getRows());
+            prefetchWatermark = rowsBuffer.size() / 2;
+            maybePrefetch();
+        }
+
+        private void maybePrefetch() {
+            if (!prefetch || pendingFetch != null || !hasNextBatch() || rowsBuffer.size() > prefetchWatermark) {
+                return;
+            }
+            if (iteratorMaxCount > 0 && count + rowsBuffer.size() >= iteratorMaxCount) {
+                return;
+            }
+            GetRangeRequest getRangeRequest = newGetRangeRequest();
+            pendingFetch = CompletableFuture.supplyAsync(() -> getRange(getRangeRequest), PREFETCH_EXECUTOR);
+        }
+
+        private GetRangeResponse getRange(GetRangeRequest getRangeRequest) {
+            return StoreMetrics.request(metrics, tableName, "GetRange", () -> client.getRange(getRangeRequest), r -> r.getRows().size());
+        }
+
+        private GetRangeRequest newGetRangeRequest() {
+            return TablestoreHelper.newGetRangeRequest(
+                tableName,
+                inclusiveStartPrimaryKey,
+                exclusiveEndPrimaryKey,
+                metadataFilter,
+                direction,
+                batchSize,
+                columnToGet
+            );
         }
 
         private boolean bufferHasData() {
-            return !rowsBufferList.isEmpty();
+            return !rowsBuffer.isEmpty();
         }
 
         private boolean hasNextBatch() {
@@ -502,89 +848,244 @@ public class TablestoreHelper {
         }
 
         public PrimaryKey nextStartPrimaryKey() {
-            if (rowsBufferList != null && !rowsBufferList.isEmpty()) {
-                return rowsBufferList.peek().getPrimaryKey();
+            if (!rowsBuffer.isEmpty()) {
+                return rowsBuffer.peek().getPrimaryKey();
             } else {
                 return inclusiveStartPrimaryKey;
             }
         }
     }
 
-    public static <T> void batchDelete(SyncClient client, String tableName, Iterator<T> iterator) {
-        List<RowChange> rowChanges = new ArrayList<>();
-        while (iterator.hasNext()) {
-            T item = iterator.next();
-            if (item instanceof Session) {
-                Session session = (Session) item;
-                rowChanges.add(
-                    new RowDeleteChange(
-                        tableName,
-                        PrimaryKeyBuilder.createPrimaryKeyBuilder()
-                            .addPrimaryKeyColumn(Session.SESSION_USER_ID, PrimaryKeyValue.fromString(session.getUserId()))
-                            .addPrimaryKeyColumn(Session.SESSION_SESSION_ID, PrimaryKeyValue.fromString(session.getSessionId()))
-                            .build()
-                    )
-                );
-            } else if (item instanceof Message) {
-                Message message = (Message) item;
-                rowChanges.add(
-                    new RowDeleteChange(
-                        tableName,
-                        PrimaryKeyBuilder.createPrimaryKeyBuilder()
-                            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(message.getSessionId()))
-                            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(message.getCreateTime()))
-                            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(message.getMessageId()))
-                            .build()
-                    )
-                );
-            } else if (item instanceof Document) {
-                Document document = (Document) item;
-                rowChanges.add(
-                    new RowDeleteChange(
-                        tableName,
-                        PrimaryKeyBuilder.createPrimaryKeyBuilder()
-                            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(document.getDocumentId()))
-                            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(document.getTenantId()))
-                            .build()
-                    )
-                );
-            } else if (item instanceof DocumentHit) {
-                DocumentHit documentHit = (DocumentHit) item;
-                Document document = documentHit.getDocument();
-                rowChanges.add(
-                    new RowDeleteChange(
-                        tableName,
-                        PrimaryKeyBuilder.createPrimaryKeyBuilder()
-                            .addPrimaryKeyColumn(Document.DOCUMENT_DOCUMENT_ID, PrimaryKeyValue.fromString(document.getDocumentId()))
-                            .addPrimaryKeyColumn(Document.DOCUMENT_TENANT_ID, PrimaryKeyValue.fromString(document.getTenantId()))
-                            .build()
-                    )
-                );
-            } else {
-                throw Exceptions.illegalArgument("unsupported item type:%s, detail:%s", item.getClass(), item);
+    private static GetRangeRequest newGetRangeRequest(
+        String tableName,
+        PrimaryKey inclusiveStartPrimaryKey,
+        PrimaryKey exclusiveEndPrimaryKey,
+        ColumnValueFilter metadataFilter,
+        Direction direction,
+        int limit,
+        List<String> columnToGet
+    ) {
+        RangeRowQueryCriteria rangeRowQueryCriteria = new RangeRowQueryCriteria(tableName);
+        rangeRowQueryCriteria.setInclusiveStartPrimaryKey(inclusiveStartPrimaryKey);
+        rangeRowQueryCriteria.setExclusiveEndPrimaryKey(exclusiveEndPrimaryKey);
+        rangeRowQueryCriteria.setMaxVersions(1);
+        rangeRowQueryCriteria.setLimit(limit);
+        rangeRowQueryCriteria.setDirection(direction);
+        rangeRowQueryCriteria.addColumnsToGet(columnToGet);
+        if (metadataFilter != null) {
+            rangeRowQueryCriteria.setFilter(metadataFilter);
+        }
+        return new GetRangeRequest(rangeRowQueryCriteria);
+    }
+
+    /**
+     * Asynchronously read at most {@code maxCount} rows of a range, following the next start primary key across batches.
+     *
+     * @return the translated rows and the primary key to continue from, the key is null if the range is exhausted.
+     */
+    public static <E> CompletableFuture<Pair<List<E>, PrimaryKey>> getRangeAsync(
+        AsyncClientInterface client,
+        String tableName,
+        Function<Row, E> translateFunction,
+        PrimaryKey inclusiveStartPrimaryKey,
+        PrimaryKey exclusiveEndPrimaryKey,
+        Filter metadataFilter,
+        Order order,
+        long maxCount,
+        Integer batchSize
+    ) {
+        return getRangeAsync(
+            client,
+            tableName,
+            translateFunction,
+            inclusiveStartPrimaryKey,
+            exclusiveEndPrimaryKey,
+            metadataFilter,
+            order,
+            maxCount,
+            batchSize,
+            StoreMetrics.NOOP
+        );
+    }
+
+    /**
+     * @param metrics receives a record of each page read
+     */
+    public static <E> CompletableFuture<Pair<List<E>, PrimaryKey>> getRangeAsync(
+        AsyncClientInterface client,
+        String tableName,
+        Function<Row, E> translateFunction,
+        PrimaryKey inclusiveStartPrimaryKey,
+        PrimaryKey exclusiveEndPrimaryKey,
+        Filter metadataFilter,
+        Order order,
+        long maxCount,
+        Integer batchSize,
+        StoreMetrics metrics
+    ) {
+        ColumnValueFilter columnValueFilter = parserTableFilters(metadataFilter);
+        Direction direction = Order.DESC.equals(order) ? Direction.BACKWARD : Direction.FORWARD;
+        int configBatchSize = GetRangeIterator.configBatchSize(batchSize, maxCount, metadataFilter);
+        List<E> result = new ArrayList<>();
+        return getRangeAsync(
+            client,
+            tableName,
+            translateFunction,
+            inclusiveStartPrimaryKey,
+            exclusiveEndPrimaryKey,
+            columnValueFilter,
+            direction,
+            maxCount,
+            configBatchSize,
+            result,
+            metrics
+        );
+    }
+
+    private static <E> CompletableFuture<Pair<List<E>, PrimaryKey>> getRangeAsync(
+        AsyncClientInterface client,
+        String tableName,
+        Function<Row, E> translateFunction,
+        PrimaryKey inclusiveStartPrimaryKey,
+        PrimaryKey exclusiveEndPrimaryKey,
+        ColumnValueFilter metadataFilter,
+        Direction direction,
+        long maxCount,
+        int batchSize,
+        List<E> result,
+        StoreMetrics metrics
+    ) {
+        int limit = maxCount > 0 ? (int) Math.min(batchSize, maxCount - result.size()) : batchSize;
+        GetRangeRequest getRangeRequest = newGetRangeRequest(
+            tableName,
+            inclusiveStartPrimaryKey,
+            exclusiveEndPrimaryKey,
+            metadataFilter,
+            direction,
+            limit,
+            Collections.emptyList()
+        );
+        return StoreMetrics.requestAsync(
+            metrics,
+            tableName,
+            "GetRange",
+            () -> callAsync(getRangeRequest, client::getRange),
+            r -> r.getRows().size()
+        ).thenCompose(rangeResponse -> {
+            for (Row row : rangeResponse.getRows()) {
+                result.add(translateFunction.apply(row));
             }
-            if (rowChanges.size() == 200) {
-                batchWrite(client, rowChanges);
-                rowChanges.clear();
+            PrimaryKey nextStartPrimaryKey = rangeResponse.getNextStartPrimaryKey();
+            if (nextStartPrimaryKey == null || (maxCount > 0 && result.size() >= maxCount)) {
+                return CompletableFuture.completedFuture(Pair.of(result, nextStartPrimaryKey));
             }
+            return getRangeAsync(
+                client,
+                tableName,
+                translateFunction,
+                nextStartPrimaryKey,
+                exclusiveEndPrimaryKey,
+                metadataFilter,
+                direction,
+                maxCount,
+                batchSize,
+                result,
+                metrics
+            );
+        });
+    }
+
+    /**
+     * Adapt a callback style call of {@link AsyncClientInterface} to a {@link CompletableFuture}.
+     *
+     * @param request the tablestore request
+     * @param invoker the async client method, e.g. {@code client::putRow}
+     * @return future completed by the tablestore callback
+     */
+    public static <Req, Res> CompletableFuture<Res> callAsync(Req request, BiFunction<Req, TableStoreCallback<Req, Res>, Future<Res>> invoker) {
+        CompletableFuture<Res> future = new CompletableFuture<>();
+        try {
+            invoker.apply(request, new TableStoreCallback<Req, Res>() {
+                @Override
+                public void onCompleted(Req req, Res res) {
+                    future.complete(res);
+                }
+
+                @Override
+                public void onFailed(Req req, Exception e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (Exception e) {
+            future.completeExceptionally(e);
         }
-        if (!rowChanges.isEmpty()) {
-            batchWrite(client, rowChanges);
+        return future;
+    }
+
+    /**
+     * Wrap the failure of the future the same way the synchronous stores do: a {@link RuntimeException} with the given message whose cause is
+     * the original exception.
+     */
+    public static <T> CompletableFuture<T> wrapFailure(CompletableFuture<T> future, Function<Throwable, String> errorMessage) {
+        return future.handle((result, throwable) -> {
+            if (throwable == null) {
+                return result;
+            }
+            Throwable cause = unwrapCompletionException(throwable);
+            throw new CompletionException(Exceptions.runtimeThrowable(errorMessage.apply(cause), cause));
+        });
+    }
+
+    public static Throwable unwrapCompletionException(Throwable throwable) {
+        while (throwable instanceof CompletionException && throwable.getCause() != null) {
+            throwable = throwable.getCause();
         }
+        return throwable;
     }
 
-    public static void batchWrite(SyncClient client, List<RowChange> rowChanges) {
-        BatchWriteRowRequest batchWriteRowRequest = new BatchWriteRowRequest();
-        for (RowChange rowChange : rowChanges) {
-            batchWriteRowRequest.addRowChange(rowChange);
+    /**
+     * Delete the rows of the items with concurrent BatchWriteRow requests, or inline for up to 200 rows, see {@link BatchDeleter} for the
+     * options and the checkpoint.
+     */
+    public static <T> void batchDelete(SyncClientInterface client, String tableName, Iterator<T> iterator) {
+        BatchDeleter.builder().client(client).tableName(tableName).build().delete(iterator);
+    }
+
+    /**
+     * Delete all the rows of a primary key range with concurrent BatchWriteRow requests, scanning only the primary key columns.
+     */
+    public static void batchDeleteRange(SyncClientInterface client, String tableName, PrimaryKey inclusiveStartPrimaryKey, PrimaryKey exclusiveEndPrimaryKey) {
+        BatchDeleter.builder().client(client).tableName(tableName).build().deleteRange(inclusiveStartPrimaryKey, exclusiveEndPrimaryKey);
+    }
+
+    static RowDeleteChange toRowDeleteChange(String tableName, Object item) {
+        if (item instanceof PrimaryKey) {
+            return new RowDeleteChange(tableName, (PrimaryKey) item);
+        } else if (item instanceof Session) {
+            Session session = (Session) item;
+            return new RowDeleteChange(tableName, sessionPrimaryKey(session.getUserId(), session.getSessionId()));
+        } else if (item instanceof Message) {
+            Message message = (Message) item;
+            return new RowDeleteChange(tableName, messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId()));
+        } else if (item instanceof Document) {
+            Document document = (Document) item;
+            return new RowDeleteChange(tableName, documentPrimaryKey(document.getDocumentId(), document.getTenantId()));
+        } else if (item instanceof DocumentHit) {
+            Document document = ((DocumentHit) item).getDocument();
+            return new RowDeleteChange(tableName, documentPrimaryKey(document.getDocumentId(), document.getTenantId()));
+        } else {
+            throw Exceptions.illegalArgument("unsupported item type:%s, detail:%s", item.getClass(), item);
         }
-        List<String> errorDetails = new ArrayList<>();
+    }
+
+    public static void batchWrite(SyncClientInterface client, List<RowChange> rowChanges) {
         try {
-            BatchWriteRowResponse batchWriteRowResponse = client.batchWriteRow(batchWriteRowRequest);
-            if (!batchWriteRowResponse.isAllSucceed()) {
-                for (BatchWriteRowResponse.RowResult rowResult : batchWriteRowResponse.getFailedRows()) {
-                    PrimaryKey primaryKey = batchWriteRowRequest.getRowChange(rowResult.getTableName(), rowResult.getIndex()).getPrimaryKey();
-                    errorDetails.add(String.format("failed pk:[%s], failed msg:[%s]", primaryKey.jsonize(), rowResult.getError().getMessage()));
+            Map<Integer, String> failures = batchWriteRow(client, rowChanges);
+            if (!failures.isEmpty()) {
+                List<String> errorDetails = new ArrayList<>();
+                for (Map.Entry<Integer, String> failure : failures.entrySet()) {
+                    PrimaryKey primaryKey = rowChanges.get(failure.getKey()).getPrimaryKey();
+                    errorDetails.add(String.format("failed pk:[%s], failed msg:[%s]", primaryKey.jsonize(), failure.getValue()));
                 }
                 throw Exceptions.runtime(String.format("batch write failed, error details:%s", errorDetails));
             }
@@ -593,6 +1094,32 @@ public class TablestoreHelper {
         }
     }
 
+    /**
+     * Write the row changes in one BatchWriteRow request without failing on partial failures.
+     *
+     * @return the error message of every failed row change keyed by its position in {@code rowChanges}, empty if all rows succeeded
+     */
+    public static Map<Integer, String> batchWriteRow(SyncClientInterface client, List<RowChange> rowChanges) {
+        BatchWriteRowRequest batchWriteRowRequest = new BatchWriteRowRequest();
+        // the row result index is the position of the row change among the changes of the same table
+        Map<String, List<Integer>> positionsByTable = new HashMap<>();
+        for (int i = 0; i < rowChanges.size(); i++) {
+            RowChange rowChange = rowChanges.get(i);
+            batchWriteRowRequest.addRowChange(rowChange);
+            positionsByTable.computeIfAbsent(rowChange.getTableName(), t -> new ArrayList<>()).add(i);
+        }
+        BatchWriteRowResponse batchWriteRowResponse = client.batchWriteRow(batchWriteRowRequest);
+        if (batchWriteRowResponse.isAllSucceed()) {
+            return Collections.emptyMap();
+        }
+        Map<Integer, String> failures = new TreeMap<>();
+        for (BatchWriteRowResponse.RowResult rowResult : batchWriteRowResponse.getFailedRows()) {
+            int position = positionsByTable.get(rowResult.getTableName()).get(rowResult.getIndex());
+            failures.put(position, rowResult.getError().getMessage());
+        }
+        return failures;
+    }
+
     public static <T> List<T> batchGetRow(SyncClient client, String tableName, List<PrimaryKey> primaryKeys, Function<Row, T> translateFunction) {
         MultiRowQueryCriteria multiRowQueryCriteria = new MultiRowQueryCriteria(tableName);
         for (PrimaryKey rowChange : primaryKeys) {
@@ -890,17 +1417,246 @@ public class TablestoreHelper {
         return new com.alicloud.openservices.tablestore.model.search.sort.Sort(sorters);
     }
 
-    public static List<Document> batchGetDocuments(SyncClient client, String tableName, List<PrimaryKey> pkList, String textField, String embeddingField) {
-        List<Document> documents = new ArrayList<>(pkList.size());
+    public static List<Document> batchGetDocuments(
+        SyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> pkList,
+        String textField,
+        String embeddingField
+    ) {
+        return batchGetDocuments(client, tableName, pkList, textField, embeddingField, DEFAULT_BATCH_GET_PARALLELISM);
+    }
+
+    /**
+     * Read documents with {@link #batchGetRows(SyncClientInterface, String, List, Function, int)}.
+     *
+     * @return the documents in the order of {@code pkList}, null for the rows that don't exist
+     */
+    public static List<Document> batchGetDocuments(
+        SyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> pkList,
+        String textField,
+        String embeddingField,
+        int parallelism
+    ) {
+        return batchGetDocuments(client, tableName, pkList, textField, embeddingField, parallelism, null);
+    }
+
+    /**
+     * @param columnsToGet columns to read, default all. The embedding is neither transferred nor decoded when it isn't listed
+     */
+    public static List<Document> batchGetDocuments(
+        SyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> pkList,
+        String textField,
+        String embeddingField,
+        int parallelism,
+        List<String> columnsToGet
+    ) {
+        return batchGetRows(client, tableName, pkList, r -> rowToDocument(r, textField, embeddingField), parallelism, columnsToGet);
+    }
+
+    /**
+     * Read rows with BatchGetRow requests of 100 rows, at most {@code parallelism} requests at a time, the calling thread sending one of
+     * them. All the requests are sent even if some fail, the failed rows of all the requests are reported in a single exception.
+     *
+     * @param translateFunction row to element, called with null for the rows that don't exist
+     * @return the elements in the order of {@code primaryKeys}
+     */
+    public static <T> List<T> batchGetRows(
+        SyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> primaryKeys,
+        Function<Row, T> translateFunction,
+        int parallelism
+    ) {
+        return batchGetRows(client, tableName, primaryKeys, translateFunction, parallelism, null);
+    }
+
+    /**
+     * @param columnsToGet columns to read, default all
+     */
+    public static <T> List<T> batchGetRows(
+        SyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> primaryKeys,
+        Function<Row, T> translateFunction,
+        int parallelism,
+        List<String> columnsToGet
+    ) {
+        int batchSize = 100;
+        int total = primaryKeys.size();
+        AtomicReferenceArray<T> result = new AtomicReferenceArray<>(total);
+        List<String> errorDetails = Collections.synchronizedList(new ArrayList<>());
+        forEachConcurrently((total + batchSize - 1) / batchSize, parallelism, batch -> {
+            int start = batch * batchSize;
+            int end = Math.min(start + batchSize, total);
+            try {
+                batchGetRow(client, tableName, primaryKeys.subList(start, end), columnsToGet, translateFunction, result, start, errorDetails);
+            } catch (Exception e) {
+                errorDetails.add(String.format("failed rows:[%s, %s), failed msg:[%s]", start, end, e.getMessage()));
+            }
+        });
+        if (!errorDetails.isEmpty()) {
+            throw Exceptions.runtime("batch get rows failed, table:%s, rows:%s, error details:%s", tableName, total, errorDetails);
+        }
+        List<T> list = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            list.add(result.get(i));
+        }
+        return list;
+    }
+
+    /**
+     * Run {@code task} for the indexes from 0 to {@code tasks - 1} with at most {@code parallelism} threads, the calling thread being one of
+     * them. The remaining tasks still run when one fails, the first failure is then thrown.
+     */
+    public static void forEachConcurrently(int tasks, int parallelism, IntConsumer task) {
+        ValidationUtils.ensureBetween(parallelism, 1, 256, "parallelism");
+        AtomicInteger nextTask = new AtomicInteger();
+        AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Runnable worker = () -> {
+            int index;
+            while ((index = nextTask.getAndIncrement()) < tasks) {
+                try {
+                    task.accept(index);
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, e);
+                }
+            }
+        };
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 1; i < Math.min(parallelism, tasks); i++) {
+            futures.add(CompletableFuture.runAsync(worker, CONCURRENT_REQUEST_EXECUTOR));
+        }
+        worker.run();
+        futures.forEach(CompletableFuture::join);
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    /**
+     * BatchGetRow writing the rows at their position in {@code result} from {@code offset}. Failed rows are added to {@code errorDetails}.
+     */
+    private static <T> void batchGetRow(
+        SyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> primaryKeys,
+        List<String> columnsToGet,
+        Function<Row, T> translateFunction,
+        AtomicReferenceArray<T> result,
+        int offset,
+        List<String> errorDetails
+    ) {
+        MultiRowQueryCriteria multiRowQueryCriteria = new MultiRowQueryCriteria(tableName);
+        for (PrimaryKey primaryKey : primaryKeys) {
+            multiRowQueryCriteria.addRow(primaryKey);
+        }
+        multiRowQueryCriteria.setMaxVersions(1);
+        if (columnsToGet != null) {
+            multiRowQueryCriteria.addColumnsToGet(columnsToGet);
+        }
+        BatchGetRowRequest batchGetRowRequest = new BatchGetRowRequest();
+        batchGetRowRequest.addMultiRowQueryCriteria(multiRowQueryCriteria);
+
+        BatchGetRowResponse batchGetRowResponse = client.batchGetRow(batchGetRowRequest);
+        for (BatchGetRowResponse.RowResult rowResult : batchGetRowResponse.getBatchGetRowResult(tableName)) {
+            if (rowResult.isSucceed()) {
+                result.set(offset + rowResult.getIndex(), translateFunction.apply(rowResult.getRow()));
+            } else {
+                PrimaryKey primaryKey = batchGetRowRequest.getPrimaryKey(rowResult.getTableName(), rowResult.getIndex());
+                errorDetails.add(String.format("failed pk:[%s], failed msg:[%s]", primaryKey.jsonize(), rowResult.getError().getMessage()));
+            }
+        }
+    }
+
+    public static <T> CompletableFuture<List<T>> batchGetRowAsync(
+        AsyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> primaryKeys,
+        Function<Row, T> translateFunction
+    ) {
+        return batchGetRowAsync(client, tableName, primaryKeys, null, translateFunction);
+    }
+
+    /**
+     * @param columnsToGet columns to read, default all
+     */
+    public static <T> CompletableFuture<List<T>> batchGetRowAsync(
+        AsyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> primaryKeys,
+        List<String> columnsToGet,
+        Function<Row, T> translateFunction
+    ) {
+        MultiRowQueryCriteria multiRowQueryCriteria = new MultiRowQueryCriteria(tableName);
+        for (PrimaryKey primaryKey : primaryKeys) {
+            multiRowQueryCriteria.addRow(primaryKey);
+        }
+        multiRowQueryCriteria.setMaxVersions(1);
+        if (columnsToGet != null) {
+            multiRowQueryCriteria.addColumnsToGet(columnsToGet);
+        }
+        BatchGetRowRequest batchGetRowRequest = new BatchGetRowRequest();
+        batchGetRowRequest.addMultiRowQueryCriteria(multiRowQueryCriteria);
+        return wrapFailure(callAsync(batchGetRowRequest, client::batchGetRow).thenApply(batchGetRowResponse -> {
+            if (!batchGetRowResponse.isAllSucceed()) {
+                List<String> errorDetails = new ArrayList<>();
+                for (BatchGetRowResponse.RowResult rowResult : batchGetRowResponse.getFailedRows()) {
+                    PrimaryKey primaryKey = batchGetRowRequest.getPrimaryKey(rowResult.getTableName(), rowResult.getIndex());
+                    errorDetails.add(String.format("failed pk:[%s], failed msg:[%s]", primaryKey.jsonize(), rowResult.getError().getMessage()));
+                }
+                throw Exceptions.runtime(String.format("batch get row failed, error details:%s", errorDetails));
+            }
+            List<T> result = new ArrayList<>(Collections.nCopies(primaryKeys.size(), null));
+            for (BatchGetRowResponse.RowResult rowResult : batchGetRowResponse.getSucceedRows()) {
+                result.set(rowResult.getIndex(), translateFunction.apply(rowResult.getRow()));
+            }
+            return result;
+        }), e -> "batch get row failed");
+    }
+
+    public static CompletableFuture<List<Document>> batchGetDocumentsAsync(
+        AsyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> pkList,
+        String textField,
+        String embeddingField
+    ) {
+        return batchGetDocumentsAsync(client, tableName, pkList, textField, embeddingField, null);
+    }
+
+    /**
+     * @param columnsToGet columns to read, default all. The embedding is neither transferred nor decoded when it isn't listed
+     */
+    public static CompletableFuture<List<Document>> batchGetDocumentsAsync(
+        AsyncClientInterface client,
+        String tableName,
+        List<PrimaryKey> pkList,
+        String textField,
+        String embeddingField,
+        List<String> columnsToGet
+    ) {
         int batchSize = 100;
         int total = pkList.size();
+        List<CompletableFuture<List<Document>>> futures = new ArrayList<>();
         for (int start = 0; start < total; start += batchSize) {
             int end = Math.min(start + batchSize, total);
             List<PrimaryKey> currentBatch = pkList.subList(start, end);
-            List<Document> processed = batchGetRow(client, tableName, currentBatch, r -> TablestoreHelper.rowToDocument(r, textField, embeddingField));
-            documents.addAll(processed);
+            futures.add(
+                batchGetRowAsync(client, tableName, currentBatch, columnsToGet, r -> TablestoreHelper.rowToDocument(r, textField, embeddingField))
+            );
         }
-        return documents;
+        return CompletableFuture.allOf(futures.toArray(new CompletableFuture<?>[0])).thenApply(v -> {
+            List<Document> documents = new ArrayList<>(total);
+            for (CompletableFuture<List<Document>> future : futures) {
+                documents.addAll(future.join());
+            }
+            return documents;
+        });
     }
 
     public static <T> Triple<List<T>, String, List<Double>> parserSearchResponse(SearchResponse searchResponse, Function<Row, T> rowToInstance) {
@@ -920,19 +1676,55 @@ public class TablestoreHelper {
     }
 
     public static String encodeEmbedding(float[] embedding) {
-        try {
-            return MAPPER.writeValueAsString(embedding);
-        } catch (JsonProcessingException e) {
-            throw Exceptions.runtimeThrowable(String.format("encode embedding failed, embedding:%s", Arrays.toString(embedding)), e);
-        }
+        return EmbeddingJsonCodec.encode(embedding);
     }
 
     public static float[] decodeEmbedding(String embedding) {
-        try {
-            return MAPPER.readValue(embedding, float[].class);
-        } catch (JsonProcessingException e) {
-            throw Exceptions.runtimeThrowable(String.format("decode embedding failed, embedding:%s", embedding), e);
+        return EmbeddingJsonCodec.decode(embedding);
+    }
+
+    /**
+     * Encode the embedding as little-endian IEEE 754 float32 values, 4 bytes per dimension.
+     */
+    public static byte[] encodeEmbeddingToBytes(float[] embedding) {
+        ByteBuffer buffer = ByteBuffer.allocate(embedding.length * Float.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.asFloatBuffer().put(embedding);
+        return buffer.array();
+    }
+
+    /**
+     * Decode an embedding written by {@link #encodeEmbeddingToBytes(float[])}.
+     */
+    public static float[] decodeEmbedding(byte[] embedding) {
+        if (embedding.length % Float.BYTES != 0) {
+            throw Exceptions.illegalArgument("decode embedding failed, byte length:%s is not a multiple of %s", embedding.length, Float.BYTES);
+        }
+        float[] result = new float[embedding.length / Float.BYTES];
+        ByteBuffer.wrap(embedding).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(result);
+        return result;
+    }
+
+    /**
+     * Decode the embedding column of a row, JSON or binary, into {@code target} from {@code offset} without an intermediate array.
+     *
+     * @return false if the row or its embedding column doesn't exist
+     */
+    public static boolean decodeEmbedding(Row row, String embeddingField, float[] target, int offset, int dimension) {
+        Column column = row == null ? null : row.getLatestColumn(embeddingField);
+        if (column == null) {
+            return false;
+        }
+        ColumnValue value = column.getValue();
+        if (value.getType() == ColumnType.BINARY) {
+            byte[] bytes = value.asBinary();
+            if (bytes.length != dimension * Float.BYTES) {
+                throw Exceptions.illegalArgument("decode embedding failed, byte length:%s, expected dimension:%s", bytes.length, dimension);
+            }
+            ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).asFloatBuffer().get(target, offset, dimension);
+        } else {
+            EmbeddingJsonCodec.decode(value.asString(), target, offset, dimension);
         }
+        return true;
     }
 
     public static void waitSearchIndexReady(SyncClient client, String tableName, String indexName, int totalCount) {
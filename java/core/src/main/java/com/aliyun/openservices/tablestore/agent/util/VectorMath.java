@@ -0,0 +1,94 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+/**
+ * Similarity kernels over embeddings stored in flat float arrays, an embedding being {@code dimension} consecutive values from an offset.
+ *
+ * <p>
+ * The loops are unrolled with four independent accumulators: the JIT doesn't reorder float additions, so a single accumulator makes every
+ * iteration wait for the previous one, while independent sums keep the multiply-add units busy and let the loads be vectorized.
+ * </p>
+ */
+public final class VectorMath {
+
+    private VectorMath() {}
+
+    public static float dotProduct(float[] a, int aOffset, float[] b, int bOffset, int dimension) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+            s1 += a[aOffset + i + 1] * b[bOffset + i + 1];
+            s2 += a[aOffset + i + 2] * b[bOffset + i + 2];
+            s3 += a[aOffset + i + 3] * b[bOffset + i + 3];
+        }
+        for (; i < dimension; i++) {
+            s0 += a[aOffset + i] * b[bOffset + i];
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    public static float squaredDistance(float[] a, int aOffset, float[] b, int bOffset, int dimension) {
+        float s0 = 0;
+        float s1 = 0;
+        float s2 = 0;
+        float s3 = 0;
+        int i = 0;
+        for (; i + 3 < dimension; i += 4) {
+            float d0 = a[aOffset + i] - b[bOffset + i];
+            float d1 = a[aOffset + i + 1] - b[bOffset + i + 1];
+            float d2 = a[aOffset + i + 2] - b[bOffset + i + 2];
+            float d3 = a[aOffset + i + 3] - b[bOffset + i + 3];
+            s0 += d0 * d0;
+            s1 += d1 * d1;
+            s2 += d2 * d2;
+            s3 += d3 * d3;
+        }
+        for (; i < dimension; i++) {
+            float d = a[aOffset + i] - b[bOffset + i];
+            s0 += d * d;
+        }
+        return (s0 + s1) + (s2 + s3);
+    }
+
+    /**
+     * Cosine similarity of {@code query} with each of the {@code count} embeddings of {@code matrix}, 0 for a zero embedding.
+     *
+     * @param matrix embeddings of {@code query.length} values, the i-th one from {@code i * query.length}
+     * @param scores receives the similarity of the i-th embedding at index i
+     */
+    public static void cosineSimilarities(float[] query, float[] matrix, int count, double[] scores) {
+        int dimension = query.length;
+        double queryNorm = Math.sqrt(dotProduct(query, 0, query, 0, dimension));
+        for (int i = 0; i < count; i++) {
+            int offset = i * dimension;
+            double norm = Math.sqrt(dotProduct(matrix, offset, matrix, offset, dimension));
+            double denominator = queryNorm * norm;
+            scores[i] = denominator == 0 ? 0 : dotProduct(query, 0, matrix, offset, dimension) / denominator;
+        }
+    }
+
+    /**
+     * Dot product of {@code query} with each of the {@code count} embeddings of {@code matrix}, see
+     * {@link #cosineSimilarities(float[], float[], int, double[])}.
+     */
+    public static void dotProducts(float[] query, float[] matrix, int count, double[] scores) {
+        int dimension = query.length;
+        for (int i = 0; i < count; i++) {
+            scores[i] = dotProduct(query, 0, matrix, i * dimension, dimension);
+        }
+    }
+
+    /**
+     * Squared euclidean distance of {@code query} to each of the {@code count} embeddings of {@code matrix}, see
+     * {@link #cosineSimilarities(float[], float[], int, double[])}.
+     */
+    public static void squaredDistances(float[] query, float[] matrix, int count, double[] scores) {
+        int dimension = query.length;
+        for (int i = 0; i < count; i++) {
+            scores[i] = squaredDistance(query, 0, matrix, i * dimension, dimension);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.model.search.FieldSchema;
+import com.alicloud.openservices.tablestore.model.search.FieldType;
+import com.aliyun.openservices.tablestore.agent.BaseTest;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.util.FakeEmbedding;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+class AsyncKnowledgeStoreTest extends BaseTest {
+
+    KnowledgeStoreImpl syncStore;
+
+    AsyncKnowledgeStoreImpl store;
+
+    FakeEmbedding fakeEmbedding = new FakeEmbedding(16);
+
+    @BeforeEach
+    void setUp() {
+        List<FieldSchema> extraMetaDataIndexSchema = Arrays.asList(
+            new FieldSchema("meta_example_string", FieldType.KEYWORD),
+            new FieldSchema("meta_example_long", FieldType.LONG)
+        );
+        syncStore = KnowledgeStoreImpl.builder()
+            .client(client)
+            .metadataSchema(extraMetaDataIndexSchema)
+            .tableName("asyncMultiTenantKnowledgeStore")
+            .textField("text_1")
+            .embeddingField("embedding_1")
+            .embeddingDimension(16)
+            .enableMultiTenant(true)
+            .build();
+        store = AsyncKnowledgeStoreImpl.builder()
+            .client(client.asAsyncClient())
+            .metadataSchema(extraMetaDataIndexSchema)
+            .tableName("asyncMultiTenantKnowledgeStore")
+            .textField("text_1")
+            .embeddingField("embedding_1")
+            .embeddingDimension(16)
+            .enableMultiTenant(true)
+            .build();
+    }
+
+    Document randomDocument(String tenantId) {
+        Document document = new Document(UUID.randomUUID().toString(), tenantId);
+        String text = randomFrom(Arrays.asList("abc", "def", "ghi", "abcd", "abcdef", "abcgh"));
+        document.setText(text);
+        document.setEmbedding(fakeEmbedding.embed(text));
+        document.getMetadata().put("meta_example_string", faker.name().fullName());
+        document.getMetadata().put("meta_example_long", faker.number().numberBetween(0, Long.MAX_VALUE));
+        return document;
+    }
+
+    @Test
+    void testAsyncStore() {
+        syncStore.deleteTableAndIndex();
+        syncStore.initTable();
+
+        Document document = randomDocument("1");
+        store.putDocument(document).join();
+        assertEquals(document, store.getDocument(document.getDocumentId(), "1").join());
+
+        Document documentToUpdate = new Document(document);
+        documentToUpdate.getMetadata().put("meta_example_string", "updated");
+        store.updateDocument(documentToUpdate).join();
+        assertEquals(documentToUpdate, store.getDocument(document.getDocumentId(), "1").join());
+
+        store.deleteDocument(document.getDocumentId(), null).join();
+        Assertions.assertNull(store.getDocument(document.getDocumentId(), "1").join());
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.getDocument(document.getDocumentId(), null));
+
+        int total = 37;
+        List<String> tenant1DocIds = new ArrayList<>();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            Document documentForBatch = randomDocument(randomFrom(Arrays.asList("1", "2")));
+            if (documentForBatch.getTenantId().equals("1")) {
+                tenant1DocIds.add(documentForBatch.getDocumentId());
+            }
+            futures.add(store.putDocument(documentForBatch));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        List<Document> documents = store.getDocuments(tenant1DocIds, "1").join();
+        Assertions.assertEquals(tenant1DocIds.size(), documents.size());
+
+        TablestoreHelper.waitSearchIndexReady(client, syncStore.getTableName(), syncStore.getSearchIndexName(), total);
+
+        CompletableFuture<Response<DocumentHit>> fullText = store.fullTextSearch("abc", null, 100, null, null, null);
+        CompletableFuture<Response<DocumentHit>> vector = store.vectorSearch(
+            fakeEmbedding.embed("abc"),
+            10,
+            null,
+            Collections.singleton("1"),
+            null,
+            null
+        );
+        Assertions.assertFalse(fullText.join().getHits().isEmpty());
+        List<DocumentHit> vectorHits = vector.join().getHits();
+        Assertions.assertFalse(vectorHits.isEmpty());
+        for (DocumentHit hit : vectorHits) {
+            Assertions.assertEquals("1", hit.getDocument().getTenantId());
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.util.FakeTablestoreClient;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BulkIngestorTest {
+
+    private static final KnowledgeStoreImpl STORE = KnowledgeStoreImpl.builder().embeddingDimension(4).enableMultiTenant(false).build();
+
+    private static List<Document> documents(int count) {
+        List<Document> documents = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            documents.add(new Document("d" + i, Document.DOCUMENT_DEFAULT_TENANT_ID, "text " + i, new float[] { i, 1, 2, 3 }, null));
+        }
+        return documents;
+    }
+
+    @Test
+    void batchesByRowsAndBytes() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        BulkIngestor.Result result = BulkIngestor.builder().store(STORE).client(fakeClient.asSyncClient()).build().ingest(documents(1000).iterator());
+        Assertions.assertEquals(1000, fakeClient.table("knowledge").size());
+        Assertions.assertEquals(1000, result.getRowCount());
+        Assertions.assertEquals(5, result.getRequestCount());
+        Assertions.assertTrue(result.getByteCount() > 0);
+        Assertions.assertTrue(result.getFailures().isEmpty());
+        Document document = TablestoreHelper.rowToDocument(fakeClient.table("knowledge").firstEntry().getValue(), "text", "embedding");
+        Assertions.assertEquals("d0", document.getDocumentId());
+
+        fakeClient = new FakeTablestoreClient();
+        result = BulkIngestor.builder()
+            .store(STORE)
+            .client(fakeClient.asSyncClient())
+            .maxBatchBytes(1024L)
+            .concurrency(2)
+            .build()
+            .ingest(documents(100).iterator());
+        Assertions.assertEquals(100, fakeClient.table("knowledge").size());
+        Assertions.assertTrue(result.getRequestCount() > 1, result.toString());
+    }
+
+    @Test
+    void duplicatesAndValidation() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        List<Document> documents = documents(3);
+        documents.add(new Document("d1", Document.DOCUMENT_DEFAULT_TENANT_ID, "last", new float[] { 9, 9, 9, 9 }, null));
+        BulkIngestor.Result result = BulkIngestor.builder().store(STORE).client(fakeClient.asSyncClient()).build().ingest(documents.iterator());
+        Assertions.assertEquals(2, result.getRequestCount());
+        Assertions.assertEquals(3, fakeClient.table("knowledge").size());
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey("d1", Document.DOCUMENT_DEFAULT_TENANT_ID);
+        Assertions.assertEquals("last", TablestoreHelper.rowToDocument(fakeClient.table("knowledge").get(primaryKey), "text", "embedding").getText());
+
+        List<Document> invalid = Arrays.asList(new Document("x", Document.DOCUMENT_DEFAULT_TENANT_ID, null, new float[] { 1 }, null));
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> BulkIngestor.builder().store(STORE).client(fakeClient.asSyncClient()).build().ingest(invalid.iterator())
+        );
+    }
+
+    @Test
+    void lastDuplicateWinsOverRetriedChunk() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        PrimaryKey d0 = TablestoreHelper.documentPrimaryKey("d0", Document.DOCUMENT_DEFAULT_TENANT_ID);
+        AtomicInteger d0Writes = new AtomicInteger();
+        // the first write of d0 fails and is retried after the chunks submitted behind it are done
+        fakeClient.setFailingRows(pk -> d0.equals(pk) && d0Writes.incrementAndGet() == 1);
+        List<Document> documents = documents(20);
+        documents.add(new Document("d0", Document.DOCUMENT_DEFAULT_TENANT_ID, "last", new float[] { 9, 9, 9, 9 }, null));
+        BulkIngestor.Result result = BulkIngestor.builder()
+            .store(STORE)
+            .client(fakeClient.asSyncClient())
+            .maxBatchRows(1)
+            .concurrency(2)
+            .retryBackoffMillis(300L)
+            .build()
+            .ingest(documents.iterator());
+        Assertions.assertTrue(result.getFailures().isEmpty());
+        Assertions.assertEquals("last", TablestoreHelper.rowToDocument(fakeClient.table("knowledge").get(d0), "text", "embedding").getText());
+    }
+
+    @Test
+    void retriesOnlyFailedRows() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        PrimaryKey flaky = TablestoreHelper.documentPrimaryKey("d7", Document.DOCUMENT_DEFAULT_TENANT_ID);
+        PrimaryKey broken = TablestoreHelper.documentPrimaryKey("d8", Document.DOCUMENT_DEFAULT_TENANT_ID);
+        AtomicInteger flakyFailures = new AtomicInteger();
+        fakeClient.setFailingRows(pk -> broken.equals(pk) || (flaky.equals(pk) && flakyFailures.incrementAndGet() <= 2));
+        BulkIngestor.Result result = BulkIngestor.builder()
+            .store(STORE)
+            .client(fakeClient.asSyncClient())
+            .retryBackoffMillis(1L)
+            .build()
+            .ingest(documents(10).iterator());
+        Assertions.assertEquals(9, fakeClient.table("knowledge").size());
+        Assertions.assertEquals(9, result.getRowCount());
+        // first request with the 10 rows, then 3 retries of d7 and d8
+        Assertions.assertEquals(4, result.getRequestCount());
+        Assertions.assertEquals(1, result.getFailures().size());
+        Assertions.assertEquals("d8", result.getFailures().get(0).getDocumentId());
+        Assertions.assertTrue(result.getFailures().get(0).getError().contains("fake failure"));
+    }
+}
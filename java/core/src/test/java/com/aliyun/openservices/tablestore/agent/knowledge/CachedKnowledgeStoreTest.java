@@ -0,0 +1,104 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CachedKnowledgeStoreTest {
+
+    private final Map<String, Document> documents = new ConcurrentHashMap<>();
+
+    private final List<List<String>> getDocumentsCalls = new ArrayList<>();
+
+    private final AtomicInteger getDocumentCount = new AtomicInteger();
+
+    /**
+     * Delegate keeping documents of the default tenant in a map, only the methods used by the tests are implemented.
+     */
+    @SuppressWarnings("unchecked")
+    private KnowledgeStore delegate() {
+        return (KnowledgeStore) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { KnowledgeStore.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "putDocument":
+                case "updateDocument": {
+                    Document document = (Document) args[0];
+                    documents.put(document.getDocumentId(), new Document(document));
+                    return null;
+                }
+                case "deleteDocument":
+                    documents.remove((String) args[0]);
+                    return null;
+                case "getDocument":
+                    getDocumentCount.incrementAndGet();
+                    return documents.get((String) args[0]);
+                case "getDocuments": {
+                    List<String> ids = (List<String>) args[0];
+                    getDocumentsCalls.add(ids);
+                    List<Document> result = new ArrayList<>();
+                    ids.forEach(id -> result.add(documents.get(id)));
+                    return result;
+                }
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    void onlyMissesAreRead() {
+        CachedKnowledgeStore store = CachedKnowledgeStore.builder().delegate(delegate()).build();
+        for (int i = 1; i <= 3; i++) {
+            store.putDocument(new Document("d" + i, Document.DOCUMENT_DEFAULT_TENANT_ID, "text " + i, new float[] { i, i }, null));
+        }
+        Assertions.assertEquals("text 1", store.getDocument("d1").getText());
+        // returned documents are copies
+        store.getDocument("d1").getEmbedding()[0] = 100;
+        Assertions.assertEquals(1, store.getDocument("d1").getEmbedding()[0]);
+        Assertions.assertEquals(1, getDocumentCount.get());
+
+        List<Document> result = store.getDocuments(Arrays.asList("d1", "d2", "missing", "d3"));
+        Assertions.assertEquals(Arrays.asList("d2", "missing", "d3"), getDocumentsCalls.get(0));
+        Assertions.assertEquals("text 1", result.get(0).getText());
+        Assertions.assertEquals("text 2", result.get(1).getText());
+        Assertions.assertNull(result.get(2));
+        Assertions.assertEquals("text 3", result.get(3).getText());
+
+        store.updateDocument(new Document("d2", Document.DOCUMENT_DEFAULT_TENANT_ID, "updated", new float[] { 2, 2 }, null));
+        store.deleteDocument("d3");
+        result = store.getDocuments(Arrays.asList("d1", "d2", "d3"));
+        Assertions.assertEquals(Arrays.asList("d2", "d3"), getDocumentsCalls.get(1));
+        Assertions.assertEquals("updated", result.get(1).getText());
+        Assertions.assertNull(result.get(2));
+
+        Assertions.assertEquals("d1", store.getDocuments(Collections.singletonList("d1")).get(0).getDocumentId());
+        Assertions.assertEquals(2, getDocumentsCalls.size());
+    }
+
+    @Test
+    void boundedByDocumentSize() {
+        Document small = new Document("s10", Document.DOCUMENT_DEFAULT_TENANT_ID, "text", new float[4], null);
+        Document large = new Document("large", Document.DOCUMENT_DEFAULT_TENANT_ID, "text", new float[1024], null);
+        long smallSize = CachedKnowledgeStore.estimateSize(small);
+        Assertions.assertTrue(CachedKnowledgeStore.estimateSize(large) >= smallSize + 4 * 1020);
+
+        CachedKnowledgeStore store = CachedKnowledgeStore.builder().delegate(delegate()).maxBytes(smallSize * 10).build();
+        for (int i = 0; i < 20; i++) {
+            store.putDocument(new Document("s" + (10 + i), Document.DOCUMENT_DEFAULT_TENANT_ID, "text", new float[4], null));
+            store.getDocument("s" + (10 + i));
+        }
+        Assertions.assertEquals(smallSize * 10, store.getDocumentCacheBytes());
+        Assertions.assertEquals(10, store.getDocumentCacheStats().getEvictionCount());
+
+        store.putDocument(large);
+        store.getDocument("large");
+        Assertions.assertEquals(0, store.getDocumentCacheBytes());
+    }
+}
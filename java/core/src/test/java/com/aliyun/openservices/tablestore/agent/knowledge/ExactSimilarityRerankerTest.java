@@ -0,0 +1,116 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.model.search.vector.VectorMetricType;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ExactSimilarityRerankerTest {
+
+    private static final float[] QUERY = { 1, 0, 0, 0, 0 };
+
+    /**
+     * a is the most similar by cosine and the closest, b has the largest dot product, c is a little less similar than a and d is zero.
+     */
+    private static final float[] EMBEDDINGS = { 1, 0.1f, 0, 0, 0, 3, 3, 0, 0, 0, 0.9f, 0, 0, 0, 0.1f, 0, 0, 0, 0, 0 };
+
+    @Test
+    void rerankByMetric() {
+        List<DocumentHit> candidates = candidates("d", "c", "b", "a");
+        float[] embeddings = reversed(EMBEDDINGS);
+        List<DocumentHit> hits = ExactSimilarityReranker.builder().build().rerank(QUERY, candidates, embeddings, 3);
+        Assertions.assertEquals(Arrays.asList("a", "c", "b"), ids(hits));
+
+        hits = ExactSimilarityReranker.builder()
+            .metricType(VectorMetricType.DOT_PRODUCT)
+            .build()
+            .rerank(QUERY, candidates, embeddings, 2);
+        Assertions.assertEquals(Arrays.asList("b", "a"), ids(hits));
+        Assertions.assertEquals(3.0, hits.get(0).getScore(), 1e-6);
+
+        hits = ExactSimilarityReranker.builder().metricType(VectorMetricType.EUCLIDEAN).build().rerank(QUERY, candidates, embeddings, 4);
+        Assertions.assertEquals(Arrays.asList("a", "c", "d", "b"), ids(hits));
+        Assertions.assertEquals(1 / (1 + 0.01), hits.get(0).getScore(), 1e-6);
+    }
+
+    @Test
+    void boost() {
+        List<DocumentHit> candidates = candidates("d", "c", "b", "a");
+        candidates.get(1).getDocument().getMetadata().put("pinned", true);
+        List<DocumentHit> hits = ExactSimilarityReranker.builder()
+            .boost(document -> Boolean.TRUE.equals(document.getMetadata().getBoolean("pinned")) ? 1 : 0)
+            .build()
+            .rerank(QUERY, candidates, reversed(EMBEDDINGS), 1);
+        Assertions.assertEquals("c", hits.get(0).getDocument().getDocumentId());
+    }
+
+    @Test
+    void sameAsNaiveCosine() {
+        Random random = new Random(3);
+        int dimension = 67;
+        int count = 50;
+        float[] query = randomVector(random, dimension);
+        float[] embeddings = randomVector(random, dimension * count);
+        List<DocumentHit> candidates = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            candidates.add(new DocumentHit(new Document("d" + i, null, null, null, new Metadata()), 0.0));
+        }
+        List<DocumentHit> hits = ExactSimilarityReranker.builder().build().rerank(query, candidates, embeddings, count);
+        for (DocumentHit hit : hits) {
+            int i = Integer.parseInt(hit.getDocument().getDocumentId().substring(1));
+            double dot = 0;
+            double norm1 = 0;
+            double norm2 = 0;
+            for (int j = 0; j < dimension; j++) {
+                dot += query[j] * embeddings[i * dimension + j];
+                norm1 += query[j] * query[j];
+                norm2 += embeddings[i * dimension + j] * embeddings[i * dimension + j];
+            }
+            Assertions.assertEquals(dot / Math.sqrt(norm1 * norm2), hit.getScore(), 1e-5);
+        }
+        for (int i = 1; i < hits.size(); i++) {
+            Assertions.assertTrue(hits.get(i - 1).getScore() >= hits.get(i).getScore());
+        }
+    }
+
+    private static List<DocumentHit> candidates(String... ids) {
+        List<DocumentHit> candidates = new ArrayList<>();
+        for (String id : ids) {
+            candidates.add(new DocumentHit(new Document(id, null, null, null, new Metadata()), 0.5));
+        }
+        return candidates;
+    }
+
+    /**
+     * The embeddings of a, b, c, d in the order d, c, b, a of the candidates.
+     */
+    private static float[] reversed(float[] embeddings) {
+        int dimension = QUERY.length;
+        int count = embeddings.length / dimension;
+        float[] result = new float[embeddings.length];
+        for (int i = 0; i < count; i++) {
+            System.arraycopy(embeddings, i * dimension, result, (count - 1 - i) * dimension, dimension);
+        }
+        return result;
+    }
+
+    private static float[] randomVector(Random random, int length) {
+        float[] vector = new float[length];
+        for (int i = 0; i < length; i++) {
+            vector[i] = random.nextFloat() * 2 - 1;
+        }
+        return vector;
+    }
+
+    private static List<String> ids(List<DocumentHit> hits) {
+        List<String> ids = new ArrayList<>();
+        hits.forEach(hit -> ids.add(hit.getDocument().getDocumentId()));
+        return ids;
+    }
+}
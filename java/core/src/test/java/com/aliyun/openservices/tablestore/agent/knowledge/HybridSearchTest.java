@@ -0,0 +1,135 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.alicloud.openservices.tablestore.SyncClient;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.alicloud.openservices.tablestore.model.search.SearchHit;
+import com.alicloud.openservices.tablestore.model.search.SearchResponse;
+import com.alicloud.openservices.tablestore.model.search.query.KnnVectorQuery;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.util.FakeTablestoreClient;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class HybridSearchTest {
+
+    private FakeTablestoreClient fakeClient;
+    private SyncClient client;
+    private KnowledgeStoreImpl store;
+
+    /**
+     * "text" and "vector" to the limit of the last search of that kind, and for the vector search the topK of its KNN query as well.
+     */
+    private final Map<String, Integer> limits = new ConcurrentHashMap<>();
+
+    @BeforeEach
+    void setUp() {
+        fakeClient = new FakeTablestoreClient();
+        client = fakeClient.asSyncClientInstance();
+        store = KnowledgeStoreImpl.builder().client(client).embeddingDimension(2).enableMultiTenant(false).build();
+        for (String documentId : Arrays.asList("d1", "d2", "d3", "d4")) {
+            putDocument(documentId);
+        }
+        // "dm" is returned by the full-text search but deleted since it was indexed
+        fakeClient.setSearchHandler(request -> {
+            if (request.getSearchQuery().getQuery() instanceof KnnVectorQuery) {
+                limits.put("vector", request.getSearchQuery().getLimit());
+                limits.put("vectorTopK", ((KnnVectorQuery) request.getSearchQuery().getQuery()).getTopK());
+                return searchResponse("d3", "d1", "d4");
+            }
+            limits.put("text", request.getSearchQuery().getLimit());
+            return searchResponse("dm", "d1", "d2");
+        });
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void fusesAndReadsTopK() {
+        List<DocumentHit> hits = store.hybridSearch("text", new float[] { 1, 0 }, 3, null, null).getHits();
+        Assertions.assertEquals(6, limits.get("text"));
+        Assertions.assertEquals(6, limits.get("vector"));
+        Assertions.assertEquals(6, limits.get("vectorTopK"));
+
+        // d1 is second in both rankings, dm and d3 are first in one and tie, the one of the first ranking wins
+        Assertions.assertEquals(Arrays.asList("d1", "dm", "d3"), documentIds(hits));
+        Assertions.assertEquals(2.0 / 62, hits.get(0).getScore(), 1e-12);
+        Assertions.assertEquals(1.0 / 61, hits.get(1).getScore(), 1e-12);
+        Assertions.assertEquals(1.0 / 61, hits.get(2).getScore(), 1e-12);
+
+        // only the top K are read, in one request, the missing one keeps the columns of the search
+        Assertions.assertEquals(1, fakeClient.batchGetRowCount());
+        Assertions.assertArrayEquals(new float[] { 1, 1 }, hits.get(0).getDocument().getEmbedding());
+        Assertions.assertNull(hits.get(1).getDocument().getEmbedding());
+        Assertions.assertEquals("text dm", hits.get(1).getDocument().getText());
+        Assertions.assertArrayEquals(new float[] { 3, 1 }, hits.get(2).getDocument().getEmbedding());
+
+        // columns of the searches only, nothing is read from the table
+        hits = store.hybridSearch("text", new float[] { 1, 0 }, 2, null, null, Arrays.asList("text")).getHits();
+        Assertions.assertEquals(Arrays.asList("d1", "dm"), documentIds(hits));
+        Assertions.assertEquals(1, fakeClient.batchGetRowCount());
+    }
+
+    @Test
+    void candidatesAreCapped() {
+        store.hybridSearch("text", new float[] { 1, 0 }, 60, null, null, null);
+        Assertions.assertEquals(100, limits.get("text"));
+        Assertions.assertEquals(100, limits.get("vectorTopK"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.hybridSearch("text", new float[] { 1, 0 }, 101, null, null));
+    }
+
+    private void putDocument(String documentId) {
+        float index = documentId.charAt(1) - '0';
+        Document document = new Document(documentId, Document.DOCUMENT_DEFAULT_TENANT_ID, "text " + documentId, new float[] { index, 1 }, null);
+        fakeClient.putRow(
+            "knowledge",
+            new Row(
+                TablestoreHelper.documentPrimaryKey(documentId, Document.DOCUMENT_DEFAULT_TENANT_ID),
+                TablestoreHelper.documentToColumns(document, "text", "embedding")
+            )
+        );
+    }
+
+    /**
+     * Hits with the text column only, as returned with the default columns, scored from 1 down.
+     */
+    private static SearchResponse searchResponse(String... documentIds) {
+        List<Row> rows = new ArrayList<>();
+        List<SearchHit> searchHits = new ArrayList<>();
+        for (int i = 0; i < documentIds.length; i++) {
+            Document document = new Document(documentIds[i], Document.DOCUMENT_DEFAULT_TENANT_ID, "text " + documentIds[i], null, null);
+            Row row = new Row(
+                TablestoreHelper.documentPrimaryKey(documentIds[i], Document.DOCUMENT_DEFAULT_TENANT_ID),
+                TablestoreHelper.documentToColumns(document, "text", "embedding")
+            );
+            SearchHit searchHit = new SearchHit();
+            searchHit.setRow(row);
+            searchHit.setScore(1.0 - i * 0.1);
+            rows.add(row);
+            searchHits.add(searchHit);
+        }
+        SearchResponse response = new SearchResponse(new com.alicloud.openservices.tablestore.model.Response("fake-request-id"));
+        response.setRows(rows);
+        response.setSearchHits(searchHits);
+        return response;
+    }
+
+    private static List<String> documentIds(List<DocumentHit> hits) {
+        List<String> documentIds = new ArrayList<>();
+        for (DocumentHit hit : hits) {
+            documentIds.add(hit.getDocument().getDocumentId());
+        }
+        return documentIds;
+    }
+}
@@ -0,0 +1,148 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filters;
+import com.aliyun.openservices.tablestore.agent.util.CollectionUtil;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class InMemoryKnowledgeStoreTest {
+
+    @Test
+    void multiTenant() {
+        InMemoryKnowledgeStore store = InMemoryKnowledgeStore.builder().embeddingDimension(2).enableMultiTenant(true).build();
+        store.putDocument(new Document("d1", "t1", "apple pie", new float[] { 1, 0 }, new Metadata().put("n", 1)));
+        store.putDocument(new Document("d1", "t2", "apple juice", new float[] { 0, 1 }, new Metadata().put("n", 2)));
+        store.putDocument(new Document("d2", "t1", "banana", new float[] { 1, 1 }, new Metadata().put("n", 3)));
+
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.getDocument("d1"));
+        Assertions.assertEquals("apple juice", store.getDocument("d1", "t2").getText());
+        Assertions.assertArrayEquals(new float[] { 0, 1 }, store.getDocument("d1", "t2").getEmbedding());
+
+        Set<String> t1 = Collections.singleton("t1");
+        Assertions.assertEquals(Arrays.asList("d1", "d2"), hitIds(store.vectorSearch(new float[] { 1, 0 }, 10, null, t1, null, null)));
+        Assertions.assertEquals(
+            Collections.singletonList("t2"),
+            store.fullTextSearch("APPLE", new HashSet<>(Arrays.asList("t2", "t3")), 10, null, null, null)
+                .getHits()
+                .stream()
+                .map(hit -> hit.getDocument().getTenantId())
+                .collect(Collectors.toList())
+        );
+
+        // without a tenant, the document is deleted from all of them
+        store.deleteDocument("d1");
+        Assertions.assertEquals(Collections.singletonList("d2"), documentIds(CollectionUtil.toList(store.listAllDocuments())));
+        store.deleteDocumentByTenant("t1");
+        Assertions.assertEquals(0, store.streamAllDocuments().count());
+
+        InMemoryKnowledgeStore single = InMemoryKnowledgeStore.builder().embeddingDimension(2).enableMultiTenant(false).build();
+        Assertions.assertThrows(IllegalArgumentException.class, () -> single.putDocument(new Document("d1", "t1")));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> single.vectorSearch(new float[] { 1, 0 }, 10, null, t1, null, null));
+    }
+
+    @Test
+    void updateAndSearch() {
+        InMemoryKnowledgeStore store = InMemoryKnowledgeStore.builder().embeddingDimension(2).enableMultiTenant(false).build();
+        store.putDocument(new Document("d1", null, "the quick brown fox", new float[] { 1, 0 }, new Metadata().put("year", 2020)));
+        store.putDocument(new Document("d2", null, "the lazy dog", new float[] { 0, 1 }, new Metadata().put("year", 2021)));
+        store.putDocument(new Document("d3", null, "quick quick quick", null, new Metadata().put("year", 2022)));
+
+        Response<DocumentHit> text = store.fullTextSearch("quick fox", null, 10, null, null, null);
+        Assertions.assertEquals(Arrays.asList("d1", "d3"), hitIds(text));
+        Assertions.assertNull(text.getHits().get(0).getDocument().getEmbedding());
+        Assertions.assertEquals(
+            Collections.singletonList("d3"),
+            hitIds(store.fullTextSearch("quick", null, 10, Filters.gt("year", 2020), null, null))
+        );
+        Assertions.assertEquals(
+            Collections.singletonList("d1"),
+            hitIds(store.searchDocuments(KnowledgeSearchRequest.builder().metadataFilter(Filters.textMatchPhrase("text", "brown fox")).build()))
+        );
+
+        // the embedding and text are kept, the metadata merged
+        store.updateDocument(new Document("d1", null, null, null, new Metadata().put("tag", "x")));
+        Document updated = store.getDocument("d1");
+        Assertions.assertEquals("the quick brown fox", updated.getText());
+        Assertions.assertArrayEquals(new float[] { 1, 0 }, updated.getEmbedding());
+        Assertions.assertEquals(new Metadata().put("year", 2020L).put("tag", "x"), updated.getMetadata());
+
+        store.updateDocument(new Document("d2", null, null, new float[] { 1, 0.1f }, null));
+        Response<DocumentHit> vector = store.vectorSearch(new float[] { 1, 0 }, 10, 0.9f, null, null, Collections.singletonList("year"));
+        Assertions.assertEquals(Arrays.asList("d1", "d2"), hitIds(vector));
+        Assertions.assertEquals(1.0, vector.getHits().get(0).getScore(), 1e-6);
+        Assertions.assertNull(vector.getHits().get(0).getDocument().getText());
+        Assertions.assertEquals(Long.valueOf(2020), vector.getHits().get(0).getDocument().getMetadata().getLong("year"));
+
+        // a put replaces the whole document
+        store.putDocument(new Document("d1", null, "fox", null, null));
+        Assertions.assertNull(store.getDocument("d1").getEmbedding());
+        Assertions.assertEquals(Collections.singletonList("d2"), hitIds(store.vectorSearch(new float[] { 1, 0 }, 10, null, null, null, null)));
+        store.deleteDocument(null, Filters.eq("year", 2022));
+        Assertions.assertNull(store.getDocument("d3"));
+    }
+
+    @Test
+    void hnswRecall() {
+        int dimension = 16;
+        int count = 2000;
+        InMemoryKnowledgeStore flat = InMemoryKnowledgeStore.builder().embeddingDimension(dimension).enableMultiTenant(false).build();
+        InMemoryKnowledgeStore hnsw = InMemoryKnowledgeStore.builder()
+            .embeddingDimension(dimension)
+            .enableMultiTenant(false)
+            .enableHnsw(true)
+            .build();
+        Random random = new Random(7);
+        for (int i = 0; i < count; i++) {
+            Document document = new Document("d" + i, null, null, randomVector(random, dimension), new Metadata().put("even", i % 2 == 0));
+            flat.putDocument(document);
+            hnsw.putDocument(document);
+        }
+        // deleted nodes are skipped but still traversed
+        for (int i = 0; i < count; i += 10) {
+            flat.deleteDocument("d" + i);
+            hnsw.deleteDocument("d" + i);
+        }
+
+        int found = 0;
+        int expected = 0;
+        for (int q = 0; q < 50; q++) {
+            float[] query = randomVector(random, dimension);
+            List<String> exact = hitIds(flat.vectorSearch(query, 10, null, null, null, null));
+            List<String> approximate = hitIds(hnsw.vectorSearch(query, 10, null, null, null, null));
+            expected += exact.size();
+            found += (int) approximate.stream().filter(exact::contains).count();
+
+            // a filter keeping a few documents falls back to the scan
+            List<String> filtered = hitIds(hnsw.vectorSearch(query, 10, null, null, Filters.in("document_id", Arrays.asList("d1", "d3")), null));
+            Assertions.assertEquals(new HashSet<>(Arrays.asList("d1", "d3")), new HashSet<>(filtered));
+        }
+        Assertions.assertTrue(found >= expected * 0.9, "recall:" + found + "/" + expected);
+    }
+
+    private static float[] randomVector(Random random, int dimension) {
+        float[] vector = new float[dimension];
+        for (int i = 0; i < dimension; i++) {
+            vector[i] = (float) random.nextGaussian();
+        }
+        return vector;
+    }
+
+    private static List<String> hitIds(Response<DocumentHit> response) {
+        return response.getHits().stream().map(hit -> hit.getDocument().getDocumentId()).collect(Collectors.toList());
+    }
+
+    private static List<String> documentIds(List<Document> documents) {
+        return documents.stream().map(Document::getDocumentId).collect(Collectors.toList());
+    }
+}
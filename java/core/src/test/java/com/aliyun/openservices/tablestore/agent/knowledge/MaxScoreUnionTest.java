@@ -0,0 +1,38 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MaxScoreUnionTest {
+
+    @Test
+    void merge() {
+        List<DocumentHit> first = Arrays.asList(hit("a", "t1", 0.9), hit("b", "t1", 0.5), hit("c", "t1", 0.4));
+        List<DocumentHit> second = Arrays.asList(hit("b", "t1", 0.8), hit("d", "t1", 0.7), hit("a", "t1", 0.3), hit("a", "t2", 0.2));
+
+        List<DocumentHit> merged = MaxScoreUnion.merge(Arrays.asList(first, second), 3);
+        Assertions.assertEquals(Arrays.asList("a", "b", "d"), ids(merged));
+        Assertions.assertEquals(0.9, merged.get(0).getScore());
+        Assertions.assertEquals(0.8, merged.get(1).getScore());
+
+        // same document id of another tenant is another document
+        Assertions.assertEquals(5, MaxScoreUnion.merge(Arrays.asList(first, second), 10).size());
+        Assertions.assertTrue(MaxScoreUnion.merge(Collections.emptyList(), 10).isEmpty());
+    }
+
+    private static DocumentHit hit(String documentId, String tenantId, double score) {
+        return new DocumentHit(new Document(documentId, tenantId), score);
+    }
+
+    private static List<String> ids(List<DocumentHit> hits) {
+        List<String> ids = new ArrayList<>();
+        hits.forEach(hit -> ids.add(hit.getDocument().getDocumentId()));
+        return ids;
+    }
+}
@@ -0,0 +1,50 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MaximalMarginalRelevanceRerankerTest {
+
+    private static final float[] QUERY = { 1, 0, 0 };
+
+    /**
+     * a and b are near duplicates close to the query, c is less relevant but different.
+     */
+    private static final float[] EMBEDDINGS = { 1, 0.1f, 0, 1, 0.12f, 0, 1, 0, 0.8f };
+
+    @Test
+    void diversify() {
+        List<DocumentHit> candidates = candidates("a", "b", "c");
+        List<DocumentHit> hits = MaximalMarginalRelevanceReranker.builder().build().rerank(QUERY, candidates, EMBEDDINGS, 2);
+        Assertions.assertEquals(Arrays.asList("a", "c"), ids(hits));
+        Assertions.assertEquals(1 / Math.sqrt(1.01), hits.get(0).getScore(), 1e-6);
+        Assertions.assertEquals(1 / Math.sqrt(1.64), hits.get(1).getScore(), 1e-6);
+
+        // only relevance, the order of the similarity
+        hits = MaximalMarginalRelevanceReranker.builder().lambda(1.0).build().rerank(QUERY, candidates, EMBEDDINGS, 3);
+        Assertions.assertEquals(Arrays.asList("a", "b", "c"), ids(hits));
+
+        Assertions.assertTrue(MaximalMarginalRelevanceReranker.builder().build().rerank(QUERY, Collections.emptyList(), new float[0], 2).isEmpty());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> MaximalMarginalRelevanceReranker.builder().lambda(1.5).build());
+    }
+
+    private static List<DocumentHit> candidates(String... ids) {
+        List<DocumentHit> candidates = new ArrayList<>();
+        for (String id : ids) {
+            candidates.add(new DocumentHit(new Document(id, null), 0.5));
+        }
+        return candidates;
+    }
+
+    private static List<String> ids(List<DocumentHit> hits) {
+        List<String> ids = new ArrayList<>();
+        hits.forEach(hit -> ids.add(hit.getDocument().getDocumentId()));
+        return ids;
+    }
+}
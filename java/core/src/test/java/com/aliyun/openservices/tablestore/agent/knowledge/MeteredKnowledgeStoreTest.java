@@ -0,0 +1,90 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.util.CollectionUtil;
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MeteredKnowledgeStoreTest {
+
+    private final List<String> operations = new ArrayList<>();
+    private final Map<String, Long> rowsRead = new HashMap<>();
+    private final Map<String, Long> rowsWritten = new HashMap<>();
+    private final Map<String, Supplier<LruCache.Stats>> caches = new HashMap<>();
+
+    private final StoreMetrics metrics = new StoreMetrics() {
+        @Override
+        public void recordOperation(String store, String operation, long elapsedNanos, String errorCode) {
+            operations.add(store + "." + operation + (errorCode == null ? "" : ":" + errorCode));
+        }
+
+        @Override
+        public void recordRowsRead(String store, String operation, long rows) {
+            rowsRead.merge(operation, rows, Long::sum);
+        }
+
+        @Override
+        public void recordRowsWritten(String store, String operation, long rows) {
+            rowsWritten.merge(operation, rows, Long::sum);
+        }
+
+        @Override
+        public void registerCache(String cache, Supplier<LruCache.Stats> stats) {
+            caches.put(cache, stats);
+        }
+    };
+
+    @Test
+    void recordsOperations() {
+        KnowledgeStore cached = CachedKnowledgeStore.builder()
+            .delegate(InMemoryKnowledgeStore.builder().embeddingDimension(2).enableMultiTenant(false).build())
+            .metrics(metrics)
+            .build();
+        KnowledgeStore store = MeteredKnowledgeStore.builder().delegate(cached).metrics(metrics).name("kb").build();
+
+        store.putDocuments(
+            Arrays.asList(
+                new Document("d1", null, "a", new float[] { 1, 0 }, new Metadata()),
+                new Document("d2", null, "b", new float[] { 0, 1 }, new Metadata())
+            ).iterator()
+        );
+        store.getDocument("d1");
+        store.getDocument("d1");
+        Assertions.assertNull(store.getDocument("unknown"));
+        Assertions.assertEquals(2, store.vectorSearch(new float[] { 1, 0 }, 10, null, null, null, null).getHits().size());
+        Assertions.assertEquals(2, CollectionUtil.toList(store.listAllDocuments()).size());
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.getDocument("d1", "tenant"));
+
+        Assertions.assertEquals(
+            Arrays.asList(
+                "kb.putDocuments",
+                "kb.getDocument",
+                "kb.getDocument",
+                "kb.getDocument",
+                "kb.vectorSearch",
+                "kb.listAllDocuments",
+                "kb.getDocument:IllegalArgumentException"
+            ),
+            operations
+        );
+        Assertions.assertEquals(Collections.singletonMap("putDocuments", 2L), rowsWritten);
+        Assertions.assertEquals(Long.valueOf(2), rowsRead.get("getDocument"));
+        Assertions.assertEquals(Long.valueOf(2), rowsRead.get("vectorSearch"));
+        Assertions.assertEquals(Long.valueOf(2), rowsRead.get("listAllDocuments"));
+
+        // the failed get is a miss too
+        LruCache.Stats stats = caches.get("knowledge.document").get();
+        Assertions.assertEquals(1, stats.getHitCount());
+        Assertions.assertEquals(3, stats.getMissCount());
+    }
+}
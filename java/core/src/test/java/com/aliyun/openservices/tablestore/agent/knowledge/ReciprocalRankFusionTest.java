@@ -0,0 +1,42 @@
+package com.aliyun.openservices.tablestore.agent.knowledge;
+
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.DocumentHit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ReciprocalRankFusionTest {
+
+    @Test
+    void fuse() {
+        List<DocumentHit> fullText = hits("t1", "a", "b", "c");
+        List<DocumentHit> vector = hits("t1", "c", "d", "a");
+        // same document id of another tenant is another document
+        vector.add(new DocumentHit(new Document("b", "t2"), 0.1));
+
+        List<DocumentHit> fused = ReciprocalRankFusion.fuse(Arrays.asList(fullText, vector), 60, 3);
+        Assertions.assertEquals(Arrays.asList("a", "c", "b"), ids(fused));
+        Assertions.assertEquals(1.0 / 61 + 1.0 / 63, fused.get(0).getScore(), 1e-12);
+        Assertions.assertEquals(1.0 / 63 + 1.0 / 61, fused.get(1).getScore(), 1e-12);
+        Assertions.assertEquals("t1", fused.get(2).getDocument().getTenantId());
+
+        Assertions.assertEquals(5, ReciprocalRankFusion.fuse(Arrays.asList(fullText, vector), 60, 10).size());
+    }
+
+    private static List<DocumentHit> hits(String tenantId, String... ids) {
+        List<DocumentHit> hits = new ArrayList<>();
+        for (int i = 0; i < ids.length; i++) {
+            hits.add(new DocumentHit(new Document(ids[i], tenantId), 10.0 - i));
+        }
+        return hits;
+    }
+
+    private static List<String> ids(List<DocumentHit> hits) {
+        List<String> ids = new ArrayList<>();
+        hits.forEach(hit -> ids.add(hit.getDocument().getDocumentId()));
+        return ids;
+    }
+}
@@ -0,0 +1,128 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.BaseTest;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+@Slf4j
+class AsyncMemoryStoreTest extends BaseTest {
+
+    MemoryStoreImpl syncStore;
+
+    AsyncMemoryStoreImpl store;
+
+    @BeforeEach
+    void setUp() {
+        syncStore = MemoryStoreImpl.builder().client(client).build();
+        store = AsyncMemoryStoreImpl.builder().client(client.asAsyncClient()).build();
+    }
+
+    Session randomSession(String userId) {
+        Session session = new Session(userId, UUID.randomUUID().toString());
+        session.setUpdateTime(faker.number().numberBetween(0, 100L));
+        session.getMetadata().put("meta_example_string", faker.name().fullName());
+        session.getMetadata().put("meta_example_long", faker.number().numberBetween(0, Long.MAX_VALUE));
+        return session;
+    }
+
+    Message randomMessage(String sessionId) {
+        Message message = new Message(sessionId, UUID.randomUUID().toString());
+        message.setCreateTime(faker.number().numberBetween(0, 100L));
+        message.setContent(faker.lorem().sentence());
+        message.getMetadata().put("meta_example_string", faker.name().fullName());
+        return message;
+    }
+
+    @Test
+    void basicSessionStore() {
+        syncStore.deleteTableAndIndex();
+        syncStore.initTable();
+
+        Session session = randomSession("1");
+        store.putSession(session).join();
+        assertEquals(session, store.getSession("1", session.getSessionId()).join());
+
+        Session sessionToUpdate = new Session(session);
+        sessionToUpdate.getMetadata().put("meta_example_string", "updated");
+        store.updateSession(sessionToUpdate).join();
+        assertEquals(sessionToUpdate, store.getSession("1", session.getSessionId()).join());
+
+        store.deleteSession("1", session.getSessionId()).join();
+        Assertions.assertNull(store.getSession("1", session.getSessionId()).join());
+
+        int total = 57;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            futures.add(store.putSession(randomSession("2")));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        Set<String> sessionIds = new HashSet<>();
+        String nextToken = null;
+        Long lastUpdateTime = null;
+        do {
+            Response<Session> response = store.listRecentSessionsPaginated("2", 10, null, null, null, nextToken, null).join();
+            Assertions.assertTrue(response.getHits().size() <= 10);
+            for (Session hit : response.getHits()) {
+                if (lastUpdateTime != null) {
+                    Assertions.assertTrue(hit.getUpdateTime() <= lastUpdateTime);
+                }
+                lastUpdateTime = hit.getUpdateTime();
+                sessionIds.add(hit.getSessionId());
+            }
+            nextToken = response.getNextToken();
+        } while (nextToken != null);
+        Assertions.assertEquals(total, sessionIds.size());
+    }
+
+    @Test
+    void basicMessageStore() {
+        syncStore.deleteTableAndIndex();
+        syncStore.initTable();
+
+        Message message = randomMessage("1");
+        store.putMessage(message).join();
+        assertEquals(message, store.getMessage("1", message.getMessageId(), message.getCreateTime()).join());
+        assertEquals(message, store.getMessage("1", message.getMessageId(), null).join());
+
+        Message messageToUpdate = new Message("1", message.getMessageId(), null);
+        messageToUpdate.setContent("updated");
+        messageToUpdate.setMetadata(message.getMetadata());
+        store.updateMessage(messageToUpdate).join();
+        Assertions.assertEquals(message.getCreateTime(), messageToUpdate.getCreateTime());
+        Assertions.assertEquals("updated", store.getMessage("1", message.getMessageId(), null).join().getContent());
+
+        Assertions.assertThrows(Exception.class, () -> store.updateMessage(randomMessage("1").setCreateTime(null)).join());
+
+        store.deleteMessage("1", message.getMessageId(), null).join();
+        Assertions.assertNull(store.getMessage("1", message.getMessageId(), null).join());
+
+        int total = 43;
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < total; i++) {
+            futures.add(store.putMessage(randomMessage("2")));
+        }
+        CompletableFuture.allOf(futures.toArray(new CompletableFuture[0])).join();
+
+        int count = 0;
+        String nextToken = null;
+        do {
+            Response<Message> response = store.listMessagesPaginated("2", 7, null, null, null, Order.ASC, nextToken, null).join();
+            count += response.getHits().size();
+            nextToken = response.getNextToken();
+        } while (nextToken != null);
+        Assertions.assertEquals(total, count);
+    }
+}
@@ -0,0 +1,119 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.util.FakeTablestoreClient;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BufferedMessageWriterTest {
+
+    @Test
+    void batchesBySize() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        try (BufferedMessageWriter writer = BufferedMessageWriter.builder().client(fakeClient.asSyncClient()).lingerMillis(60_000L).build()) {
+            for (int i = 0; i < 1000; i++) {
+                futures.add(writer.putMessage(new Message("s1", "m" + i, (long) i).setContent("content " + i)));
+            }
+            writer.flush();
+            futures.forEach(f -> Assertions.assertTrue(f.isDone() && !f.isCompletedExceptionally()));
+            Assertions.assertEquals(1000, fakeClient.table("message").size());
+            Assertions.assertEquals(5, fakeClient.batchWriteRowCount());
+            Assertions.assertEquals(5, writer.getRequestCount());
+            Assertions.assertEquals(1000, writer.getRowCount());
+        }
+    }
+
+    @Test
+    void lingerAndDuplicates() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        try (BufferedMessageWriter writer = BufferedMessageWriter.builder().client(fakeClient.asSyncClient()).lingerMillis(10L).build()) {
+            writer.putSession(new Session("u1", "s1", 1L)).join();
+            Assertions.assertEquals(1, fakeClient.table("session").size());
+
+            writer.putSession(new Session("u1", "s1", 2L));
+            CompletableFuture<Void> last = writer.putSession(new Session("u1", "s1", 3L));
+            last.join();
+            Session session = TablestoreHelper.rowToSession(fakeClient.table("session").firstEntry().getValue());
+            Assertions.assertEquals(3L, session.getUpdateTime());
+        }
+    }
+
+    @Test
+    void perRowFailures() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        PrimaryKey failing = TablestoreHelper.messagePrimaryKey("s1", 3, "m3");
+        fakeClient.setFailingRows(failing::equals);
+        BufferedMessageWriter writer = BufferedMessageWriter.builder().client(fakeClient.asSyncClient()).build();
+        List<CompletableFuture<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            futures.add(writer.putMessage(new Message("s1", "m" + i, (long) i)));
+        }
+        writer.putSession(new Session("u1", "s1", 1L));
+        writer.close();
+
+        for (int i = 0; i < 10; i++) {
+            if (i == 3) {
+                CompletionException e = Assertions.assertThrows(CompletionException.class, futures.get(i)::join);
+                Assertions.assertTrue(e.getCause().getMessage().contains("fake failure"));
+            } else {
+                futures.get(i).join();
+            }
+        }
+        Assertions.assertEquals(9, fakeClient.table("message").size());
+        Assertions.assertEquals(1, fakeClient.table("session").size());
+        Assertions.assertEquals(1, writer.getFailedRowCount());
+        Assertions.assertThrows(IllegalStateException.class, () -> writer.putMessage(new Message("s1", "m11", 11L)));
+    }
+
+    @Test
+    void concurrentPutsAndClose() throws Exception {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        // a small queue keeps the putters blocked on a full queue while close runs
+        BufferedMessageWriter writer = BufferedMessageWriter.builder().client(fakeClient.asSyncClient()).maxBufferedRows(4).lingerMillis(1L).build();
+        ConcurrentLinkedQueue<CompletableFuture<Void>> futures = new ConcurrentLinkedQueue<>();
+        CountDownLatch started = new CountDownLatch(4);
+        List<Thread> putters = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            String sessionId = "s" + t;
+            Thread putter = new Thread(() -> {
+                started.countDown();
+                try {
+                    for (int i = 0;; i++) {
+                        futures.add(writer.putMessage(new Message(sessionId, "m" + i, (long) i)));
+                        if (i % 10 == 0) {
+                            writer.flush();
+                        }
+                    }
+                } catch (IllegalStateException e) {
+                    // closed
+                }
+            });
+            putter.start();
+            putters.add(putter);
+        }
+        started.await();
+        Thread.sleep(50);
+        writer.close();
+        for (Thread putter : putters) {
+            putter.join(TimeUnit.SECONDS.toMillis(10));
+            Assertions.assertFalse(putter.isAlive());
+        }
+        // every future returned by a put is completed by close
+        for (CompletableFuture<Void> future : futures) {
+            Assertions.assertTrue(future.isDone());
+            future.join();
+        }
+        Assertions.assertEquals(futures.size(), fakeClient.table("message").size());
+    }
+}
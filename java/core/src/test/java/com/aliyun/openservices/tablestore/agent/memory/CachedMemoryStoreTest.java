@@ -0,0 +1,207 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.Pair;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class CachedMemoryStoreTest {
+
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+
+    private final AtomicInteger getSessionCount = new AtomicInteger();
+
+    private final List<Message> messages = new CopyOnWriteArrayList<>();
+
+    private final AtomicInteger listMessagesCount = new AtomicInteger();
+
+    /**
+     * Delegate keeping sessions and messages in memory, only the methods used by the tests are implemented.
+     */
+    @SuppressWarnings("unchecked")
+    private MemoryStore delegate() {
+        return (MemoryStore) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { MemoryStore.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "putSession":
+                case "updateSession": {
+                    Session session = (Session) args[0];
+                    sessions.put(session.getUserId() + "/" + session.getSessionId(), new Session(session));
+                    return null;
+                }
+                case "deleteSession":
+                    sessions.remove(args[0] + "/" + args[1]);
+                    return null;
+                case "deleteSessions":
+                    sessions.keySet().removeIf(key -> key.startsWith(args[0] + "/"));
+                    return null;
+                case "getSession": {
+                    getSessionCount.incrementAndGet();
+                    Session session = sessions.get(args[0] + "/" + args[1]);
+                    return session == null ? null : new Session(session);
+                }
+                case "getSessions": {
+                    List<Session> result = new ArrayList<>();
+                    for (Pair<String, String> key : (List<Pair<String, String>>) args[0]) {
+                        getSessionCount.incrementAndGet();
+                        Session session = sessions.get(key.getLeft() + "/" + key.getRight());
+                        result.add(session == null ? null : new Session(session));
+                    }
+                    return result;
+                }
+                case "putMessage": {
+                    Message message = (Message) args[0];
+                    messages.removeIf(m -> m.getMessageId().equals(message.getMessageId()));
+                    messages.add(new Message(message));
+                    return null;
+                }
+                case "updateMessage": {
+                    Message message = (Message) args[0];
+                    messages.stream().filter(m -> m.getMessageId().equals(message.getMessageId())).forEach(m -> m.setContent(message.getContent()));
+                    return null;
+                }
+                case "deleteMessages":
+                    messages.removeIf(m -> m.getSessionId().equals(args[0]));
+                    return null;
+                case "deleteMessage":
+                    messages.removeIf(m -> m.getMessageId().equals(((Message) args[0]).getMessageId()));
+                    return null;
+                case "listMessages": {
+                    listMessagesCount.incrementAndGet();
+                    return messages.stream()
+                        .filter(m -> m.getSessionId().equals(args[0]))
+                        .sorted(Comparator.comparing(Message::getCreateTime).reversed())
+                        .limit((Long) args[5])
+                        .map(Message::new)
+                        .iterator();
+                }
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    @Test
+    void readThroughAndInvalidate() {
+        CachedMemoryStore store = CachedMemoryStore.builder().delegate(delegate()).build();
+        store.putSession(new Session("u1", "s1", 1L));
+        Assertions.assertEquals(1L, store.getSession("u1", "s1").getUpdateTime());
+        Assertions.assertEquals(1L, store.getSession("u1", "s1").getUpdateTime());
+        Assertions.assertEquals(1, getSessionCount.get());
+
+        // returned sessions are copies
+        store.getSession("u1", "s1").setUpdateTime(100L);
+        Assertions.assertEquals(1L, store.getSession("u1", "s1").getUpdateTime());
+
+        store.updateSession(new Session("u1", "s1", 2L));
+        Assertions.assertEquals(2L, store.getSession("u1", "s1").getUpdateTime());
+        Assertions.assertEquals(2, getSessionCount.get());
+
+        store.deleteSession("u1", "s1");
+        Assertions.assertNull(store.getSession("u1", "s1"));
+        // missing sessions are not cached
+        Assertions.assertNull(store.getSession("u1", "s1"));
+        Assertions.assertEquals(4, getSessionCount.get());
+
+        store.putSession(new Session("u2", "s1", 1L));
+        store.putSession(new Session("u2", "s2", 1L));
+        store.getSession("u2", "s1");
+        store.getSession("u2", "s2");
+        store.deleteSessions("u2");
+        Assertions.assertNull(store.getSession("u2", "s1"));
+        Assertions.assertNull(store.getSession("u2", "s2"));
+
+        Assertions.assertEquals(3, store.getSessionCacheStats().getHitCount());
+        Assertions.assertEquals(8, store.getSessionCacheStats().getMissCount());
+    }
+
+    @Test
+    void getSessionsReadsOnlyMisses() {
+        CachedMemoryStore store = CachedMemoryStore.builder().delegate(delegate()).build();
+        store.putSession(new Session("u1", "s1", 1L));
+        store.putSession(new Session("u1", "s2", 2L));
+        store.getSession("u1", "s1");
+        List<Session> result = store.getSessions(Arrays.asList(Pair.of("u1", "s1"), Pair.of("u1", "missing"), Pair.of("u1", "s2")));
+        Assertions.assertEquals(1L, result.get(0).getUpdateTime());
+        Assertions.assertNull(result.get(1));
+        Assertions.assertEquals(2L, result.get(2).getUpdateTime());
+        Assertions.assertEquals(3, getSessionCount.get());
+
+        Assertions.assertEquals(2L, store.getSessions(Collections.singletonList(Pair.of("u1", "s2"))).get(0).getUpdateTime());
+        Assertions.assertEquals(3, getSessionCount.get());
+    }
+
+    @Test
+    void boundedSize() {
+        CachedMemoryStore store = CachedMemoryStore.builder().delegate(delegate()).maxSessions(10).build();
+        for (int i = 0; i < 100; i++) {
+            store.putSession(new Session("u1", "s" + i, 1L));
+            store.getSession("u1", "s" + i);
+        }
+        Assertions.assertEquals(90, store.getSessionCacheStats().getEvictionCount());
+        Assertions.assertNotNull(store.getSession("u1", "s99"));
+        Assertions.assertEquals(1, store.getSessionCacheStats().getHitCount());
+    }
+
+    @Test
+    void messageTail() {
+        CachedMemoryStore store = CachedMemoryStore.builder().delegate(delegate()).messageTailSize(3).build();
+        for (int i = 1; i <= 5; i++) {
+            store.putMessage(new Message("s1", "m" + i, (long) i, "text " + i, null));
+        }
+        Assertions.assertEquals(ids("m5", "m4"), ids(store.listMessages("s1", null, null, null, Order.DESC, 2L, null)));
+        Assertions.assertEquals(ids("m5", "m4"), ids(store.listMessages("s1", null, null, null, Order.DESC, 2L, null)));
+        Assertions.assertEquals(1, listMessagesCount.get());
+
+        // appended, and the tail keeps its size
+        store.putMessage(new Message("s1", "m6", 6L, "text 6", null));
+        store.putMessage(new Message("s1", "m7", 7L, "text 7", null));
+        Assertions.assertEquals(ids("m7", "m6"), ids(store.listMessages("s1", null, null, null, Order.DESC, 2L, null)));
+        Assertions.assertEquals(1, listMessagesCount.get());
+        Assertions.assertEquals(ids("m7", "m6", "m5"), ids(store.listMessages("s1", null, null, null, Order.DESC, 3L, null)));
+        Assertions.assertEquals(1, listMessagesCount.get());
+
+        store.updateMessage(new Message("s1", "m6", 6L, "updated", null));
+        store.deleteMessage(new Message("s1", "m7", 7L));
+        List<Message> tail = new ArrayList<>();
+        store.listMessages("s1", null, null, null, Order.DESC, 2L, null).forEachRemaining(tail::add);
+        Assertions.assertEquals(ids("m6", "m5"), ids(tail.iterator()));
+        Assertions.assertEquals("updated", tail.get(0).getContent());
+        Assertions.assertEquals(1, listMessagesCount.get());
+
+        // the tail lost m7, it can't serve 3 messages anymore
+        Assertions.assertEquals(ids("m6", "m5", "m4"), ids(store.listMessages("s1", null, null, null, Order.DESC, 3L, null)));
+        Assertions.assertEquals(2, listMessagesCount.get());
+
+        // other queries are not cached
+        store.listMessages("s1", null, null, null, Order.ASC, 2L, null);
+        Assertions.assertEquals(3, listMessagesCount.get());
+
+        store.deleteMessages("s1");
+        Assertions.assertFalse(store.listMessages("s1", null, null, null, Order.DESC, 2L, null).hasNext());
+        Assertions.assertEquals(4, listMessagesCount.get());
+        Assertions.assertEquals(4, store.getMessageTailCacheStats().getHitCount());
+    }
+
+    private static List<String> ids(String... ids) {
+        return Arrays.asList(ids);
+    }
+
+    private static List<String> ids(Iterator<Message> messages) {
+        List<String> ids = new ArrayList<>();
+        messages.forEachRemaining(message -> ids.add(message.getMessageId()));
+        return ids;
+    }
+}
@@ -0,0 +1,148 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import com.aliyun.openservices.tablestore.agent.model.Response;
+import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.filter.Filters;
+import com.aliyun.openservices.tablestore.agent.model.sort.FieldSort;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.CollectionUtil;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class InMemoryMemoryStoreTest {
+
+    private final InMemoryMemoryStore store = new InMemoryMemoryStore();
+
+    @Test
+    void recentSessionsFollowUpdates() {
+        store.putSession(new Session("u1", "s1", 1L, new Metadata().put("n", 1)));
+        store.putSession(new Session("u1", "s2", 2L, new Metadata().put("n", 2)));
+        store.putSession(new Session("u1", "s3", 3L, new Metadata().put("n", 3)));
+        store.putSession(new Session("u2", "s1", 4L));
+
+        store.updateSession(new Session("u1", "s1", 5L, new Metadata().put("title", "t")));
+        Session updated = store.getSession("u1", "s1");
+        // merged into the stored metadata, read back as a long
+        Assertions.assertEquals(new Metadata().put("n", 1L).put("title", "t"), updated.getMetadata());
+        Assertions.assertEquals(Long.valueOf(5L), updated.getUpdateTime());
+
+        Assertions.assertEquals(Arrays.asList("s1", "s2", "s3"), sessionIds(CollectionUtil.toList(store.listSessions("u1", null, null, null))));
+        Assertions.assertEquals(
+            Arrays.asList("s1", "s3", "s2"),
+            sessionIds(CollectionUtil.toList(store.listRecentSessions("u1", null, null, null, null, null)))
+        );
+        Assertions.assertEquals(
+            Arrays.asList("s3", "s2"),
+            sessionIds(CollectionUtil.toList(store.listRecentSessions("u1", Filters.lte("n", 3), 4L, 2L, null, null)))
+        );
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.listRecentSessions("u1", null, 2L, 4L, null, null));
+
+        Response<Session> first = store.listRecentSessionsPaginated("u1", 2, null, null, null, null, null);
+        Assertions.assertEquals(Arrays.asList("s1", "s3"), sessionIds(first.getHits()));
+        Response<Session> second = store.listRecentSessionsPaginated("u1", 2, null, null, null, first.getNextToken(), null);
+        Assertions.assertEquals(Collections.singletonList("s2"), sessionIds(second.getHits()));
+        Assertions.assertNull(second.getNextToken());
+
+        store.deleteSession("u1", "s3");
+        Assertions.assertNull(store.getSession("u1", "s3"));
+        Assertions.assertEquals(
+            Arrays.asList("s1", "s2"),
+            sessionIds(CollectionUtil.toList(store.listRecentSessions("u1", null, null, null, -1L, null)))
+        );
+        Assertions.assertEquals(3, store.streamAllSessions().count());
+    }
+
+    @Test
+    void messagesByCreateTime() {
+        for (int i = 0; i < 10; i++) {
+            store.putMessage(new Message("s1", "m" + i, (long) i, "content " + i, new Metadata().put("even", i % 2 == 0)));
+        }
+        store.putMessage(new Message("s2", "m0", 0L));
+
+        Assertions.assertEquals(
+            Arrays.asList(9L, 8L, 7L),
+            createTimes(CollectionUtil.toList(store.listMessages("s1", null, null, null, null, 3L, null)))
+        );
+        Assertions.assertEquals(
+            Arrays.asList(2L, 4L, 6L),
+            createTimes(CollectionUtil.toList(store.listMessages("s1", Filters.eq("even", true), 1L, 7L, Order.ASC, null, null)))
+        );
+
+        List<Long> paged = new ArrayList<>();
+        String token = null;
+        do {
+            Response<Message> page = store.listMessagesPaginated("s1", 4, Filters.eq("even", false), null, null, Order.DESC, token, null);
+            paged.addAll(createTimes(page.getHits()));
+            token = page.getNextToken();
+        } while (token != null);
+        Assertions.assertEquals(Arrays.asList(9L, 7L, 5L, 3L, 1L), paged);
+
+        // the createTime is looked up when not given
+        store.updateMessage(new Message("s1", "m3", null, null, new Metadata().put("edited", true)));
+        Message updated = store.getMessage("s1", "m3", null);
+        Assertions.assertEquals("content 3", updated.getContent());
+        Assertions.assertEquals(Boolean.TRUE, updated.getMetadata().getBoolean("edited"));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.updateMessage(new Message("s1", "unknown", null)));
+
+        store.deleteMessage("s1", "m3", null);
+        Assertions.assertNull(store.getMessage("s1", "m3", null));
+        Assertions.assertEquals(
+            Arrays.asList(null, "content 4"),
+            store.getMessages(Arrays.asList(Triple.of("s1", "m3", null), Triple.of("s1", "m4", 4L)))
+                .stream()
+                .map(m -> m == null ? null : m.getContent())
+                .collect(Collectors.toList())
+        );
+
+        store.deleteMessages("s1");
+        Assertions.assertFalse(store.listMessages("s1").hasNext());
+        Assertions.assertEquals(1, store.streamAllMessages().count());
+    }
+
+    @Test
+    void searchMessages() {
+        IntStream.range(0, 5)
+            .forEach(i -> store.putMessage(new Message("s" + (i % 2), "m" + i, (long) i, "Hello world " + i, new Metadata().put("rank", 5 - i))));
+        store.putMessage(new Message("s0", "other", 10L, "goodbye", new Metadata()));
+
+        MemorySearchRequest request = MemorySearchRequest.builder()
+            .metadataFilter(Filters.and(Filters.textMatch("content", "HELLO"), Filters.notIn("session_id", Collections.singletonList("s1"))))
+            .sort(new FieldSort("rank", Order.ASC))
+            .limit(2)
+            .build();
+        Response<Message> first = store.searchMessages(request);
+        Assertions.assertEquals(Arrays.asList("m4", "m2"), messageIds(first.getHits()));
+        Response<Message> second = store.searchMessages(request.toBuilder().nextToken(first.getNextToken()).build());
+        Assertions.assertEquals(Collections.singletonList("m0"), messageIds(second.getHits()));
+        Assertions.assertNull(second.getNextToken());
+
+        MemorySearchRequest phrase = MemorySearchRequest.builder().metadataFilter(Filters.textMatchPhrase("content", "world 3")).build();
+        Assertions.assertEquals(Collections.singletonList("m3"), messageIds(store.searchMessages(phrase).getHits()));
+        // only the filters of a GetRange are supported by the list methods
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> store.listMessages("s0", Filters.exists("rank"), null, null, null, null, null)
+        );
+    }
+
+    private static List<String> sessionIds(List<Session> sessions) {
+        return sessions.stream().map(Session::getSessionId).collect(Collectors.toList());
+    }
+
+    private static List<String> messageIds(List<Message> messages) {
+        return messages.stream().map(Message::getMessageId).collect(Collectors.toList());
+    }
+
+    private static List<Long> createTimes(List<Message> messages) {
+        return messages.stream().map(Message::getCreateTime).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,284 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.alicloud.openservices.tablestore.SyncClient;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.alicloud.openservices.tablestore.model.search.FieldSchema;
+import com.alicloud.openservices.tablestore.model.search.FieldType;
+import com.alicloud.openservices.tablestore.model.search.SearchHit;
+import com.alicloud.openservices.tablestore.model.search.SearchRequest;
+import com.alicloud.openservices.tablestore.model.search.SearchResponse;
+import com.alicloud.openservices.tablestore.model.search.query.BoolQuery;
+import com.alicloud.openservices.tablestore.model.search.query.Query;
+import com.alicloud.openservices.tablestore.model.search.query.TermsQuery;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import com.aliyun.openservices.tablestore.agent.util.CollectionUtil;
+import com.aliyun.openservices.tablestore.agent.util.FakeTablestoreClient;
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import com.aliyun.openservices.tablestore.agent.util.TablestoreHelper;
+import com.aliyun.openservices.tablestore.agent.util.Triple;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MessageCreateTimeCacheTest {
+
+    private FakeTablestoreClient fakeClient;
+    private SyncClient client;
+
+    @BeforeEach
+    void setUp() {
+        fakeClient = new FakeTablestoreClient();
+        client = fakeClient.asSyncClientInstance();
+    }
+
+    @AfterEach
+    void tearDown() {
+        client.shutdown();
+    }
+
+    @Test
+    void pointReadsHitTheCache() {
+        MemoryStoreImpl store = MemoryStoreImpl.builder().client(client).build();
+        putMessage(store, message("s1", "m1", 10L, "hello"));
+        putMessage(store, message("s1", "m2", 20L, "world"));
+
+        Assertions.assertEquals("hello", store.getMessage("s1", "m1", null).getContent());
+        Message update = new Message("s1", "m2", null);
+        update.setContent("world!");
+        store.updateMessage(update);
+        Assertions.assertEquals(20L, update.getCreateTime());
+        List<Message> messages = store.getMessages(Arrays.asList(Triple.of("s1", "m1", null), Triple.of("s1", "m2", null)));
+        Assertions.assertEquals("world!", messages.get(1).getContent());
+        Assertions.assertEquals(0, fakeClient.getRangeCount());
+    }
+
+    @Test
+    void listsAndSearchesFillTheCache() {
+        MemoryStoreImpl store = MemoryStoreImpl.builder().client(client).build();
+        for (Message message : Arrays.asList(message("s1", "m1", 10L, "hello"), message("s1", "m2", 20L, "world"), message("s2", "m3", 30L, "found"))) {
+            putIndexedRow(message);
+        }
+        Assertions.assertEquals(1, CollectionUtil.toList(store.listMessages("s1", null, null, 10L, Order.ASC, null, null)).size());
+        Assertions.assertEquals(1, store.listMessagesPaginated("s1", 10, null, 20L, null, Order.ASC, null, null).getHits().size());
+        fakeClient.setSearchHandler(request -> {
+            Row row = messageRow(message("s2", "m3", 30L, "found"));
+            SearchHit searchHit = new SearchHit();
+            searchHit.setRow(row);
+            SearchResponse response = new SearchResponse(new com.alicloud.openservices.tablestore.model.Response("fake-request-id"));
+            response.setRows(Collections.singletonList(row));
+            response.setSearchHits(Collections.singletonList(searchHit));
+            return response;
+        });
+        Assertions.assertEquals(1, store.searchMessages(MemorySearchRequest.builder().build()).getHits().size());
+        int getRangeCount = fakeClient.getRangeCount();
+
+        Assertions.assertEquals("hello", store.getMessage("s1", "m1", null).getContent());
+        Assertions.assertEquals("world", store.getMessage("s1", "m2", null).getContent());
+        Assertions.assertEquals("found", store.getMessage("s2", "m3", null).getContent());
+        Assertions.assertEquals(getRangeCount, fakeClient.getRangeCount());
+    }
+
+    @Test
+    void unknownCreateTimesAreSearched() {
+        MemoryStoreImpl store = MemoryStoreImpl.builder()
+            .client(client)
+            .messageSearchIndexSchema(Collections.singletonList(new FieldSchema("content", FieldType.TEXT)))
+            .messageCreateTimeCacheSize(0)
+            .build();
+        putIndexedRow(message("s1", "m1", 10L, "hello"));
+        putIndexedRow(message("s1", "m2", 20L, "world"));
+        putIndexedRow(message("s2", "m1", 30L, "other"));
+        putIndexedRow(message("s2", "m3", 40L, "lagging"));
+        // the search index has all the messages asked for but m3, not indexed yet
+        List<SearchRequest> searchRequests = new ArrayList<>();
+        fakeClient.setSearchHandler(request -> {
+            searchRequests.add(request);
+            Set<String> messageIds = new HashSet<>();
+            for (Query filter : ((BoolQuery) request.getSearchQuery().getQuery()).getFilterQueries()) {
+                TermsQuery terms = (TermsQuery) filter;
+                if (terms.getFieldName().equals(Message.MESSAGE_MESSAGE_ID)) {
+                    terms.getTerms().forEach(term -> messageIds.add(term.asString()));
+                }
+            }
+            List<Row> rows = new ArrayList<>();
+            for (Row row : fakeClient.table("message").values()) {
+                String messageId = row.getPrimaryKey().getPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID).getValue().asString();
+                if (messageIds.contains(messageId) && !messageId.equals("m3")) {
+                    rows.add(new Row(row.getPrimaryKey(), Collections.emptyList()));
+                }
+            }
+            SearchResponse response = new SearchResponse(new com.alicloud.openservices.tablestore.model.Response("fake-request-id"));
+            response.setRows(rows);
+            return response;
+        });
+
+        List<Message> messages = store.getMessages(
+            Arrays.asList(Triple.of("s1", "m1", null), Triple.of("s1", "m2", null), Triple.of("s2", "m3", null), Triple.of("s2", "m9", null))
+        );
+        Assertions.assertEquals("hello", messages.get(0).getContent());
+        Assertions.assertEquals("world", messages.get(1).getContent());
+        Assertions.assertEquals("lagging", messages.get(2).getContent());
+        Assertions.assertNull(messages.get(3));
+        Assertions.assertEquals(1, searchRequests.size());
+        // m3 and the missing m9 fall back to the secondary index, s2/m1 is read by the search but not asked for
+        Assertions.assertEquals(2, fakeClient.getRangeCount());
+    }
+
+    @Test
+    void deletesInvalidate() {
+        MemoryStoreImpl store = MemoryStoreImpl.builder().client(client).build();
+        putMessage(store, message("s1", "m1", 10L, "hello"));
+        putMessage(store, message("s1", "m2", 20L, "world"));
+        putMessage(store, message("s2", "m1", 30L, "other"));
+
+        store.deleteMessage("s1", "m1", null);
+        removeIndexRow("s1", "m1", 10L);
+        // a write with the same ids but a new createTime must not be hidden by the deleted one
+        putIndexedRow(message("s1", "m1", 11L, "again"));
+        Assertions.assertEquals(11L, store.getMessage("s1", "m1", null).getCreateTime());
+
+        store.deleteMessages("s1");
+        removeIndexRow("s1", "m1", 11L);
+        removeIndexRow("s1", "m2", 20L);
+        int getRangeCount = fakeClient.getRangeCount();
+        Assertions.assertNull(store.getMessage("s1", "m2", null));
+        Assertions.assertEquals(getRangeCount + 1, fakeClient.getRangeCount());
+        // the messages of other sessions stay cached
+        Assertions.assertEquals("other", store.getMessage("s2", "m1", null).getContent());
+        Assertions.assertEquals(getRangeCount + 1, fakeClient.getRangeCount());
+    }
+
+    @Test
+    void staleEntriesAreVerified() {
+        MemoryStoreImpl store = MemoryStoreImpl.builder().client(client).build();
+        putMessage(store, message("s1", "m1", 10L, "hello"));
+        putMessage(store, message("s1", "m2", 20L, "world"));
+        putMessage(store, message("s1", "m3", 30L, "again"));
+        putMessage(store, message("s1", "m4", 40L, "gone"));
+        // rewritten with other create times and deleted by another store instance
+        rewrite(message("s1", "m1", 10L, "hello"), 11L);
+        rewrite(message("s1", "m2", 20L, "world"), 21L);
+        rewrite(message("s1", "m3", 30L, "again"), 31L);
+        fakeClient.table("message").remove(TablestoreHelper.messagePrimaryKey("s1", 40L, "m4"));
+        removeIndexRow("s1", "m4", 40L);
+
+        Message update = new Message("s1", "m1", null);
+        update.setContent("updated");
+        store.updateMessage(update);
+        Assertions.assertEquals(11L, update.getCreateTime());
+        Assertions.assertFalse(fakeClient.table("message").containsKey(TablestoreHelper.messagePrimaryKey("s1", 10L, "m1")));
+        Assertions.assertEquals("updated", store.getMessage("s1", "m1", 11L).getContent());
+
+        Message ghost = new Message("s1", "m4", null);
+        ghost.setContent("ghost");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.updateMessage(ghost));
+        Assertions.assertFalse(fakeClient.table("message").containsKey(TablestoreHelper.messagePrimaryKey("s1", 40L, "m4")));
+
+        Assertions.assertEquals(21L, store.getMessage("s1", "m2", null).getCreateTime());
+        List<Message> messages = store.getMessages(Arrays.asList(Triple.of("s1", "m3", null), Triple.of("s1", "m4", null)));
+        Assertions.assertEquals(31L, messages.get(0).getCreateTime());
+        Assertions.assertNull(messages.get(1));
+
+        putMessage(store, message("s1", "m5", 50L, "deleted"));
+        rewrite(message("s1", "m5", 50L, "deleted"), 51L);
+        store.deleteMessage("s1", "m5", null);
+        Assertions.assertFalse(fakeClient.table("message").containsKey(TablestoreHelper.messagePrimaryKey("s1", 51L, "m5")));
+    }
+
+    @Test
+    void disabledCache() {
+        MemoryStoreImpl store = MemoryStoreImpl.builder().client(client).messageCreateTimeCacheSize(0).build();
+        putMessage(store, message("s1", "m1", 10L, "hello"));
+        Assertions.assertEquals("hello", store.getMessage("s1", "m1", null).getContent());
+        Assertions.assertEquals("hello", store.getMessages(Collections.singletonList(Triple.of("s1", "m1", null))).get(0).getContent());
+        Assertions.assertEquals(2, fakeClient.getRangeCount());
+
+        Assertions.assertThrows(
+            IllegalArgumentException.class,
+            () -> MemoryStoreImpl.builder().client(client).messageCreateTimeCacheSize(-1).build()
+        );
+    }
+
+    @Test
+    void cacheIsRegistered() {
+        Map<String, Supplier<LruCache.Stats>> caches = new HashMap<>();
+        StoreMetrics metrics = new StoreMetrics() {
+            @Override
+            public void registerCache(String cache, Supplier<LruCache.Stats> stats) {
+                caches.put(cache, stats);
+            }
+        };
+        MemoryStoreImpl store = MemoryStoreImpl.builder().client(client).metrics(metrics).build();
+        putMessage(store, message("s1", "m1", 10L, "hello"));
+        store.getMessage("s1", "m1", null);
+        Assertions.assertEquals(1, caches.get("memory.message_create_time").get().getHitCount());
+
+        caches.clear();
+        MemoryStoreImpl.builder().client(client).metrics(metrics).messageCreateTimeCacheSize(0).build();
+        Assertions.assertTrue(caches.isEmpty());
+    }
+
+    private static Message message(String sessionId, String messageId, long createTime, String content) {
+        Message message = new Message(sessionId, messageId, createTime);
+        message.setContent(content);
+        return message;
+    }
+
+    /**
+     * Put through the store, the secondary index row is written by the fake client's caller.
+     */
+    private void putMessage(MemoryStoreImpl store, Message message) {
+        store.putMessage(message);
+        fakeClient.putRow("message_secondary_index", indexRow(message.getSessionId(), message.getMessageId(), message.getCreateTime()));
+    }
+
+    private void putIndexedRow(Message message) {
+        fakeClient.putRow("message", messageRow(message));
+        fakeClient.putRow("message_secondary_index", indexRow(message.getSessionId(), message.getMessageId(), message.getCreateTime()));
+    }
+
+    private void rewrite(Message message, long createTime) {
+        fakeClient.table("message").remove(TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId()));
+        removeIndexRow(message.getSessionId(), message.getMessageId(), message.getCreateTime());
+        message.setCreateTime(createTime);
+        putIndexedRow(message);
+    }
+
+    private void removeIndexRow(String sessionId, String messageId, long createTime) {
+        fakeClient.table("message_secondary_index").remove(indexPrimaryKey(sessionId, messageId, createTime));
+    }
+
+    private static Row messageRow(Message message) {
+        return new Row(
+            TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId()),
+            TablestoreHelper.messageToColumns(message)
+        );
+    }
+
+    private static Row indexRow(String sessionId, String messageId, long createTime) {
+        return new Row(indexPrimaryKey(sessionId, messageId, createTime), Collections.emptyList());
+    }
+
+    private static PrimaryKey indexPrimaryKey(String sessionId, String messageId, long createTime) {
+        return PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString(sessionId))
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.fromString(messageId))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.fromLong(createTime))
+            .build();
+    }
+}
@@ -0,0 +1,64 @@
+package com.aliyun.openservices.tablestore.agent.memory;
+
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MessageTailCacheTest {
+
+    @Test
+    void outOfOrderAndCompleteTail() {
+        MessageTailCache cache = new MessageTailCache(3, 100, 0, null);
+        // fewer messages than requested, the tail holds the whole session
+        cache.load("s1", Collections.singletonList(new Message("s1", "m5", 5L)), 2, cache.writeCount());
+        cache.add(new Message("s1", "m1", 1L));
+        cache.add(new Message("s1", "m3", 3L));
+        Assertions.assertEquals(Arrays.asList(5L, 3L, 1L), createTimes(cache.get("s1", 3)));
+
+        cache.add(new Message("s1", "m4", 4L));
+        Assertions.assertEquals(Arrays.asList(5L, 4L, 3L), createTimes(cache.get("s1", 3)));
+        // m1 was dropped, older messages are not added anymore
+        cache.add(new Message("s1", "m2", 2L));
+        Assertions.assertEquals(3, cache.size());
+        Assertions.assertNull(cache.get("s1", 4));
+
+        // a read made before a write is not cached
+        long writeCount = cache.writeCount();
+        cache.add(new Message("s2", "m1", 1L));
+        cache.load("s2", Collections.emptyList(), 2, writeCount);
+        Assertions.assertNull(cache.get("s2", 1));
+    }
+
+    @Test
+    void evictsAndExpiresSessions() {
+        AtomicLong now = new AtomicLong();
+        MessageTailCache cache = new MessageTailCache(2, 4, 100, now::get);
+        cache.load("s1", Arrays.asList(new Message("s1", "m2", 2L), new Message("s1", "m1", 1L)), 2, cache.writeCount());
+        cache.load("s2", Arrays.asList(new Message("s2", "m2", 2L), new Message("s2", "m1", 1L)), 2, cache.writeCount());
+        Assertions.assertNotNull(cache.get("s1", 2));
+        cache.load("s3", Collections.singletonList(new Message("s3", "m1", 1L)), 2, cache.writeCount());
+        // s2 is the least recently used
+        Assertions.assertNull(cache.get("s2", 1));
+        Assertions.assertEquals(1, cache.stats().getEvictionCount());
+
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        Assertions.assertNotNull(cache.get("s3", 1));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(60));
+        Assertions.assertNull(cache.get("s1", 1));
+        Assertions.assertNotNull(cache.get("s3", 1));
+        Assertions.assertEquals(1, cache.stats().getExpirationCount());
+        Assertions.assertEquals(1, cache.size());
+    }
+
+    private static List<Long> createTimes(List<Message> messages) {
+        List<Long> createTimes = new ArrayList<>();
+        messages.forEach(message -> createTimes.add(message.getCreateTime()));
+        return createTimes;
+    }
+}
@@ -0,0 +1,127 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class BatchDeleterTest {
+
+    private static FakeTablestoreClient fakeClient(int messages) {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        for (int i = 0; i < messages; i++) {
+            Message message = new Message("s" + (i % 7), "m" + i, (long) i);
+            PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
+            fakeClient.putRow("message", new Row(primaryKey, TablestoreHelper.messageToColumns(message)));
+        }
+        return fakeClient;
+    }
+
+    private static PrimaryKey bound(PrimaryKeyValue value) {
+        return PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, value)
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, value)
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, value)
+            .build();
+    }
+
+    @Test
+    void deleteRangeWithProgress() {
+        FakeTablestoreClient fakeClient = fakeClient(1000);
+        List<BatchDeleter.Progress> progresses = Collections.synchronizedList(new ArrayList<>());
+        BatchDeleter.Progress progress = BatchDeleter.builder()
+            .client(fakeClient.asSyncClient())
+            .tableName("message")
+            .batchRows(100)
+            .parallelism(3)
+            .progressListener(progresses::add)
+            .build()
+            .deleteRange(bound(PrimaryKeyValue.INF_MIN), bound(PrimaryKeyValue.INF_MAX));
+        Assertions.assertTrue(fakeClient.table("message").isEmpty());
+        Assertions.assertEquals(1000, progress.getDeletedRowCount());
+        Assertions.assertEquals(10, progress.getRequestCount());
+        Assertions.assertEquals(10, progresses.size());
+        Assertions.assertEquals(fakeClient(1000).table("message").lastKey(), progress.getCheckpoint());
+    }
+
+    @Test
+    void failureReportsCheckpointAndResumes() {
+        FakeTablestoreClient fakeClient = fakeClient(1000);
+        PrimaryKey failing = new ArrayList<>(fakeClient.table("message").keySet()).get(550);
+        fakeClient.setFailingRows(failing::equals);
+        AtomicInteger listenerCalls = new AtomicInteger();
+        BatchDeleter deleter = BatchDeleter.builder()
+            .client(fakeClient.asSyncClient())
+            .tableName("message")
+            .batchRows(100)
+            .parallelism(2)
+            .progressListener(p -> listenerCalls.incrementAndGet())
+            .build();
+        RuntimeException e = Assertions.assertThrows(
+            RuntimeException.class,
+            () -> deleter.deleteRange(bound(PrimaryKeyValue.INF_MIN), bound(PrimaryKeyValue.INF_MAX))
+        );
+        Assertions.assertTrue(e.getMessage().contains("checkpoint"), e.getMessage());
+        // the batch of the failing row is not deleted, the batches before it are
+        Assertions.assertTrue(fakeClient.table("message").containsKey(failing));
+        Assertions.assertTrue(fakeClient.table("message").size() <= 600);
+        Assertions.assertTrue(listenerCalls.get() >= 4);
+
+        PrimaryKey resumeFrom = fakeClient.table("message").firstKey();
+        fakeClient.setFailingRows(pk -> false);
+        BatchDeleter.Progress progress = deleter.deleteRange(resumeFrom, bound(PrimaryKeyValue.INF_MAX));
+        Assertions.assertTrue(fakeClient.table("message").isEmpty());
+        Assertions.assertTrue(progress.getDeletedRowCount() > 0);
+    }
+
+    @Test
+    void rateLimit() {
+        FakeTablestoreClient fakeClient = fakeClient(400);
+        TablestoreHelper.batchDelete(fakeClient.asSyncClient(), "message", new ArrayList<>(fakeClient.table("message").keySet()).iterator());
+        Assertions.assertTrue(fakeClient.table("message").isEmpty());
+
+        fakeClient = fakeClient(400);
+        long start = System.nanoTime();
+        BatchDeleter.builder()
+            .client(fakeClient.asSyncClient())
+            .tableName("message")
+            .batchRows(100)
+            .maxRowsPerSecond(2000)
+            .build()
+            .delete(new ArrayList<>(fakeClient.table("message").keySet()).iterator());
+        long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+        Assertions.assertTrue(fakeClient.table("message").isEmpty());
+        // 4 batches of 100 rows, each one waits 50 ms after the previous one
+        Assertions.assertTrue(elapsedMillis >= 150, "elapsed:" + elapsedMillis);
+    }
+
+    @Test
+    void singleBatchRunsInline() {
+        FakeTablestoreClient fakeClient = fakeClient(300);
+        Set<String> threads = Collections.synchronizedSet(new HashSet<>());
+        BatchDeleter deleter = BatchDeleter.builder()
+            .client(fakeClient.asSyncClient())
+            .tableName("message")
+            .progressListener(p -> threads.add(Thread.currentThread().getName()))
+            .build();
+        List<PrimaryKey> primaryKeys = new ArrayList<>(fakeClient.table("message").keySet());
+
+        // exactly one full batch
+        deleter.delete(primaryKeys.subList(0, BatchDeleter.MAX_BATCH_ROWS).iterator());
+        Assertions.assertEquals(Collections.singleton(Thread.currentThread().getName()), threads);
+
+        threads.clear();
+        deleter.delete(primaryKeys.iterator());
+        Assertions.assertTrue(fakeClient.table("message").isEmpty());
+        Assertions.assertTrue(threads.stream().allMatch(t -> t.startsWith("tablestore-batch-deleter-")), threads.toString());
+    }
+}
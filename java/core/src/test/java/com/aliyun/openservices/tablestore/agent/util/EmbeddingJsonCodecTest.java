@@ -0,0 +1,99 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.util.Random;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class EmbeddingJsonCodecTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+
+    @Test
+    void encodeSameAsJackson() throws Exception {
+        Random random = new Random(7);
+        for (int round = 0; round < 200; round++) {
+            float[] embedding = new float[random.nextInt(64)];
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] = randomFloat(random);
+            }
+            Assertions.assertEquals(MAPPER.writeValueAsString(embedding), EmbeddingJsonCodec.encode(embedding));
+        }
+        float[] special = { Float.NaN, 1.0f };
+        Assertions.assertEquals(MAPPER.writeValueAsString(special), EmbeddingJsonCodec.encode(special));
+    }
+
+    @Test
+    void decodeRoundTrip() {
+        Random random = new Random(11);
+        for (int round = 0; round < 200; round++) {
+            float[] embedding = new float[random.nextInt(64)];
+            for (int i = 0; i < embedding.length; i++) {
+                embedding[i] = randomFloat(random);
+            }
+            String json = EmbeddingJsonCodec.encode(embedding);
+            Assertions.assertArrayEquals(embedding, EmbeddingJsonCodec.decode(json));
+            Assertions.assertArrayEquals(embedding, EmbeddingJsonCodec.decode(json, embedding.length));
+        }
+    }
+
+    @Test
+    void decodeSameAsParseFloat() {
+        Random random = new Random(13);
+        for (int round = 0; round < 100_000; round++) {
+            StringBuilder number = new StringBuilder();
+            if (random.nextBoolean()) {
+                number.append('-');
+            }
+            number.append(random.nextInt(10));
+            int fractionDigits = random.nextInt(25);
+            if (fractionDigits > 0) {
+                number.append('.');
+                for (int i = 0; i < fractionDigits; i++) {
+                    number.append(random.nextInt(10));
+                }
+            }
+            if (random.nextInt(3) == 0) {
+                number.append(random.nextBoolean() ? 'e' : 'E').append(random.nextInt(100) - 50);
+            }
+            String text = number.toString();
+            float[] decoded = EmbeddingJsonCodec.decode("[" + text + "]", 1);
+            Assertions.assertEquals(Float.floatToIntBits(Float.parseFloat(text)), Float.floatToIntBits(decoded[0]), text);
+        }
+    }
+
+    @Test
+    void decodeFormats() {
+        Assertions.assertArrayEquals(new float[0], EmbeddingJsonCodec.decode("[]"));
+        Assertions.assertArrayEquals(new float[0], EmbeddingJsonCodec.decode(" [ ] "));
+        Assertions.assertArrayEquals(new float[] { 1, -2.5f, 300, 0.001f }, EmbeddingJsonCodec.decode(" [ 1 , -2.5,\n3E2, 1e-3 ] "));
+        Assertions.assertArrayEquals(new float[] { 1, 2, 3 }, EmbeddingJsonCodec.decode("[1,2,3]", 16));
+        Assertions.assertArrayEquals(new float[] { 1, 2, 3 }, EmbeddingJsonCodec.decode("[1,2,3]", 2));
+        Assertions.assertArrayEquals(new float[] { 1, 2 }, EmbeddingJsonCodec.decode("[\"1\",2]"));
+        Assertions.assertEquals(Float.MIN_VALUE, EmbeddingJsonCodec.decode("[1.4E-45]")[0]);
+        Assertions.assertEquals(Float.MAX_VALUE, EmbeddingJsonCodec.decode("[3.4028235E38]")[0]);
+        Assertions.assertThrows(RuntimeException.class, () -> EmbeddingJsonCodec.decode("[1,2"));
+        Assertions.assertThrows(RuntimeException.class, () -> EmbeddingJsonCodec.decode("[1,,2]"));
+    }
+
+    @Test
+    void decodeIntoMatrix() {
+        float[] matrix = new float[6];
+        EmbeddingJsonCodec.decode("[1,2,3]", matrix, 0, 3);
+        EmbeddingJsonCodec.decode("[\"4\",5,6]", matrix, 3, 3);
+        Assertions.assertArrayEquals(new float[] { 1, 2, 3, 4, 5, 6 }, matrix);
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EmbeddingJsonCodec.decode("[1,2]", matrix, 0, 3));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> EmbeddingJsonCodec.decode("[1,2,3,4]", matrix, 0, 3));
+    }
+
+    private static float randomFloat(Random random) {
+        switch (random.nextInt(4)) {
+            case 0:
+                return Float.intBitsToFloat(random.nextInt() & 0x7f7fffff) * (random.nextBoolean() ? 1 : -1);
+            case 1:
+                return random.nextInt(1000);
+            default:
+                return random.nextFloat() * 2 - 1;
+        }
+    }
+}
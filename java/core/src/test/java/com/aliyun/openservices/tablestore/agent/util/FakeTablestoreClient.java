@@ -0,0 +1,419 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.AsyncClientInterface;
+import com.alicloud.openservices.tablestore.SyncClient;
+import com.alicloud.openservices.tablestore.SyncClientInterface;
+import com.alicloud.openservices.tablestore.TableStoreCallback;
+import com.alicloud.openservices.tablestore.TableStoreException;
+import com.alicloud.openservices.tablestore.core.ErrorCode;
+import com.alicloud.openservices.tablestore.model.BatchGetRowRequest;
+import com.alicloud.openservices.tablestore.model.BatchGetRowResponse;
+import com.alicloud.openservices.tablestore.model.BatchWriteRowRequest;
+import com.alicloud.openservices.tablestore.model.BatchWriteRowResponse;
+import com.alicloud.openservices.tablestore.model.CapacityUnit;
+import com.alicloud.openservices.tablestore.model.Column;
+import com.alicloud.openservices.tablestore.model.ComputeSplitsBySizeRequest;
+import com.alicloud.openservices.tablestore.model.ComputeSplitsBySizeResponse;
+import com.alicloud.openservices.tablestore.model.Condition;
+import com.alicloud.openservices.tablestore.model.ConsumedCapacity;
+import com.alicloud.openservices.tablestore.model.DeleteRowRequest;
+import com.alicloud.openservices.tablestore.model.DeleteRowResponse;
+import com.alicloud.openservices.tablestore.model.Direction;
+import com.alicloud.openservices.tablestore.model.Error;
+import com.alicloud.openservices.tablestore.model.GetRangeRequest;
+import com.alicloud.openservices.tablestore.model.GetRangeResponse;
+import com.alicloud.openservices.tablestore.model.GetRowRequest;
+import com.alicloud.openservices.tablestore.model.GetRowResponse;
+import com.alicloud.openservices.tablestore.model.MultiRowQueryCriteria;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyColumn;
+import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.PutRowRequest;
+import com.alicloud.openservices.tablestore.model.PutRowResponse;
+import com.alicloud.openservices.tablestore.model.RangeRowQueryCriteria;
+import com.alicloud.openservices.tablestore.model.Response;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.alicloud.openservices.tablestore.model.RowChange;
+import com.alicloud.openservices.tablestore.model.RowDeleteChange;
+import com.alicloud.openservices.tablestore.model.RowExistenceExpectation;
+import com.alicloud.openservices.tablestore.model.RowPutChange;
+import com.alicloud.openservices.tablestore.model.RowUpdateChange;
+import com.alicloud.openservices.tablestore.model.SingleRowQueryCriteria;
+import com.alicloud.openservices.tablestore.model.Split;
+import com.alicloud.openservices.tablestore.model.UpdateRowRequest;
+import com.alicloud.openservices.tablestore.model.UpdateRowResponse;
+import com.alicloud.openservices.tablestore.model.search.SearchRequest;
+import com.alicloud.openservices.tablestore.model.search.SearchResponse;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+/**
+ * In-memory {@link SyncClientInterface} and {@link AsyncClientInterface} for unit tests. Only the operations used by the tests are
+ * implemented, the others throw {@link UnsupportedOperationException}. Filters are ignored, columns to get are only applied by batch get,
+ * row conditions only check the row existence. Secondary indexes are not maintained, tests write the index rows themselves.
+ */
+public class FakeTablestoreClient {
+
+    private final Map<String, NavigableMap<PrimaryKey, Row>> tables = new ConcurrentHashMap<>();
+
+    private final AtomicInteger getRangeCount = new AtomicInteger();
+
+    private final AtomicInteger batchWriteRowCount = new AtomicInteger();
+
+    private final AtomicInteger batchGetRowCount = new AtomicInteger();
+
+    private final AtomicInteger getRowCount = new AtomicInteger();
+
+    private volatile Predicate<PrimaryKey> failingRows = pk -> false;
+
+    private volatile int splitRows = 1000;
+
+    private volatile long getRangeLatencyNanos;
+
+    private volatile Function<SearchRequest, SearchResponse> searchHandler = request -> {
+        throw new UnsupportedOperationException("search");
+    };
+
+    public void putRow(String tableName, Row row) {
+        table(tableName).put(row.getPrimaryKey(), row);
+    }
+
+    public NavigableMap<PrimaryKey, Row> table(String tableName) {
+        return tables.computeIfAbsent(tableName, t -> new ConcurrentSkipListMap<>());
+    }
+
+    public int getRangeCount() {
+        return getRangeCount.get();
+    }
+
+    public int batchWriteRowCount() {
+        return batchWriteRowCount.get();
+    }
+
+    public int batchGetRowCount() {
+        return batchGetRowCount.get();
+    }
+
+    public int getRowCount() {
+        return getRowCount.get();
+    }
+
+    /**
+     * Row changes and reads of the matching primary keys fail in batch write and batch get requests.
+     */
+    public void setFailingRows(Predicate<PrimaryKey> failingRows) {
+        this.failingRows = failingRows;
+    }
+
+    /**
+     * ComputeSplitsBySize returns a split every {@code splitRows} rows, the split size of the request is ignored.
+     */
+    public void setSplitRows(int splitRows) {
+        this.splitRows = splitRows;
+    }
+
+    /**
+     * GetRange requests wait {@code getRangeLatencyNanos} before reading the table, to simulate the round trip. Default 0.
+     */
+    public void setGetRangeLatencyNanos(long getRangeLatencyNanos) {
+        this.getRangeLatencyNanos = getRangeLatencyNanos;
+    }
+
+    /**
+     * Search requests are answered by {@code searchHandler}, the fake has no search index.
+     */
+    public void setSearchHandler(Function<SearchRequest, SearchResponse> searchHandler) {
+        this.searchHandler = searchHandler;
+    }
+
+    public SyncClientInterface asSyncClient() {
+        return (SyncClientInterface) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { SyncClientInterface.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRange":
+                    return getRange((GetRangeRequest) args[0]);
+                case "batchWriteRow":
+                    return batchWriteRow((BatchWriteRowRequest) args[0]);
+                case "batchGetRow":
+                    return batchGetRow((BatchGetRowRequest) args[0]);
+                case "computeSplitsBySize":
+                    return computeSplitsBySize((ComputeSplitsBySizeRequest) args[0]);
+                case "getRow":
+                    return getRow((GetRowRequest) args[0]);
+                case "putRow":
+                    return putRow((PutRowRequest) args[0]);
+                case "updateRow":
+                    return updateRow((UpdateRowRequest) args[0]);
+                case "deleteRow":
+                    return deleteRow((DeleteRowRequest) args[0]);
+                case "search":
+                    return search((SearchRequest) args[0]);
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    /**
+     * A {@link SyncClient} for the stores that require one, the operations of {@link #asSyncClient()} are served by this fake. Shut it
+     * down after use, the SDK starts its IO threads in the constructor.
+     */
+    public SyncClient asSyncClientInstance() {
+        SyncClientInterface fake = asSyncClient();
+        return new SyncClient("http://localhost", "fake-access-key-id", "fake-access-key-secret", "fake-instance") {
+            @Override
+            public GetRangeResponse getRange(GetRangeRequest request) {
+                return fake.getRange(request);
+            }
+
+            @Override
+            public BatchWriteRowResponse batchWriteRow(BatchWriteRowRequest request) {
+                return fake.batchWriteRow(request);
+            }
+
+            @Override
+            public BatchGetRowResponse batchGetRow(BatchGetRowRequest request) {
+                return fake.batchGetRow(request);
+            }
+
+            @Override
+            public GetRowResponse getRow(GetRowRequest request) {
+                return fake.getRow(request);
+            }
+
+            @Override
+            public PutRowResponse putRow(PutRowRequest request) {
+                return fake.putRow(request);
+            }
+
+            @Override
+            public UpdateRowResponse updateRow(UpdateRowRequest request) {
+                return fake.updateRow(request);
+            }
+
+            @Override
+            public DeleteRowResponse deleteRow(DeleteRowRequest request) {
+                return fake.deleteRow(request);
+            }
+
+            @Override
+            public SearchResponse search(SearchRequest request) {
+                return fake.search(request);
+            }
+        };
+    }
+
+    public AsyncClientInterface asAsyncClient() {
+        return (AsyncClientInterface) Proxy.newProxyInstance(getClass().getClassLoader(), new Class[] { AsyncClientInterface.class }, (proxy, method, args) -> {
+            switch (method.getName()) {
+                case "getRange":
+                    // noinspection unchecked
+                    return callAsync((GetRangeRequest) args[0], (TableStoreCallback<GetRangeRequest, GetRangeResponse>) args[1], this::getRange);
+                case "batchGetRow":
+                    // noinspection unchecked
+                    return callAsync(
+                        (BatchGetRowRequest) args[0],
+                        (TableStoreCallback<BatchGetRowRequest, BatchGetRowResponse>) args[1],
+                        this::batchGetRow
+                    );
+                default:
+                    throw new UnsupportedOperationException(method.getName());
+            }
+        });
+    }
+
+    public GetRangeResponse getRange(GetRangeRequest request) {
+        getRangeCount.incrementAndGet();
+        if (getRangeLatencyNanos > 0) {
+            LockSupport.parkNanos(getRangeLatencyNanos);
+        }
+        RangeRowQueryCriteria criteria = request.getRangeRowQueryCriteria();
+        NavigableMap<PrimaryKey, Row> table = tables.getOrDefault(criteria.getTableName(), new ConcurrentSkipListMap<>());
+        NavigableMap<PrimaryKey, Row> range;
+        if (Direction.BACKWARD.equals(criteria.getDirection())) {
+            range = table.descendingMap().subMap(criteria.getInclusiveStartPrimaryKey(), true, criteria.getExclusiveEndPrimaryKey(), false);
+        } else {
+            range = table.subMap(criteria.getInclusiveStartPrimaryKey(), true, criteria.getExclusiveEndPrimaryKey(), false);
+        }
+        List<Row> rows = new ArrayList<>();
+        PrimaryKey nextStartPrimaryKey = null;
+        for (Row row : range.values()) {
+            if (criteria.getLimit() > 0 && rows.size() >= criteria.getLimit()) {
+                nextStartPrimaryKey = row.getPrimaryKey();
+                break;
+            }
+            rows.add(row);
+        }
+        GetRangeResponse response = new GetRangeResponse(new Response("fake-request-id"), new ConsumedCapacity(new CapacityUnit(0, 0)));
+        response.setRows(rows);
+        response.setNextStartPrimaryKey(nextStartPrimaryKey);
+        return response;
+    }
+
+    public BatchWriteRowResponse batchWriteRow(BatchWriteRowRequest request) {
+        batchWriteRowCount.incrementAndGet();
+        BatchWriteRowResponse response = new BatchWriteRowResponse(new Response("fake-request-id"));
+        for (Map.Entry<String, List<RowChange>> entry : request.getRowChange().entrySet()) {
+            String tableName = entry.getKey();
+            List<RowChange> rowChanges = entry.getValue();
+            for (int i = 0; i < rowChanges.size(); i++) {
+                RowChange rowChange = rowChanges.get(i);
+                PrimaryKey primaryKey = rowChange.getPrimaryKey();
+                if (failingRows.test(primaryKey)) {
+                    response.addRowResult(new BatchWriteRowResponse.RowResult(tableName, null, new Error("OTSFake", "fake failure"), i));
+                    continue;
+                }
+                if (rowChange instanceof RowPutChange) {
+                    putRow(tableName, new Row(primaryKey, ((RowPutChange) rowChange).getColumnsToPut()));
+                } else if (rowChange instanceof RowDeleteChange) {
+                    table(tableName).remove(primaryKey);
+                } else {
+                    throw new UnsupportedOperationException(rowChange.getClass().getName());
+                }
+                response.addRowResult(
+                    new BatchWriteRowResponse.RowResult(tableName, null, new ConsumedCapacity(new CapacityUnit(0, 1)), i)
+                );
+            }
+        }
+        return response;
+    }
+
+    public BatchGetRowResponse batchGetRow(BatchGetRowRequest request) {
+        batchGetRowCount.incrementAndGet();
+        BatchGetRowResponse response = new BatchGetRowResponse(new Response("fake-request-id"));
+        for (Map.Entry<String, MultiRowQueryCriteria> entry : request.getCriteriasByTable().entrySet()) {
+            String tableName = entry.getKey();
+            List<PrimaryKey> primaryKeys = entry.getValue().getRowKeys();
+            Set<String> columnsToGet = entry.getValue().getColumnsToGet();
+            for (int i = 0; i < primaryKeys.size(); i++) {
+                PrimaryKey primaryKey = primaryKeys.get(i);
+                if (failingRows.test(primaryKey)) {
+                    response.addResult(new BatchGetRowResponse.RowResult(tableName, new Error("OTSFake", "fake failure"), i));
+                } else {
+                    Row row = project(table(tableName).get(primaryKey), columnsToGet);
+                    response.addResult(new BatchGetRowResponse.RowResult(tableName, row, new ConsumedCapacity(new CapacityUnit(1, 0)), i));
+                }
+            }
+        }
+        return response;
+    }
+
+    public GetRowResponse getRow(GetRowRequest request) {
+        getRowCount.incrementAndGet();
+        SingleRowQueryCriteria criteria = request.getRowQueryCriteria();
+        Row row = project(table(criteria.getTableName()).get(criteria.getPrimaryKey()), criteria.getColumnsToGet());
+        return new GetRowResponse(new Response("fake-request-id"), row, new ConsumedCapacity(new CapacityUnit(1, 0)));
+    }
+
+    public PutRowResponse putRow(PutRowRequest request) {
+        RowPutChange change = request.getRowChange();
+        checkCondition(change);
+        putRow(change.getTableName(), new Row(change.getPrimaryKey(), change.getColumnsToPut()));
+        return new PutRowResponse(new Response("fake-request-id"), null, new ConsumedCapacity(new CapacityUnit(0, 1)));
+    }
+
+    public UpdateRowResponse updateRow(UpdateRowRequest request) {
+        RowUpdateChange change = request.getRowChange();
+        checkCondition(change);
+        Map<String, Column> columns = new LinkedHashMap<>();
+        Row row = table(change.getTableName()).get(change.getPrimaryKey());
+        if (row != null) {
+            for (Column column : row.getColumns()) {
+                columns.put(column.getName(), column);
+            }
+        }
+        for (com.alicloud.openservices.tablestore.core.utils.Pair<Column, RowUpdateChange.Type> update : change.getColumnsToUpdate()) {
+            if (update.getSecond() == RowUpdateChange.Type.PUT) {
+                columns.put(update.getFirst().getName(), update.getFirst());
+            } else {
+                columns.remove(update.getFirst().getName());
+            }
+        }
+        putRow(change.getTableName(), new Row(change.getPrimaryKey(), new ArrayList<>(columns.values())));
+        return new UpdateRowResponse(new Response("fake-request-id"), null, new ConsumedCapacity(new CapacityUnit(0, 1)));
+    }
+
+    public DeleteRowResponse deleteRow(DeleteRowRequest request) {
+        RowDeleteChange change = request.getRowChange();
+        checkCondition(change);
+        table(change.getTableName()).remove(change.getPrimaryKey());
+        return new DeleteRowResponse(new Response("fake-request-id"), null, new ConsumedCapacity(new CapacityUnit(0, 1)));
+    }
+
+    public SearchResponse search(SearchRequest request) {
+        return searchHandler.apply(request);
+    }
+
+    public ComputeSplitsBySizeResponse computeSplitsBySize(ComputeSplitsBySizeRequest request) {
+        ComputeSplitsBySizeResponse response = new ComputeSplitsBySizeResponse(new Response("fake-request-id"));
+        NavigableMap<PrimaryKey, Row> table = table(request.getTableName());
+        if (table.isEmpty()) {
+            return response;
+        }
+        List<PrimaryKey> lowerBounds = new ArrayList<>();
+        int i = 0;
+        for (PrimaryKey primaryKey : table.keySet()) {
+            if (i++ % splitRows == 0) {
+                lowerBounds.add(primaryKey);
+            }
+        }
+        lowerBounds.set(0, bound(table.firstKey(), PrimaryKeyValue.INF_MIN));
+        lowerBounds.add(bound(table.firstKey(), PrimaryKeyValue.INF_MAX));
+        for (int j = 0; j + 1 < lowerBounds.size(); j++) {
+            response.addSplit(new Split("fake-location", lowerBounds.get(j), lowerBounds.get(j + 1)));
+        }
+        return response;
+    }
+
+    private void checkCondition(RowChange change) {
+        Condition condition = change.getCondition();
+        RowExistenceExpectation expectation = condition == null ? RowExistenceExpectation.IGNORE : condition.getRowExistenceExpectation();
+        boolean exists = table(change.getTableName()).containsKey(change.getPrimaryKey());
+        if ((expectation == RowExistenceExpectation.EXPECT_EXIST && !exists) || (expectation == RowExistenceExpectation.EXPECT_NOT_EXIST && exists)) {
+            throw new TableStoreException("Condition check failed.", null, ErrorCode.CONDITION_CHECK_FAIL, "fake-request-id", 403);
+        }
+    }
+
+    private static Row project(Row row, Set<String> columnsToGet) {
+        if (row == null || columnsToGet.isEmpty()) {
+            return row;
+        }
+        List<Column> columns = new ArrayList<>();
+        for (Column column : row.getColumns()) {
+            if (columnsToGet.contains(column.getName())) {
+                columns.add(column);
+            }
+        }
+        return new Row(row.getPrimaryKey(), columns);
+    }
+
+    private static PrimaryKey bound(PrimaryKey primaryKey, PrimaryKeyValue value) {
+        PrimaryKeyBuilder builder = PrimaryKeyBuilder.createPrimaryKeyBuilder();
+        for (PrimaryKeyColumn column : primaryKey.getPrimaryKeyColumns()) {
+            builder.addPrimaryKeyColumn(column.getName(), value);
+        }
+        return builder.build();
+    }
+
+    private static <Req, Res> CompletableFuture<Res> callAsync(Req request, TableStoreCallback<Req, Res> callback, Function<Req, Res> call) {
+        return CompletableFuture.supplyAsync(() -> call.apply(request)).whenComplete((response, throwable) -> {
+            if (throwable != null) {
+                callback.onFailed(request, (Exception) TablestoreHelper.unwrapCompletionException(throwable));
+            } else {
+                callback.onCompleted(request, response);
+            }
+        });
+    }
+}
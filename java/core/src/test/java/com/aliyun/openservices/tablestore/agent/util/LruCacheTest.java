@@ -0,0 +1,79 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class LruCacheTest {
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        LruCache<String, Integer> cache = LruCache.<String, Integer>builder().maxSize(2).build();
+        cache.put("a", 1);
+        cache.put("b", 2);
+        Assertions.assertEquals(1, cache.get("a"));
+        cache.put("c", 3);
+        Assertions.assertNull(cache.get("b"));
+        Assertions.assertEquals(1, cache.get("a"));
+        Assertions.assertEquals(3, cache.get("c"));
+
+        cache.invalidateIf(key -> key.equals("a"));
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(1, cache.size());
+
+        LruCache.Stats stats = cache.stats();
+        Assertions.assertEquals(3, stats.getHitCount());
+        Assertions.assertEquals(2, stats.getMissCount());
+        Assertions.assertEquals(1, stats.getEvictionCount());
+        Assertions.assertEquals(0.6, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    void putUnlessStale() {
+        LruCache<String, Integer> cache = LruCache.<String, Integer>builder().build();
+        AtomicLong writes = new AtomicLong();
+        long loaded = writes.get();
+        Assertions.assertTrue(cache.putUnless("a", 1, () -> writes.get() != loaded));
+        writes.incrementAndGet();
+        Assertions.assertFalse(cache.putUnless("b", 2, () -> writes.get() != loaded));
+        Assertions.assertEquals(1, cache.get("a"));
+        Assertions.assertNull(cache.get("b"));
+    }
+
+    @Test
+    void expiresAfterTtl() {
+        AtomicLong now = new AtomicLong();
+        LruCache<String, Integer> cache = LruCache.<String, Integer>builder().ttlMillis(100L).ticker(now::get).build();
+        cache.put("a", 1);
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(99));
+        Assertions.assertEquals(1, cache.get("a"));
+        now.addAndGet(TimeUnit.MILLISECONDS.toNanos(1));
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(1, cache.stats().getExpirationCount());
+        Assertions.assertEquals(0, cache.size());
+    }
+
+    @Test
+    void evictsByWeight() {
+        LruCache<String, String> cache = LruCache.<String, String>builder().maxWeight(10L).weigher(value -> (long) value.length()).build();
+        cache.put("a", "aaaa");
+        cache.put("b", "bbbb");
+        Assertions.assertEquals(8, cache.weight());
+        cache.put("c", "cccc");
+        Assertions.assertNull(cache.get("a"));
+        Assertions.assertEquals(8, cache.weight());
+
+        // replaced and invalidated entries release their weight
+        cache.put("b", "b");
+        Assertions.assertEquals(5, cache.weight());
+        cache.invalidateIf(key -> key.equals("c"));
+        Assertions.assertEquals(1, cache.weight());
+
+        // heavier than the max weight, not kept
+        cache.put("d", "ddddddddddd");
+        Assertions.assertNull(cache.get("d"));
+        Assertions.assertEquals(0, cache.weight());
+        Assertions.assertEquals(3, cache.stats().getEvictionCount());
+    }
+}
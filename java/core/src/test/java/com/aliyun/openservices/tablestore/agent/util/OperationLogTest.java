@@ -0,0 +1,54 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class OperationLogTest {
+
+    @Test
+    void start() {
+        AtomicInteger rendered = new AtomicInteger();
+        Object argument = new Object() {
+            @Override
+            public String toString() {
+                rendered.incrementAndGet();
+                return "filter";
+            }
+        };
+        List<String> requestIds = new ArrayList<>();
+        StoreMetrics metrics = new StoreMetrics() {
+            @Override
+            public void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {
+                requestIds.add(requestId);
+            }
+        };
+
+        // neither sampled nor slow, the metrics are used as is
+        OperationLog off = OperationLog.builder().slowThresholdMillis(-1L).build();
+        Assertions.assertSame(metrics, off.start(metrics, "listSessions", "metadataFilter:{}", argument));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> OperationLog.builder().sampleRate(1.5).build());
+
+        StoreMetrics slow = OperationLog.builder().slowThresholdMillis(100L).build().start(metrics, "listSessions", "metadataFilter:{}", argument);
+        slow.recordRequest("session", "GetRange", TimeUnit.MILLISECONDS.toNanos(10), 5, "fast", null);
+        Assertions.assertEquals(0, rendered.get());
+        slow.recordRequest("session", "GetRange", TimeUnit.MILLISECONDS.toNanos(200), 5, "slow", null);
+        Assertions.assertEquals(1, rendered.get());
+
+        StoreMetrics sampled = OperationLog.builder().sampleRate(1.0).slowThresholdMillis(-1L).build().start(metrics, "search", "{}", argument);
+        sampled.recordRequest("session", "Search", 1, 0, "sampled", "OTSParameterInvalid");
+        Assertions.assertEquals(2, rendered.get());
+
+        // several arguments, through the varargs array
+        StoreMetrics several = OperationLog.builder().slowThresholdMillis(100L).build().start(metrics, "listSessions", "userId:{}, metadataFilter:{}", "u1", argument);
+        several.recordRequest("session", "GetRange", TimeUnit.MILLISECONDS.toNanos(10), 5, "several", null);
+        Assertions.assertEquals(2, rendered.get());
+        several.recordRequest("session", "GetRange", TimeUnit.MILLISECONDS.toNanos(200), 5, "several", null);
+        Assertions.assertEquals(3, rendered.get());
+        Assertions.assertEquals(Arrays.asList("fast", "slow", "sampled", "several", "several"), requestIds);
+    }
+}
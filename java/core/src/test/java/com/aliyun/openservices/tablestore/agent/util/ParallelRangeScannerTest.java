@@ -0,0 +1,94 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class ParallelRangeScannerTest {
+
+    private static FakeTablestoreClient fakeClient(int messages) {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        for (int i = 0; i < messages; i++) {
+            Message message = new Message("s" + (i % 13), "m" + i, (long) i);
+            PrimaryKey primaryKey = TablestoreHelper.messagePrimaryKey(message.getSessionId(), message.getCreateTime(), message.getMessageId());
+            fakeClient.putRow("message", new Row(primaryKey, TablestoreHelper.messageToColumns(message)));
+        }
+        fakeClient.setSplitRows(1000);
+        return fakeClient;
+    }
+
+    private static ParallelRangeScanner<PrimaryKey> scanner(FakeTablestoreClient fakeClient, int parallelism) {
+        return ParallelRangeScanner.<PrimaryKey>builder()
+            .client(fakeClient.asSyncClient())
+            .tableName("message")
+            .translateFunction(Row::getPrimaryKey)
+            .batchSize(300)
+            .parallelism(parallelism)
+            .build();
+    }
+
+    @Test
+    void stream() {
+        FakeTablestoreClient fakeClient = fakeClient(10_000);
+        ParallelRangeScanner<PrimaryKey> scanner = scanner(fakeClient, 4);
+        Assertions.assertEquals(10, scanner.computeSplits().size());
+
+        List<PrimaryKey> expected = new ArrayList<>(fakeClient.table("message").keySet());
+        Assertions.assertEquals(expected, scanner.stream().collect(Collectors.toList()));
+        Assertions.assertEquals(10_000, scanner.stream().filter(pk -> pk.getPrimaryKeyColumn(0).getValue().asString().startsWith("s")).count());
+
+        Set<String> threads = scanner.stream().map(pk -> Thread.currentThread().getName()).collect(Collectors.toSet());
+        Assertions.assertTrue(threads.size() > 1 || Runtime.getRuntime().availableProcessors() == 1, threads.toString());
+    }
+
+    @Test
+    void iterator() {
+        FakeTablestoreClient fakeClient = fakeClient(10_000);
+        Set<PrimaryKey> keys = new HashSet<>();
+        ParallelRangeScanner<PrimaryKey>.ScanIterator iterator = scanner(fakeClient, 3).iterator();
+        while (iterator.hasNext()) {
+            Assertions.assertTrue(keys.add(iterator.next()));
+        }
+        Assertions.assertEquals(fakeClient.table("message").keySet(), keys);
+
+        try (ParallelRangeScanner<PrimaryKey>.ScanIterator closed = scanner(fakeClient, 3).iterator()) {
+            Assertions.assertTrue(closed.hasNext());
+            closed.next();
+            closed.close();
+            Assertions.assertFalse(closed.hasNext());
+        }
+
+        Assertions.assertFalse(scanner(new FakeTablestoreClient(), 3).iterator().hasNext());
+        Assertions.assertEquals(0, scanner(new FakeTablestoreClient(), 3).stream().count());
+    }
+
+    @Test
+    void droppedIterator() throws InterruptedException {
+        FakeTablestoreClient fakeClient = fakeClient(10_000);
+        Iterator<PrimaryKey> iterator = scanner(fakeClient, 3).iterator();
+        Assertions.assertTrue(iterator.hasNext());
+        Assertions.assertTrue(scanThreads() > 0);
+
+        // the workers blocked on the full queue give up once the iterator is collected
+        iterator = null;
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(30);
+        while (scanThreads() > 0 && System.nanoTime() < deadline) {
+            System.gc();
+            Thread.sleep(50);
+        }
+        Assertions.assertEquals(0, scanThreads());
+    }
+
+    private static long scanThreads() {
+        return Thread.getAllStackTraces().keySet().stream().filter(t -> t.getName().startsWith("tablestore-parallel-scan-")).count();
+    }
+}
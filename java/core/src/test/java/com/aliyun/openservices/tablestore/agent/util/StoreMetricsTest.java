@@ -0,0 +1,116 @@
+package com.aliyun.openservices.tablestore.agent.util;
+
+import com.alicloud.openservices.tablestore.TableStoreException;
+import com.alicloud.openservices.tablestore.model.Column;
+import com.alicloud.openservices.tablestore.model.GetRangeResponse;
+import com.alicloud.openservices.tablestore.model.PrimaryKey;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Message;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class StoreMetricsTest {
+
+    @Test
+    void errorCode() {
+        TableStoreException e = new TableStoreException("conflict", null, "OTSRowOperationConflict", "request-1", 409);
+        Assertions.assertEquals("OTSRowOperationConflict", StoreMetrics.errorCode(e));
+        Assertions.assertEquals("OTSRowOperationConflict", StoreMetrics.errorCode(Exceptions.runtimeThrowable("put row failed", e)));
+        Assertions.assertEquals("IllegalArgumentException", StoreMetrics.errorCode(Exceptions.illegalArgument("invalid")));
+    }
+
+    @Test
+    void getRangePages() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        for (int i = 0; i < 250; i++) {
+            fakeClient.putRow("message", new Row(TablestoreHelper.messagePrimaryKey("s1", i, "m" + i), new ArrayList<Column>()));
+        }
+        PrimaryKey start = TablestoreHelper.messagePrimaryKey("s1", 0, "");
+        PrimaryKey end = TablestoreHelper.messagePrimaryKey("s1", Long.MAX_VALUE, "");
+        List<Integer> pages = new ArrayList<>();
+        StoreMetrics metrics = new StoreMetrics() {
+            @Override
+            public void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {
+                Assertions.assertEquals("message", table);
+                Assertions.assertEquals("GetRange", request);
+                Assertions.assertNull(errorCode);
+                pages.add(rows);
+            }
+        };
+        for (boolean prefetch : new boolean[] { false, true }) {
+            pages.clear();
+            TablestoreHelper.GetRangeIterator<Message> iterator = new TablestoreHelper.GetRangeIterator<>(
+                fakeClient.asSyncClient(),
+                "message",
+                TablestoreHelper::rowToMessage,
+                start,
+                end,
+                null,
+                Order.ASC,
+                -1L,
+                100,
+                null,
+                prefetch,
+                metrics
+            );
+            Assertions.assertEquals(250, CollectionUtil.toList(iterator).size());
+            Assertions.assertEquals(Integer.valueOf(250), pages.stream().reduce(0, Integer::sum));
+            Assertions.assertEquals(3, pages.size());
+        }
+    }
+
+    @Test
+    void getRangeAsyncPages() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        for (int i = 0; i < 250; i++) {
+            fakeClient.putRow("message", new Row(TablestoreHelper.messagePrimaryKey("s1", i, "m" + i), new ArrayList<Column>()));
+        }
+        List<Integer> pages = new ArrayList<>();
+        StoreMetrics metrics = new StoreMetrics() {
+            @Override
+            public void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {
+                Assertions.assertEquals("message", table);
+                Assertions.assertEquals("GetRange", request);
+                Assertions.assertNull(errorCode);
+                pages.add(rows);
+            }
+        };
+        Pair<List<Message>, PrimaryKey> result = TablestoreHelper.getRangeAsync(
+            fakeClient.asAsyncClient(),
+            "message",
+            TablestoreHelper::rowToMessage,
+            TablestoreHelper.messagePrimaryKey("s1", 0, ""),
+            TablestoreHelper.messagePrimaryKey("s1", Long.MAX_VALUE, ""),
+            null,
+            Order.ASC,
+            -1L,
+            100,
+            metrics
+        ).join();
+        Assertions.assertEquals(250, result.getLeft().size());
+        Assertions.assertEquals(3, pages.size());
+        Assertions.assertEquals(Integer.valueOf(250), pages.stream().reduce(0, Integer::sum));
+    }
+
+    @Test
+    void requestAsyncFailure() {
+        List<String> records = new ArrayList<>();
+        StoreMetrics metrics = new StoreMetrics() {
+            @Override
+            public void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {
+                records.add(table + "," + request + "," + rows + "," + requestId + "," + errorCode);
+            }
+        };
+        CompletableFuture<GetRangeResponse> failed = new CompletableFuture<>();
+        failed.completeExceptionally(new TableStoreException("timeout", null, "OTSTimeout", "request-1", 503));
+        CompletableFuture<GetRangeResponse> future = StoreMetrics.requestAsync(metrics, "message", "GetRange", () -> failed, r -> r.getRows().size());
+        Assertions.assertThrows(CompletionException.class, future::join);
+        Assertions.assertEquals(1, records.size());
+        Assertions.assertEquals("message,GetRange,0,request-1,OTSTimeout", records.get(0));
+    }
+}
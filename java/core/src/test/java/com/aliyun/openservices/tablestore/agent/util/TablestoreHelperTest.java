@@ -1,9 +1,18 @@
 package com.aliyun.openservices.tablestore.agent.util;
 
+import com.alicloud.openservices.tablestore.model.Column;
 import com.alicloud.openservices.tablestore.model.PrimaryKey;
 import com.alicloud.openservices.tablestore.model.PrimaryKeyBuilder;
 import com.alicloud.openservices.tablestore.model.PrimaryKeyValue;
+import com.alicloud.openservices.tablestore.model.Row;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.Message;
 import com.aliyun.openservices.tablestore.agent.model.Session;
+import com.aliyun.openservices.tablestore.agent.model.sort.Order;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.ThreadLocalRandom;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Assertions;
@@ -44,4 +53,205 @@ class TablestoreHelperTest {
         float[] decodeEmbedding = TablestoreHelper.decodeEmbedding(embeddingString);
         Assertions.assertArrayEquals(embedding, decodeEmbedding);
     }
+
+    @Test
+    void testBinaryEmbedding() {
+        float[] embedding = new float[10];
+        for (int i = 0; i < embedding.length; i++) {
+            embedding[i] = ThreadLocalRandom.current().nextFloat() - 0.5f;
+        }
+        byte[] bytes = TablestoreHelper.encodeEmbeddingToBytes(embedding);
+        Assertions.assertEquals(embedding.length * 4, bytes.length);
+        Assertions.assertEquals(Float.floatToIntBits(embedding[0]) & 0xFF, bytes[0] & 0xFF);
+        Assertions.assertArrayEquals(embedding, TablestoreHelper.decodeEmbedding(bytes));
+        Assertions.assertThrows(IllegalArgumentException.class, () -> TablestoreHelper.decodeEmbedding(new byte[5]));
+
+        Document document = new Document("doc1");
+        document.setText("text");
+        document.setEmbedding(embedding);
+        PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey(document.getDocumentId(), document.getTenantId());
+        for (boolean binary : new boolean[] { true, false }) {
+            List<Column> columns = TablestoreHelper.documentToColumns(document, "text", "embedding", binary);
+            Document decoded = TablestoreHelper.rowToDocument(new Row(primaryKey, columns), "text", "embedding");
+            Assertions.assertArrayEquals(embedding, decoded.getEmbedding());
+            Assertions.assertEquals("text", decoded.getText());
+            Assertions.assertFalse(decoded.getMetadata().containsKey("embedding"));
+        }
+    }
+
+    @Test
+    void getRangeAsync() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        int total = 103;
+        for (int i = 0; i < total; i++) {
+            fakeClient.putRow("message", new Row(TablestoreHelper.messagePrimaryKey("s1", i, "m" + i), new ArrayList<Column>()));
+        }
+        PrimaryKey start = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString("s1"))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MAX)
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.INF_MAX)
+            .build();
+        PrimaryKey end = PrimaryKeyBuilder.createPrimaryKeyBuilder()
+            .addPrimaryKeyColumn(Message.MESSAGE_SESSION_ID, PrimaryKeyValue.fromString("s1"))
+            .addPrimaryKeyColumn(Message.MESSAGE_CREATE_TIME, PrimaryKeyValue.INF_MIN)
+            .addPrimaryKeyColumn(Message.MESSAGE_MESSAGE_ID, PrimaryKeyValue.INF_MIN)
+            .build();
+
+        List<Message> messages = new ArrayList<>();
+        PrimaryKey next = start;
+        int pages = 0;
+        do {
+            Pair<List<Message>, PrimaryKey> page = TablestoreHelper.getRangeAsync(
+                fakeClient.asAsyncClient(),
+                "message",
+                TablestoreHelper::rowToMessage,
+                next,
+                end,
+                null,
+                Order.DESC,
+                10,
+                3
+            ).join();
+            Assertions.assertTrue(page.getLeft().size() <= 10);
+            messages.addAll(page.getLeft());
+            next = page.getRight();
+            pages++;
+        } while (next != null);
+        Assertions.assertEquals(11, pages);
+        Assertions.assertEquals(total, messages.size());
+        for (int i = 0; i < total; i++) {
+            Assertions.assertEquals(total - 1 - i, messages.get(i).getCreateTime());
+        }
+    }
+
+    @Test
+    void getRangeIteratorPrefetch() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        int total = 1003;
+        for (int i = 0; i < total; i++) {
+            fakeClient.putRow("message", new Row(TablestoreHelper.messagePrimaryKey("s1", i, "m" + i), new ArrayList<Column>()));
+        }
+        PrimaryKey start = TablestoreHelper.messagePrimaryKey("s1", 0, "");
+        PrimaryKey end = TablestoreHelper.messagePrimaryKey("s1", Long.MAX_VALUE, "");
+        for (boolean prefetch : new boolean[] { false, true }) {
+            int getRangeCount = fakeClient.getRangeCount();
+            TablestoreHelper.GetRangeIterator<Message> iterator = new TablestoreHelper.GetRangeIterator<>(
+                fakeClient.asSyncClient(),
+                "message",
+                TablestoreHelper::rowToMessage,
+                start,
+                end,
+                null,
+                Order.ASC,
+                -1L,
+                100,
+                null,
+                prefetch
+            );
+            for (int i = 0; i < total; i++) {
+                Assertions.assertTrue(iterator.hasNext());
+                Assertions.assertEquals(i, iterator.next().getCreateTime());
+            }
+            Assertions.assertFalse(iterator.hasNext());
+            Assertions.assertEquals(11, fakeClient.getRangeCount() - getRangeCount);
+        }
+
+        // no page is prefetched beyond maxCount
+        int getRangeCount = fakeClient.getRangeCount();
+        TablestoreHelper.GetRangeIterator<Message> iterator = new TablestoreHelper.GetRangeIterator<>(
+            fakeClient.asSyncClient(),
+            "message",
+            TablestoreHelper::rowToMessage,
+            start,
+            end,
+            null,
+            Order.ASC,
+            50L,
+            100,
+            null,
+            true
+        );
+        int count = 0;
+        while (iterator.hasNext()) {
+            iterator.next();
+            count++;
+        }
+        Assertions.assertEquals(50, count);
+        Assertions.assertEquals(1, fakeClient.getRangeCount() - getRangeCount);
+    }
+
+    @Test
+    void batchGetDocuments() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        List<PrimaryKey> primaryKeys = new ArrayList<>();
+        for (int i = 0; i < 250; i++) {
+            PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey("d" + i, Document.DOCUMENT_DEFAULT_TENANT_ID);
+            primaryKeys.add(primaryKey);
+            if (i % 7 != 0) {
+                Document document = new Document("d" + i, Document.DOCUMENT_DEFAULT_TENANT_ID, "text " + i, null, null);
+                fakeClient.putRow("knowledge", new Row(primaryKey, TablestoreHelper.documentToColumns(document, "text", "embedding")));
+            }
+        }
+        List<Document> documents = TablestoreHelper.batchGetDocuments(fakeClient.asSyncClient(), "knowledge", primaryKeys, "text", "embedding", 3);
+        Assertions.assertEquals(250, documents.size());
+        Assertions.assertEquals(3, fakeClient.batchGetRowCount());
+        for (int i = 0; i < 250; i++) {
+            if (i % 7 == 0) {
+                Assertions.assertNull(documents.get(i));
+            } else {
+                Assertions.assertEquals("d" + i, documents.get(i).getDocumentId());
+                Assertions.assertEquals("text " + i, documents.get(i).getText());
+            }
+        }
+
+        List<Document> asyncDocuments = TablestoreHelper.batchGetDocumentsAsync(fakeClient.asAsyncClient(), "knowledge", primaryKeys, "text", "embedding")
+            .join();
+        Assertions.assertEquals(250, asyncDocuments.size());
+        for (int i = 0; i < 250; i++) {
+            Assertions.assertEquals(documents.get(i), asyncDocuments.get(i));
+        }
+
+        // the failures of all the requests are reported
+        fakeClient.setFailingRows(pk -> pk.equals(primaryKeys.get(1)) || pk.equals(primaryKeys.get(201)));
+        Exception e = Assertions.assertThrows(
+            Exception.class,
+            () -> TablestoreHelper.batchGetDocuments(fakeClient.asSyncClient(), "knowledge", primaryKeys, "text", "embedding", 3)
+        );
+        Assertions.assertTrue(e.getMessage().contains("\"d1\""), e.getMessage());
+        Assertions.assertTrue(e.getMessage().contains("\"d201\""), e.getMessage());
+        Assertions.assertEquals(9, fakeClient.batchGetRowCount());
+    }
+
+    @Test
+    void batchGetDocumentsWithoutEmbedding() {
+        FakeTablestoreClient fakeClient = new FakeTablestoreClient();
+        List<PrimaryKey> primaryKeys = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            PrimaryKey primaryKey = TablestoreHelper.documentPrimaryKey("d" + i, Document.DOCUMENT_DEFAULT_TENANT_ID);
+            primaryKeys.add(primaryKey);
+            Document document = new Document("d" + i, Document.DOCUMENT_DEFAULT_TENANT_ID, "text " + i, new float[] { i, 1 }, null);
+            fakeClient.putRow("knowledge", new Row(primaryKey, TablestoreHelper.documentToColumns(document, "text", "embedding")));
+        }
+        List<String> columnsToGet = TablestoreHelper.documentColumnsToGet(Collections.singletonList("text"));
+        Assertions.assertEquals(Arrays.asList("text", Document.DOCUMENT_DOCUMENT_ID, Document.DOCUMENT_TENANT_ID), columnsToGet);
+        Assertions.assertNull(TablestoreHelper.documentColumnsToGet(Collections.emptyList()));
+
+        List<Document> documents = TablestoreHelper.batchGetDocuments(
+            fakeClient.asSyncClient(),
+            "knowledge",
+            primaryKeys,
+            "text",
+            "embedding",
+            1,
+            columnsToGet
+        );
+        for (int i = 0; i < 3; i++) {
+            Assertions.assertEquals("text " + i, documents.get(i).getText());
+            Assertions.assertNull(documents.get(i).getEmbedding());
+        }
+        float[] embedding = TablestoreHelper.batchGetDocuments(fakeClient.asSyncClient(), "knowledge", primaryKeys, "text", "embedding", 1)
+            .get(2)
+            .getEmbedding();
+        Assertions.assertArrayEquals(new float[] { 2, 1 }, embedding);
+    }
 }
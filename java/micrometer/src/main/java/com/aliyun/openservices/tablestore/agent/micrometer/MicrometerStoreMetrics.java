@@ -0,0 +1,149 @@
+package com.aliyun.openservices.tablestore.agent.micrometer;
+
+import com.aliyun.openservices.tablestore.agent.util.LruCache;
+import com.aliyun.openservices.tablestore.agent.util.StoreMetrics;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+import lombok.Builder;
+import lombok.EqualsAndHashCode;
+import lombok.NonNull;
+
+/**
+ * {@link StoreMetrics} registering the records in a Micrometer {@link MeterRegistry}:
+ * <ul>
+ * <li>{@code tablestore.agent.operation}: timer of the calls of a store, tags {@code store}, {@code operation} and {@code error}</li>
+ * <li>{@code tablestore.agent.rows.read} and {@code tablestore.agent.rows.written}: summaries of the rows of the calls, tags {@code store}
+ * and {@code operation}</li>
+ * <li>{@code tablestore.agent.request}: timer of the requests sent to Tablestore, tags {@code table}, {@code request} and {@code error}</li>
+ * <li>{@code tablestore.agent.request.rows}: summary of the rows returned by the requests, tags {@code table} and {@code request}</li>
+ * <li>{@code tablestore.agent.cache.hits}, {@code .misses}, {@code .evictions}, {@code .expirations} and {@code .hit.rate}, tag
+ * {@code cache}</li>
+ * </ul>
+ * The {@code error} tag is {@code none} on success, else the Tablestore error code. Request ids would make a tag of unbounded cardinality
+ * and are not registered.
+ * <p>
+ * The timers and summaries are registered on their first record and kept by name and tags, the later records skip the builder and the
+ * lookup of the registry. A meter removed from the registry afterwards is still recorded to, but no longer published.
+ * </p>
+ */
+public class MicrometerStoreMetrics implements StoreMetrics {
+
+    private static final String NO_ERROR = "none";
+
+    private final MeterRegistry registry;
+    private final boolean percentileHistogram;
+    private final ConcurrentMap<MeterKey, Meter> meters = new ConcurrentHashMap<>();
+    /**
+     * The registry only holds weak references to the state of the function counters and gauges, the stats of the caches are kept here.
+     */
+    private final ConcurrentMap<String, Supplier<LruCache.Stats>> caches = new ConcurrentHashMap<>();
+
+    /**
+     * @param registry            registry of the meters
+     * @param percentileHistogram publish the histograms of the timers and summaries, to aggregate percentiles in the monitoring system,
+     *                            default true
+     */
+    @Builder
+    private MicrometerStoreMetrics(@NonNull MeterRegistry registry, Boolean percentileHistogram) {
+        this.registry = registry;
+        this.percentileHistogram = percentileHistogram == null || percentileHistogram;
+    }
+
+    @Override
+    public void recordOperation(String store, String operation, long elapsedNanos, String errorCode) {
+        timer("tablestore.agent.operation", "store", store, "operation", operation, "error", errorCode == null ? NO_ERROR : errorCode).record(
+            elapsedNanos,
+            TimeUnit.NANOSECONDS
+        );
+    }
+
+    @Override
+    public void recordRowsRead(String store, String operation, long rows) {
+        rows("tablestore.agent.rows.read", store, operation, rows);
+    }
+
+    @Override
+    public void recordRowsWritten(String store, String operation, long rows) {
+        rows("tablestore.agent.rows.written", store, operation, rows);
+    }
+
+    @Override
+    public void recordRequest(String table, String request, long elapsedNanos, int rows, String requestId, String errorCode) {
+        timer("tablestore.agent.request", "table", table, "request", request, "error", errorCode == null ? NO_ERROR : errorCode).record(
+            elapsedNanos,
+            TimeUnit.NANOSECONDS
+        );
+        if (errorCode == null) {
+            summary("tablestore.agent.request.rows", "table", table, "request", request).record(rows);
+        }
+    }
+
+    @Override
+    public void registerCache(String cache, Supplier<LruCache.Stats> stats) {
+        // the meters of a cache name already registered keep reading the first stats
+        Supplier<LruCache.Stats> registered = caches.putIfAbsent(cache, stats);
+        if (registered != null) {
+            return;
+        }
+        FunctionCounter.builder("tablestore.agent.cache.hits", stats, s -> s.get().getHitCount()).tag("cache", cache).register(registry);
+        FunctionCounter.builder("tablestore.agent.cache.misses", stats, s -> s.get().getMissCount()).tag("cache", cache).register(registry);
+        FunctionCounter.builder("tablestore.agent.cache.evictions", stats, s -> s.get().getEvictionCount())
+            .tag("cache", cache)
+            .register(registry);
+        FunctionCounter.builder("tablestore.agent.cache.expirations", stats, s -> s.get().getExpirationCount())
+            .tag("cache", cache)
+            .register(registry);
+        Gauge.builder("tablestore.agent.cache.hit.rate", stats, s -> s.get().hitRate()).tag("cache", cache).register(registry);
+    }
+
+    private void rows(String name, String store, String operation, long rows) {
+        summary(name, "store", store, "operation", operation).record(rows);
+    }
+
+    private Timer timer(String name, String... tags) {
+        MeterKey key = new MeterKey(name, tags);
+        Meter timer = meters.get(key);
+        if (timer == null) {
+            timer = meters.computeIfAbsent(
+                key,
+                k -> Timer.builder(name).tags(tags).publishPercentileHistogram(percentileHistogram).register(registry)
+            );
+        }
+        return (Timer) timer;
+    }
+
+    private DistributionSummary summary(String name, String... tags) {
+        MeterKey key = new MeterKey(name, tags);
+        Meter summary = meters.get(key);
+        if (summary == null) {
+            summary = meters.computeIfAbsent(
+                key,
+                k -> DistributionSummary.builder(name).tags(tags).publishPercentileHistogram(percentileHistogram).register(registry)
+            );
+        }
+        return (DistributionSummary) summary;
+    }
+
+    /**
+     * Name and tag keys and values of a meter, in the order they are passed.
+     */
+    @EqualsAndHashCode
+    private static final class MeterKey {
+
+        private final String name;
+        private final String[] tags;
+
+        private MeterKey(String name, String[] tags) {
+            this.name = name;
+            this.tags = tags;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package com.aliyun.openservices.tablestore.agent.micrometer;
+
+import com.aliyun.openservices.tablestore.agent.knowledge.CachedKnowledgeStore;
+import com.aliyun.openservices.tablestore.agent.knowledge.InMemoryKnowledgeStore;
+import com.aliyun.openservices.tablestore.agent.knowledge.KnowledgeStore;
+import com.aliyun.openservices.tablestore.agent.knowledge.MeteredKnowledgeStore;
+import com.aliyun.openservices.tablestore.agent.model.Document;
+import com.aliyun.openservices.tablestore.agent.model.Metadata;
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.config.MeterFilter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Assertions;
+import org.junit.jupiter.api.Test;
+
+class MicrometerStoreMetricsTest {
+
+    @Test
+    void registry() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerStoreMetrics metrics = MicrometerStoreMetrics.builder().registry(registry).build();
+        KnowledgeStore cached = CachedKnowledgeStore.builder()
+            .delegate(InMemoryKnowledgeStore.builder().embeddingDimension(2).enableMultiTenant(false).build())
+            .metrics(metrics)
+            .build();
+        KnowledgeStore store = MeteredKnowledgeStore.builder().delegate(cached).metrics(metrics).build();
+
+        store.putDocument(new Document("d1", null, "a", new float[] { 1, 0 }, new Metadata()));
+        store.getDocument("d1");
+        store.getDocument("d1");
+        Assertions.assertThrows(IllegalArgumentException.class, () -> store.getDocument("d1", "tenant"));
+
+        Assertions.assertEquals(
+            2,
+            registry.get("tablestore.agent.operation").tags("store", "knowledge", "operation", "getDocument", "error", "none").timer().count()
+        );
+        Assertions.assertEquals(
+            1,
+            registry.get("tablestore.agent.operation").tags("operation", "getDocument", "error", "IllegalArgumentException").timer().count()
+        );
+        Assertions.assertEquals(
+            1.0,
+            registry.get("tablestore.agent.rows.written").tags("operation", "putDocument").summary().totalAmount()
+        );
+        Assertions.assertEquals(2.0, registry.get("tablestore.agent.rows.read").tags("operation", "getDocument").summary().totalAmount());
+        Assertions.assertEquals(1.0, registry.get("tablestore.agent.cache.hits").tags("cache", "knowledge.document").functionCounter().count());
+        Assertions.assertEquals(1.0 / 3, registry.get("tablestore.agent.cache.hit.rate").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void metersAreRegisteredOnce() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        // the registry maps the id of a meter on every register, cached or not
+        AtomicInteger registered = new AtomicInteger();
+        registry.config().meterFilter(new MeterFilter() {
+            @Override
+            public Meter.Id map(Meter.Id id) {
+                registered.incrementAndGet();
+                return id;
+            }
+        });
+        MicrometerStoreMetrics metrics = MicrometerStoreMetrics.builder().registry(registry).build();
+
+        for (int i = 0; i < 3; i++) {
+            metrics.recordRequest("knowledge", "GetRow", 1000, 1, "request-" + i, null);
+            metrics.recordOperation("knowledge", "getDocument", 2000, null);
+        }
+        metrics.recordRequest("knowledge", "GetRow", 1000, 0, "request-3", "OTSTimeout");
+
+        Assertions.assertEquals(4, registered.get());
+        Assertions.assertEquals(3, registry.get("tablestore.agent.request").tags("error", "none").timer().count());
+        Assertions.assertEquals(1, registry.get("tablestore.agent.request").tags("error", "OTSTimeout").timer().count());
+        Assertions.assertEquals(3.0, registry.get("tablestore.agent.request.rows").summary().totalAmount());
+        Assertions.assertEquals(3, registry.get("tablestore.agent.operation").timer().count());
+    }
+
+    @Test
+    void cacheStatsSurviveGc() {
+        SimpleMeterRegistry registry = new SimpleMeterRegistry();
+        MicrometerStoreMetrics metrics = MicrometerStoreMetrics.builder().registry(registry).build();
+        KnowledgeStore store = CachedKnowledgeStore.builder()
+            .delegate(InMemoryKnowledgeStore.builder().embeddingDimension(2).enableMultiTenant(false).build())
+            .metrics(metrics)
+            .build();
+        store.putDocument(new Document("d1", null, "a", new float[] { 1, 0 }, new Metadata()));
+        store.getDocument("d1");
+        store.getDocument("d1");
+
+        // the stats supplier registered by the store is referenced by nothing else
+        System.gc();
+        Assertions.assertEquals(1.0, registry.get("tablestore.agent.cache.hits").tags("cache", "knowledge.document").functionCounter().count());
+        Assertions.assertEquals(0.5, registry.get("tablestore.agent.cache.hit.rate").gauge().value(), 1e-9);
+    }
+}